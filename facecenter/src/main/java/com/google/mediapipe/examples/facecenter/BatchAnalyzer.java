@@ -0,0 +1,248 @@
+package com.google.mediapipe.examples.facecenter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs {@link FaceAnalyzer} and a {@link CapturePolicy} over every record of a {@link
+ * LandmarkFile}, in parallel, and aggregates the results by session.
+ *
+ * <p>The records are split in halves with fork/join down to chunks of at most {@code chunkRecords},
+ * many more than there are threads so that work stealing can even out the load. Each chunk reads
+ * its own records with positional reads into its own buffer, analyzes them, and aggregates them
+ * into its own {@link SessionStats}; chunks share nothing while they run, and the per-session
+ * results are merged as the halves join. A session spanning several chunks is merged back into
+ * one.
+ *
+ * <p>The capture policy may be stateful, e.g. its stability rule looks at the frames before. Each
+ * chunk therefore replays up to {@code overlapRecords} records before its start through its own
+ * policy without counting them, so that as long as the overlap covers the policy's memory, the
+ * results are the same as those of a single sequential pass.
+ */
+public class BatchAnalyzer {
+  /** Records read at once by a chunk. */
+  private static final int READ_RECORDS = 256;
+
+  private final Properties policy;
+  private final int numRules;
+  private final int chunkRecords;
+  private final int overlapRecords;
+
+  /**
+   * @param policy capture policy properties, see {@link CapturePolicy}; compiled once per chunk.
+   * @param chunkRecords most records analyzed by one task.
+   * @param overlapRecords records replayed through the policy before each chunk.
+   */
+  public BatchAnalyzer(Properties policy, int chunkRecords, int overlapRecords) {
+    if (chunkRecords <= 0 || overlapRecords < 0) {
+      throw new IllegalArgumentException("Bad chunk size or overlap.");
+    }
+    this.policy = policy;
+    this.numRules = CapturePolicy.compile(policy).ruleCount();
+    this.chunkRecords = chunkRecords;
+    this.overlapRecords = overlapRecords;
+  }
+
+  /**
+   * Analyzes every record of {@code file} on {@code pool}.
+   *
+   * @return the stats of each session, by session ID.
+   */
+  public Map<Integer, SessionStats> run(LandmarkFile file, ForkJoinPool pool) throws IOException {
+    try {
+      return pool.invoke(new ChunkTask(file, 0, file.numRecords()));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private class ChunkTask extends RecursiveTask<Map<Integer, SessionStats>> {
+    private static final long serialVersionUID = 1L;
+
+    private final LandmarkFile file;
+    private final long start;
+    private final long end;
+
+    ChunkTask(LandmarkFile file, long start, long end) {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected Map<Integer, SessionStats> compute() {
+      if (end - start <= chunkRecords) {
+        try {
+          return analyze();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      long middle = (start + end) >>> 1;
+      ChunkTask first = new ChunkTask(file, start, middle);
+      first.fork();
+      Map<Integer, SessionStats> second = new ChunkTask(file, middle, end).compute();
+      return merge(first.join(), second);
+    }
+
+    private Map<Integer, SessionStats> analyze() throws IOException {
+      Map<Integer, SessionStats> sessions = new HashMap<>();
+      CapturePolicy capturePolicy = CapturePolicy.compile(policy);
+      int numLandmarks = file.numLandmarks();
+      ByteBuffer buffer =
+          ByteBuffer.allocate(READ_RECORDS * LandmarkFile.recordSize(numLandmarks))
+              .order(ByteOrder.LITTLE_ENDIAN);
+      LandmarkFile.Record record = new LandmarkFile.Record(numLandmarks);
+      FaceAnalysis analysis = new FaceAnalysis();
+      CapturePolicy.Input input = new CapturePolicy.Input();
+      input.landmarks = record.landmarks;
+      input.numLandmarks = numLandmarks;
+      input.analysis = analysis;
+      SessionStats stats = null;
+      int sessionId = 0;
+      boolean inSession = false;
+
+      for (long next = Math.max(0, start - overlapRecords); next < end; ) {
+        int count = (int) Math.min(READ_RECORDS, end - next);
+        file.read(next, count, buffer);
+        for (int i = 0; i < count; ++i, ++next) {
+          LandmarkFile.read(buffer, record);
+          boolean counted = next >= start;
+          if (!inSession || record.sessionId != sessionId) {
+            inSession = true;
+            sessionId = record.sessionId;
+            stats = null;
+            capturePolicy.reset();
+          }
+          if (counted && stats == null) {
+            stats = sessions.get(sessionId);
+            if (stats == null) {
+              stats = new SessionStats(sessionId, numRules);
+              sessions.put(sessionId, stats);
+            }
+          }
+          if (!record.hasFace()) {
+            // As on the device, frames without a face never reach the policy.
+            if (counted) {
+              stats.addEmpty(record.timestampUs);
+            }
+            continue;
+          }
+          FaceAnalyzer.analyze(record.landmarks, numLandmarks, analysis);
+          input.aspectRatio = record.aspectRatio;
+          input.timestampUs = record.timestampUs;
+          int rejectedBy = capturePolicy.evaluate(input);
+          if (counted) {
+            stats.addFace(record.timestampUs, analysis, rejectedBy);
+          }
+        }
+      }
+      return sessions;
+    }
+  }
+
+  /** Merges two partial results, folding the smaller into the larger. */
+  private static Map<Integer, SessionStats> merge(
+      Map<Integer, SessionStats> a, Map<Integer, SessionStats> b) {
+    if (a.size() < b.size()) {
+      Map<Integer, SessionStats> swap = a;
+      a = b;
+      b = swap;
+    }
+    for (SessionStats stats : b.values()) {
+      SessionStats existing = a.get(stats.sessionId);
+      if (existing == null) {
+        a.put(stats.sessionId, stats);
+      } else {
+        existing.merge(stats);
+      }
+    }
+    return a;
+  }
+
+  /**
+   * Analyzes a landmark file and prints one CSV row per session.
+   *
+   * <p>Usage: {@code BatchAnalyzer <landmarks> [policy.properties] [threads] [chunk records]
+   * [overlap records]}.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println(
+          "usage: BatchAnalyzer <landmarks> [policy.properties] [threads] [chunk] [overlap]");
+      System.exit(2);
+    }
+    Properties policy = new Properties();
+    if (args.length > 1 && !args[1].isEmpty()) {
+      try (InputStream in = new FileInputStream(args[1])) {
+        policy.load(in);
+      }
+    }
+    int threads =
+        args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    int chunk = args.length > 3 ? Integer.parseInt(args[3]) : 16_384;
+    int overlap = args.length > 4 ? Integer.parseInt(args[4]) : 300;
+
+    BatchAnalyzer analyzer = new BatchAnalyzer(policy, chunk, overlap);
+    CapturePolicy rules = CapturePolicy.compile(policy);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    Map<Integer, SessionStats> sessions;
+    long records;
+    long start = System.nanoTime();
+    try (LandmarkFile file = LandmarkFile.open(new File(args[0]))) {
+      records = file.numRecords();
+      sessions = analyzer.run(file, pool);
+    } finally {
+      pool.shutdown();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    StringBuilder header =
+        new StringBuilder(
+            "session,frames,face_frames,forward_frames,accepted_frames,first_us,last_us,"
+                + "center_x,center_y,center_z,bbox_min_x,bbox_min_y,bbox_max_x,bbox_max_y,"
+                + "best_us,best_error");
+    for (int i = 0; i < rules.ruleCount(); ++i) {
+      header.append(",rejected_").append(rules.ruleName(i));
+    }
+    System.out.println(header);
+    List<Integer> ids = new ArrayList<>(sessions.keySet());
+    Collections.sort(ids);
+    for (int id : ids) {
+      SessionStats s = sessions.get(id);
+      StringBuilder row =
+          new StringBuilder(
+              String.format(
+                  Locale.US,
+                  "%d,%d,%d,%d,%d,%d,%d,%.5f,%.5f,%.5f,%.5f,%.5f,%.5f,%.5f,%d,%.2f",
+                  s.sessionId, s.frames, s.faceFrames, s.forwardFrames, s.acceptedFrames,
+                  s.firstTimestampUs, s.lastTimestampUs,
+                  s.meanCenter(0), s.meanCenter(1), s.meanCenter(2),
+                  s.min[0], s.min[1], s.max[0], s.max[1],
+                  s.bestTimestampUs, s.bestError));
+      for (long rejections : s.rejections) {
+        row.append(',').append(rejections);
+      }
+      System.out.println(row);
+    }
+    System.err.println(
+        String.format(
+            Locale.US,
+            "%d records, %d sessions, %d threads: %.2f s, %.0f records/s",
+            records, sessions.size(), threads, seconds, records / seconds));
+  }
+}
@@ -0,0 +1,258 @@
+package com.google.mediapipe.examples.facecenter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Decides whether a frame is good enough to capture, based on a declarative policy.
+ *
+ * <p>A policy is a properties file; each rule is enabled by setting its keys and disabled by
+ * leaving them out:
+ *
+ * <pre>
+ * pose.angle_x, pose.angle_y, pose.angle_z, pose.tolerance  target {@link FaceAnalysis#angleZ}
+ * face.min_size                        smallest face bounding box height, normalized
+ * center.max_distance                  largest distance from face center to frame center
+ * eyes.min_ear, eyes.min_iris_visibility  see {@link EyeStateAnalyzer}
+ * stable.min_ms, stable.max_motion     how long the face center must stay within max_motion
+ * </pre>
+ *
+ * <p>{@link #compile} turns the policy into a flat array of rules ordered by cost, so that cheap
+ * checks run first and the first failing rule ends the evaluation. Stateful rules always run last.
+ * Evaluation allocates nothing, and the rejecting rule of every frame is counted so a policy can be
+ * tuned by reading {@link #stats()}.
+ */
+public class CapturePolicy {
+  /** Returned by {@link #evaluate} when every rule passed. */
+  public static final int ACCEPTED = -1;
+
+  /** Everything known about a frame when it is evaluated; reused from frame to frame. */
+  public static class Input {
+    public float[] landmarks;
+    public int numLandmarks;
+    public float aspectRatio;
+    public FaceAnalysis analysis;
+    public long timestampUs;
+  }
+
+  private abstract static class Rule {
+    final String name;
+    final int cost;
+
+    Rule(String name, int cost) {
+      this.name = name;
+      this.cost = cost;
+    }
+
+    abstract boolean test(Input input);
+
+    /** Called when an earlier rule rejected the frame, so this one didn't run. */
+    void reset() {}
+  }
+
+  private final Rule[] rules;
+  private final long[] rejections;
+  private long accepted;
+
+  private CapturePolicy(Rule[] rules) {
+    this.rules = rules;
+    this.rejections = new long[rules.length];
+  }
+
+  /** Reads and compiles a policy. */
+  public static CapturePolicy load(InputStream in) throws IOException {
+    Properties properties = new Properties();
+    properties.load(in);
+    return compile(properties);
+  }
+
+  /**
+   * Compiles a policy.
+   *
+   * @throws IllegalArgumentException if a value is malformed or a rule is only partially set.
+   */
+  public static CapturePolicy compile(Properties properties) {
+    List<Rule> rules = new ArrayList<>();
+    if (properties.getProperty("face.min_size") != null) {
+      rules.add(faceSizeRule(number(properties, "face.min_size")));
+    }
+    if (properties.getProperty("center.max_distance") != null) {
+      rules.add(centerRule(number(properties, "center.max_distance")));
+    }
+    if (properties.getProperty("pose.tolerance") != null) {
+      rules.add(
+          poseRule(
+              new double[] {
+                number(properties, "pose.angle_x"),
+                number(properties, "pose.angle_y"),
+                number(properties, "pose.angle_z")
+              },
+              number(properties, "pose.tolerance")));
+    }
+    if (properties.getProperty("eyes.min_ear") != null) {
+      rules.add(
+          eyesOpenRule(
+              (float) number(properties, "eyes.min_ear"),
+              (float) number(properties, "eyes.min_iris_visibility")));
+    }
+    Collections.sort(
+        rules,
+        new Comparator<Rule>() {
+          @Override
+          public int compare(Rule a, Rule b) {
+            return a.cost - b.cost;
+          }
+        });
+    if (properties.getProperty("stable.min_ms") != null) {
+      rules.add(
+          stabilityRule(
+              (long) (number(properties, "stable.min_ms") * 1000),
+              number(properties, "stable.max_motion")));
+    }
+    return new CapturePolicy(rules.toArray(new Rule[0]));
+  }
+
+  /**
+   * Evaluates one frame.
+   *
+   * @return {@link #ACCEPTED}, or the index of the rule that rejected the frame.
+   */
+  public int evaluate(Input input) {
+    for (int i = 0; i < rules.length; ++i) {
+      if (!rules[i].test(input)) {
+        rejections[i]++;
+        for (int j = i + 1; j < rules.length; ++j) {
+          rules[j].reset();
+        }
+        return i;
+      }
+    }
+    accepted++;
+    return ACCEPTED;
+  }
+
+  /** Returns the name of rule {@code index}, or "accepted" for {@link #ACCEPTED}. */
+  public String ruleName(int index) {
+    return index == ACCEPTED ? "accepted" : rules[index].name;
+  }
+
+  public int ruleCount() {
+    return rules.length;
+  }
+
+  /** Clears stateful rules, e.g. when the pipeline restarts. */
+  public void reset() {
+    for (Rule rule : rules) {
+      rule.reset();
+    }
+  }
+
+  /** Summarizes how many frames each rule rejected. */
+  public String stats() {
+    StringBuilder builder = new StringBuilder().append("accepted=").append(accepted);
+    for (int i = 0; i < rules.length; ++i) {
+      builder.append(' ').append(rules[i].name).append('=').append(rejections[i]);
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public String toString() {
+    String[] names = new String[rules.length];
+    for (int i = 0; i < rules.length; ++i) {
+      names[i] = rules[i].name;
+    }
+    return "CapturePolicy" + Arrays.toString(names);
+  }
+
+  private static Rule faceSizeRule(final double minSize) {
+    return new Rule("face_size", 1) {
+      @Override
+      boolean test(Input input) {
+        return input.analysis.max[1] - input.analysis.min[1] >= minSize;
+      }
+    };
+  }
+
+  private static Rule centerRule(final double maxDistance) {
+    final double maxDistanceSquared = maxDistance * maxDistance;
+    return new Rule("center", 1) {
+      @Override
+      boolean test(Input input) {
+        double dx = input.analysis.avg[0] - 0.5, dy = input.analysis.avg[1] - 0.5;
+        return dx * dx + dy * dy <= maxDistanceSquared;
+      }
+    };
+  }
+
+  private static Rule poseRule(final double[] target, final double tolerance) {
+    return new Rule("pose", 2) {
+      @Override
+      boolean test(Input input) {
+        double[] angle = input.analysis.angleZ;
+        return FaceAnalyzer.isAboutEqual(angle[0], target[0], tolerance)
+            && FaceAnalyzer.isAboutEqual(angle[1], target[1], tolerance)
+            && FaceAnalyzer.isAboutEqual(angle[2], target[2], tolerance);
+      }
+    };
+  }
+
+  private static Rule eyesOpenRule(float minEar, float minIrisVisibility) {
+    final EyeStateAnalyzer analyzer = new EyeStateAnalyzer(minEar, minIrisVisibility);
+    final EyeStateAnalyzer.EyeState eyeState = new EyeStateAnalyzer.EyeState();
+    return new Rule("eyes_open", 10) {
+      @Override
+      boolean test(Input input) {
+        analyzer.analyze(input.landmarks, input.numLandmarks, input.aspectRatio, eyeState);
+        return eyeState.eyesOpen;
+      }
+    };
+  }
+
+  private static Rule stabilityRule(final long minDurationUs, final double maxMotion) {
+    final double maxMotionSquared = maxMotion * maxMotion;
+    return new Rule("stable", 1) {
+      private boolean tracking;
+      private long stableSinceUs;
+      private double lastX, lastY;
+
+      @Override
+      boolean test(Input input) {
+        double x = input.analysis.avg[0], y = input.analysis.avg[1];
+        double dx = x - lastX, dy = y - lastY;
+        if (!tracking || dx * dx + dy * dy > maxMotionSquared) {
+          tracking = true;
+          stableSinceUs = input.timestampUs;
+        }
+        lastX = x;
+        lastY = y;
+        return input.timestampUs - stableSinceUs >= minDurationUs;
+      }
+
+      @Override
+      void reset() {
+        tracking = false;
+      }
+    };
+  }
+
+  private static double number(Properties properties, String key) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      throw new IllegalArgumentException("Missing capture policy key: " + key);
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          String.format(Locale.US, "Bad capture policy value %s=%s", key, value), e);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Tells whether both eyes are open, from packed face mesh landmarks.
+ *
+ * <p>Two measures are combined for each eye. The eye aspect ratio (EAR) is the mean height of the
+ * eyelid opening at two points divided by the eye width, and drops towards zero on a blink. Iris
+ * visibility is the eyelid opening divided by the horizontal iris diameter, which the lids don't
+ * occlude; a low value means the iris is mostly covered, e.g. in a half blink or a squint. Iris
+ * visibility needs the refined landmarks ({@code FACEMESH_NUM_LANDMARKS_WITH_IRISES}) and is
+ * reported as 1 without them.
+ *
+ * <p>The landmark indices are fixed, and nothing is allocated per frame.
+ */
+public class EyeStateAnalyzer {
+  // Eye contour points p1..p6: outer corner, upper lid (2), inner corner, lower lid (2).
+  private static final int[] RIGHT_EYE = {33, 160, 158, 133, 153, 144};
+  private static final int[] LEFT_EYE = {362, 385, 387, 263, 373, 380};
+  // Iris points on either side horizontally.
+  private static final int[] RIGHT_IRIS = {469, 471};
+  private static final int[] LEFT_IRIS = {474, 476};
+  private static final int NUM_LANDMARKS_WITH_IRISES = 478;
+
+  /** Result of {@link #analyze}; reused from frame to frame. */
+  public static class EyeState {
+    public float rightEar;
+    public float leftEar;
+    public float rightIrisVisibility;
+    public float leftIrisVisibility;
+    public boolean eyesOpen;
+  }
+
+  private final float minEar;
+  private final float minIrisVisibility;
+
+  /**
+   * @param minEar smallest eye aspect ratio of an open eye.
+   * @param minIrisVisibility smallest iris visibility of an open eye.
+   */
+  public EyeStateAnalyzer(float minEar, float minIrisVisibility) {
+    this.minEar = minEar;
+    this.minIrisVisibility = minIrisVisibility;
+  }
+
+  /**
+   * Analyzes the eyes of one face.
+   *
+   * @param landmarks packed (x, y, z) landmarks.
+   * @param numLandmarks number of landmarks in {@code landmarks}.
+   * @param aspectRatio image width divided by image height.
+   * @param out receives the result.
+   */
+  public void analyze(float[] landmarks, int numLandmarks, float aspectRatio, EyeState out) {
+    float yScale = 1 / aspectRatio;
+    boolean hasIrises = numLandmarks >= NUM_LANDMARKS_WITH_IRISES;
+    float rightOpening = opening(landmarks, RIGHT_EYE, yScale);
+    float leftOpening = opening(landmarks, LEFT_EYE, yScale);
+    out.rightEar = ratio(rightOpening, distance(landmarks, RIGHT_EYE[0], RIGHT_EYE[3], yScale));
+    out.leftEar = ratio(leftOpening, distance(landmarks, LEFT_EYE[0], LEFT_EYE[3], yScale));
+    out.rightIrisVisibility =
+        hasIrises
+            ? Math.min(1, ratio(rightOpening, distance(landmarks, RIGHT_IRIS[0], RIGHT_IRIS[1], yScale)))
+            : 1;
+    out.leftIrisVisibility =
+        hasIrises
+            ? Math.min(1, ratio(leftOpening, distance(landmarks, LEFT_IRIS[0], LEFT_IRIS[1], yScale)))
+            : 1;
+    out.eyesOpen =
+        out.rightEar >= minEar
+            && out.leftEar >= minEar
+            && out.rightIrisVisibility >= minIrisVisibility
+            && out.leftIrisVisibility >= minIrisVisibility;
+  }
+
+  /** Mean eyelid opening, measured between the two upper and lower lid point pairs. */
+  private static float opening(float[] landmarks, int[] eye, float yScale) {
+    return (distance(landmarks, eye[1], eye[5], yScale) + distance(landmarks, eye[2], eye[4], yScale))
+        / 2;
+  }
+
+  private static float ratio(float numerator, float denominator) {
+    return denominator > 0 ? numerator / denominator : 0;
+  }
+
+  private static float distance(float[] landmarks, int a, int b, float yScale) {
+    float dx = landmarks[3 * a] - landmarks[3 * b];
+    float dy = (landmarks[3 * a + 1] - landmarks[3 * b + 1]) * yScale;
+    return (float) Math.sqrt(dx * dx + dy * dy);
+  }
+}
@@ -0,0 +1,43 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Pose, bounding box and center of a single face, as computed by {@link FaceAnalyzer}.
+ *
+ * <p>Instances are mutable and meant to be reused from frame to frame. All coordinates are
+ * normalized like the face mesh landmarks they were computed from.
+ */
+public class FaceAnalysis {
+  /** Face axes (back-front, left-right, top-bottom), each scaled to a length of 100. */
+  public final double[] normX = new double[3];
+  public final double[] normY = new double[3];
+  public final double[] normZ = new double[3];
+  /** Angles in degrees between the top-bottom axis and the x, y and z axes of the image. */
+  public final double[] angleZ = new double[3];
+  /** Landmark bounding box, as (x, y). */
+  public final double[] min = new double[2];
+  public final double[] max = new double[2];
+  /** Landmark centroid, as (x, y, z). */
+  public final double[] avg = new double[3];
+
+  public boolean isForward;
+
+  /** Largest deviation in degrees of {@link #angleZ} from the forward-facing pose. */
+  public double forwardError() {
+    double error = 0;
+    for (int i = 0; i < 3; ++i) {
+      error = Math.max(error, Math.abs(angleZ[i] - FaceAnalyzer.FORWARD_ANGLE_Z[i]));
+    }
+    return error;
+  }
+
+  public void copyFrom(FaceAnalysis other) {
+    System.arraycopy(other.normX, 0, normX, 0, 3);
+    System.arraycopy(other.normY, 0, normY, 0, 3);
+    System.arraycopy(other.normZ, 0, normZ, 0, 3);
+    System.arraycopy(other.angleZ, 0, angleZ, 0, 3);
+    System.arraycopy(other.min, 0, min, 0, 2);
+    System.arraycopy(other.max, 0, max, 0, 2);
+    System.arraycopy(other.avg, 0, avg, 0, 3);
+    isForward = other.isForward;
+  }
+}
@@ -0,0 +1,98 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Computes the pose, bounding box and center of a face from its packed mesh landmarks.
+ *
+ * <p>Landmarks are packed as consecutive (x, y, z) triples, the way the facemesh app's {@code
+ * LandmarkPacker} writes them. Nothing in here allocates, so it can run on every frame, or over
+ * archived landmarks on any JVM.
+ */
+public final class FaceAnalyzer {
+  public static final int TOP_INDEX = 10;
+  public static final int BOTTOM_INDEX = 152;
+  public static final int LEFT_CHIN_INDEX = 425;
+  public static final int RIGHT_CHIN_INDEX = 205;
+
+  /** Values of {@link FaceAnalysis#angleZ} for a face looking straight at the camera. */
+  static final double[] FORWARD_ANGLE_Z = new double[] {90, 175, 90};
+  static final double FORWARD_ERROR = 3;
+
+  private FaceAnalyzer() {}
+
+  /**
+   * Analyzes one face.
+   *
+   * @param landmarks packed (x, y, z) landmarks.
+   * @param numLandmarks number of landmarks in {@code landmarks}.
+   * @param out receives the result.
+   */
+  public static void analyze(float[] landmarks, int numLandmarks, FaceAnalysis out) {
+    int top = 3 * TOP_INDEX, bottom = 3 * BOTTOM_INDEX;
+    int leftChin = 3 * LEFT_CHIN_INDEX, rightChin = 3 * RIGHT_CHIN_INDEX;
+
+    double lrX = landmarks[leftChin] - landmarks[rightChin],
+        lrY = landmarks[leftChin + 1] - landmarks[rightChin + 1],
+        lrZ = landmarks[leftChin + 2] - landmarks[rightChin + 2];
+    double tbX = landmarks[top] - landmarks[bottom],
+        tbY = landmarks[top + 1] - landmarks[bottom + 1],
+        tbZ = landmarks[top + 2] - landmarks[bottom + 2];
+
+    // vBF = vLR cross vTB (x = y * z)
+    double bfX = lrY * tbZ - lrZ * tbY,
+        bfY = lrZ * tbX - lrX * tbZ,
+        bfZ = lrX * tbY - lrY * tbX;
+
+    normalize(bfX, bfY, bfZ, out.normX);
+    normalize(lrX, lrY, lrZ, out.normY);
+    normalize(tbX, tbY, tbZ, out.normZ);
+    angle(out.normZ, out.angleZ);
+    out.isForward = angleIsForward(out.angleZ);
+
+    double minX = 1, minY = 1, maxX = -1, maxY = -1, sumX = 0, sumY = 0, sumZ = 0;
+    for (int i = 0, n = 3 * numLandmarks; i < n; i += 3) {
+      double x = landmarks[i], y = landmarks[i + 1], z = landmarks[i + 2];
+      minX = Math.min(minX, x); minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x); maxY = Math.max(maxY, y);
+      sumX += x; sumY += y; sumZ += z;
+    }
+    out.min[0] = minX; out.min[1] = minY;
+    out.max[0] = maxX; out.max[1] = maxY;
+    out.avg[0] = sumX / numLandmarks; out.avg[1] = sumY / numLandmarks; out.avg[2] = sumZ / numLandmarks;
+  }
+
+  public static double[] normalize(double[] vect) {
+    double[] out = new double[3];
+    normalize(vect[0], vect[1], vect[2], out);
+    return out;
+  }
+
+  public static double[] angle(double[] vect) {
+    double[] out = new double[3];
+    angle(vect, out);
+    return out;
+  }
+
+  public static boolean angleIsForward(double[] vect) {
+    return isAboutEqual(vect[0], FORWARD_ANGLE_Z[0], FORWARD_ERROR) &&
+            isAboutEqual(vect[1], FORWARD_ANGLE_Z[1], FORWARD_ERROR) &&
+            isAboutEqual(vect[2], FORWARD_ANGLE_Z[2], FORWARD_ERROR);
+  }
+
+  public static boolean isAboutEqual(double number, double approx, double error) {
+    return approx - error <= number && number <= approx + error;
+  }
+
+  private static void normalize(double x, double y, double z, double[] out) {
+    double size = Math.sqrt(x * x + y * y + z * z);
+    out[0] = x * 100 / size;
+    out[1] = y * 100 / size;
+    out[2] = z * 100 / size;
+  }
+
+  private static void angle(double[] vect, double[] out) {
+    double size = Math.sqrt(vect[0] * vect[0] + vect[1] * vect[1] + vect[2] * vect[2]);
+    out[0] = Math.acos(vect[0] / size) / Math.PI * 180;
+    out[1] = Math.acos(vect[1] / size) / Math.PI * 180;
+    out[2] = Math.acos(vect[2] / size) / Math.PI * 180;
+  }
+}
@@ -0,0 +1,193 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Throttles inference while the device runs hot or low on battery.
+ *
+ * <p>Every {@code pollIntervalUs} the governor reads the device conditions from a {@link
+ * ConditionSource} and derives a {@link Level}: moderate thermal status or a low battery give
+ * {@link Level#REDUCED}, severe thermal status or a critical battery {@link Level#MINIMAL}. A
+ * battery that is charging doesn't count. Worse conditions raise the level right away; the level
+ * comes down one step at a time, each after conditions have stayed better for {@code recoverUs}.
+ *
+ * <p>Each level has an admission rate. The rate in force moves halfway toward the level's rate on
+ * every poll, so throughput changes smoothly, and frames are admitted against it by a token bucket
+ * that absorbs camera jitter.
+ *
+ * <p>Time is the camera timestamps passed to {@link #admit}, so a fake source and made-up
+ * timestamps drive every transition. Not thread-safe; call from the camera thread.
+ */
+public class InferenceGovernor {
+  /** How hard inference is throttled, from not at all up. */
+  public enum Level {
+    NORMAL,
+    REDUCED,
+    MINIMAL,
+  }
+
+  /** Device conditions as read by a {@link ConditionSource}. */
+  public static class Conditions {
+    /** One of the {@code THERMAL_STATUS_*} values of {@code PowerManager}. */
+    public int thermalStatus;
+    /** Battery charge, from 0 to 1. */
+    public float batteryLevel = 1;
+    public boolean charging;
+  }
+
+  /** Reads the device conditions. */
+  public interface ConditionSource {
+    void read(Conditions out);
+  }
+
+  /** Notified when the level or the admission rate changes, on the camera thread. */
+  public interface Listener {
+    void onGovernorChanged(Level level, float rateFps);
+  }
+
+  // PowerManager.THERMAL_STATUS_MODERATE and THERMAL_STATUS_SEVERE.
+  public static final int THERMAL_STATUS_MODERATE = 2;
+  public static final int THERMAL_STATUS_SEVERE = 3;
+  public static final float LOW_BATTERY = 0.15f;
+  public static final float CRITICAL_BATTERY = 0.05f;
+
+  private static final Level[] LEVELS = Level.values();
+  // Frames the token bucket may save up.
+  private static final float MAX_TOKENS = 2;
+  // Rate differences below this are snapped to the level's rate.
+  private static final float RATE_SNAP_FPS = 0.5f;
+
+  private final ConditionSource source;
+  private final float[] levelFps;
+  private final long pollIntervalUs;
+  private final long recoverUs;
+  private final Conditions conditions = new Conditions();
+  private Listener listener;
+
+  private volatile Level level = Level.NORMAL;
+  private volatile float rateFps;
+  private long lastPollUs = -1;
+  private long betterSinceUs = -1;
+  private long lastFrameUs = -1;
+  private float tokens;
+
+  private long admittedFrames;
+  private long throttledFrames;
+
+  /**
+   * @param source where device conditions are read from.
+   * @param levelFps admission rate of each level, in {@link Level} order.
+   * @param pollIntervalUs time between two reads of the conditions.
+   * @param recoverUs how long conditions must stay better before the level comes down a step.
+   */
+  public InferenceGovernor(
+      ConditionSource source, float[] levelFps, long pollIntervalUs, long recoverUs) {
+    if (levelFps.length != LEVELS.length) {
+      throw new IllegalArgumentException("Need one rate per level.");
+    }
+    this.source = source;
+    this.levelFps = levelFps.clone();
+    this.pollIntervalUs = pollIntervalUs;
+    this.recoverUs = recoverUs;
+    rateFps = levelFps[0];
+  }
+
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  public Level level() {
+    return level;
+  }
+
+  /** Admission rate in force. */
+  public float rateFps() {
+    return rateFps;
+  }
+
+  /**
+   * Decides whether the camera frame at {@code timestampUs} is sent to inference, polling the
+   * conditions when due.
+   */
+  public boolean admit(long timestampUs) {
+    if (lastPollUs < 0 || timestampUs - lastPollUs >= pollIntervalUs) {
+      poll(timestampUs);
+    }
+    if (lastFrameUs < 0) {
+      tokens = 1;
+    } else {
+      tokens = Math.min(MAX_TOKENS, tokens + rateFps * (timestampUs - lastFrameUs) / 1_000_000f);
+    }
+    lastFrameUs = timestampUs;
+    if (tokens >= 1) {
+      tokens -= 1;
+      admittedFrames++;
+      return true;
+    }
+    throttledFrames++;
+    return false;
+  }
+
+  /** Reads the conditions and updates the level and the rate. */
+  public void poll(long nowUs) {
+    lastPollUs = nowUs;
+    source.read(conditions);
+    Level wanted = levelFor(conditions);
+    Level newLevel = level;
+    if (wanted.ordinal() > level.ordinal()) {
+      newLevel = wanted;
+      betterSinceUs = -1;
+    } else if (wanted.ordinal() < level.ordinal()) {
+      if (betterSinceUs < 0) {
+        betterSinceUs = nowUs;
+      } else if (nowUs - betterSinceUs >= recoverUs) {
+        newLevel = LEVELS[level.ordinal() - 1];
+        // The next step down waits a full period again.
+        betterSinceUs = nowUs;
+      }
+    } else {
+      betterSinceUs = -1;
+    }
+    float target = levelFps[newLevel.ordinal()];
+    float newRate = rateFps + 0.5f * (target - rateFps);
+    if (Math.abs(target - newRate) < RATE_SNAP_FPS) {
+      newRate = target;
+    }
+    if (newLevel == level && newRate == rateFps) {
+      return;
+    }
+    level = newLevel;
+    rateFps = newRate;
+    if (listener != null) {
+      listener.onGovernorChanged(newLevel, newRate);
+    }
+  }
+
+  /** Back to {@link Level#NORMAL}, e.g. when the pipeline is restarted. */
+  public void reset() {
+    level = Level.NORMAL;
+    rateFps = levelFps[0];
+    lastPollUs = -1;
+    betterSinceUs = -1;
+    lastFrameUs = -1;
+  }
+
+  public long admittedFrames() {
+    return admittedFrames;
+  }
+
+  public long throttledFrames() {
+    return throttledFrames;
+  }
+
+  static Level levelFor(Conditions conditions) {
+    boolean onBattery = !conditions.charging;
+    if (conditions.thermalStatus >= THERMAL_STATUS_SEVERE
+        || (onBattery && conditions.batteryLevel <= CRITICAL_BATTERY)) {
+      return Level.MINIMAL;
+    }
+    if (conditions.thermalStatus >= THERMAL_STATUS_MODERATE
+        || (onBattery && conditions.batteryLevel <= LOW_BATTERY)) {
+      return Level.REDUCED;
+    }
+    return Level.NORMAL;
+  }
+}
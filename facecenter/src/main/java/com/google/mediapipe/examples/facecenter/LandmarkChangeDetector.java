@@ -0,0 +1,80 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Tells whether packed landmarks moved visibly since the last time they were accepted.
+ *
+ * <p>Only x and y are compared, scaled to pixels of the surface they are drawn on, against the
+ * values at the last change. Small frame-to-frame jitter therefore never adds up to a change, but
+ * a slow drift does once it reaches the threshold. The comparison stops at the first point that
+ * moved. Counters are readable from any thread.
+ */
+public class LandmarkChangeDetector {
+  private final float thresholdPixels;
+  private final int stride;
+  private final float[] reference;
+  private int referenceLength = -1;
+
+  private volatile long checked;
+  private volatile long skipped;
+
+  /**
+   * @param capacity largest number of floats compared.
+   * @param stride floats per point; x and y are the first two.
+   * @param thresholdPixels smallest movement along x or y that counts as a change.
+   */
+  public LandmarkChangeDetector(int capacity, int stride, float thresholdPixels) {
+    this.reference = new float[capacity];
+    this.stride = stride;
+    this.thresholdPixels = thresholdPixels;
+  }
+
+  /**
+   * Compares {@code values} with the reference, and makes them the new reference if they differ.
+   *
+   * @param values packed points, normalized to the surface.
+   * @param length number of floats to compare.
+   * @param width surface width in pixels.
+   * @param height surface height in pixels.
+   * @return {@code true} if any point moved by at least the threshold, or the length changed.
+   */
+  public boolean update(float[] values, int length, int width, int height) {
+    checked++;
+    if (length == referenceLength && !moved(values, length, width, height)) {
+      skipped++;
+      return false;
+    }
+    System.arraycopy(values, 0, reference, 0, length);
+    referenceLength = length;
+    return true;
+  }
+
+  /** Makes the next {@link #update} report a change, e.g. after the drawing itself changed. */
+  public void invalidate() {
+    referenceLength = -1;
+  }
+
+  public long checkedCount() {
+    return checked;
+  }
+
+  public long skippedCount() {
+    return skipped;
+  }
+
+  /** Fraction of updates that reported no change. */
+  public float skipRate() {
+    long total = checked;
+    return total == 0 ? 0 : (float) skipped / total;
+  }
+
+  private boolean moved(float[] values, int length, int width, int height) {
+    float thresholdX = thresholdPixels / width, thresholdY = thresholdPixels / height;
+    for (int i = 0; i + 1 < length; i += stride) {
+      if (Math.abs(values[i] - reference[i]) >= thresholdX
+          || Math.abs(values[i + 1] - reference[i + 1]) >= thresholdY) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,386 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Compact encoding of packed (x, y, z) landmark streams, e.g. for recording or streaming the mesh.
+ *
+ * <p>Coordinates are quantized to 16-bit fixed point over [{@link #MIN_VALUE}, {@link #MIN_VALUE}
+ * + {@link #RANGE}), which covers landmarks somewhat outside the frame. A keyframe stores the
+ * quantized values themselves. Every other frame stores, for each value, the difference to a
+ * prediction from the frames before it: either the previous frame, or a linear extrapolation from
+ * the previous two, whichever fits the frame better. Both are rounded to multiples of {@code
+ * 2^precisionShift} quanta; the encoder predicts from the frames as the decoder will reconstruct
+ * them, so rounding errors never add up. Differences are zigzag-mapped, and values are bit-packed
+ * in blocks of {@link #BLOCK_SIZE}, each block with its own bit width.
+ *
+ * <p>Frame layout: a flags byte, the number of landmarks and the timestamp as varints (relative to
+ * the previous frame, zigzagged, except in keyframes), the precision shift in keyframes, then the
+ * packed blocks, padded to a whole byte. Decoding can start at any keyframe.
+ *
+ * <p>Encoder and decoder allocate nothing after construction.
+ */
+public final class LandmarkCodec {
+  public static final float MIN_VALUE = -0.5f;
+  public static final float RANGE = 2f;
+  public static final int BLOCK_SIZE = 32;
+  public static final int MAX_PRECISION_SHIFT = 8;
+
+  private static final int FLAG_KEYFRAME = 1;
+  private static final int FLAG_LINEAR = 2;
+  private static final int MAX_QUANTUM = 0xffff;
+  private static final float SCALE = MAX_QUANTUM / RANGE;
+  // Bits of a block's width field.
+  private static final int WIDTH_BITS = 5;
+
+  private LandmarkCodec() {}
+
+  /** Largest encoded size of a frame of {@code numLandmarks} landmarks. */
+  public static int maxFrameSize(int numLandmarks) {
+    int values = 3 * numLandmarks;
+    int blocks = (values + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    // Flags, two varints of up to 10 bytes, the shift, and blocks of up to 18-bit values.
+    return 1 + 10 + 10 + 1 + (blocks * WIDTH_BITS + values * 18 + 7) / 8;
+  }
+
+  /** Quantizes one coordinate. */
+  static int quantize(float value) {
+    int q = Math.round((value - MIN_VALUE) * SCALE);
+    return Math.max(0, Math.min(MAX_QUANTUM, q));
+  }
+
+  static float dequantize(int q) {
+    return MIN_VALUE + q / SCALE;
+  }
+
+  /** Encodes frames of one landmark stream. Not thread-safe. */
+  public static final class Encoder {
+    private final int keyframeInterval;
+    private final int precisionShift;
+    // Frames as the decoder reconstructs them, and the residuals of the frame being encoded.
+    private final int[] previous;
+    private final int[] beforePrevious;
+    private final int[] quantized;
+    private final int[] residuals;
+    private final BitWriter writer = new BitWriter();
+    private int numValues = -1;
+    private int framesSinceKeyframe;
+    private boolean hasTwoFrames;
+    private long previousTimestampUs;
+
+    /**
+     * @param maxLandmarks most landmarks per frame.
+     * @param keyframeInterval frames from one keyframe to the next.
+     * @param precisionShift difference rounding, as a power of two of quanta; 0 is lossless.
+     */
+    public Encoder(int maxLandmarks, int keyframeInterval, int precisionShift) {
+      if (keyframeInterval < 1 || precisionShift < 0 || precisionShift > MAX_PRECISION_SHIFT) {
+        throw new IllegalArgumentException("Bad keyframe interval or precision shift.");
+      }
+      this.keyframeInterval = keyframeInterval;
+      this.precisionShift = precisionShift;
+      previous = new int[3 * maxLandmarks];
+      beforePrevious = new int[3 * maxLandmarks];
+      quantized = new int[3 * maxLandmarks];
+      residuals = new int[3 * maxLandmarks];
+    }
+
+    /** Makes the next frame a keyframe, e.g. when a new consumer joins. */
+    public void forceKeyframe() {
+      numValues = -1;
+    }
+
+    /**
+     * Encodes one frame into {@code out} at {@code offset}, which must have room for {@link
+     * #maxFrameSize}.
+     *
+     * @return the number of bytes written.
+     */
+    public int encode(
+        float[] landmarks, int numLandmarks, long timestampUs, byte[] out, int offset) {
+      int n = 3 * numLandmarks;
+      if (n > previous.length) {
+        throw new IllegalArgumentException("Too many landmarks: " + numLandmarks);
+      }
+      for (int i = 0; i < n; ++i) {
+        quantized[i] = quantize(landmarks[i]);
+      }
+      boolean keyframe = n != numValues || framesSinceKeyframe >= keyframeInterval;
+      writer.reset(out, offset);
+      if (keyframe) {
+        writer.writeByte(FLAG_KEYFRAME);
+        writer.writeVarint(numLandmarks);
+        writer.writeVarint(timestampUs);
+        writer.writeByte(precisionShift);
+        int half = (1 << precisionShift) >> 1;
+        for (int i = 0; i < n; ++i) {
+          residuals[i] = (quantized[i] + half) >> precisionShift;
+          previous[i] = clamp(residuals[i] << precisionShift);
+        }
+        writer.writeBlocks(residuals, n);
+        numValues = n;
+        framesSinceKeyframe = 0;
+        hasTwoFrames = false;
+      } else {
+        boolean linear = hasTwoFrames && linearFitsBetter(n);
+        writer.writeByte(linear ? FLAG_LINEAR : 0);
+        writer.writeVarint(numLandmarks);
+        writer.writeVarint(zigzag(timestampUs - previousTimestampUs));
+        int half = (1 << precisionShift) >> 1;
+        for (int i = 0; i < n; ++i) {
+          int predicted = predict(previous[i], beforePrevious[i], linear);
+          int r = quantized[i] - predicted;
+          r = r >= 0 ? (r + half) >> precisionShift : -((-r + half) >> precisionShift);
+          residuals[i] = zigzag(r);
+          beforePrevious[i] = previous[i];
+          previous[i] = clamp(predicted + (r << precisionShift));
+        }
+        writer.writeBlocks(residuals, n);
+        framesSinceKeyframe++;
+        hasTwoFrames = true;
+      }
+      previousTimestampUs = timestampUs;
+      return writer.finish() - offset;
+    }
+
+    private boolean linearFitsBetter(int n) {
+      long hold = 0, linear = 0;
+      for (int i = 0; i < n; ++i) {
+        hold += Math.abs(quantized[i] - previous[i]);
+        linear += Math.abs(quantized[i] - predict(previous[i], beforePrevious[i], true));
+      }
+      return linear < hold;
+    }
+  }
+
+  /** Decodes frames written by an {@link Encoder}. Not thread-safe. */
+  public static final class Decoder {
+    private final int[] previous;
+    private final int[] beforePrevious;
+    private final int[] values;
+    private final BitReader reader = new BitReader();
+    private int numValues = -1;
+    private int precisionShift;
+    private long timestampUs;
+    private boolean keyframe;
+
+    public Decoder(int maxLandmarks) {
+      previous = new int[3 * maxLandmarks];
+      beforePrevious = new int[3 * maxLandmarks];
+      values = new int[3 * maxLandmarks];
+    }
+
+    /**
+     * Decodes the frame at {@code offset} into packed (x, y, z) landmarks.
+     *
+     * @return the number of bytes read.
+     * @throws IllegalStateException if the frame is not a keyframe and none came before it.
+     * @throws IllegalArgumentException if the frame is malformed.
+     */
+    public int decode(byte[] in, int offset, int length, float[] out) {
+      reader.reset(in, offset, offset + length);
+      int flags = reader.readByte();
+      keyframe = (flags & FLAG_KEYFRAME) != 0;
+      long numLandmarks = reader.readVarint();
+      if (numLandmarks * 3 > previous.length) {
+        throw new IllegalArgumentException("Too many landmarks: " + numLandmarks);
+      }
+      int n = 3 * (int) numLandmarks;
+      if (keyframe) {
+        long keyframeTimestampUs = reader.readVarint();
+        int shift = reader.readByte();
+        if (shift > MAX_PRECISION_SHIFT) {
+          throw new IllegalArgumentException("Bad precision shift: " + shift);
+        }
+        timestampUs = keyframeTimestampUs;
+        precisionShift = shift;
+        reader.readBlocks(values, n);
+        for (int i = 0; i < n; ++i) {
+          previous[i] = clamp(values[i] << precisionShift);
+        }
+        numValues = n;
+      } else {
+        if (n != numValues) {
+          throw new IllegalStateException("No keyframe to decode from");
+        }
+        timestampUs += unzigzag(reader.readVarint());
+        boolean linear = (flags & FLAG_LINEAR) != 0;
+        reader.readBlocks(values, n);
+        for (int i = 0; i < n; ++i) {
+          int predicted = predict(previous[i], beforePrevious[i], linear);
+          beforePrevious[i] = previous[i];
+          previous[i] = clamp(predicted + ((int) unzigzag(values[i]) << precisionShift));
+        }
+      }
+      for (int i = 0; i < n; ++i) {
+        out[i] = dequantize(previous[i]);
+      }
+      return reader.position() - offset;
+    }
+
+    public int numLandmarks() {
+      return numValues / 3;
+    }
+
+    public long timestampUs() {
+      return timestampUs;
+    }
+
+    public boolean isKeyframe() {
+      return keyframe;
+    }
+  }
+
+  private static int predict(int previous, int beforePrevious, boolean linear) {
+    return linear ? clamp(2 * previous - beforePrevious) : previous;
+  }
+
+  private static int clamp(int q) {
+    return Math.max(0, Math.min(MAX_QUANTUM, q));
+  }
+
+  private static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static int bitWidth(int value) {
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  private static final class BitWriter {
+    private byte[] out;
+    private int position;
+    private long bits;
+    private int bitCount;
+
+    void reset(byte[] out, int offset) {
+      this.out = out;
+      position = offset;
+      bits = 0;
+      bitCount = 0;
+    }
+
+    void writeByte(int value) {
+      out[position++] = (byte) value;
+    }
+
+    void writeVarint(long value) {
+      while ((value & ~0x7fL) != 0) {
+        out[position++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      out[position++] = (byte) value;
+    }
+
+    /** Writes non-negative {@code values} in blocks, each prefixed by its bit width. */
+    void writeBlocks(int[] values, int count) {
+      for (int start = 0; start < count; start += BLOCK_SIZE) {
+        int end = Math.min(count, start + BLOCK_SIZE);
+        int or = 0;
+        for (int i = start; i < end; ++i) {
+          or |= values[i];
+        }
+        int width = bitWidth(or);
+        writeBits(width, WIDTH_BITS);
+        if (width > 0) {
+          for (int i = start; i < end; ++i) {
+            writeBits(values[i], width);
+          }
+        }
+      }
+    }
+
+    private void writeBits(int value, int width) {
+      bits |= (value & ((1L << width) - 1)) << bitCount;
+      bitCount += width;
+      while (bitCount >= 8) {
+        out[position++] = (byte) bits;
+        bits >>>= 8;
+        bitCount -= 8;
+      }
+    }
+
+    /** Pads the bits to a byte and returns the end position. */
+    int finish() {
+      if (bitCount > 0) {
+        out[position++] = (byte) bits;
+        bits = 0;
+        bitCount = 0;
+      }
+      return position;
+    }
+  }
+
+  private static final class BitReader {
+    private byte[] in;
+    private int position;
+    private int end;
+    private long bits;
+    private int bitCount;
+
+    void reset(byte[] in, int offset, int end) {
+      this.in = in;
+      position = offset;
+      this.end = end;
+      bits = 0;
+      bitCount = 0;
+    }
+
+    int position() {
+      return position;
+    }
+
+    int readByte() {
+      return next();
+    }
+
+    long readVarint() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = next();
+        value |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Varint too long");
+    }
+
+    void readBlocks(int[] values, int count) {
+      for (int start = 0; start < count; start += BLOCK_SIZE) {
+        int blockEnd = Math.min(count, start + BLOCK_SIZE);
+        int width = readBits(WIDTH_BITS);
+        for (int i = start; i < blockEnd; ++i) {
+          values[i] = width > 0 ? readBits(width) : 0;
+        }
+      }
+      // Blocks end on a byte boundary.
+      bits = 0;
+      bitCount = 0;
+    }
+
+    private int readBits(int width) {
+      while (bitCount < width) {
+        bits |= (long) next() << bitCount;
+        bitCount += 8;
+      }
+      int value = (int) (bits & ((1L << width) - 1));
+      bits >>>= width;
+      bitCount -= width;
+      return value;
+    }
+
+    private int next() {
+      if (position >= end) {
+        throw new IllegalArgumentException("Frame cut off");
+      }
+      return in[position++] & 0xff;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package com.google.mediapipe.examples.facecenter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Archive of face mesh landmarks, one fixed-size little-endian record per frame, so that any range
+ * of frames can be read directly by position.
+ *
+ * <pre>
+ * header:
+ *   u32 {@link #MAGIC}
+ *   u16 {@link #VERSION}
+ *   u16 reserved
+ *   u32 numLandmarks     per record
+ *   u32 reserved
+ * record:
+ *   i64 timestampUs
+ *   i32 sessionId        groups the frames of one recording
+ *   u16 flags            {@link #FLAG_FACE}
+ *   u16 reserved
+ *   f32 aspectRatio      image width divided by image height
+ *   f32[3 * numLandmarks] landmarks (x, y, z), zero without a face
+ * </pre>
+ *
+ * <p>Records are appended in timestamp order within a session. A record cut off at the end of the
+ * file, e.g. by a writer that is still running, is not counted.
+ *
+ * <p>Reads are positional, so one open file can be read from many threads at once.
+ */
+public class LandmarkFile implements Closeable {
+  /** "FCLM" in little-endian order. */
+  public static final int MAGIC = 0x4d4c4346;
+  public static final int VERSION = 1;
+  public static final int FLAG_FACE = 1;
+
+  static final int HEADER_SIZE = 16;
+  static final int RECORD_HEADER_SIZE = 20;
+
+  /** One frame; reused from record to record. */
+  public static class Record {
+    public long timestampUs;
+    public int sessionId;
+    public int flags;
+    public float aspectRatio;
+    public final float[] landmarks;
+
+    public Record(int numLandmarks) {
+      landmarks = new float[3 * numLandmarks];
+    }
+
+    public boolean hasFace() {
+      return (flags & FLAG_FACE) != 0;
+    }
+  }
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final int numLandmarks;
+  private final long numRecords;
+
+  private LandmarkFile(RandomAccessFile file, int numLandmarks, long numRecords) {
+    this.file = file;
+    this.channel = file.getChannel();
+    this.numLandmarks = numLandmarks;
+    this.numRecords = numRecords;
+  }
+
+  /**
+   * Opens a file for reading.
+   *
+   * @throws IOException if it can't be read or isn't a landmark file of this version.
+   */
+  public static LandmarkFile open(File path) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(path, "r");
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(file.getChannel(), header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a landmark file: " + path);
+      }
+      int version = header.getShort() & 0xffff;
+      if (version != VERSION) {
+        throw new IOException("Unsupported landmark file version " + version + ": " + path);
+      }
+      header.getShort();
+      int numLandmarks = header.getInt();
+      if (numLandmarks <= 0) {
+        throw new IOException("Bad landmark count " + numLandmarks + ": " + path);
+      }
+      long numRecords = (file.length() - HEADER_SIZE) / recordSize(numLandmarks);
+      return new LandmarkFile(file, numLandmarks, numRecords);
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /** Size in bytes of one record with {@code numLandmarks} landmarks. */
+  public static int recordSize(int numLandmarks) {
+    return RECORD_HEADER_SIZE + 12 * numLandmarks;
+  }
+
+  public int numLandmarks() {
+    return numLandmarks;
+  }
+
+  public long numRecords() {
+    return numRecords;
+  }
+
+  /**
+   * Reads records {@code [first, first + count)} into {@code buffer}, which must be little-endian
+   * with room for them, and flips it so they can be taken with {@link #read(ByteBuffer, Record)}.
+   */
+  public void read(long first, int count, ByteBuffer buffer) throws IOException {
+    if (first < 0 || count < 0 || first + count > numRecords) {
+      throw new IndexOutOfBoundsException("Records " + first + "+" + count + " of " + numRecords);
+    }
+    int recordSize = recordSize(numLandmarks);
+    buffer.clear().limit(count * recordSize);
+    readFully(channel, buffer, HEADER_SIZE + first * recordSize);
+    buffer.flip();
+  }
+
+  /** Takes the next record from a buffer filled by {@link #read(long, int, ByteBuffer)}. */
+  public static void read(ByteBuffer in, Record out) {
+    out.timestampUs = in.getLong();
+    out.sessionId = in.getInt();
+    out.flags = in.getShort() & 0xffff;
+    in.getShort();
+    out.aspectRatio = in.getFloat();
+    for (int i = 0; i < out.landmarks.length; ++i) {
+      out.landmarks[i] = in.getFloat();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Landmark file cut off");
+      }
+      position += read;
+    }
+  }
+
+  /** Appends records to a new landmark file. Not thread-safe. */
+  public static class Writer implements Closeable {
+    private final FileChannel channel;
+    private final int numLandmarks;
+    private final ByteBuffer buffer;
+    private long numRecords;
+
+    /**
+     * @param recordsPerWrite records buffered before they are written out.
+     */
+    public Writer(File path, int numLandmarks, int recordsPerWrite) throws IOException {
+      this.numLandmarks = numLandmarks;
+      buffer =
+          ByteBuffer.allocate(Math.max(HEADER_SIZE, recordsPerWrite * recordSize(numLandmarks)))
+              .order(ByteOrder.LITTLE_ENDIAN);
+      channel = new RandomAccessFile(path, "rw").getChannel();
+      channel.truncate(0);
+      buffer.putInt(MAGIC);
+      buffer.putShort((short) VERSION);
+      buffer.putShort((short) 0);
+      buffer.putInt(numLandmarks);
+      buffer.putInt(0);
+      flush();
+    }
+
+    /**
+     * Appends one frame.
+     *
+     * @param landmarks packed (x, y, z) landmarks, or {@code null} if the frame had no face.
+     */
+    public void write(long timestampUs, int sessionId, float aspectRatio, float[] landmarks)
+        throws IOException {
+      if (buffer.remaining() < recordSize(numLandmarks)) {
+        flush();
+      }
+      buffer.putLong(timestampUs);
+      buffer.putInt(sessionId);
+      buffer.putShort((short) (landmarks != null ? FLAG_FACE : 0));
+      buffer.putShort((short) 0);
+      buffer.putFloat(aspectRatio);
+      for (int i = 0, n = 3 * numLandmarks; i < n; ++i) {
+        buffer.putFloat(landmarks != null ? landmarks[i] : 0);
+      }
+      numRecords++;
+    }
+
+    public long numRecords() {
+      return numRecords;
+    }
+
+    /** Writes out the buffered records. */
+    public void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Puts the pipeline to sleep while nothing is in front of the camera, and wakes it on motion.
+ *
+ * <p>After {@code resultsToIdle} consecutive empty results the gate goes idle: camera frames are no
+ * longer sent to inference. Instead, at most one frame per {@code sampleIntervalUs} is read back
+ * and sampled on a small grid into a luma buffer, which is compared with the previous sample, cell
+ * by cell. The frame may be scaled down first, to as little as one pixel per cell. When the
+ * fraction of cells whose luma changed by more than {@link #CELL_DELTA} reaches {@code
+ * wakeFraction}, the gate wakes and inference resumes. The wake latency is at most one sample
+ * interval plus a readback.
+ *
+ * <p>Results and frames come from different threads, so state changes are synchronized; {@link
+ * #isIdle()} is a plain volatile read for the camera thread.
+ */
+public class MotionWakeGate {
+  /** Notified when the gate goes idle or wakes, on the thread that caused it. */
+  public interface IdleListener {
+    void onIdleChanged(boolean idle);
+  }
+
+  /** Luma change, out of 255, for a cell to count as moving; above sensor noise. */
+  public static final int CELL_DELTA = 16;
+
+  private final int resultsToIdle;
+  private final int gridWidth;
+  private final int gridHeight;
+  private final float wakeFraction;
+  private final long sampleIntervalUs;
+  // The latest sample's luma, overwritten cell by cell while comparing.
+  private final byte[] luma;
+  private volatile boolean idle;
+  private boolean primed;
+  private long lastSampleUs;
+  private int emptyCount;
+  private IdleListener idleListener;
+
+  private long skippedFrames;
+  private long sampledFrames;
+  private long wakeCount;
+
+  /**
+   * @param resultsToIdle consecutive empty results before going idle.
+   * @param gridWidth cells sampled across a frame.
+   * @param gridHeight cells sampled down a frame.
+   * @param wakeFraction fraction of moving cells that wakes the gate.
+   * @param sampleIntervalUs least time between two sampled frames while idle.
+   */
+  public MotionWakeGate(
+      int resultsToIdle, int gridWidth, int gridHeight, float wakeFraction, long sampleIntervalUs) {
+    if (resultsToIdle < 1 || gridWidth < 1 || gridHeight < 1) {
+      throw new IllegalArgumentException("Counts must be positive.");
+    }
+    this.resultsToIdle = resultsToIdle;
+    this.gridWidth = gridWidth;
+    this.gridHeight = gridHeight;
+    this.wakeFraction = wakeFraction;
+    this.sampleIntervalUs = sampleIntervalUs;
+    luma = new byte[gridWidth * gridHeight];
+  }
+
+  public synchronized void setIdleListener(IdleListener idleListener) {
+    this.idleListener = idleListener;
+  }
+
+  public boolean isIdle() {
+    return idle;
+  }
+
+  /** Reports whether the latest inference result found anything. Ignored while idle. */
+  public synchronized void onResult(boolean found) {
+    if (idle) {
+      return;
+    }
+    emptyCount = found ? 0 : emptyCount + 1;
+    if (emptyCount >= resultsToIdle) {
+      primed = false;
+      setIdle(true);
+    }
+  }
+
+  /**
+   * Whether the idle frame at {@code timestampUs} should be sampled with {@link #onIdleFrame}.
+   * Frames that shouldn't are released unread.
+   */
+  public synchronized boolean shouldSample(long timestampUs) {
+    if (primed && timestampUs - lastSampleUs < sampleIntervalUs) {
+      skippedFrames++;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Samples an idle frame and compares it with the previous sample.
+   *
+   * @param argb row-major ARGB pixels of the frame.
+   * @param width width of {@code argb} in pixels.
+   * @param height height of {@code argb} in pixels.
+   * @return whether the frame woke the gate.
+   */
+  public synchronized boolean onIdleFrame(int[] argb, int width, int height, long timestampUs) {
+    if (!idle) {
+      return false;
+    }
+    sampledFrames++;
+    lastSampleUs = timestampUs;
+    int moving = 0;
+    for (int gy = 0; gy < gridHeight; ++gy) {
+      int y = (2 * gy + 1) * height / (2 * gridHeight);
+      for (int gx = 0; gx < gridWidth; ++gx) {
+        int x = (2 * gx + 1) * width / (2 * gridWidth);
+        int pixel = argb[y * width + x];
+        int value =
+            (77 * ((pixel >> 16) & 0xff) + 150 * ((pixel >> 8) & 0xff) + 29 * (pixel & 0xff))
+                >> 8;
+        int cell = gy * gridWidth + gx;
+        if (Math.abs(value - (luma[cell] & 0xff)) > CELL_DELTA) {
+          moving++;
+        }
+        luma[cell] = (byte) value;
+      }
+    }
+    boolean wasPrimed = primed;
+    primed = true;
+    if (wasPrimed && moving >= wakeFraction * luma.length) {
+      wakeCount++;
+      setIdle(false);
+      return true;
+    }
+    return false;
+  }
+
+  /** Wakes the gate, e.g. when the pipeline is restarted. */
+  public synchronized void reset() {
+    emptyCount = 0;
+    primed = false;
+    idle = false;
+  }
+
+  /** Idle frames released without being sampled. */
+  public synchronized long skippedFrames() {
+    return skippedFrames;
+  }
+
+  public synchronized long sampledFrames() {
+    return sampledFrames;
+  }
+
+  public synchronized long wakeCount() {
+    return wakeCount;
+  }
+
+  private void setIdle(boolean newIdle) {
+    emptyCount = 0;
+    idle = newIdle;
+    if (idleListener != null) {
+      idleListener.onIdleChanged(newIdle);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Picks how much of the landmark overlay to draw so that drawing stays within a time budget.
+ *
+ * <p>The renderer reports how long each overlay took to draw. Most reports are CPU time only,
+ * since GL calls return before the GPU is done; every {@link #GPU_SAMPLE_INTERVAL} frames the
+ * renderer should wait for the GPU ({@link #shouldSampleGpu}) and report the total instead. Both
+ * are smoothed, and the larger one is compared to the budget.
+ *
+ * <p>Detail drops one level as soon as the cost exceeds the budget, and comes back one level only
+ * after the cost has stayed below half the budget for a while. If the higher level turns out to be
+ * too expensive again right away, the wait before the next attempt doubles, so the level does not
+ * flap between two settings.
+ *
+ * <p>A cap set from outside, e.g. while the device is throttled, bounds the level returned to the
+ * renderer without disturbing the measurements.
+ */
+public class OverlayDetailController {
+  /** Overlay detail, from most to least expensive. */
+  public enum Level {
+    /** Everything, e.g. the mesh tessellation, or hand connections with their dots. */
+    FULL,
+    /** Outlines only, e.g. face contours or hand connections. */
+    CONTOURS,
+    /** Points only. */
+    KEYPOINTS,
+  }
+
+  /** Frames between GPU-synchronized samples. */
+  public static final int GPU_SAMPLE_INTERVAL = 30;
+
+  private static final float SMOOTHING = 0.2f;
+  private static final float STEP_UP_FRACTION = 0.5f;
+  // Frames to wait after any change before judging the new level.
+  private static final int SETTLE_FRAMES = 10;
+  private static final int MAX_STEP_UP_FRAMES = 60 * 30;
+  private static final Level[] LEVELS = Level.values();
+
+  private final long budgetNanos;
+  private final int minStepUpFrames;
+  private int stepUpFrames;
+  private Level level = Level.FULL;
+  private volatile Level cap = Level.FULL;
+  private float cpuNanos;
+  private float gpuNanos;
+  private long frame;
+  private int framesSinceChange;
+  private int framesWithHeadroom;
+  private boolean steppedUp;
+
+  /**
+   * @param budgetNanos time the overlay may take per frame.
+   * @param stepUpFrames frames with headroom needed before detail goes back up.
+   */
+  public OverlayDetailController(long budgetNanos, int stepUpFrames) {
+    this.budgetNanos = budgetNanos;
+    this.minStepUpFrames = stepUpFrames;
+    this.stepUpFrames = stepUpFrames;
+  }
+
+  /** Level to draw at: the measured one, or the cap if that is cheaper. */
+  public Level level() {
+    Level cap = this.cap;
+    return cap.ordinal() > level.ordinal() ? cap : level;
+  }
+
+  /** Most detailed level to draw at, whatever the measurements allow. Safe from any thread. */
+  public void setCap(Level cap) {
+    this.cap = cap;
+  }
+
+  /** Whether the frame being drawn should wait for the GPU and report the total time. */
+  public boolean shouldSampleGpu() {
+    return frame % GPU_SAMPLE_INTERVAL == 0;
+  }
+
+  /**
+   * Reports the draw time of one frame.
+   *
+   * @param nanos time spent drawing the overlay.
+   * @param includesGpu whether the GPU was waited for, see {@link #shouldSampleGpu}.
+   * @return {@code true} if the level changed.
+   */
+  public boolean onFrameDrawn(long nanos, boolean includesGpu) {
+    frame++;
+    framesSinceChange++;
+    if (includesGpu) {
+      gpuNanos = gpuNanos == 0 ? nanos : gpuNanos + 2 * SMOOTHING * (nanos - gpuNanos);
+    } else {
+      cpuNanos = cpuNanos == 0 ? nanos : cpuNanos + SMOOTHING * (nanos - cpuNanos);
+    }
+    if (framesSinceChange < SETTLE_FRAMES) {
+      return false;
+    }
+    float cost = Math.max(cpuNanos, gpuNanos);
+    if (cost > budgetNanos) {
+      framesWithHeadroom = 0;
+      if (steppedUp) {
+        // The level we came back to is still too expensive; wait longer next time.
+        stepUpFrames = Math.min(2 * stepUpFrames, MAX_STEP_UP_FRAMES);
+        steppedUp = false;
+      }
+      return change(+1);
+    }
+    if (steppedUp && framesSinceChange > stepUpFrames) {
+      // The level held up; forget earlier back-offs.
+      steppedUp = false;
+      stepUpFrames = minStepUpFrames;
+    }
+    if (cost < STEP_UP_FRACTION * budgetNanos) {
+      if (++framesWithHeadroom >= stepUpFrames && change(-1)) {
+        steppedUp = true;
+        return true;
+      }
+    } else {
+      framesWithHeadroom = 0;
+    }
+    return false;
+  }
+
+  private boolean change(int step) {
+    int ordinal = level.ordinal() + step;
+    if (ordinal < 0 || ordinal >= LEVELS.length) {
+      return false;
+    }
+    level = LEVELS[ordinal];
+    // Costs measured at the old level say nothing about the new one.
+    cpuNanos = 0;
+    gpuNanos = 0;
+    framesSinceChange = 0;
+    framesWithHeadroom = 0;
+    return true;
+  }
+}
@@ -0,0 +1,164 @@
+package com.google.mediapipe.examples.facecenter;
+
+/**
+ * Picks the camera resolution from a ladder of sizes, by the inference throughput achieved at the
+ * current one.
+ *
+ * <p>Tiers are indexed from the largest size, tier 0, down. Result timestamps are counted over
+ * windows of {@code windowUs} of camera time. A window below {@link #DOWN_RATIO} of the target
+ * rate steps one tier down. A window at {@link #UP_RATIO} of it or more steps one tier up, but only
+ * once the current tier has been held for the hold time. The gap between the two ratios keeps the
+ * controller from settling between tiers. A step up that has to be taken back within the hold time
+ * doubles it, up to {@code maxHoldUs}, so a tier that can't keep up isn't retried over and over.
+ *
+ * <p>Gaps in the results longer than a window, e.g. while inference is idle or the camera is
+ * restarting, start a new window rather than count as a slow one.
+ *
+ * <p>Results may come from a solution thread while the tier is read elsewhere, so all methods are
+ * synchronized.
+ */
+public class ResolutionController {
+  /** Notified of every tier change, on the thread that reported the triggering result. */
+  public interface TierListener {
+    void onTierChanged(int tier);
+  }
+
+  /** Fraction of the target rate below which a window steps down. */
+  public static final float DOWN_RATIO = 0.8f;
+  /** Fraction of the target rate from which a window steps up. */
+  public static final float UP_RATIO = 0.95f;
+
+  private final int[] longSides;
+  private final long windowUs;
+  private final long minHoldUs;
+  private final long maxHoldUs;
+  private float targetFps;
+  private TierListener tierListener;
+
+  private int tier;
+  private long holdUs;
+  private long lastChangeUs;
+  private boolean lastChangeWasUp;
+  private long windowStartUs = -1;
+  private long lastResultUs;
+  private int windowResults;
+  private float lastFps;
+
+  /**
+   * @param longSides long side of each tier's size in pixels, largest first.
+   * @param targetFps inference rate to keep up.
+   * @param windowUs camera time each rate is measured over.
+   * @param minHoldUs least time a tier is held before stepping up.
+   * @param maxHoldUs most time the hold grows to after failed steps up.
+   */
+  public ResolutionController(
+      int[] longSides, float targetFps, long windowUs, long minHoldUs, long maxHoldUs) {
+    if (longSides.length == 0) {
+      throw new IllegalArgumentException("The ladder needs at least one size.");
+    }
+    for (int i = 1; i < longSides.length; ++i) {
+      if (longSides[i] >= longSides[i - 1]) {
+        throw new IllegalArgumentException("Ladder sizes must decrease.");
+      }
+    }
+    this.longSides = longSides.clone();
+    this.targetFps = targetFps;
+    this.windowUs = windowUs;
+    this.minHoldUs = minHoldUs;
+    this.maxHoldUs = maxHoldUs;
+    holdUs = minHoldUs;
+  }
+
+  public synchronized void setTierListener(TierListener tierListener) {
+    this.tierListener = tierListener;
+  }
+
+  /** Changes the rate to keep up, e.g. when inference is throttled below it on purpose. */
+  public synchronized void setTargetFps(float targetFps) {
+    this.targetFps = targetFps;
+  }
+
+  /** Current tier, 0 being the largest size. */
+  public synchronized int tier() {
+    return tier;
+  }
+
+  public int numTiers() {
+    return longSides.length;
+  }
+
+  /** Rate measured over the last complete window. */
+  public synchronized float lastFps() {
+    return lastFps;
+  }
+
+  /** Width to request for a surface of the given size, scaled down to the current tier. */
+  public synchronized int width(int surfaceWidth, int surfaceHeight) {
+    return Math.round(surfaceWidth * scale(surfaceWidth, surfaceHeight));
+  }
+
+  /** Height to request for a surface of the given size, scaled down to the current tier. */
+  public synchronized int height(int surfaceWidth, int surfaceHeight) {
+    return Math.round(surfaceHeight * scale(surfaceWidth, surfaceHeight));
+  }
+
+  /** Reports an inference result for the camera frame at {@code timestampUs}. */
+  public synchronized void onResult(long timestampUs) {
+    if (windowStartUs < 0 || timestampUs - lastResultUs > windowUs) {
+      startWindow(timestampUs);
+      return;
+    }
+    lastResultUs = timestampUs;
+    windowResults++;
+    long elapsedUs = timestampUs - windowStartUs;
+    if (elapsedUs < windowUs) {
+      return;
+    }
+    lastFps = windowResults * 1_000_000f / elapsedUs;
+    startWindow(timestampUs);
+    if (lastFps < DOWN_RATIO * targetFps && tier < longSides.length - 1) {
+      if (lastChangeWasUp && timestampUs - lastChangeUs < holdUs) {
+        holdUs = Math.min(2 * holdUs, maxHoldUs);
+      } else {
+        holdUs = minHoldUs;
+      }
+      setTier(tier + 1, timestampUs, false);
+    } else if (lastFps >= UP_RATIO * targetFps
+        && tier > 0
+        && timestampUs - lastChangeUs >= holdUs) {
+      setTier(tier - 1, timestampUs, true);
+    }
+  }
+
+  /** Goes back to tier 0, e.g. when the pipeline is restarted. */
+  public synchronized void reset() {
+    tier = 0;
+    holdUs = minHoldUs;
+    lastChangeUs = 0;
+    lastChangeWasUp = false;
+    windowStartUs = -1;
+    lastFps = 0;
+  }
+
+  private float scale(int surfaceWidth, int surfaceHeight) {
+    int longSide = Math.max(surfaceWidth, surfaceHeight);
+    return longSide > longSides[tier] ? (float) longSides[tier] / longSide : 1;
+  }
+
+  private void startWindow(long timestampUs) {
+    windowStartUs = timestampUs;
+    lastResultUs = timestampUs;
+    windowResults = 0;
+  }
+
+  private void setTier(int newTier, long timestampUs, boolean up) {
+    tier = newTier;
+    lastChangeUs = timestampUs;
+    lastChangeWasUp = up;
+    // Results of frames from before the change don't say anything about the new size.
+    windowStartUs = -1;
+    if (tierListener != null) {
+      tierListener.onTierChanged(newTier);
+    }
+  }
+}
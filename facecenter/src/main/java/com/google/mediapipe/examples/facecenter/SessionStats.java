@@ -0,0 +1,125 @@
+package com.google.mediapipe.examples.facecenter;
+
+import java.util.Locale;
+
+/**
+ * Aggregate of the frames of one session in a {@link LandmarkFile}, as computed by {@link
+ * BatchAnalyzer}.
+ *
+ * <p>Stats over disjoint parts of a session {@link #merge} into the stats of the whole, in any
+ * order and grouping, so parts can be aggregated in parallel.
+ */
+public class SessionStats {
+  public final int sessionId;
+  public long frames;
+  public long faceFrames;
+  /** Face frames with {@link FaceAnalysis#isForward}. */
+  public long forwardFrames;
+  /** Face frames accepted by the capture policy. */
+  public long acceptedFrames;
+  /** Face frames rejected by each rule of the capture policy, by rule index. */
+  public final long[] rejections;
+  public long firstTimestampUs = Long.MAX_VALUE;
+  public long lastTimestampUs = Long.MIN_VALUE;
+  /** Sum of the face centers, (x, y, z). */
+  public final double[] centerSum = new double[3];
+  /** Union of the face bounding boxes, as (x, y). */
+  public final double[] min = {Double.MAX_VALUE, Double.MAX_VALUE};
+  public final double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE};
+  /** The most frontal face frame, see {@link FaceAnalysis#forwardError}. */
+  public long bestTimestampUs = -1;
+  public double bestError = Double.MAX_VALUE;
+  public final double[] bestAngle = new double[3];
+
+  public SessionStats(int sessionId, int numRules) {
+    this.sessionId = sessionId;
+    rejections = new long[numRules];
+  }
+
+  /** Counts a frame without a face. */
+  public void addEmpty(long timestampUs) {
+    frames++;
+    addTimestamp(timestampUs);
+  }
+
+  /**
+   * Counts a face frame.
+   *
+   * @param rejectedBy what the capture policy returned for it.
+   */
+  public void addFace(long timestampUs, FaceAnalysis analysis, int rejectedBy) {
+    frames++;
+    faceFrames++;
+    addTimestamp(timestampUs);
+    if (analysis.isForward) {
+      forwardFrames++;
+    }
+    if (rejectedBy == CapturePolicy.ACCEPTED) {
+      acceptedFrames++;
+    } else {
+      rejections[rejectedBy]++;
+    }
+    for (int i = 0; i < 3; ++i) {
+      centerSum[i] += analysis.avg[i];
+    }
+    for (int i = 0; i < 2; ++i) {
+      min[i] = Math.min(min[i], analysis.min[i]);
+      max[i] = Math.max(max[i], analysis.max[i]);
+    }
+    double error = analysis.forwardError();
+    if (isBetter(error, timestampUs)) {
+      bestError = error;
+      bestTimestampUs = timestampUs;
+      System.arraycopy(analysis.angleZ, 0, bestAngle, 0, 3);
+    }
+  }
+
+  /** Adds the stats of another part of the same session. */
+  public void merge(SessionStats other) {
+    frames += other.frames;
+    faceFrames += other.faceFrames;
+    forwardFrames += other.forwardFrames;
+    acceptedFrames += other.acceptedFrames;
+    for (int i = 0; i < rejections.length; ++i) {
+      rejections[i] += other.rejections[i];
+    }
+    firstTimestampUs = Math.min(firstTimestampUs, other.firstTimestampUs);
+    lastTimestampUs = Math.max(lastTimestampUs, other.lastTimestampUs);
+    for (int i = 0; i < 3; ++i) {
+      centerSum[i] += other.centerSum[i];
+    }
+    for (int i = 0; i < 2; ++i) {
+      min[i] = Math.min(min[i], other.min[i]);
+      max[i] = Math.max(max[i], other.max[i]);
+    }
+    if (other.bestTimestampUs >= 0 && isBetter(other.bestError, other.bestTimestampUs)) {
+      bestError = other.bestError;
+      bestTimestampUs = other.bestTimestampUs;
+      System.arraycopy(other.bestAngle, 0, bestAngle, 0, 3);
+    }
+  }
+
+  /** Mean face center along axis {@code i}, or NaN without face frames. */
+  public double meanCenter(int i) {
+    return faceFrames == 0 ? Double.NaN : centerSum[i] / faceFrames;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "session %d: frames=%d face=%d forward=%d accepted=%d center=(%.4f, %.4f, %.4f) best=%d",
+        sessionId, frames, faceFrames, forwardFrames, acceptedFrames,
+        meanCenter(0), meanCenter(1), meanCenter(2), bestTimestampUs);
+  }
+
+  private void addTimestamp(long timestampUs) {
+    firstTimestampUs = Math.min(firstTimestampUs, timestampUs);
+    lastTimestampUs = Math.max(lastTimestampUs, timestampUs);
+  }
+
+  /** Ties go to the earlier frame, so the result doesn't depend on how the session was split. */
+  private boolean isBetter(double error, long timestampUs) {
+    return error < bestError || (error == bestError && timestampUs < bestTimestampUs);
+  }
+}
@@ -0,0 +1,67 @@
+package com.google.mediapipe.examples.facecenter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free exchange of the latest value between one producer and one consumer thread.
+ *
+ * <p>Of the three buffers, the producer owns one (the back buffer) and the consumer another (the
+ * front buffer); the third sits in the middle. {@link #publish} swaps the freshly written back
+ * buffer with the middle one, and {@link #acquire} swaps the middle one with the front buffer if
+ * it holds something newer. Neither side ever waits for the other, and a value that is replaced
+ * before the consumer got to it is simply reused, never queued.
+ */
+public class TripleBuffer<T> {
+  private static final int INDEX_MASK = 0x3;
+  private static final int FRESH = 0x4;
+
+  private final Object[] buffers;
+  // Index of the middle buffer, plus FRESH if it was published after the last acquire.
+  private final AtomicInteger middle = new AtomicInteger(1);
+  private int back = 0;
+  private int front = 2;
+  private volatile long published;
+  private volatile long skipped;
+
+  public TripleBuffer(T first, T second, T third) {
+    buffers = new Object[] {first, second, third};
+  }
+
+  /** The buffer to write the next value into. Producer only. */
+  @SuppressWarnings("unchecked")
+  public T back() {
+    return (T) buffers[back];
+  }
+
+  /** Makes the back buffer the newest value, and hands the producer a free one. Producer only. */
+  public void publish() {
+    int previous = middle.getAndSet(back | FRESH);
+    back = previous & INDEX_MASK;
+    published++;
+    if ((previous & FRESH) != 0) {
+      skipped++;
+    }
+  }
+
+  /**
+   * Returns the newest published value, or the one returned last time if nothing was published
+   * since. Before the first {@link #publish} this is whatever the third constructor argument holds.
+   * Consumer only.
+   */
+  @SuppressWarnings("unchecked")
+  public T acquire() {
+    if ((middle.get() & FRESH) != 0) {
+      front = middle.getAndSet(front) & INDEX_MASK;
+    }
+    return (T) buffers[front];
+  }
+
+  public long publishedCount() {
+    return published;
+  }
+
+  /** Values replaced by a newer one before the consumer picked them up. */
+  public long skippedCount() {
+    return skipped;
+  }
+}
@@ -0,0 +1,157 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchAnalyzerTest {
+  private static final int NUM_LANDMARKS = 468;
+  private static final long FRAME_US = 33_333;
+  // Session IDs and lengths in file order; the long sessions span many chunks.
+  private static final int[] SESSION_IDS = {3, 1, 4, 9, 2};
+  private static final int[] SESSION_FRAMES = {150, 40, 310, 7, 293};
+  private static final int CHUNK_RECORDS = 50;
+  // Covers the 100 ms of the stability rule below.
+  private static final int OVERLAP_RECORDS = 10;
+
+  private final Properties policy = new Properties();
+  private File path;
+  private int numRecords;
+
+  @Before
+  public void setUp() throws IOException {
+    policy.setProperty("face.min_size", "0.2");
+    policy.setProperty("center.max_distance", "0.2");
+    policy.setProperty("pose.angle_x", "90");
+    policy.setProperty("pose.angle_y", "180");
+    policy.setProperty("pose.angle_z", "90");
+    policy.setProperty("pose.tolerance", "4");
+    policy.setProperty("stable.min_ms", "100");
+    policy.setProperty("stable.max_motion", "0.01");
+
+    path = File.createTempFile("landmarks", ".fclm");
+    try (LandmarkFile.Writer writer = new LandmarkFile.Writer(path, NUM_LANDMARKS, 64)) {
+      for (int s = 0; s < SESSION_IDS.length; ++s) {
+        for (int i = 0; i < SESSION_FRAMES[s]; ++i, ++numRecords) {
+          writer.write(
+              numRecords * FRAME_US,
+              SESSION_IDS[s],
+              0.75f,
+              numRecords % 11 == 10 ? null : landmarks(numRecords));
+        }
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    path.delete();
+  }
+
+  @Test
+  public void chunkedRunMatchesASequentialOne() throws IOException {
+    Map<Integer, SessionStats> sequential = run(Integer.MAX_VALUE, 0, 1);
+    Map<Integer, SessionStats> chunked = run(CHUNK_RECORDS, OVERLAP_RECORDS, 4);
+    assertEquals(SESSION_IDS.length, sequential.size());
+    assertEquals(sequential.keySet(), chunked.keySet());
+    for (int s = 0; s < SESSION_IDS.length; ++s) {
+      SessionStats expected = sequential.get(SESSION_IDS[s]);
+      assertEquals(SESSION_FRAMES[s], expected.frames);
+      SessionStatsTest.assertStatsEqual(
+          "session " + SESSION_IDS[s], expected, chunked.get(SESSION_IDS[s]));
+    }
+  }
+
+  @Test
+  public void everyRuleAndAcceptanceShowUp() throws IOException {
+    long accepted = 0;
+    long[] rejections = new long[CapturePolicy.compile(policy).ruleCount()];
+    for (SessionStats stats : run(CHUNK_RECORDS, OVERLAP_RECORDS, 4).values()) {
+      accepted += stats.acceptedFrames;
+      for (int i = 0; i < rejections.length; ++i) {
+        rejections[i] += stats.rejections[i];
+      }
+    }
+    // Otherwise the comparison with a sequential run would prove little.
+    assertTrue(accepted > 0);
+    for (int i = 0; i < rejections.length; ++i) {
+      assertTrue("rule " + i, rejections[i] > 0);
+    }
+  }
+
+  @Test
+  public void withoutOverlapTheStabilityRuleSeesChunkBoundaries() throws IOException {
+    Map<Integer, SessionStats> sequential = run(Integer.MAX_VALUE, 0, 1);
+    Map<Integer, SessionStats> chunked = run(CHUNK_RECORDS, 0, 4);
+    long sequentialAccepted = 0;
+    long chunkedAccepted = 0;
+    for (int id : SESSION_IDS) {
+      sequentialAccepted += sequential.get(id).acceptedFrames;
+      chunkedAccepted += chunked.get(id).acceptedFrames;
+      assertEquals(sequential.get(id).frames, chunked.get(id).frames);
+    }
+    assertNotEquals(sequentialAccepted, chunkedAccepted);
+  }
+
+  @Test
+  public void rejectsBadChunking() {
+    try {
+      new BatchAnalyzer(policy, 0, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private Map<Integer, SessionStats> run(int chunkRecords, int overlapRecords, int threads)
+      throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try (LandmarkFile file = LandmarkFile.open(path)) {
+      assertEquals(numRecords, file.numRecords());
+      return new BatchAnalyzer(policy, chunkRecords, overlapRecords).run(file, pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * A face at {@code frame} that holds still for a while then jumps, grows and shrinks, and nods so
+   * that its pose is only sometimes within the policy's tolerance.
+   */
+  private static float[] landmarks(int frame) {
+    double centerX = 0.25 + 0.1 * ((frame / 17) % 5);
+    double centerY = 0.5 + 0.001 * (frame % 3);
+    double height = 0.15 + 0.02 * ((frame / 23) % 5);
+    double nod = height * Math.tan(Math.toRadians(8 * Math.sin(frame / 6.0)));
+    float[] landmarks = new float[3 * NUM_LANDMARKS];
+    for (int i = 0; i < NUM_LANDMARKS; ++i) {
+      double angle = 2 * Math.PI * i / NUM_LANDMARKS;
+      set(
+          landmarks,
+          i,
+          centerX + height / 3 * Math.cos(angle),
+          centerY + height / 2 * Math.sin(angle),
+          0);
+    }
+    set(landmarks, FaceAnalyzer.TOP_INDEX, centerX, centerY - height / 2, -nod / 2);
+    set(landmarks, FaceAnalyzer.BOTTOM_INDEX, centerX, centerY + height / 2, nod / 2);
+    set(landmarks, FaceAnalyzer.LEFT_CHIN_INDEX, centerX + height / 4, centerY + height / 3, 0);
+    set(landmarks, FaceAnalyzer.RIGHT_CHIN_INDEX, centerX - height / 4, centerY + height / 3, 0);
+    return landmarks;
+  }
+
+  private static void set(float[] landmarks, int index, double x, double y, double z) {
+    landmarks[3 * index] = (float) x;
+    landmarks[3 * index + 1] = (float) y;
+    landmarks[3 * index + 2] = (float) z;
+  }
+}
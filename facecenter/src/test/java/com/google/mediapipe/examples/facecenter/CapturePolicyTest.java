@@ -0,0 +1,178 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class CapturePolicyTest {
+  private static final long FRAME_US = 50_000;
+
+  private final FaceAnalysis analysis = new FaceAnalysis();
+  private final CapturePolicy.Input input = new CapturePolicy.Input();
+
+  public CapturePolicyTest() {
+    input.analysis = analysis;
+    // No landmarks: the eyes rule would fail on them if it ever ran.
+    input.numLandmarks = 0;
+    input.aspectRatio = 0.75f;
+    setFace(0.5, 0.5, 0.4);
+    System.arraycopy(FaceAnalyzer.FORWARD_ANGLE_Z, 0, analysis.angleZ, 0, 3);
+  }
+
+  @Test
+  public void cheapRulesRunFirstAndStatefulOnesLast() throws IOException {
+    CapturePolicy policy =
+        load(
+            "stable.min_ms = 100\n"
+                + "stable.max_motion = 0.01\n"
+                + "eyes.min_ear = 0.2\n"
+                + "eyes.min_iris_visibility = 0.35\n"
+                + "pose.angle_x = 90\n"
+                + "pose.angle_y = 175\n"
+                + "pose.angle_z = 90\n"
+                + "pose.tolerance = 3\n"
+                + "center.max_distance = 0.2\n"
+                + "face.min_size = 0.3\n");
+    assertEquals(5, policy.ruleCount());
+    assertEquals("face_size", policy.ruleName(0));
+    assertEquals("center", policy.ruleName(1));
+    assertEquals("pose", policy.ruleName(2));
+    assertEquals("eyes_open", policy.ruleName(3));
+    assertEquals("stable", policy.ruleName(4));
+    assertEquals("accepted", policy.ruleName(CapturePolicy.ACCEPTED));
+  }
+
+  @Test
+  public void firstFailingRuleEndsTheEvaluation() throws IOException {
+    CapturePolicy policy =
+        load(
+            "eyes.min_ear = 0.2\n"
+                + "eyes.min_iris_visibility = 0.35\n"
+                + "face.min_size = 0.3\n"
+                + "pose.angle_x = 90\n"
+                + "pose.angle_y = 175\n"
+                + "pose.angle_z = 90\n"
+                + "pose.tolerance = 3\n");
+    // Without landmarks, reaching the eyes rule would throw.
+    setFace(0.5, 0.5, 0.1);
+    assertEquals(0, policy.evaluate(input));
+    setFace(0.5, 0.5, 0.4);
+    analysis.angleZ[1] = 160;
+    assertEquals(1, policy.evaluate(input));
+    assertEquals("accepted=0 face_size=1 pose=1 eyes_open=0", policy.stats());
+  }
+
+  @Test
+  public void countsAcceptedFramesAndRejectionsByRule() throws IOException {
+    CapturePolicy policy = load("face.min_size = 0.3\ncenter.max_distance = 0.2\n");
+    assertEquals(CapturePolicy.ACCEPTED, policy.evaluate(input));
+    setFace(0.9, 0.5, 0.4);
+    assertEquals(1, policy.evaluate(input));
+    assertEquals(1, policy.evaluate(input));
+    setFace(0.9, 0.5, 0.1);
+    assertEquals(0, policy.evaluate(input));
+    setFace(0.5, 0.5, 0.4);
+    assertEquals(CapturePolicy.ACCEPTED, policy.evaluate(input));
+    assertEquals("accepted=2 face_size=1 center=2", policy.stats());
+  }
+
+  @Test
+  public void emptyPolicyAcceptsEverything() throws IOException {
+    CapturePolicy policy = load("");
+    assertEquals(0, policy.ruleCount());
+    setFace(0.9, 0.9, 0);
+    assertEquals(CapturePolicy.ACCEPTED, policy.evaluate(input));
+  }
+
+  @Test
+  public void stableFaceIsAcceptedAfterTheMinimumTime() throws IOException {
+    CapturePolicy policy = load("stable.min_ms = 100\nstable.max_motion = 0.01\n");
+    assertEquals(0, evaluateAt(policy, 0));
+    assertEquals(0, evaluateAt(policy, 1));
+    assertEquals(CapturePolicy.ACCEPTED, evaluateAt(policy, 2));
+    // Moving further than max_motion restarts the timer.
+    setFace(0.52, 0.5, 0.4);
+    assertEquals(0, evaluateAt(policy, 3));
+    setFace(0.525, 0.5, 0.4);
+    assertEquals(0, evaluateAt(policy, 4));
+    assertEquals(CapturePolicy.ACCEPTED, evaluateAt(policy, 5));
+  }
+
+  @Test
+  public void rejectionByAnEarlierRuleRestartsTheStabilityTimer() throws IOException {
+    CapturePolicy policy =
+        load("face.min_size = 0.3\nstable.min_ms = 100\nstable.max_motion = 0.01\n");
+    assertEquals(1, evaluateAt(policy, 0));
+    assertEquals(1, evaluateAt(policy, 1));
+    setFace(0.5, 0.5, 0.1);
+    assertEquals(0, evaluateAt(policy, 2));
+    // Same place as before, but the timer starts over.
+    setFace(0.5, 0.5, 0.4);
+    assertEquals(1, evaluateAt(policy, 3));
+    assertEquals(1, evaluateAt(policy, 4));
+    assertEquals(CapturePolicy.ACCEPTED, evaluateAt(policy, 5));
+  }
+
+  @Test
+  public void resetRestartsTheStabilityTimer() throws IOException {
+    CapturePolicy policy = load("stable.min_ms = 100\nstable.max_motion = 0.01\n");
+    assertEquals(0, evaluateAt(policy, 0));
+    assertEquals(0, evaluateAt(policy, 1));
+    policy.reset();
+    assertEquals(0, evaluateAt(policy, 2));
+    assertEquals(0, evaluateAt(policy, 3));
+    assertEquals(CapturePolicy.ACCEPTED, evaluateAt(policy, 4));
+  }
+
+  @Test
+  public void rejectsMalformedValues() throws IOException {
+    try {
+      load("face.min_size = large\n");
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("face.min_size"));
+    }
+  }
+
+  @Test
+  public void rejectsPartiallySetRules() throws IOException {
+    String[] partial = {
+      "pose.tolerance = 3\npose.angle_x = 90\n",
+      "eyes.min_ear = 0.2\n",
+      "stable.min_ms = 300\n",
+    };
+    for (String properties : partial) {
+      try {
+        load(properties);
+        fail(properties);
+      } catch (IllegalArgumentException expected) {
+        assertTrue(expected.getMessage().startsWith("Missing capture policy key"));
+      }
+    }
+  }
+
+  private int evaluateAt(CapturePolicy policy, int frame) {
+    input.timestampUs = frame * FRAME_US;
+    return policy.evaluate(input);
+  }
+
+  /** A face centered at ({@code x}, {@code y}) and {@code height} high. */
+  private void setFace(double x, double y, double height) {
+    analysis.avg[0] = x;
+    analysis.avg[1] = y;
+    analysis.min[0] = x - height / 3;
+    analysis.min[1] = y - height / 2;
+    analysis.max[0] = x + height / 3;
+    analysis.max[1] = y + height / 2;
+  }
+
+  private static CapturePolicy load(String properties) throws IOException {
+    return CapturePolicy.load(
+        new ByteArrayInputStream(properties.getBytes(StandardCharsets.ISO_8859_1)));
+  }
+}
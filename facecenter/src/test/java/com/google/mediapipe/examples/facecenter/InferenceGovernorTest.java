@@ -0,0 +1,158 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.mediapipe.examples.facecenter.InferenceGovernor.Level;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class InferenceGovernorTest {
+  private static final float[] LEVEL_FPS = {30, 15, 5};
+  private static final long POLL_US = 1_000_000;
+  private static final long RECOVER_US = 5_000_000;
+  private static final long FRAME_US = 40_000;
+
+  private final InferenceGovernor.Conditions device = new InferenceGovernor.Conditions();
+  private final InferenceGovernor governor =
+      new InferenceGovernor(
+          out -> {
+            out.thermalStatus = device.thermalStatus;
+            out.batteryLevel = device.batteryLevel;
+            out.charging = device.charging;
+          },
+          LEVEL_FPS,
+          POLL_US,
+          RECOVER_US);
+
+  @Test
+  public void admitsEveryFrameWhileConditionsAreNormal() {
+    assertEquals(250, admitFor(0, 10_000_000));
+    assertEquals(Level.NORMAL, governor.level());
+    assertEquals(0, governor.throttledFrames());
+  }
+
+  @Test
+  public void worseConditionsRaiseTheLevelRightAway() {
+    governor.poll(0);
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_MODERATE;
+    governor.poll(POLL_US);
+    assertEquals(Level.REDUCED, governor.level());
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_SEVERE;
+    governor.poll(2 * POLL_US);
+    assertEquals(Level.MINIMAL, governor.level());
+  }
+
+  @Test
+  public void severeConditionsSkipStraightToMinimal() {
+    device.batteryLevel = 0.01f;
+    governor.poll(0);
+    assertEquals(Level.MINIMAL, governor.level());
+  }
+
+  @Test
+  public void chargingBatteryDoesNotCount() {
+    device.batteryLevel = 0.01f;
+    device.charging = true;
+    governor.poll(0);
+    assertEquals(Level.NORMAL, governor.level());
+    device.charging = false;
+    governor.poll(POLL_US);
+    assertEquals(Level.MINIMAL, governor.level());
+  }
+
+  @Test
+  public void rateMovesHalfwayPerPollThenSnaps() {
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_SEVERE;
+    governor.poll(0);
+    assertEquals(17.5f, governor.rateFps(), 0);
+    governor.poll(POLL_US);
+    assertEquals(11.25f, governor.rateFps(), 0);
+    for (int i = 2; i < 10; ++i) {
+      governor.poll(i * POLL_US);
+    }
+    assertEquals(5, governor.rateFps(), 0);
+  }
+
+  @Test
+  public void levelComesDownOneStepPerRecoveryPeriod() {
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_SEVERE;
+    governor.poll(0);
+    device.thermalStatus = 0;
+    // Better since the first poll after the cool down.
+    governor.poll(POLL_US);
+    governor.poll(POLL_US + RECOVER_US - 1);
+    assertEquals(Level.MINIMAL, governor.level());
+    governor.poll(POLL_US + RECOVER_US);
+    assertEquals(Level.REDUCED, governor.level());
+    governor.poll(POLL_US + 2 * RECOVER_US - 1);
+    assertEquals(Level.REDUCED, governor.level());
+    governor.poll(POLL_US + 2 * RECOVER_US);
+    assertEquals(Level.NORMAL, governor.level());
+  }
+
+  @Test
+  public void relapseRestartsTheRecoveryPeriod() {
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_MODERATE;
+    governor.poll(0);
+    device.thermalStatus = 0;
+    governor.poll(POLL_US);
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_MODERATE;
+    governor.poll(2 * POLL_US);
+    device.thermalStatus = 0;
+    governor.poll(3 * POLL_US);
+    governor.poll(POLL_US + RECOVER_US);
+    assertEquals(Level.REDUCED, governor.level());
+    governor.poll(3 * POLL_US + RECOVER_US);
+    assertEquals(Level.NORMAL, governor.level());
+  }
+
+  @Test
+  public void throttlesFramesToTheLevelRate() {
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_SEVERE;
+    // Lets the rate settle at the minimal level's.
+    admitFor(0, 10_000_000);
+    assertEquals(5, governor.rateFps(), 0);
+    int admitted = admitFor(10_000_000, 10_000_000);
+    assertTrue("admitted " + admitted, Math.abs(admitted - 50) <= 2);
+  }
+
+  @Test
+  public void listenerHearsEveryChange() {
+    List<Level> levels = new ArrayList<>();
+    List<Float> rates = new ArrayList<>();
+    governor.setListener(
+        (level, rateFps) -> {
+          levels.add(level);
+          rates.add(rateFps);
+        });
+    governor.poll(0);
+    assertEquals(0, levels.size());
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_MODERATE;
+    governor.poll(POLL_US);
+    assertEquals(1, levels.size());
+    assertEquals(Level.REDUCED, levels.get(0));
+    assertEquals(22.5f, rates.get(0), 0);
+  }
+
+  @Test
+  public void resetGoesBackToNormal() {
+    device.thermalStatus = InferenceGovernor.THERMAL_STATUS_SEVERE;
+    governor.poll(0);
+    governor.reset();
+    assertEquals(Level.NORMAL, governor.level());
+    assertEquals(30, governor.rateFps(), 0);
+  }
+
+  /** Offers 25 fps camera frames from {@code startUs} for {@code durationUs}. */
+  private int admitFor(long startUs, long durationUs) {
+    int admitted = 0;
+    for (long t = startUs; t < startUs + durationUs; t += FRAME_US) {
+      if (governor.admit(t)) {
+        admitted++;
+      }
+    }
+    return admitted;
+  }
+}
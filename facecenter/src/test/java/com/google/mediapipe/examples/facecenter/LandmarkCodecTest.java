@@ -0,0 +1,133 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class LandmarkCodecTest {
+  private static final int NUM_LANDMARKS = 50;
+  private static final int KEYFRAME_INTERVAL = 5;
+  private static final long FRAME_US = 33_333;
+  // One quantum, in landmark units.
+  private static final float QUANTUM = LandmarkCodec.RANGE / 0xffff;
+
+  private final byte[] buffer = new byte[LandmarkCodec.maxFrameSize(NUM_LANDMARKS)];
+  private final float[] decoded = new float[3 * NUM_LANDMARKS];
+
+  @Test
+  public void losslessRoundTrip() {
+    roundTrip(0);
+  }
+
+  @Test
+  public void lossyRoundTripStaysWithinItsRounding() {
+    roundTrip(3);
+  }
+
+  @Test
+  public void decodingResyncsAtTheNextKeyframe() {
+    LandmarkCodec.Encoder encoder =
+        new LandmarkCodec.Encoder(NUM_LANDMARKS, KEYFRAME_INTERVAL, 0);
+    LandmarkCodec.Decoder full = new LandmarkCodec.Decoder(NUM_LANDMARKS);
+    LandmarkCodec.Decoder late = new LandmarkCodec.Decoder(NUM_LANDMARKS);
+    float[] expected = new float[3 * NUM_LANDMARKS];
+    boolean synced = false;
+    for (int frame = 0; frame < 3 * KEYFRAME_INTERVAL; ++frame) {
+      int length = encoder.encode(landmarks(frame), NUM_LANDMARKS, frame * FRAME_US, buffer, 0);
+      full.decode(buffer, 0, length, expected);
+      // The late decoder joins after the first keyframe.
+      if (frame < 2) {
+        continue;
+      }
+      if (!synced && !full.isKeyframe()) {
+        try {
+          late.decode(buffer, 0, length, decoded);
+          fail("decoded frame " + frame + " without a keyframe");
+        } catch (IllegalStateException expectedFailure) {
+        }
+        continue;
+      }
+      assertEquals(length, late.decode(buffer, 0, length, decoded));
+      if (!synced) {
+        assertTrue(late.isKeyframe());
+        synced = true;
+      }
+      assertEquals(frame * FRAME_US, late.timestampUs());
+      assertArrayEquals(expected, decoded, 0);
+    }
+    assertTrue(synced);
+  }
+
+  @Test
+  public void newLandmarkCountStartsAKeyframe() {
+    LandmarkCodec.Encoder encoder =
+        new LandmarkCodec.Encoder(NUM_LANDMARKS, KEYFRAME_INTERVAL, 0);
+    LandmarkCodec.Decoder decoder = new LandmarkCodec.Decoder(NUM_LANDMARKS);
+    int length = encoder.encode(landmarks(0), NUM_LANDMARKS, 0, buffer, 0);
+    decoder.decode(buffer, 0, length, decoded);
+    length = encoder.encode(landmarks(1), NUM_LANDMARKS - 10, FRAME_US, buffer, 0);
+    decoder.decode(buffer, 0, length, decoded);
+    assertTrue(decoder.isKeyframe());
+    assertEquals(NUM_LANDMARKS - 10, decoder.numLandmarks());
+  }
+
+  @Test
+  public void rejectsPrecisionShiftAboveTheMaximum() {
+    // A keyframe of one landmark at timestamp 0, with a shift of 9 and an empty block.
+    byte[] frame = {1, 1, 0, (byte) (LandmarkCodec.MAX_PRECISION_SHIFT + 1), 0};
+    try {
+      new LandmarkCodec.Decoder(1).decode(frame, 0, frame.length, new float[3]);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void rejectsCutOffFrame() {
+    LandmarkCodec.Encoder encoder =
+        new LandmarkCodec.Encoder(NUM_LANDMARKS, KEYFRAME_INTERVAL, 0);
+    int length = encoder.encode(landmarks(0), NUM_LANDMARKS, 0, buffer, 0);
+    try {
+      new LandmarkCodec.Decoder(NUM_LANDMARKS).decode(buffer, 0, length - 1, decoded);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  /** Encodes and decodes a moving face, checking every value against the rounding bound. */
+  private void roundTrip(int precisionShift) {
+    LandmarkCodec.Encoder encoder =
+        new LandmarkCodec.Encoder(NUM_LANDMARKS, KEYFRAME_INTERVAL, precisionShift);
+    LandmarkCodec.Decoder decoder = new LandmarkCodec.Decoder(NUM_LANDMARKS);
+    float tolerance = ((1 << precisionShift) / 2f + 0.5f) * QUANTUM + 1e-6f;
+    for (int frame = 0; frame < 4 * KEYFRAME_INTERVAL; ++frame) {
+      float[] landmarks = landmarks(frame);
+      long timestampUs = 1_000_000 + frame * FRAME_US;
+      int length = encoder.encode(landmarks, NUM_LANDMARKS, timestampUs, buffer, 0);
+      assertEquals(length, decoder.decode(buffer, 0, length, decoded));
+      if (frame == 0) {
+        assertTrue(decoder.isKeyframe());
+      }
+      assertEquals(timestampUs, decoder.timestampUs());
+      assertEquals(NUM_LANDMARKS, decoder.numLandmarks());
+      for (int i = 0; i < 3 * NUM_LANDMARKS; ++i) {
+        assertEquals("frame " + frame + " value " + i, landmarks[i], decoded[i], tolerance);
+      }
+    }
+  }
+
+  /** Landmarks of a face drifting across the frame, at {@code frame}. */
+  private static float[] landmarks(int frame) {
+    float[] landmarks = new float[3 * NUM_LANDMARKS];
+    for (int i = 0; i < NUM_LANDMARKS; ++i) {
+      double angle = 2 * Math.PI * i / NUM_LANDMARKS;
+      landmarks[3 * i] = (float) (0.3 + 0.01 * frame + 0.1 * Math.cos(angle));
+      landmarks[3 * i + 1] = (float) (0.5 + 0.005 * frame * frame / 10 + 0.15 * Math.sin(angle));
+      landmarks[3 * i + 2] = (float) (-0.02 * Math.sin(angle + frame));
+    }
+    return landmarks;
+  }
+}
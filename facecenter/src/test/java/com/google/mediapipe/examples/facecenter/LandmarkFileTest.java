@@ -0,0 +1,146 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LandmarkFileTest {
+  private static final int NUM_LANDMARKS = 5;
+  private static final long FRAME_US = 33_333;
+
+  private File path;
+
+  @Before
+  public void setUp() throws IOException {
+    path = File.createTempFile("landmarks", ".fclm");
+  }
+
+  @After
+  public void tearDown() {
+    path.delete();
+  }
+
+  @Test
+  public void roundTripsRecordsWithAndWithoutFace() throws IOException {
+    // Three records per write, so the last write is a partial one.
+    try (LandmarkFile.Writer writer = new LandmarkFile.Writer(path, NUM_LANDMARKS, 3)) {
+      for (int i = 0; i < 10; ++i) {
+        writer.write(i * FRAME_US, i / 4, 0.75f, i % 3 == 2 ? null : landmarks(i));
+      }
+      assertEquals(10, writer.numRecords());
+    }
+    assertEquals(
+        LandmarkFile.HEADER_SIZE + 10 * LandmarkFile.recordSize(NUM_LANDMARKS), path.length());
+
+    try (LandmarkFile file = LandmarkFile.open(path)) {
+      assertEquals(NUM_LANDMARKS, file.numLandmarks());
+      assertEquals(10, file.numRecords());
+      ByteBuffer buffer =
+          ByteBuffer.allocate(4 * LandmarkFile.recordSize(NUM_LANDMARKS))
+              .order(ByteOrder.LITTLE_ENDIAN);
+      LandmarkFile.Record record = new LandmarkFile.Record(NUM_LANDMARKS);
+      // Reads from the middle, across what were separate writes.
+      file.read(4, 4, buffer);
+      for (int i = 4; i < 8; ++i) {
+        LandmarkFile.read(buffer, record);
+        assertEquals(i * FRAME_US, record.timestampUs);
+        assertEquals(i / 4, record.sessionId);
+        assertEquals(0.75f, record.aspectRatio, 0);
+        float[] expected = i % 3 == 2 ? new float[3 * NUM_LANDMARKS] : landmarks(i);
+        assertEquals(i % 3 != 2, record.hasFace());
+        for (int j = 0; j < expected.length; ++j) {
+          assertEquals(expected[j], record.landmarks[j], 0);
+        }
+      }
+      assertFalse(buffer.hasRemaining());
+    }
+  }
+
+  @Test
+  public void recordCutOffAtTheEndIsNotCounted() throws IOException {
+    try (LandmarkFile.Writer writer = new LandmarkFile.Writer(path, NUM_LANDMARKS, 1)) {
+      writer.write(0, 1, 1, landmarks(0));
+      writer.write(FRAME_US, 1, 1, landmarks(1));
+    }
+    try (FileOutputStream out = new FileOutputStream(path, true)) {
+      out.write(new byte[LandmarkFile.recordSize(NUM_LANDMARKS) - 1]);
+    }
+    try (LandmarkFile file = LandmarkFile.open(path)) {
+      assertEquals(2, file.numRecords());
+    }
+  }
+
+  @Test
+  public void writerStartsOverAnExistingFile() throws IOException {
+    try (LandmarkFile.Writer writer = new LandmarkFile.Writer(path, NUM_LANDMARKS, 4)) {
+      for (int i = 0; i < 4; ++i) {
+        writer.write(i * FRAME_US, 1, 1, landmarks(i));
+      }
+    }
+    try (LandmarkFile.Writer writer = new LandmarkFile.Writer(path, NUM_LANDMARKS, 4)) {
+      writer.write(0, 2, 1, null);
+    }
+    try (LandmarkFile file = LandmarkFile.open(path)) {
+      assertEquals(1, file.numRecords());
+    }
+  }
+
+  @Test
+  public void readPastTheEndFails() throws IOException {
+    new LandmarkFile.Writer(path, NUM_LANDMARKS, 1).close();
+    ByteBuffer buffer =
+        ByteBuffer.allocate(LandmarkFile.recordSize(NUM_LANDMARKS)).order(ByteOrder.LITTLE_ENDIAN);
+    try (LandmarkFile file = LandmarkFile.open(path)) {
+      assertEquals(0, file.numRecords());
+      file.read(0, 1, buffer);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  @Test
+  public void rejectsAnotherFile() throws IOException {
+    new LandmarkFile.Writer(path, NUM_LANDMARKS, 1).close();
+    try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+      file.write('X');
+    }
+    try {
+      LandmarkFile.open(path).close();
+      fail();
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().startsWith("Not a landmark file"));
+    }
+  }
+
+  @Test
+  public void rejectsACutOffHeader() throws IOException {
+    try (FileOutputStream out = new FileOutputStream(path)) {
+      out.write(new byte[LandmarkFile.HEADER_SIZE - 1]);
+    }
+    try {
+      LandmarkFile.open(path).close();
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  /** Distinct landmarks for frame {@code frame}. */
+  private static float[] landmarks(int frame) {
+    float[] landmarks = new float[3 * NUM_LANDMARKS];
+    for (int i = 0; i < landmarks.length; ++i) {
+      landmarks[i] = frame + i / 100f;
+    }
+    return landmarks;
+  }
+}
@@ -0,0 +1,149 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MotionWakeGateTest {
+  private static final int RESULTS_TO_IDLE = 3;
+  // One pixel per cell, so every pixel of a frame is sampled.
+  private static final int GRID_WIDTH = 4;
+  private static final int GRID_HEIGHT = 3;
+  private static final int CELLS = GRID_WIDTH * GRID_HEIGHT;
+  private static final float WAKE_FRACTION = 0.25f;
+  private static final long SAMPLE_INTERVAL_US = 200_000;
+  private static final int GRAY = 0xff808080;
+
+  private final MotionWakeGate gate =
+      new MotionWakeGate(
+          RESULTS_TO_IDLE, GRID_WIDTH, GRID_HEIGHT, WAKE_FRACTION, SAMPLE_INTERVAL_US);
+  private final List<Boolean> changes = new ArrayList<>();
+  private long nowUs;
+
+  @Before
+  public void setUp() {
+    gate.setIdleListener(changes::add);
+  }
+
+  @Test
+  public void goesIdleAfterConsecutiveEmptyResults() {
+    gate.onResult(false);
+    gate.onResult(false);
+    gate.onResult(true);
+    gate.onResult(false);
+    gate.onResult(false);
+    assertFalse(gate.isIdle());
+    gate.onResult(false);
+    assertTrue(gate.isIdle());
+    assertEquals(1, changes.size());
+    assertTrue(changes.get(0));
+    // Results still in flight don't wake it.
+    gate.onResult(true);
+    assertTrue(gate.isIdle());
+  }
+
+  @Test
+  public void samplesAtMostOneFramePerInterval() {
+    goIdle();
+    assertTrue(gate.shouldSample(nowUs));
+    gate.onIdleFrame(frame(GRAY, 0, 0), GRID_WIDTH, GRID_HEIGHT, nowUs);
+    assertFalse(gate.shouldSample(nowUs + SAMPLE_INTERVAL_US / 2));
+    assertFalse(gate.shouldSample(nowUs + SAMPLE_INTERVAL_US - 1));
+    assertTrue(gate.shouldSample(nowUs + SAMPLE_INTERVAL_US));
+    assertEquals(2, gate.skippedFrames());
+    assertEquals(1, gate.sampledFrames());
+  }
+
+  @Test
+  public void firstSampleOnlyPrimes() {
+    goIdle();
+    // Nothing to compare with yet, however different from the empty buffer the frame is.
+    assertFalse(sample(frame(0xffffffff, 0, 0)));
+    assertTrue(gate.isIdle());
+    assertFalse(sample(frame(0xffffffff, 0, 0)));
+    assertTrue(gate.isIdle());
+    assertEquals(0, gate.wakeCount());
+  }
+
+  @Test
+  public void wakesOnceEnoughCellsMove() {
+    goIdle();
+    sample(frame(GRAY, 0, 0));
+    int wakeCells = (int) Math.ceil(WAKE_FRACTION * CELLS);
+    assertFalse(sample(frame(GRAY, wakeCells - 1, 0x60)));
+    // Back to gray: the same cells move again, still too few.
+    assertFalse(sample(frame(GRAY, 0, 0)));
+    assertTrue(gate.isIdle());
+    assertTrue(sample(frame(GRAY, wakeCells, 0x60)));
+    assertFalse(gate.isIdle());
+    assertEquals(1, gate.wakeCount());
+    assertEquals(2, changes.size());
+    assertFalse(changes.get(1));
+  }
+
+  @Test
+  public void smallLumaChangesAreNoise() {
+    goIdle();
+    sample(frame(GRAY, 0, 0));
+    assertFalse(sample(frame(GRAY, CELLS, MotionWakeGate.CELL_DELTA)));
+    assertTrue(sample(frame(GRAY, CELLS, 2 * MotionWakeGate.CELL_DELTA + 1)));
+  }
+
+  @Test
+  public void goingIdleAgainStartsUnprimed() {
+    goIdle();
+    sample(frame(GRAY, 0, 0));
+    assertTrue(sample(frame(0xffffffff, 0, 0)));
+    goIdle();
+    assertFalse(sample(frame(GRAY, 0, 0)));
+    assertTrue(gate.isIdle());
+  }
+
+  @Test
+  public void framesAreIgnoredWhileAwake() {
+    assertFalse(gate.onIdleFrame(frame(GRAY, 0, 0), GRID_WIDTH, GRID_HEIGHT, nowUs));
+    assertEquals(0, gate.sampledFrames());
+  }
+
+  @Test
+  public void resetWakes() {
+    goIdle();
+    gate.reset();
+    assertFalse(gate.isIdle());
+    gate.onResult(false);
+    gate.onResult(false);
+    assertFalse(gate.isIdle());
+  }
+
+  private void goIdle() {
+    for (int i = 0; i < RESULTS_TO_IDLE; ++i) {
+      gate.onResult(false);
+    }
+    assertTrue(gate.isIdle());
+  }
+
+  /** Samples {@code argb} at the next sample interval. */
+  private boolean sample(int[] argb) {
+    nowUs += SAMPLE_INTERVAL_US;
+    assertTrue(gate.shouldSample(nowUs));
+    return gate.onIdleFrame(argb, GRID_WIDTH, GRID_HEIGHT, nowUs);
+  }
+
+  /** A {@code color} frame whose first {@code brighter} pixels are brighter by {@code delta}. */
+  private static int[] frame(int color, int brighter, int delta) {
+    int[] argb = new int[CELLS];
+    for (int i = 0; i < CELLS; ++i) {
+      argb[i] = color;
+    }
+    int gray = (color & 0xff) + delta;
+    for (int i = 0; i < brighter; ++i) {
+      argb[i] = 0xff000000 | gray << 16 | gray << 8 | gray;
+    }
+    return argb;
+  }
+}
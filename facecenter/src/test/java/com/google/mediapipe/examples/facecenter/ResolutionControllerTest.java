@@ -0,0 +1,182 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResolutionControllerTest {
+  private static final int[] LONG_SIDES = {1280, 960, 640};
+  private static final float TARGET_FPS = 30;
+  private static final long WINDOW_US = 1_000_000;
+  private static final long MIN_HOLD_US = 5_000_000;
+  private static final long MAX_HOLD_US = 20_000_000;
+  // Below DOWN_RATIO, between the ratios, and at UP_RATIO or more of the target.
+  private static final float SLOW_FPS = 20;
+  private static final float MIDDLE_FPS = 26;
+  private static final float FAST_FPS = 30;
+
+  private final ResolutionController controller =
+      new ResolutionController(LONG_SIDES, TARGET_FPS, WINDOW_US, MIN_HOLD_US, MAX_HOLD_US);
+  // Camera time of the next result, and the time of every tier change.
+  private long nowUs;
+  private final List<Long> changesUs = new ArrayList<>();
+  private final List<Integer> tiers = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    controller.setTierListener(
+        tier -> {
+          changesUs.add(nowUs);
+          tiers.add(tier);
+        });
+  }
+
+  @Test
+  public void slowWindowStepsDown() {
+    results(MIDDLE_FPS, 3 * WINDOW_US);
+    assertEquals(0, controller.tier());
+    untilTierChange(SLOW_FPS);
+    assertEquals(1, controller.tier());
+    assertTrue(controller.lastFps() < ResolutionController.DOWN_RATIO * TARGET_FPS);
+    untilTierChange(SLOW_FPS);
+    assertEquals(2, controller.tier());
+    assertEquals(SLOW_FPS, controller.lastFps(), 0.5f);
+    // There is no tier below the last one.
+    results(SLOW_FPS, 3 * WINDOW_US);
+    assertEquals(2, controller.tier());
+    assertEquals(2, tiers.size());
+  }
+
+  @Test
+  public void middleRateHoldsTheTier() {
+    untilTierChange(SLOW_FPS);
+    results(MIDDLE_FPS, 4 * MIN_HOLD_US);
+    assertEquals(1, controller.tier());
+    assertEquals(1, tiers.size());
+  }
+
+  @Test
+  public void fastWindowStepsUpOnlyAfterTheHold() {
+    long downUs = untilTierChange(SLOW_FPS);
+    long upUs = untilTierChange(FAST_FPS);
+    assertEquals(0, controller.tier());
+    assertHeld(MIN_HOLD_US, upUs - downUs);
+  }
+
+  @Test
+  public void failedStepUpDoublesTheHold() {
+    untilTierChange(SLOW_FPS);
+    untilTierChange(FAST_FPS);
+    // Too slow again right after stepping up.
+    long downUs = untilTierChange(SLOW_FPS);
+    long upUs = untilTierChange(FAST_FPS);
+    assertEquals(0, controller.tier());
+    assertHeld(2 * MIN_HOLD_US, upUs - downUs);
+  }
+
+  @Test
+  public void holdStopsGrowingAtTheMaximum() {
+    long downUs = untilTierChange(SLOW_FPS);
+    long holdUs = MIN_HOLD_US;
+    for (int i = 0; i < 4; ++i) {
+      long upUs = untilTierChange(FAST_FPS);
+      assertHeld(holdUs, upUs - downUs);
+      downUs = untilTierChange(SLOW_FPS);
+      holdUs = Math.min(2 * holdUs, MAX_HOLD_US);
+    }
+    assertEquals(MAX_HOLD_US, holdUs);
+  }
+
+  @Test
+  public void stepDownLongAfterAStepUpResetsTheHold() {
+    untilTierChange(SLOW_FPS);
+    untilTierChange(FAST_FPS);
+    untilTierChange(SLOW_FPS);
+    untilTierChange(FAST_FPS);
+    // Fast for longer than the doubled hold before slowing down again.
+    results(FAST_FPS, 3 * MIN_HOLD_US);
+    long downUs = untilTierChange(SLOW_FPS);
+    long upUs = untilTierChange(FAST_FPS);
+    assertHeld(MIN_HOLD_US, upUs - downUs);
+  }
+
+  @Test
+  public void gapStartsANewWindow() {
+    results(FAST_FPS, 2 * WINDOW_US);
+    // Idle longer than a window: the results on either side of the gap are not one slow window.
+    nowUs += 3 * WINDOW_US;
+    results(FAST_FPS, 2 * WINDOW_US);
+    assertEquals(0, controller.tier());
+    assertTrue(tiers.isEmpty());
+  }
+
+  @Test
+  public void gapShorterThanAWindowCountsAsSlow() {
+    results(FAST_FPS, 2 * WINDOW_US);
+    nowUs += WINDOW_US / 2;
+    results(FAST_FPS, 2 * WINDOW_US);
+    assertEquals(1, controller.tier());
+  }
+
+  @Test
+  public void sizeIsScaledDownToTheTier() {
+    assertEquals(1280, controller.width(1920, 1080));
+    assertEquals(720, controller.height(1920, 1080));
+    untilTierChange(SLOW_FPS);
+    assertEquals(960, controller.height(1080, 1920));
+    assertEquals(540, controller.width(1080, 1920));
+    // Never scaled up.
+    assertEquals(480, controller.width(480, 640));
+  }
+
+  @Test
+  public void resetGoesBackToTheLargestTier() {
+    results(SLOW_FPS, 3 * WINDOW_US);
+    assertEquals(2, controller.tier());
+    controller.reset();
+    assertEquals(0, controller.tier());
+    assertEquals(0, controller.lastFps(), 0);
+  }
+
+  @Test
+  public void rejectsLaddersThatDoNotDecrease() {
+    int[][] ladders = {{}, {640, 640}, {640, 1280}};
+    for (int[] ladder : ladders) {
+      try {
+        new ResolutionController(ladder, TARGET_FPS, WINDOW_US, MIN_HOLD_US, MAX_HOLD_US);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  /** Reports results at {@code fps} until the tier changes and returns when it did. */
+  private long untilTierChange(float fps) {
+    int changes = tiers.size();
+    long endUs = nowUs + 2 * MAX_HOLD_US;
+    while (tiers.size() == changes) {
+      assertTrue("no tier change at " + fps + " fps", nowUs < endUs);
+      results(fps, 1);
+    }
+    return changesUs.get(changes);
+  }
+
+  /** Asserts a step up came {@code holdUs} after the step down, give or take a window. */
+  private static void assertHeld(long holdUs, long heldUs) {
+    assertTrue("held " + heldUs, heldUs >= holdUs);
+    assertTrue("held " + heldUs, heldUs <= holdUs + 2 * WINDOW_US);
+  }
+
+  /** Reports results at {@code fps} for {@code durationUs} of camera time. */
+  private void results(float fps, long durationUs) {
+    long periodUs = Math.round(1_000_000 / fps);
+    for (long endUs = nowUs + durationUs; nowUs < endUs; nowUs += periodUs) {
+      controller.onResult(nowUs);
+    }
+  }
+}
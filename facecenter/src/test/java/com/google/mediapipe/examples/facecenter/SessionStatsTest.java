@@ -0,0 +1,131 @@
+package com.google.mediapipe.examples.facecenter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SessionStatsTest {
+  private static final int NUM_RULES = 2;
+  private static final int NUM_FRAMES = 40;
+  private static final long FRAME_US = 33_333;
+
+  @Test
+  public void countsEveryKindOfFrame() {
+    SessionStats stats = new SessionStats(7, NUM_RULES);
+    stats.addEmpty(100);
+    stats.addFace(200, face(0.4, 2, true), CapturePolicy.ACCEPTED);
+    stats.addFace(300, face(0.6, 5, false), 1);
+    assertEquals(3, stats.frames);
+    assertEquals(2, stats.faceFrames);
+    assertEquals(1, stats.forwardFrames);
+    assertEquals(1, stats.acceptedFrames);
+    assertArrayEquals(new long[] {0, 1}, stats.rejections);
+    assertEquals(100, stats.firstTimestampUs);
+    assertEquals(300, stats.lastTimestampUs);
+    assertEquals(0.5, stats.meanCenter(0), 1e-9);
+    assertEquals(0.3, stats.min[0], 1e-9);
+    assertEquals(0.7, stats.max[0], 1e-9);
+    assertEquals(200, stats.bestTimestampUs);
+    assertEquals(2, stats.bestError, 1e-9);
+  }
+
+  @Test
+  public void sessionWithoutFacesHasNoCenterOrBest() {
+    SessionStats stats = new SessionStats(1, NUM_RULES);
+    stats.addEmpty(100);
+    assertTrue(Double.isNaN(stats.meanCenter(0)));
+    assertEquals(-1, stats.bestTimestampUs);
+  }
+
+  @Test
+  public void mergedPartsEqualTheWhole() {
+    SessionStats whole = new SessionStats(1, NUM_RULES);
+    add(whole, 0, NUM_FRAMES);
+    for (int split : new int[] {0, 1, 13, 20, NUM_FRAMES - 1, NUM_FRAMES}) {
+      SessionStats first = new SessionStats(1, NUM_RULES);
+      add(first, 0, split);
+      SessionStats second = new SessionStats(1, NUM_RULES);
+      add(second, split, NUM_FRAMES);
+      first.merge(second);
+      assertStatsEqual("split at " + split, whole, first);
+    }
+  }
+
+  @Test
+  public void mergeOrderAndGroupingDoNotMatter() {
+    SessionStats whole = new SessionStats(1, NUM_RULES);
+    add(whole, 0, NUM_FRAMES);
+    SessionStats[] parts = new SessionStats[4];
+    for (int i = 0; i < parts.length; ++i) {
+      parts[i] = new SessionStats(1, NUM_RULES);
+      add(parts[i], i * NUM_FRAMES / 4, (i + 1) * NUM_FRAMES / 4);
+    }
+    // (3 + 1) + (2 + 0)
+    parts[3].merge(parts[1]);
+    parts[2].merge(parts[0]);
+    parts[3].merge(parts[2]);
+    assertStatsEqual("merged out of order", whole, parts[3]);
+  }
+
+  @Test
+  public void tiedBestGoesToTheEarlierFrame() {
+    SessionStats early = new SessionStats(1, NUM_RULES);
+    early.addFace(100, face(0.5, 1, true), CapturePolicy.ACCEPTED);
+    SessionStats late = new SessionStats(1, NUM_RULES);
+    late.addFace(200, face(0.5, 1, true), CapturePolicy.ACCEPTED);
+    late.merge(early);
+    assertEquals(100, late.bestTimestampUs);
+    early.merge(late);
+    assertEquals(100, early.bestTimestampUs);
+  }
+
+  /** Adds frames {@code [from, to)} of a session whose pose error dips to 0.5 at frame 23. */
+  private static void add(SessionStats stats, int from, int to) {
+    for (int i = from; i < to; ++i) {
+      long timestampUs = i * FRAME_US;
+      if (i % 5 == 4) {
+        stats.addEmpty(timestampUs);
+        continue;
+      }
+      double error = i == 23 ? 0.5 : 1 + i % 7;
+      int rejectedBy = i % 3 == 0 ? CapturePolicy.ACCEPTED : i % 3 - 1;
+      stats.addFace(timestampUs, face(0.3 + i / 100.0, error, error < 3), rejectedBy);
+    }
+  }
+
+  /** A face centered at ({@code x}, 0.5) with a pose {@code error} degrees off forward. */
+  private static FaceAnalysis face(double x, double error, boolean isForward) {
+    FaceAnalysis analysis = new FaceAnalysis();
+    analysis.avg[0] = x;
+    analysis.avg[1] = 0.5;
+    analysis.avg[2] = -x / 10;
+    analysis.min[0] = x - 0.1;
+    analysis.min[1] = 0.4;
+    analysis.max[0] = x + 0.1;
+    analysis.max[1] = 0.6;
+    System.arraycopy(FaceAnalyzer.FORWARD_ANGLE_Z, 0, analysis.angleZ, 0, 3);
+    analysis.angleZ[1] += error;
+    analysis.isForward = isForward;
+    return analysis;
+  }
+
+  static void assertStatsEqual(String message, SessionStats expected, SessionStats actual) {
+    assertEquals(message, expected.sessionId, actual.sessionId);
+    assertEquals(message, expected.frames, actual.frames);
+    assertEquals(message, expected.faceFrames, actual.faceFrames);
+    assertEquals(message, expected.forwardFrames, actual.forwardFrames);
+    assertEquals(message, expected.acceptedFrames, actual.acceptedFrames);
+    assertArrayEquals(expected.rejections, actual.rejections);
+    assertEquals(message, expected.firstTimestampUs, actual.firstTimestampUs);
+    assertEquals(message, expected.lastTimestampUs, actual.lastTimestampUs);
+    // Sums may round differently depending on the order they were added in.
+    assertArrayEquals(expected.centerSum, actual.centerSum, 1e-9);
+    assertArrayEquals(expected.min, actual.min, 0);
+    assertArrayEquals(expected.max, actual.max, 0);
+    assertEquals(message, expected.bestTimestampUs, actual.bestTimestampUs);
+    assertEquals(message, expected.bestError, actual.bestError, 0);
+    assertArrayEquals(expected.bestAngle, actual.bestAngle, 0);
+  }
+}
@@ -0,0 +1,46 @@
+package com.google.mediapipe.examples.facedetection;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import com.google.mediapipe.examples.facecenter.InferenceGovernor;
+
+/**
+ * Reads the thermal status from the {@link PowerManager}, on API 29 and up, and the battery from
+ * the sticky {@link Intent#ACTION_BATTERY_CHANGED} broadcast.
+ */
+public class AndroidConditionSource implements InferenceGovernor.ConditionSource {
+  private final Context context;
+  private final PowerManager powerManager;
+  private final IntentFilter batteryFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+
+  public AndroidConditionSource(Context context) {
+    this.context = context.getApplicationContext();
+    powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+  }
+
+  @Override
+  public void read(InferenceGovernor.Conditions out) {
+    out.thermalStatus =
+        Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && powerManager != null
+            ? powerManager.getCurrentThermalStatus()
+            : PowerManager.THERMAL_STATUS_NONE;
+    // A null receiver just returns the last battery broadcast.
+    Intent battery = context.registerReceiver(null, batteryFilter);
+    if (battery == null) {
+      out.batteryLevel = 1;
+      out.charging = false;
+      return;
+    }
+    int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+    int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+    out.batteryLevel = level >= 0 && scale > 0 ? (float) level / scale : 1;
+    int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+    out.charging =
+        status == BatteryManager.BATTERY_STATUS_CHARGING
+            || status == BatteryManager.BATTERY_STATUS_FULL;
+  }
+}
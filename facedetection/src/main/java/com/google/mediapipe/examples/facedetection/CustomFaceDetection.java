@@ -0,0 +1,39 @@
+package com.google.mediapipe.examples.facedetection;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.google.mediapipe.framework.AndroidPacketGetter;
+import com.google.mediapipe.framework.Packet;
+import com.google.mediapipe.framework.TextureFrame;
+import com.google.mediapipe.solutions.facedetection.FaceDetection;
+import com.google.mediapipe.solutions.facedetection.FaceDetectionOptions;
+
+public class CustomFaceDetection extends FaceDetection {
+  public CustomFaceDetection(Context context, FaceDetectionOptions options) {
+    super(context, options);
+  }
+
+  /** Reads {@code imageObj} back into a {@link Bitmap} and releases it without detecting faces. */
+  public Bitmap readBitmap(TextureFrame imageObj) {
+    Packet packet = this.packetCreator.createImage(imageObj);
+    try {
+      return AndroidPacketGetter.getBitmapFromRgba(packet);
+    } finally {
+      packet.release();
+    }
+  }
+
+  /**
+   * Like {@link #readBitmap(TextureFrame)}, but into {@code out}, a mutable ARGB_8888 bitmap of
+   * the frame's size, so that a bitmap can be reused from frame to frame.
+   */
+  public void readBitmap(TextureFrame imageObj, Bitmap out) {
+    Packet packet = this.packetCreator.createImage(imageObj);
+    try {
+      AndroidPacketGetter.copyRgbaToBitmap(packet, out);
+    } finally {
+      packet.release();
+    }
+  }
+}
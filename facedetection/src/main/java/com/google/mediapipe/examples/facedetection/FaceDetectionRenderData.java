@@ -0,0 +1,65 @@
+package com.google.mediapipe.examples.facedetection;
+
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
+import com.google.mediapipe.formats.proto.DetectionProto.Detection;
+import com.google.mediapipe.solutions.facedetection.FaceDetectionResult;
+import com.google.mediapipe.solutions.facedetection.FaceKeypoint;
+import java.util.List;
+
+/**
+ * Detections of one result, packed for {@link FaceDetectionResultGlRenderer} and handed over
+ * through a {@link TripleBuffer}.
+ */
+public class FaceDetectionRenderData {
+  /** Floats per face in {@link #keypoints}. */
+  public static final int KEYPOINT_STRIDE = 2 * FaceKeypoint.NUM_KEY_POINTS;
+
+  /** Packed (x, y) keypoints, face {@code i} starting at {@code i * KEYPOINT_STRIDE}. */
+  public final float[] keypoints;
+  /** Packed (left, top, right, bottom) boxes, face {@code i} starting at {@code 4 * i}. */
+  public final float[] boxes;
+  public final boolean[] hasBox;
+  public int numFaces;
+
+  public FaceDetectionRenderData(int maxFaces) {
+    keypoints = new float[maxFaces * KEYPOINT_STRIDE];
+    boxes = new float[4 * maxFaces];
+    hasBox = new boolean[maxFaces];
+  }
+
+  public void set(FaceDetectionResult result) {
+    List<Detection> detections = result.multiFaceDetections();
+    numFaces = 0;
+    for (int i = 0; i < detections.size() && numFaces < hasBox.length; ++i) {
+      Detection detection = detections.get(i);
+      if (!detection.hasLocationData()) {
+        continue;
+      }
+      int offset = numFaces * KEYPOINT_STRIDE;
+      for (int k = 0; k < FaceKeypoint.NUM_KEY_POINTS; ++k) {
+        keypoints[offset + 2 * k] = detection.getLocationData().getRelativeKeypoints(k).getX();
+        keypoints[offset + 2 * k + 1] = detection.getLocationData().getRelativeKeypoints(k).getY();
+      }
+      hasBox[numFaces] = detection.getLocationData().hasRelativeBoundingBox();
+      if (hasBox[numFaces]) {
+        float left = detection.getLocationData().getRelativeBoundingBox().getXmin();
+        float top = detection.getLocationData().getRelativeBoundingBox().getYmin();
+        boxes[4 * numFaces] = left;
+        boxes[4 * numFaces + 1] = top;
+        boxes[4 * numFaces + 2] =
+            left + detection.getLocationData().getRelativeBoundingBox().getWidth();
+        boxes[4 * numFaces + 3] =
+            top + detection.getLocationData().getRelativeBoundingBox().getHeight();
+      }
+      numFaces++;
+    }
+  }
+
+  /** Creates the exchange between the result listener and the renderer. */
+  public static TripleBuffer<FaceDetectionRenderData> newTripleBuffer(int maxFaces) {
+    return new TripleBuffer<>(
+        new FaceDetectionRenderData(maxFaces),
+        new FaceDetectionRenderData(maxFaces),
+        new FaceDetectionRenderData(maxFaces));
+  }
+}
@@ -15,13 +15,15 @@
 package com.google.mediapipe.examples.facedetection;
 
 import android.opengl.GLES20;
+import com.google.mediapipe.examples.facecenter.LandmarkChangeDetector;
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
 import com.google.mediapipe.solutioncore.ResultGlRenderer;
 import com.google.mediapipe.solutions.facedetection.FaceDetectionResult;
 import com.google.mediapipe.solutions.facedetection.FaceKeypoint;
-import com.google.mediapipe.formats.proto.DetectionProto.Detection;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** A custom implementation of {@link ResultGlRenderer} to render {@link FaceDetectionResult}. */
 public class FaceDetectionResultGlRenderer implements ResultGlRenderer<FaceDetectionResult> {
@@ -31,6 +33,8 @@ public class FaceDetectionResultGlRenderer implements ResultGlRenderer<FaceDetec
   private static final float KEYPOINT_SIZE = 16f;
   private static final float[] BBOX_COLOR = new float[] {0f, 1f, 0f, 1f};
   private static final int BBOX_THICKNESS = 8;
+  // Keypoint or box movement, in pixels, below which the uploaded vertices are reused.
+  private static final float CHANGE_THRESHOLD_PIXELS = 1f;
   private static final String VERTEX_SHADER =
       "uniform mat4 uProjectionMatrix;\n"
           + "uniform float uPointSize;\n"
@@ -50,6 +54,36 @@ public class FaceDetectionResultGlRenderer implements ResultGlRenderer<FaceDetec
   private int pointSizeHandle;
   private int projectionMatrixHandle;
   private int colorHandle;
+  private int vertexBufferObject;
+
+  private final TripleBuffer<FaceDetectionRenderData> renderData;
+  // Set while a result handed to the surface view waits to be drawn, see tryQueueFrame().
+  private final AtomicBoolean frameQueued = new AtomicBoolean();
+  // Keypoints of all faces followed by their box lines, uploaded to the vertex buffer object.
+  private final FloatBuffer vertexBuffer;
+  // Keypoints then boxes of all faces, as compared by the change detector.
+  private final float[] positions;
+  private final int[] viewport = new int[4];
+  private final LandmarkChangeDetector changeDetector;
+  private int keypointCount;
+  private int boxVertexCount;
+
+  /**
+   * @param renderData detections to draw, published by the result listener.
+   * @param maxFaces the most faces {@code renderData} holds.
+   */
+  public FaceDetectionResultGlRenderer(
+      TripleBuffer<FaceDetectionRenderData> renderData, int maxFaces) {
+    this.renderData = renderData;
+    // A box takes 4 lines of 2 (x, y) vertices.
+    vertexBuffer =
+        ByteBuffer.allocateDirect(
+                maxFaces * (FaceDetectionRenderData.KEYPOINT_STRIDE + 4 * 2 * 2) * 4)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+    positions = new float[maxFaces * (FaceDetectionRenderData.KEYPOINT_STRIDE + 4)];
+    changeDetector = new LandmarkChangeDetector(positions.length, 2, CHANGE_THRESHOLD_PIXELS);
+  }
 
   private int loadShader(int type, String shaderCode) {
     int shader = GLES20.glCreateShader(type);
@@ -70,6 +104,22 @@ public class FaceDetectionResultGlRenderer implements ResultGlRenderer<FaceDetec
     pointSizeHandle = GLES20.glGetUniformLocation(program, "uPointSize");
     projectionMatrixHandle = GLES20.glGetUniformLocation(program, "uProjectionMatrix");
     colorHandle = GLES20.glGetUniformLocation(program, "uColor");
+    int[] buffers = new int[1];
+    GLES20.glGenBuffers(1, buffers, 0);
+    vertexBufferObject = buffers[0];
+    changeDetector.invalidate();
+    frameQueued.set(false);
+  }
+
+  /**
+   * Reserves the next frame for a new result; {@code false} while the previous one hasn't been
+   * drawn yet. Only after a successful call may the result listener publish the overlay and hand
+   * the result, whose camera texture is drawn under it, to the surface view, so that the overlay
+   * drawn is always the one of the texture drawn with it. Results arriving in between are not
+   * drawn at all.
+   */
+  public boolean tryQueueFrame() {
+    return frameQueued.compareAndSet(false, true);
   }
 
   @Override
@@ -77,70 +127,82 @@ public class FaceDetectionResultGlRenderer implements ResultGlRenderer<FaceDetec
     if (result == null) {
       return;
     }
+    FaceDetectionRenderData data = renderData.acquire();
+    // Once the overlay of this frame is taken, the next one may be published.
+    frameQueued.set(false);
     GLES20.glUseProgram(program);
     GLES20.glUniformMatrix4fv(projectionMatrixHandle, 1, false, projectionMatrix, 0);
     GLES20.glUniform1f(pointSizeHandle, KEYPOINT_SIZE);
-    int numDetectedFaces = result.multiFaceDetections().size();
-    for (int i = 0; i < numDetectedFaces; ++i) {
-      drawDetection(result.multiFaceDetections().get(i));
+    GLES20.glEnableVertexAttribArray(positionHandle);
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferObject);
+    GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, viewport, 0);
+    if (changeDetector.update(positions, gatherPositions(data), viewport[2], viewport[3])) {
+      buildVertices(data);
+      GLES20.glBufferData(
+          GLES20.GL_ARRAY_BUFFER, vertexBuffer.limit() * 4, vertexBuffer, GLES20.GL_DYNAMIC_DRAW);
     }
+    GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, 0);
+    GLES20.glUniform4fv(colorHandle, 1, KEYPOINT_COLOR, 0);
+    GLES20.glDrawArrays(GLES20.GL_POINTS, 0, keypointCount);
+    if (boxVertexCount > 0) {
+      GLES20.glUniform4fv(colorHandle, 1, BBOX_COLOR, 0);
+      GLES20.glLineWidth(BBOX_THICKNESS);
+      GLES20.glDrawArrays(GLES20.GL_LINES, keypointCount, boxVertexCount);
+    }
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
   }
 
   /**
-   * Deletes the shader program.
+   * Deletes the shader program and the vertex buffer object.
    *
    * <p>This is only necessary if one wants to release the program while keeping the context around.
    */
   public void release() {
     GLES20.glDeleteProgram(program);
+    GLES20.glDeleteBuffers(1, new int[] {vertexBufferObject}, 0);
   }
 
-  private void drawDetection(Detection detection) {
-    if (!detection.hasLocationData()) {
-      return;
-    }
-    // Draw keypoints.
-    float[] points = new float[FaceKeypoint.NUM_KEY_POINTS * 2];
-    for (int i = 0; i < FaceKeypoint.NUM_KEY_POINTS; ++i) {
-      points[2 * i] = detection.getLocationData().getRelativeKeypoints(i).getX();
-      points[2 * i + 1] = detection.getLocationData().getRelativeKeypoints(i).getY();
-    }
-    GLES20.glUniform4fv(colorHandle, 1, KEYPOINT_COLOR, 0);
-    FloatBuffer vertexBuffer =
-        ByteBuffer.allocateDirect(points.length * 4)
-            .order(ByteOrder.nativeOrder())
-            .asFloatBuffer()
-            .put(points);
-    vertexBuffer.position(0);
-    GLES20.glEnableVertexAttribArray(positionHandle);
-    GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-    GLES20.glDrawArrays(GLES20.GL_POINTS, 0, FaceKeypoint.NUM_KEY_POINTS);
-    if (!detection.getLocationData().hasRelativeBoundingBox()) {
-      return;
+  /** Fraction of frames that drew the previously uploaded vertices again. */
+  public float uploadSkipRate() {
+    return changeDetector.skipRate();
+  }
+
+  /**
+   * Copies the keypoints and boxes of all faces into {@link #positions}; faces without a box get
+   * an empty one, so a box appearing counts as a change.
+   *
+   * @return number of floats copied.
+   */
+  private int gatherPositions(FaceDetectionRenderData data) {
+    int length = data.numFaces * FaceDetectionRenderData.KEYPOINT_STRIDE;
+    System.arraycopy(data.keypoints, 0, positions, 0, length);
+    for (int i = 0; i < data.numFaces; ++i) {
+      for (int j = 0; j < 4; ++j) {
+        positions[length++] = data.hasBox[i] ? data.boxes[4 * i + j] : 0f;
+      }
     }
-    // Draw bounding box.
-    float left = detection.getLocationData().getRelativeBoundingBox().getXmin();
-    float top = detection.getLocationData().getRelativeBoundingBox().getYmin();
-    float right = left + detection.getLocationData().getRelativeBoundingBox().getWidth();
-    float bottom = top + detection.getLocationData().getRelativeBoundingBox().getHeight();
-    drawLine(top, left, top, right);
-    drawLine(bottom, left, bottom, right);
-    drawLine(top, left, bottom, left);
-    drawLine(top, right, bottom, right);
+    return length;
   }
 
-  private void drawLine(float y1, float x1, float y2, float x2) {
-    GLES20.glUniform4fv(colorHandle, 1, BBOX_COLOR, 0);
-    GLES20.glLineWidth(BBOX_THICKNESS);
-    float[] vertex = {x1, y1, x2, y2};
-    FloatBuffer vertexBuffer =
-        ByteBuffer.allocateDirect(vertex.length * 4)
-            .order(ByteOrder.nativeOrder())
-            .asFloatBuffer()
-            .put(vertex);
-    vertexBuffer.position(0);
-    GLES20.glEnableVertexAttribArray(positionHandle);
-    GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-    GLES20.glDrawArrays(GLES20.GL_LINES, 0, 2);
+  /** Fills {@link #vertexBuffer} with the keypoints of all faces, then their box lines. */
+  private void buildVertices(FaceDetectionRenderData data) {
+    vertexBuffer.clear();
+    vertexBuffer.put(data.keypoints, 0, data.numFaces * FaceDetectionRenderData.KEYPOINT_STRIDE);
+    keypointCount = data.numFaces * FaceKeypoint.NUM_KEY_POINTS;
+    for (int i = 0; i < data.numFaces; ++i) {
+      if (!data.hasBox[i]) {
+        continue;
+      }
+      float left = data.boxes[4 * i];
+      float top = data.boxes[4 * i + 1];
+      float right = data.boxes[4 * i + 2];
+      float bottom = data.boxes[4 * i + 3];
+      vertexBuffer.put(left).put(top).put(right).put(top);
+      vertexBuffer.put(left).put(bottom).put(right).put(bottom);
+      vertexBuffer.put(left).put(top).put(left).put(bottom);
+      vertexBuffer.put(right).put(top).put(right).put(bottom);
+    }
+    boxVertexCount = vertexBuffer.position() / 2 - keypointCount;
+    vertexBuffer.flip();
   }
 }
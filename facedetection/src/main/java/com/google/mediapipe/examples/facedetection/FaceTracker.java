@@ -0,0 +1,270 @@
+package com.google.mediapipe.examples.facedetection;
+
+/**
+ * Gives face detections a stable identity across frames.
+ *
+ * <p>New bounding boxes are matched to existing tracks by IoU with a greedy assignment: the pair
+ * with the highest IoU is matched first, then the next highest among the remaining tracks and
+ * detections, until no pair reaches {@code minIou}. Boxes that don't overlap are never matched,
+ * even with a {@code minIou} of 0. Unmatched detections start new tracks and tracks that go
+ * unmatched for more than {@code maxMisses} updates are dropped, so faces survive frames where
+ * detection was skipped or missed. Between detections, {@link #predictBox} moves each track along
+ * its last observed velocity.
+ *
+ * <p>Bounding boxes are packed as consecutive (xmin, ymin, width, height) quadruples in normalized
+ * coordinates, like {@code RelativeBoundingBox}. All working storage, including the IoU matrix, is
+ * allocated up front; {@link #update} allocates nothing. Not thread-safe.
+ */
+public class FaceTracker {
+  /** Returned by {@link #trackIdForDetection} for detections beyond {@code maxDetections}. */
+  public static final int NO_TRACK = -1;
+
+  // Weight of the newest observation in the smoothed velocity.
+  private static final float VELOCITY_SMOOTHING = 0.5f;
+
+  private final int maxTracks;
+  private final int maxDetections;
+  private final float minIou;
+  private final int maxMisses;
+
+  // Per-track state, indexed by slot. Boxes are stored as (left, top, right, bottom).
+  private final boolean[] active;
+  private final int[] ids;
+  private final int[] misses;
+  private final long[] updatedUs;
+  private final float[] boxes;
+  private final float[] velocities;
+
+  // Per-update scratch.
+  private final float[] predicted;
+  private final float[] iou;
+  private final boolean[] trackMatched;
+  private final int[] detectionSlots;
+
+  private int nextId;
+  private int lastDetectionCount;
+
+  public FaceTracker(int maxTracks, int maxDetections, float minIou, int maxMisses) {
+    this.maxTracks = maxTracks;
+    this.maxDetections = maxDetections;
+    this.minIou = minIou;
+    this.maxMisses = maxMisses;
+    active = new boolean[maxTracks];
+    ids = new int[maxTracks];
+    misses = new int[maxTracks];
+    updatedUs = new long[maxTracks];
+    boxes = new float[4 * maxTracks];
+    velocities = new float[4 * maxTracks];
+    predicted = new float[4 * maxTracks];
+    iou = new float[maxTracks * maxDetections];
+    trackMatched = new boolean[maxTracks];
+    detectionSlots = new int[maxDetections];
+  }
+
+  /**
+   * Matches one frame of detections against the current tracks.
+   *
+   * @param detections packed (xmin, ymin, width, height) boxes; only the first {@code
+   *     maxDetections} are considered.
+   * @param count number of boxes in {@code detections}.
+   * @param timestampUs timestamp of the frame in microseconds.
+   */
+  public void update(float[] detections, int count, long timestampUs) {
+    count = Math.min(count, maxDetections);
+    lastDetectionCount = count;
+
+    for (int t = 0; t < maxTracks; ++t) {
+      trackMatched[t] = false;
+      if (!active[t]) {
+        continue;
+      }
+      predictSlot(t, timestampUs, predicted, 4 * t);
+      for (int d = 0; d < count; ++d) {
+        iou[t * maxDetections + d] = iou(predicted, 4 * t, detections, 4 * d);
+      }
+    }
+    for (int d = 0; d < count; ++d) {
+      detectionSlots[d] = -1;
+    }
+
+    // Greedy assignment, best pair first.
+    while (true) {
+      int bestTrack = -1, bestDetection = -1;
+      float best = minIou;
+      for (int t = 0; t < maxTracks; ++t) {
+        if (!active[t] || trackMatched[t]) {
+          continue;
+        }
+        for (int d = 0; d < count; ++d) {
+          float value = iou[t * maxDetections + d];
+          if (detectionSlots[d] < 0 && value > 0 && value >= best) {
+            best = value;
+            bestTrack = t;
+            bestDetection = d;
+          }
+        }
+      }
+      if (bestTrack < 0) {
+        break;
+      }
+      trackMatched[bestTrack] = true;
+      detectionSlots[bestDetection] = bestTrack;
+      observe(bestTrack, detections, 4 * bestDetection, timestampUs);
+    }
+
+    for (int t = 0; t < maxTracks; ++t) {
+      if (active[t] && !trackMatched[t] && ++misses[t] > maxMisses) {
+        active[t] = false;
+      }
+    }
+    for (int d = 0; d < count; ++d) {
+      if (detectionSlots[d] < 0) {
+        detectionSlots[d] = startTrack(detections, 4 * d, timestampUs);
+      }
+    }
+  }
+
+  /**
+   * Marks a frame in which detection was skipped, e.g. when only running the detector every few
+   * frames. Tracks are kept alive and keep moving along their last velocity.
+   */
+  public void skip() {
+    lastDetectionCount = 0;
+  }
+
+  /** Returns the track ID of detection {@code index} from the last {@link #update}. */
+  public int trackIdForDetection(int index) {
+    if (index >= lastDetectionCount || detectionSlots[index] < 0) {
+      return NO_TRACK;
+    }
+    return ids[detectionSlots[index]];
+  }
+
+  /**
+   * Returns the index of the detection from the last {@link #update} that belongs to the oldest
+   * live track, or -1 if there were no detections.
+   */
+  public int oldestTrackDetection() {
+    int bestIndex = -1;
+    int bestId = Integer.MAX_VALUE;
+    for (int d = 0; d < lastDetectionCount; ++d) {
+      int slot = detectionSlots[d];
+      if (slot >= 0 && ids[slot] < bestId) {
+        bestId = ids[slot];
+        bestIndex = d;
+      }
+    }
+    return bestIndex;
+  }
+
+  /** Returns the number of tracks slots; pass indices below this to the per-slot accessors. */
+  public int capacity() {
+    return maxTracks;
+  }
+
+  public boolean isActive(int slot) {
+    return active[slot];
+  }
+
+  public int trackId(int slot) {
+    return ids[slot];
+  }
+
+  /** Returns how many updates in a row the track in {@code slot} went undetected. */
+  public int misses(int slot) {
+    return misses[slot];
+  }
+
+  /**
+   * Writes the box of the track in {@code slot}, extrapolated to {@code timestampUs}, to {@code
+   * out} as (xmin, ymin, width, height).
+   */
+  public void predictBox(int slot, long timestampUs, float[] out, int offset) {
+    predictSlot(slot, timestampUs, out, offset);
+    out[offset + 2] -= out[offset];
+    out[offset + 3] -= out[offset + 1];
+  }
+
+  /** Drops all tracks. Track IDs keep increasing. */
+  public void clear() {
+    for (int t = 0; t < maxTracks; ++t) {
+      active[t] = false;
+    }
+    lastDetectionCount = 0;
+  }
+
+  private int startTrack(float[] detections, int offset, long timestampUs) {
+    int slot = -1;
+    for (int t = 0; t < maxTracks; ++t) {
+      if (!active[t]) {
+        slot = t;
+        break;
+      }
+    }
+    if (slot < 0) {
+      return -1;
+    }
+    active[slot] = true;
+    ids[slot] = nextId++;
+    misses[slot] = 0;
+    updatedUs[slot] = timestampUs;
+    toCorners(detections, offset, boxes, 4 * slot);
+    for (int i = 0; i < 4; ++i) {
+      velocities[4 * slot + i] = 0;
+    }
+    return slot;
+  }
+
+  private void observe(int slot, float[] detections, int offset, long timestampUs) {
+    int base = 4 * slot;
+    long dt = timestampUs - updatedUs[slot];
+    float left = detections[offset], top = detections[offset + 1];
+    float right = left + detections[offset + 2], bottom = top + detections[offset + 3];
+    if (dt > 0) {
+      smoothVelocity(base, left, dt);
+      smoothVelocity(base + 1, top, dt);
+      smoothVelocity(base + 2, right, dt);
+      smoothVelocity(base + 3, bottom, dt);
+    }
+    boxes[base] = left;
+    boxes[base + 1] = top;
+    boxes[base + 2] = right;
+    boxes[base + 3] = bottom;
+    updatedUs[slot] = timestampUs;
+    misses[slot] = 0;
+  }
+
+  private void smoothVelocity(int index, float value, long dtUs) {
+    float observed = (value - boxes[index]) / dtUs;
+    velocities[index] += VELOCITY_SMOOTHING * (observed - velocities[index]);
+  }
+
+  private void predictSlot(int slot, long timestampUs, float[] out, int offset) {
+    long dt = Math.max(0, timestampUs - updatedUs[slot]);
+    for (int i = 0; i < 4; ++i) {
+      out[offset + i] = boxes[4 * slot + i] + velocities[4 * slot + i] * dt;
+    }
+  }
+
+  private static void toCorners(float[] src, int srcOffset, float[] dst, int dstOffset) {
+    dst[dstOffset] = src[srcOffset];
+    dst[dstOffset + 1] = src[srcOffset + 1];
+    dst[dstOffset + 2] = src[srcOffset] + src[srcOffset + 2];
+    dst[dstOffset + 3] = src[srcOffset + 1] + src[srcOffset + 3];
+  }
+
+  /** IoU of a (left, top, right, bottom) box and a (xmin, ymin, width, height) box. */
+  private static float iou(float[] corners, int a, float[] detections, int b) {
+    float left = detections[b], top = detections[b + 1];
+    float right = left + detections[b + 2], bottom = top + detections[b + 3];
+    float iw = Math.min(corners[a + 2], right) - Math.max(corners[a], left);
+    float ih = Math.min(corners[a + 3], bottom) - Math.max(corners[a + 1], top);
+    if (iw <= 0 || ih <= 0) {
+      return 0;
+    }
+    float intersection = iw * ih;
+    float areaA = (corners[a + 2] - corners[a]) * (corners[a + 3] - corners[a + 1]);
+    float areaB = (right - left) * (bottom - top);
+    return intersection / (areaA + areaB - intersection);
+  }
+}
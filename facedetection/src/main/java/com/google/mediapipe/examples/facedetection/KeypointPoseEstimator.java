@@ -0,0 +1,94 @@
+package com.google.mediapipe.examples.facedetection;
+
+/**
+ * Estimates head yaw and roll, face center and capture crop from the six face detection
+ * keypoints, as a cheap stand-in for the full face mesh center finder.
+ *
+ * <p>Keypoints are packed as (x, y) pairs in {@code FaceKeypoint} order, and the bounding box as
+ * (xmin, ymin, width, height), all in normalized image coordinates. The center and crop follow the
+ * face mesh app: the center is the mean of the keypoints, and the crop is the face box widened by
+ * a quarter of its width on each side, with 5/8 of its height added above and 1/8 below.
+ *
+ * <p>Roll is the angle of the line from the right eye to the left eye. Yaw comes from how far the
+ * nose tip sits from the midpoint of the two ear tragions, once roll has been undone, relative to
+ * half the tragion distance; for a head seen from the front the nose is about as far in front of
+ * the ears as they are from each other's midpoint, so that ratio is close to {@code tan(yaw)}.
+ */
+public class KeypointPoseEstimator {
+  // Keypoint indices, matching FaceKeypoint.
+  private static final int RIGHT_EYE = 0;
+  private static final int LEFT_EYE = 1;
+  private static final int NOSE_TIP = 2;
+  private static final int RIGHT_EAR_TRAGION = 4;
+  private static final int LEFT_EAR_TRAGION = 5;
+  private static final int NUM_KEY_POINTS = 6;
+
+  /** Result of {@link #estimate}; reused from frame to frame. */
+  public static class Pose {
+    /** Degrees; positive when the nose is right of the ear midpoint in the image. */
+    public float yaw;
+    /** Degrees; positive when the left eye is lower than the right eye in the image. */
+    public float roll;
+    public boolean isForward;
+    /** Normalized face center (x, y). */
+    public final float[] center = new float[2];
+    /** Normalized crop rectangle (left, top, width, height); may extend past the image. */
+    public final float[] crop = new float[4];
+  }
+
+  private final float maxYaw;
+  private final float maxRoll;
+
+  /**
+   * @param maxYaw largest absolute yaw in degrees still considered forward.
+   * @param maxRoll largest absolute roll in degrees still considered forward.
+   */
+  public KeypointPoseEstimator(float maxYaw, float maxRoll) {
+    this.maxYaw = maxYaw;
+    this.maxRoll = maxRoll;
+  }
+
+  /**
+   * Estimates the pose of one face.
+   *
+   * @param keypoints packed (x, y) keypoints.
+   * @param box packed (xmin, ymin, width, height) bounding box.
+   * @param aspectRatio image width divided by image height, to measure angles in pixel space.
+   * @param out receives the result.
+   */
+  public void estimate(float[] keypoints, float[] box, float aspectRatio, Pose out) {
+    float rightEyeX = keypoints[2 * RIGHT_EYE] * aspectRatio, rightEyeY = keypoints[2 * RIGHT_EYE + 1];
+    float leftEyeX = keypoints[2 * LEFT_EYE] * aspectRatio, leftEyeY = keypoints[2 * LEFT_EYE + 1];
+    double rollRad = Math.atan2(leftEyeY - rightEyeY, leftEyeX - rightEyeX);
+    float cos = (float) Math.cos(rollRad), sin = (float) Math.sin(rollRad);
+
+    // Horizontal positions along the eye line, so that roll does not leak into yaw.
+    float noseU = along(keypoints, NOSE_TIP, aspectRatio, cos, sin);
+    float rightEarU = along(keypoints, RIGHT_EAR_TRAGION, aspectRatio, cos, sin);
+    float leftEarU = along(keypoints, LEFT_EAR_TRAGION, aspectRatio, cos, sin);
+    float halfSpan = Math.abs(leftEarU - rightEarU) / 2;
+    float offset = noseU - (leftEarU + rightEarU) / 2;
+
+    out.roll = (float) Math.toDegrees(rollRad);
+    out.yaw = halfSpan > 0 ? (float) Math.toDegrees(Math.atan2(offset, halfSpan)) : 0;
+    out.isForward = Math.abs(out.yaw) <= maxYaw && Math.abs(out.roll) <= maxRoll;
+
+    float sumX = 0, sumY = 0;
+    for (int i = 0; i < NUM_KEY_POINTS; ++i) {
+      sumX += keypoints[2 * i];
+      sumY += keypoints[2 * i + 1];
+    }
+    out.center[0] = sumX / NUM_KEY_POINTS;
+    out.center[1] = sumY / NUM_KEY_POINTS;
+
+    float width = box[2], height = box[3];
+    out.crop[0] = box[0] - width / 4;
+    out.crop[1] = box[1] - height * 5 / 8;
+    out.crop[2] = width * 1.5f;
+    out.crop[3] = height * 1.75f;
+  }
+
+  private static float along(float[] keypoints, int index, float aspectRatio, float cos, float sin) {
+    return keypoints[2 * index] * aspectRatio * cos + keypoints[2 * index + 1] * sin;
+  }
+}
@@ -16,7 +16,10 @@ package com.google.mediapipe.examples.facedetection;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import androidx.appcompat.app.AppCompatActivity;
@@ -28,22 +31,101 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.exifinterface.media.ExifInterface;
 // ContentResolver dependency
+import com.google.mediapipe.examples.facecenter.InferenceGovernor;
+import com.google.mediapipe.examples.facecenter.MotionWakeGate;
+import com.google.mediapipe.examples.facecenter.ResolutionController;
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
+import com.google.mediapipe.framework.TextureFrame;
 import com.google.mediapipe.solutioncore.CameraInput;
 import com.google.mediapipe.solutioncore.SolutionGlSurfaceView;
 import com.google.mediapipe.solutioncore.VideoInput;
-import com.google.mediapipe.solutions.facedetection.FaceDetection;
 import com.google.mediapipe.solutions.facedetection.FaceDetectionOptions;
 import com.google.mediapipe.solutions.facedetection.FaceDetectionResult;
 import com.google.mediapipe.solutions.facedetection.FaceKeypoint;
+import com.google.mediapipe.formats.proto.DetectionProto.Detection;
+import com.google.mediapipe.formats.proto.LocationDataProto.LocationData;
+import com.google.mediapipe.formats.proto.LocationDataProto.LocationData.RelativeBoundingBox;
 import com.google.mediapipe.formats.proto.LocationDataProto.LocationData.RelativeKeypoint;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Locale;
 
 /** Main activity of MediaPipe Face Detection app. */
 public class MainActivity extends AppCompatActivity {
   private static final String TAG = "MainActivity";
 
-  private FaceDetection faceDetection;
+  private CustomFaceDetection faceDetection;
+
+  // Keeps face identities stable across frames in streaming mode.
+  private static final int MAX_TRACKED_FACES = 8;
+  private static final float MIN_TRACK_IOU = 0.3f;
+  private static final int MAX_TRACK_MISSES = 5;
+  private final FaceTracker faceTracker =
+      new FaceTracker(MAX_TRACKED_FACES, MAX_TRACKED_FACES, MIN_TRACK_IOU, MAX_TRACK_MISSES);
+  private final float[] detectionBoxes = new float[4 * MAX_TRACKED_FACES];
+  // Detections go to the renderer through a triple buffer, so neither thread waits for the other.
+  private static final int MAX_RENDERED_FACES = 8;
+  private final TripleBuffer<FaceDetectionRenderData> renderData =
+      FaceDetectionRenderData.newTripleBuffer(MAX_RENDERED_FACES);
+  private FaceDetectionResultGlRenderer resultRenderer;
+  // The camera resolution follows the inference rate, stepping through a ladder of sizes. Only the
+  // camera is reopened on a change; the solution and the surface stay up.
+  private static final int[] RESOLUTION_LADDER = {1280, 960, 720, 480};
+  private static final float TARGET_FPS = 24f;
+  private static final long RESOLUTION_WINDOW_US = 2_000_000;
+  private static final long RESOLUTION_MIN_HOLD_US = 10_000_000;
+  private static final long RESOLUTION_MAX_HOLD_US = 80_000_000;
+  private final ResolutionController resolution =
+      new ResolutionController(
+          RESOLUTION_LADDER,
+          TARGET_FPS,
+          RESOLUTION_WINDOW_US,
+          RESOLUTION_MIN_HOLD_US,
+          RESOLUTION_MAX_HOLD_US);
+  // Inference is throttled while the device runs hot or low on battery.
+  private static final float[] GOVERNOR_LEVEL_FPS = {30f, 15f, 8f};
+  private static final long GOVERNOR_POLL_INTERVAL_US = 1_000_000;
+  private static final long GOVERNOR_RECOVER_US = 30_000_000;
+  private InferenceGovernor governor;
+  private InferenceGovernor.Level governedLevel = InferenceGovernor.Level.NORMAL;
+  // With no faces in front of the camera for a while, inference stops and a few pixels of a frame
+  // every IDLE_SAMPLE_INTERVAL_US are compared instead, until something moves. The preview holds
+  // the last frame meanwhile.
+  private static final int RESULTS_TO_IDLE = 90;
+  private static final int MOTION_GRID_WIDTH = 32;
+  private static final int MOTION_GRID_HEIGHT = 24;
+  private static final float MOTION_WAKE_FRACTION = 0.02f;
+  private static final long IDLE_SAMPLE_INTERVAL_US = 66_000;
+  private final MotionWakeGate motionWake =
+      new MotionWakeGate(
+          RESULTS_TO_IDLE,
+          MOTION_GRID_WIDTH,
+          MOTION_GRID_HEIGHT,
+          MOTION_WAKE_FRACTION,
+          IDLE_SAMPLE_INTERVAL_US);
+  // Idle frames are read back into a reused bitmap and scaled down, filtered, to a few pixels per
+  // grid cell, so each sample only copies out a small buffer.
+  private static final int IDLE_SAMPLE_WIDTH = 4 * MOTION_GRID_WIDTH;
+  private static final int IDLE_SAMPLE_HEIGHT = 4 * MOTION_GRID_HEIGHT;
+  private final Paint idlePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final Rect idleSampleRect = new Rect(0, 0, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT);
+  private final int[] idlePixels = new int[IDLE_SAMPLE_WIDTH * IDLE_SAMPLE_HEIGHT];
+  private Bitmap idleFrame;
+  private Bitmap idleSample;
+  private Canvas idleCanvas;
+
+  // Lite center finder working off the detection keypoints instead of the full face mesh.
+  private static final float MAX_FORWARD_YAW = 10f;
+  private static final float MAX_FORWARD_ROLL = 5f;
+  private final KeypointPoseEstimator poseEstimator =
+      new KeypointPoseEstimator(MAX_FORWARD_YAW, MAX_FORWARD_ROLL);
+  private final KeypointPoseEstimator.Pose pose = new KeypointPoseEstimator.Pose();
+  private final float[] keypoints = new float[2 * FaceKeypoint.NUM_KEY_POINTS];
+  private final float[] faceBox = new float[4];
+  // Size of the latest streamed input frame, to measure the pose in pixels of the frame rather than
+  // of the view it is shown in.
+  private volatile int frameWidth;
+  private volatile int frameHeight;
 
   private enum InputSource {
     UNKNOWN,
@@ -68,6 +150,13 @@ public class MainActivity extends AppCompatActivity {
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
+    governor =
+        new InferenceGovernor(
+            new AndroidConditionSource(this),
+            GOVERNOR_LEVEL_FPS,
+            GOVERNOR_POLL_INTERVAL_US,
+            GOVERNOR_RECOVER_US);
+    governor.setListener(this::onGovernorChanged);
     setupStaticImageDemoUiComponents();
     setupVideoDemoUiComponents();
     setupLiveDemoUiComponents();
@@ -79,7 +168,7 @@ public class MainActivity extends AppCompatActivity {
     if (inputSource == InputSource.CAMERA) {
       // Restarts the camera and the opengl surface rendering.
       cameraInput = new CameraInput(this);
-      cameraInput.setNewFrameListener(textureFrame -> faceDetection.send(textureFrame));
+      cameraInput.setNewFrameListener(this::onCameraFrame);
       glSurfaceView.post(this::startCamera);
       glSurfaceView.setVisibility(View.VISIBLE);
     } else if (inputSource == InputSource.VIDEO) {
@@ -187,7 +276,7 @@ public class MainActivity extends AppCompatActivity {
     this.inputSource = InputSource.IMAGE;
     // Initializes a new MediaPipe Face Detection solution instance in the static image mode.
     faceDetection =
-        new FaceDetection(
+        new CustomFaceDetection(
             this,
             FaceDetectionOptions.builder()
                 .setStaticImageMode(true)
@@ -199,6 +288,7 @@ public class MainActivity extends AppCompatActivity {
     faceDetection.setResultListener(
         faceDetectionResult -> {
           logNoseTipKeypoint(faceDetectionResult, /*faceIndex=*/ 0, /*showPixelValues=*/ true);
+          logLitePose(faceDetectionResult, /*faceIndex=*/ 0, /*showPixelValues=*/ true);
           imageView.setFaceDetectionResult(faceDetectionResult);
           runOnUiThread(() -> imageView.update());
         });
@@ -264,7 +354,7 @@ public class MainActivity extends AppCompatActivity {
     this.inputSource = inputSource;
     // Initializes a new MediaPipe Face Detection solution instance in the streaming mode.
     faceDetection =
-        new FaceDetection(
+        new CustomFaceDetection(
             this,
             FaceDetectionOptions.builder().setStaticImageMode(false).setModelSelection(0).build());
     faceDetection.setErrorListener(
@@ -272,23 +362,49 @@ public class MainActivity extends AppCompatActivity {
 
     if (inputSource == InputSource.CAMERA) {
       cameraInput = new CameraInput(this);
-      cameraInput.setNewFrameListener(textureFrame -> faceDetection.send(textureFrame));
+      cameraInput.setNewFrameListener(this::onCameraFrame);
     } else if (inputSource == InputSource.VIDEO) {
       videoInput = new VideoInput(this);
-      videoInput.setNewFrameListener(textureFrame -> faceDetection.send(textureFrame));
+      videoInput.setNewFrameListener(
+          textureFrame -> {
+            noteFrameSize(textureFrame);
+            faceDetection.send(textureFrame);
+          });
     }
 
     // Initializes a new Gl surface view with a user-defined FaceDetectionResultGlRenderer.
     glSurfaceView =
         new SolutionGlSurfaceView<>(
             this, faceDetection.getGlContext(), faceDetection.getGlMajorVersion());
-    glSurfaceView.setSolutionResultRenderer(new FaceDetectionResultGlRenderer());
+    resultRenderer = new FaceDetectionResultGlRenderer(renderData, MAX_RENDERED_FACES);
+    glSurfaceView.setSolutionResultRenderer(resultRenderer);
     glSurfaceView.setRenderInputImage(true);
+    faceTracker.clear();
+    resolution.reset();
+    governor.reset();
+    governedLevel = InferenceGovernor.Level.NORMAL;
+    resolution.setTargetFps(TARGET_FPS);
+    resolution.setTierListener(
+        tier -> {
+          Log.i(TAG, String.format(Locale.US,
+              "Resolution tier %d at %.1f fps", tier, resolution.lastFps()));
+          runOnUiThread(this::restartCamera);
+        });
+    motionWake.reset();
+    motionWake.setIdleListener(idle -> Log.i(TAG, idle ? "Idle until motion" : "Motion, waking"));
     faceDetection.setResultListener(
         faceDetectionResult -> {
-          logNoseTipKeypoint(faceDetectionResult, /*faceIndex=*/ 0, /*showPixelValues=*/ false);
-          glSurfaceView.setRenderData(faceDetectionResult);
-          glSurfaceView.requestRender();
+          motionWake.onResult(!faceDetectionResult.multiFaceDetections().isEmpty());
+          resolution.onResult(faceDetectionResult.timestamp());
+          int faceIndex = trackFaces(faceDetectionResult);
+          logNoseTipKeypoint(faceDetectionResult, faceIndex, /*showPixelValues=*/ false);
+          logLitePose(faceDetectionResult, faceIndex, /*showPixelValues=*/ false);
+          if (resultRenderer.tryQueueFrame()) {
+            renderData.back().set(faceDetectionResult);
+            renderData.publish();
+            glSurfaceView.setRenderData(faceDetectionResult);
+            glSurfaceView.requestRender();
+          }
         });
 
     // The runnable to start camera after the gl surface view is attached.
@@ -306,13 +422,79 @@ public class MainActivity extends AppCompatActivity {
     frameLayout.requestLayout();
   }
 
+  private void onCameraFrame(TextureFrame textureFrame) {
+    noteFrameSize(textureFrame);
+    long timestampUs = textureFrame.getTimestamp();
+    if (motionWake.isIdle()) {
+      if (motionWake.shouldSample(timestampUs)) {
+        sampleIdleFrame(textureFrame, timestampUs);
+      } else {
+        textureFrame.release();
+      }
+    } else if (governor.admit(timestampUs)) {
+      faceDetection.send(textureFrame);
+    } else {
+      textureFrame.release();
+    }
+  }
+
+  /** Reads an idle frame back, scales it down and lets the motion gate sample it. */
+  private void sampleIdleFrame(TextureFrame textureFrame, long timestampUs) {
+    int width = textureFrame.getWidth(), height = textureFrame.getHeight();
+    if (idleFrame == null || idleFrame.getWidth() != width || idleFrame.getHeight() != height) {
+      if (idleFrame != null) {
+        idleFrame.recycle();
+      }
+      idleFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    if (idleSample == null) {
+      idleSample =
+          Bitmap.createBitmap(IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT, Bitmap.Config.ARGB_8888);
+      idleCanvas = new Canvas(idleSample);
+    }
+    faceDetection.readBitmap(textureFrame, idleFrame);
+    idleCanvas.drawBitmap(idleFrame, null, idleSampleRect, idlePaint);
+    idleSample.getPixels(
+        idlePixels, 0, IDLE_SAMPLE_WIDTH, 0, 0, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT);
+    motionWake.onIdleFrame(idlePixels, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT, timestampUs);
+  }
+
+  private void noteFrameSize(TextureFrame textureFrame) {
+    frameWidth = textureFrame.getWidth();
+    frameHeight = textureFrame.getHeight();
+  }
+
+  /** Follows the governor, keeping the resolution target reachable. */
+  private void onGovernorChanged(InferenceGovernor.Level level, float rateFps) {
+    resolution.setTargetFps(Math.min(TARGET_FPS, rateFps));
+    if (level != governedLevel) {
+      governedLevel = level;
+      Log.i(TAG, String.format(Locale.US, "Inference governor: %s, %.1f fps", level, rateFps));
+    }
+  }
+
+  /** Reopens the camera at the current resolution tier, keeping the solution and the surface. */
+  private void restartCamera() {
+    // The surface is hidden while paused or stopped; the camera is reopened on resume instead.
+    if (inputSource != InputSource.CAMERA
+        || glSurfaceView == null
+        || glSurfaceView.getVisibility() != View.VISIBLE) {
+      return;
+    }
+    cameraInput.setNewFrameListener(null);
+    cameraInput.close();
+    cameraInput = new CameraInput(this);
+    cameraInput.setNewFrameListener(this::onCameraFrame);
+    startCamera();
+  }
+
   private void startCamera() {
     cameraInput.start(
         this,
         faceDetection.getGlContext(),
         CameraInput.CameraFacing.FRONT,
-        glSurfaceView.getWidth(),
-        glSurfaceView.getHeight());
+        resolution.width(glSurfaceView.getWidth(), glSurfaceView.getHeight()),
+        resolution.height(glSurfaceView.getWidth(), glSurfaceView.getHeight()));
   }
 
   private void stopCurrentPipeline() {
@@ -327,14 +509,48 @@ public class MainActivity extends AppCompatActivity {
     if (glSurfaceView != null) {
       glSurfaceView.setVisibility(View.GONE);
     }
+    if (resultRenderer != null) {
+      Log.i(TAG, "Overlay upload skip rate: " + resultRenderer.uploadSkipRate());
+      resultRenderer = null;
+    }
     if (faceDetection != null) {
       faceDetection.close();
     }
+    Log.i(TAG, String.format(Locale.US,
+        "Idle frames sampled: %d, skipped: %d, wakes: %d",
+        motionWake.sampledFrames(), motionWake.skippedFrames(), motionWake.wakeCount()));
+    motionWake.reset();
+    Log.i(TAG, "Final resolution tier: " + resolution.tier());
+    Log.i(TAG, String.format(Locale.US,
+        "Governor admitted %d frames, throttled %d",
+        governor.admittedFrames(), governor.throttledFrames()));
+  }
+
+  /**
+   * Feeds the detections of {@code result} to the face tracker.
+   *
+   * @return the index of the detection belonging to the longest-lived track, or -1 if none.
+   */
+  private int trackFaces(FaceDetectionResult result) {
+    int count = 0;
+    for (Detection detection : result.multiFaceDetections()) {
+      if (count == MAX_TRACKED_FACES) {
+        break;
+      }
+      RelativeBoundingBox box = detection.getLocationData().getRelativeBoundingBox();
+      detectionBoxes[4 * count] = box.getXmin();
+      detectionBoxes[4 * count + 1] = box.getYmin();
+      detectionBoxes[4 * count + 2] = box.getWidth();
+      detectionBoxes[4 * count + 3] = box.getHeight();
+      count++;
+    }
+    faceTracker.update(detectionBoxes, count, result.timestamp());
+    return faceTracker.oldestTrackDetection();
   }
 
   private void logNoseTipKeypoint(
       FaceDetectionResult result, int faceIndex, boolean showPixelValues) {
-    if (result.multiFaceDetections().isEmpty()) {
+    if (result.multiFaceDetections().isEmpty() || faceIndex < 0) {
       return;
     }
     RelativeKeypoint noseTip =
@@ -357,8 +573,62 @@ public class MainActivity extends AppCompatActivity {
           TAG,
           String.format(
               "MediaPipe Face Detection nose tip normalized coordinates (value range: [0, 1]):"
-                  + " x=%f, y=%f",
-              noseTip.getX(), noseTip.getY()));
+                  + " x=%f, y=%f, track=%d",
+              noseTip.getX(), noseTip.getY(), faceTracker.trackIdForDetection(faceIndex)));
+    }
+  }
+
+  /**
+   * Estimates pose, center and crop of one face from its keypoints, in pixels of the input image.
+   * The crop is only logged, clamped to the image, when the face is looking at the camera.
+   */
+  private void logLitePose(FaceDetectionResult result, int faceIndex, boolean showPixelValues) {
+    if (result.multiFaceDetections().isEmpty() || faceIndex < 0) {
+      return;
+    }
+    LocationData locationData = result.multiFaceDetections().get(faceIndex).getLocationData();
+    if (locationData.getRelativeKeypointsCount() < FaceKeypoint.NUM_KEY_POINTS
+        || !locationData.hasRelativeBoundingBox()) {
+      return;
+    }
+    for (int i = 0; i < FaceKeypoint.NUM_KEY_POINTS; ++i) {
+      keypoints[2 * i] = locationData.getRelativeKeypoints(i).getX();
+      keypoints[2 * i + 1] = locationData.getRelativeKeypoints(i).getY();
+    }
+    RelativeBoundingBox box = locationData.getRelativeBoundingBox();
+    faceBox[0] = box.getXmin();
+    faceBox[1] = box.getYmin();
+    faceBox[2] = box.getWidth();
+    faceBox[3] = box.getHeight();
+    int width = showPixelValues ? result.inputBitmap().getWidth() : frameWidth;
+    int height = showPixelValues ? result.inputBitmap().getHeight() : frameHeight;
+    if (width == 0 || height == 0) {
+      return;
+    }
+    poseEstimator.estimate(keypoints, faceBox, (float) width / height, pose);
+    Log.i(
+        TAG,
+        String.format(
+            "MediaPipe Face Detection lite pose: yaw=%.1f, roll=%.1f, center=(%d, %d)%s",
+            pose.yaw,
+            pose.roll,
+            (int) (pose.center[0] * width),
+            (int) (pose.center[1] * height),
+            pose.isForward ? " FORWARD" : ""));
+    if (!pose.isForward) {
+      return;
+    }
+    int left = Math.max(0, (int) (pose.crop[0] * width));
+    int top = Math.max(0, (int) (pose.crop[1] * height));
+    int right = Math.min(width, (int) ((pose.crop[0] + pose.crop[2]) * width));
+    int bottom = Math.min(height, (int) ((pose.crop[1] + pose.crop[3]) * height));
+    if (right <= left || bottom <= top) {
+      return;
     }
+    Log.i(
+        TAG,
+        String.format(
+            "MediaPipe Face Detection lite crop: (%d, %d) %dx%d",
+            left, top, right - left, bottom - top));
   }
 }
@@ -0,0 +1,160 @@
+package com.google.mediapipe.examples.facedetection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FaceTrackerTest {
+  private static final int MAX_TRACKS = 3;
+  private static final int MAX_DETECTIONS = 4;
+  private static final float MIN_IOU = 0.3f;
+  private static final int MAX_MISSES = 2;
+  private static final long FRAME_US = 33_333;
+
+  private FaceTracker tracker = new FaceTracker(MAX_TRACKS, MAX_DETECTIONS, MIN_IOU, MAX_MISSES);
+  private long frame;
+
+  @Test
+  public void matchesTheBestPairsFirst() {
+    update(0.1f, 0.2f);
+    int a = tracker.trackIdForDetection(0);
+    int b = tracker.trackIdForDetection(1);
+    // The first box overlaps track a more than the second one does, but overlaps b more still;
+    // taking the best pair first leaves the second box for a.
+    update(0.17f, 0.02f);
+    assertEquals(b, tracker.trackIdForDetection(0));
+    assertEquals(a, tracker.trackIdForDetection(1));
+  }
+
+  @Test
+  public void detectionsKeepTheirTrackWhenTheirOrderSwaps() {
+    update(0.1f, 0.6f);
+    int left = tracker.trackIdForDetection(0);
+    int right = tracker.trackIdForDetection(1);
+    update(0.61f, 0.11f);
+    assertEquals(right, tracker.trackIdForDetection(0));
+    assertEquals(left, tracker.trackIdForDetection(1));
+  }
+
+  @Test
+  public void detectionsBelowMinIouStartNewTracks() {
+    update(0.1f);
+    int first = tracker.trackIdForDetection(0);
+    // IoU 0.05 / 0.35.
+    update(0.25f);
+    int second = tracker.trackIdForDetection(0);
+    assertTrue(second > first);
+    assertEquals(second, tracker.trackId(slotOf(second)));
+    assertEquals(1, tracker.misses(slotOf(first)));
+  }
+
+  @Test
+  public void boxesThatDoNotOverlapNeverMatch() {
+    tracker = new FaceTracker(MAX_TRACKS, MAX_DETECTIONS, 0, MAX_MISSES);
+    update(0.1f);
+    int first = tracker.trackIdForDetection(0);
+    update(0.6f);
+    assertNotEquals(first, tracker.trackIdForDetection(0));
+    assertEquals(1, tracker.misses(slotOf(first)));
+  }
+
+  @Test
+  public void newTracksGetIncreasingIdsUntilTheSlotsRunOut() {
+    update(0.0f, 0.25f, 0.5f, 0.75f);
+    assertEquals(0, tracker.trackIdForDetection(0));
+    assertEquals(1, tracker.trackIdForDetection(1));
+    assertEquals(2, tracker.trackIdForDetection(2));
+    assertEquals(FaceTracker.NO_TRACK, tracker.trackIdForDetection(3));
+    assertEquals(FaceTracker.NO_TRACK, tracker.trackIdForDetection(MAX_DETECTIONS));
+    assertEquals(0, tracker.oldestTrackDetection());
+  }
+
+  @Test
+  public void tracksSurviveUpToMaxMisses() {
+    update(0.1f);
+    int id = tracker.trackIdForDetection(0);
+    int slot = slotOf(id);
+    for (int i = 1; i <= MAX_MISSES; ++i) {
+      update();
+      assertTrue(tracker.isActive(slot));
+      assertEquals(i, tracker.misses(slot));
+    }
+    update(0.1f);
+    assertEquals(id, tracker.trackIdForDetection(0));
+    assertEquals(0, tracker.misses(slot));
+  }
+
+  @Test
+  public void tracksMissedTooOftenEnd() {
+    update(0.1f);
+    int id = tracker.trackIdForDetection(0);
+    int slot = slotOf(id);
+    for (int i = 0; i <= MAX_MISSES; ++i) {
+      update();
+    }
+    assertFalse(tracker.isActive(slot));
+    update(0.1f);
+    assertTrue(tracker.trackIdForDetection(0) > id);
+  }
+
+  @Test
+  public void skippedFramesDoNotCountAsMisses() {
+    update(0.1f);
+    int id = tracker.trackIdForDetection(0);
+    for (int i = 0; i < 2 * MAX_MISSES; ++i) {
+      tracker.skip();
+      frame++;
+    }
+    assertEquals(0, tracker.misses(slotOf(id)));
+    assertEquals(FaceTracker.NO_TRACK, tracker.trackIdForDetection(0));
+  }
+
+  @Test
+  public void predictsAlongTheSmoothedVelocity() {
+    update(0.1f);
+    update(0.12f);
+    int slot = slotOf(tracker.trackIdForDetection(0));
+    float[] box = new float[4];
+    tracker.predictBox(slot, frame * FRAME_US, box, 0);
+    // Half the observed 0.02 per frame, one frame on.
+    assertEquals(0.13f, box[0], 1e-5f);
+    assertEquals(0.2f, box[2], 1e-5f);
+    assertEquals(0.2f, box[3], 1e-5f);
+  }
+
+  @Test
+  public void clearDropsAllTracks() {
+    update(0.1f, 0.6f);
+    tracker.clear();
+    for (int slot = 0; slot < tracker.capacity(); ++slot) {
+      assertFalse(tracker.isActive(slot));
+    }
+    assertEquals(-1, tracker.oldestTrackDetection());
+    update(0.1f);
+    assertEquals(2, tracker.trackIdForDetection(0));
+  }
+
+  /** Updates with 0.2 by 0.2 boxes at y = 0.1 and the given x. */
+  private void update(float... xs) {
+    float[] boxes = new float[4 * xs.length];
+    for (int i = 0; i < xs.length; ++i) {
+      boxes[4 * i] = xs[i];
+      boxes[4 * i + 1] = 0.1f;
+      boxes[4 * i + 2] = 0.2f;
+      boxes[4 * i + 3] = 0.2f;
+    }
+    tracker.update(boxes, xs.length, frame++ * FRAME_US);
+  }
+
+  private int slotOf(int id) {
+    for (int slot = 0; slot < tracker.capacity(); ++slot) {
+      if (tracker.isActive(slot) && tracker.trackId(slot) == id) {
+        return slot;
+      }
+    }
+    throw new AssertionError("no track " + id);
+  }
+}
@@ -0,0 +1,196 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only index of stored captures.
+ *
+ * <p>Every capture is described by one fixed-size little-endian record pointing into the capture
+ * data file, so a capture can be found by position or timestamp without listing or opening any
+ * image files.
+ *
+ * <p>Capture timestamps come from the camera clock, which restarts with the device, so they only
+ * order the records of one session. Each time the index is opened for writing it starts a new
+ * session, numbered one past the last session in the file; records are therefore ordered by
+ * session ID, and by timestamp within a session. A capture stored at several sizes has one record
+ * per size, largest first, all with the capture's timestamp.
+ */
+public class CaptureIndex {
+  /** Size in bytes of one record. */
+  public static final int RECORD_SIZE = 72;
+
+  /** Encodings of the stored images. */
+  public static final int FORMAT_JPEG = 0;
+  public static final int FORMAT_WEBP = 1;
+
+  /** One index entry. */
+  public static class Record {
+    public int sessionId;
+    public long timestampUs;
+    /** Byte offset and length of the encoded image in the data file. */
+    public long offset;
+    public int length;
+    public int format;
+    public int quality;
+    /** Size of the image among those of its capture, 0 for the largest. */
+    public int level;
+    /** Normalized face center (x, y, z). */
+    public final float[] center = new float[3];
+    /** Face pose, see {@link FaceAnalysis#angleZ}. */
+    public final float[] angle = new float[3];
+    /** Normalized face bounding box (min x, min y, max x, max y). */
+    public final float[] box = new float[4];
+
+    public void copyFrom(Record other) {
+      sessionId = other.sessionId;
+      timestampUs = other.timestampUs;
+      offset = other.offset;
+      length = other.length;
+      format = other.format;
+      quality = other.quality;
+      level = other.level;
+      System.arraycopy(other.center, 0, center, 0, 3);
+      System.arraycopy(other.angle, 0, angle, 0, 3);
+      System.arraycopy(other.box, 0, box, 0, 4);
+    }
+
+    public void set(long timestampUs, FaceAnalysis analysis) {
+      this.timestampUs = timestampUs;
+      for (int i = 0; i < 3; ++i) {
+        center[i] = (float) analysis.avg[i];
+        angle[i] = (float) analysis.angleZ[i];
+      }
+      box[0] = (float) analysis.min[0];
+      box[1] = (float) analysis.min[1];
+      box[2] = (float) analysis.max[0];
+      box[3] = (float) analysis.max[1];
+    }
+  }
+
+  private CaptureIndex() {}
+
+  /** Writes {@code record} at the current position of {@code out}. */
+  public static void write(Record record, ByteBuffer out) {
+    out.putLong(record.timestampUs);
+    out.putLong(record.offset);
+    out.putInt(record.length);
+    out.putShort((short) record.format);
+    out.putShort((short) record.quality);
+    out.putInt(record.sessionId);
+    out.putInt(record.level);
+    for (float value : record.center) {
+      out.putFloat(value);
+    }
+    for (float value : record.angle) {
+      out.putFloat(value);
+    }
+    for (float value : record.box) {
+      out.putFloat(value);
+    }
+  }
+
+  /** Reads the record at absolute byte position {@code position} of {@code in}. */
+  public static void read(ByteBuffer in, int position, Record record) {
+    record.timestampUs = in.getLong(position);
+    record.offset = in.getLong(position + 8);
+    record.length = in.getInt(position + 16);
+    record.format = in.getShort(position + 20);
+    record.quality = in.getShort(position + 22);
+    record.sessionId = in.getInt(position + 24);
+    record.level = in.getInt(position + 28);
+    int p = position + 32;
+    for (int i = 0; i < 3; ++i, p += 4) {
+      record.center[i] = in.getFloat(p);
+    }
+    for (int i = 0; i < 3; ++i, p += 4) {
+      record.angle[i] = in.getFloat(p);
+    }
+    for (int i = 0; i < 4; ++i, p += 4) {
+      record.box[i] = in.getFloat(p);
+    }
+  }
+
+  /**
+   * Readies an index file for appending: drops a partial record left at the end, e.g. by a crash
+   * mid-write, so that new records start on a record boundary.
+   *
+   * @return the session ID to write new records with, see {@link #nextSessionId}.
+   */
+  public static int openForAppend(FileChannel indexChannel) throws IOException {
+    long size = indexChannel.size();
+    if (size % RECORD_SIZE != 0) {
+      indexChannel.truncate(size - size % RECORD_SIZE);
+    }
+    return nextSessionId(indexChannel);
+  }
+
+  /** Returns the session ID to write new records with: one past the last one in the file. */
+  public static int nextSessionId(FileChannel indexChannel) throws IOException {
+    long count = indexChannel.size() / RECORD_SIZE;
+    if (count == 0) {
+      return 0;
+    }
+    ByteBuffer sessionId = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    long position = (count - 1) * RECORD_SIZE + 24;
+    while (sessionId.hasRemaining()) {
+      if (indexChannel.read(sessionId, position + sessionId.position()) < 0) {
+        throw new IOException("Capture index cut off");
+      }
+    }
+    return sessionId.getInt(0) + 1;
+  }
+
+  /** Read-only, memory-mapped view of an index file. */
+  public static class Reader {
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    public Reader(File indexFile) throws IOException {
+      try (RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+          FileChannel channel = file.getChannel()) {
+        // A trailing partial record, e.g. from a crash mid-write, is ignored.
+        count = (int) (channel.size() / RECORD_SIZE);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * RECORD_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+
+    public int count() {
+      return count;
+    }
+
+    public void read(int index, Record record) {
+      CaptureIndex.read(buffer, index * RECORD_SIZE, record);
+    }
+
+    public int sessionId(int index) {
+      return buffer.getInt(index * RECORD_SIZE + 24);
+    }
+
+    /**
+     * Returns the index of the first record of session {@code sessionId} at or after {@code
+     * timestampUs}, or else of the first record of a later session, or {@link #count()}.
+     */
+    public int find(int sessionId, long timestampUs) {
+      int low = 0, high = count;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        int midSession = sessionId(mid);
+        if (midSession < sessionId
+            || (midSession == sessionId && buffer.getLong(mid * RECORD_SIZE) < timestampUs)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
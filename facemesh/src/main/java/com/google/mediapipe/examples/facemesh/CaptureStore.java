@@ -0,0 +1,284 @@
+package com.google.mediapipe.examples.facemesh;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists captured face crops off the camera path.
+ *
+ * <p>Each capture is one job on a bounded queue: its crops, one per size, are encoded together on
+ * one of a small pool of background threads, so a capture is either stored at every size or
+ * dropped as a whole. The encoded images are appended to a single data file, and each one gets a
+ * {@link CaptureIndex} record with its offset, level, center, pose and bounding box. Captures are
+ * appended in submission order even though encoding runs in parallel, and tagged with the session
+ * the store was opened for.
+ *
+ * <p>{@link #submit} never blocks: once the queue is three quarters full captures are encoded at a
+ * lower quality, and when it is full they are dropped and counted.
+ */
+public class CaptureStore implements Closeable {
+  private static final String TAG = "CaptureStore";
+  public static final String DATA_FILE_NAME = "captures.dat";
+  public static final String INDEX_FILE_NAME = "captures.idx";
+
+  private static final int QUALITY = 90;
+  private static final int DEGRADED_QUALITY = 60;
+  // Index records are buffered and flushed once the queue drains, or when the buffer is full.
+  private static final int INDEX_BUFFER_RECORDS = 32;
+
+  private final ThreadPoolExecutor encoders;
+  private final int queueCapacity;
+  private final Bitmap.CompressFormat format;
+  private final FileChannel dataChannel;
+  private final FileChannel indexChannel;
+  private final int sessionId;
+  private final ByteBuffer indexBuffer =
+      ByteBuffer.allocateDirect(INDEX_BUFFER_RECORDS * CaptureIndex.RECORD_SIZE)
+          .order(ByteOrder.LITTLE_ENDIAN);
+  private final ThreadLocal<EncodeBuffer> encodeBuffers =
+      new ThreadLocal<EncodeBuffer>() {
+        @Override
+        protected EncodeBuffer initialValue() {
+          return new EncodeBuffer();
+        }
+      };
+
+  // Submission order, used to append records in order. The two locks are kept apart so that
+  // submit() never waits for file I/O.
+  private final Object submitLock = new Object();
+  private final Object appendLock = new Object();
+  private long nextSequence;
+  private long nextToAppend;
+
+  private final AtomicInteger stored = new AtomicInteger();
+  private final AtomicInteger degraded = new AtomicInteger();
+  private final AtomicInteger dropped = new AtomicInteger();
+
+  /**
+   * @param directory directory holding the data and index files; created if missing.
+   * @param queueCapacity crops that may wait for an encoder before new ones are dropped.
+   * @param encoderThreads size of the encoder pool.
+   * @param format {@link Bitmap.CompressFormat#JPEG} or {@link Bitmap.CompressFormat#WEBP}.
+   */
+  public CaptureStore(
+      File directory, int queueCapacity, int encoderThreads, Bitmap.CompressFormat format)
+      throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create " + directory);
+    }
+    this.queueCapacity = queueCapacity;
+    this.format = format;
+    dataChannel = new FileOutputStream(new File(directory, DATA_FILE_NAME), true).getChannel();
+    File indexFile = new File(directory, INDEX_FILE_NAME);
+    try (FileChannel existing = new RandomAccessFile(indexFile, "rw").getChannel()) {
+      sessionId = CaptureIndex.openForAppend(existing);
+    }
+    indexChannel = new FileOutputStream(indexFile, true).getChannel();
+    encoders =
+        new ThreadPoolExecutor(
+            encoderThreads,
+            encoderThreads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity),
+            runnable -> {
+              Thread thread = new Thread(runnable, TAG);
+              thread.setPriority(Thread.MIN_PRIORITY);
+              return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * Queues the crops of one capture for encoding and storage.
+   *
+   * @param crops the capture at each size, largest first.
+   * @return {@code false} if the queue was full and the capture was dropped.
+   */
+  public boolean submit(Bitmap[] crops, long timestampUs, FaceAnalysis analysis) {
+    EncodeTask task = new EncodeTask(crops);
+    task.record.set(timestampUs, analysis);
+    task.record.sessionId = sessionId;
+    boolean lowQuality = encoders.getQueue().size() >= queueCapacity * 3 / 4;
+    task.record.quality = lowQuality ? DEGRADED_QUALITY : QUALITY;
+    task.record.format =
+        format == Bitmap.CompressFormat.JPEG ? CaptureIndex.FORMAT_JPEG : CaptureIndex.FORMAT_WEBP;
+    synchronized (submitLock) {
+      task.sequence = nextSequence;
+      try {
+        encoders.execute(task);
+      } catch (RejectedExecutionException e) {
+        dropped.incrementAndGet();
+        return false;
+      }
+      nextSequence++;
+    }
+    if (lowQuality) {
+      degraded.incrementAndGet();
+    }
+    return true;
+  }
+
+  /** Session the records written by this store belong to, see {@link CaptureIndex}. */
+  public int sessionId() {
+    return sessionId;
+  }
+
+  public int storedCount() {
+    return stored.get();
+  }
+
+  public int degradedCount() {
+    return degraded.get();
+  }
+
+  public int droppedCount() {
+    return dropped.get();
+  }
+
+  /** Waits for queued crops to be stored, then closes the files. */
+  @Override
+  public void close() throws IOException {
+    encoders.shutdown();
+    try {
+      encoders.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (appendLock) {
+      flushIndex();
+      dataChannel.close();
+      indexChannel.close();
+    }
+  }
+
+  private void append(EncodeTask task, EncodeBuffer encoded) throws IOException {
+    long base = dataChannel.position();
+    ByteBuffer data = encoded.asByteBuffer();
+    while (data.hasRemaining()) {
+      dataChannel.write(data);
+    }
+    for (int level = 0; level < task.crops.length; ++level) {
+      int start = level == 0 ? 0 : encoded.ends[level - 1];
+      encoded.record.copyFrom(task.record);
+      encoded.record.level = level;
+      encoded.record.offset = base + start;
+      encoded.record.length = encoded.ends[level] - start;
+      if (indexBuffer.remaining() < CaptureIndex.RECORD_SIZE) {
+        flushIndex();
+      }
+      CaptureIndex.write(encoded.record, indexBuffer);
+    }
+    if (encoders.getQueue().isEmpty()) {
+      flushIndex();
+    }
+    stored.incrementAndGet();
+  }
+
+  private void flushIndex() throws IOException {
+    indexBuffer.flip();
+    while (indexBuffer.hasRemaining()) {
+      indexChannel.write(indexBuffer);
+    }
+    indexBuffer.clear();
+  }
+
+  private class EncodeTask implements Runnable {
+    final Bitmap[] crops;
+    final CaptureIndex.Record record = new CaptureIndex.Record();
+    long sequence;
+
+    EncodeTask(Bitmap[] crops) {
+      this.crops = crops;
+    }
+
+    @Override
+    public void run() {
+      EncodeBuffer buffer = null;
+      boolean encoded = false;
+      try {
+        buffer = encodeBuffers.get();
+        buffer.reset(crops.length);
+        boolean compressed = true;
+        for (int level = 0; level < crops.length && compressed; ++level) {
+          compressed = crops[level].compress(format, record.quality, buffer);
+          buffer.ends[level] = buffer.size();
+        }
+        encoded = compressed;
+      } catch (RuntimeException e) {
+        Log.e(TAG, "Encoding failed", e);
+      } finally {
+        // Also runs when encoding throws an Error, e.g. out of memory, so that the captures
+        // queued behind this one still get their turn.
+        appendInOrder(encoded ? buffer : null);
+      }
+    }
+
+    /** Waits for this capture's turn, appends it unless {@code encoded} is null, and passes on. */
+    private void appendInOrder(EncodeBuffer encoded) {
+      boolean interrupted = false;
+      synchronized (appendLock) {
+        while (nextToAppend != sequence) {
+          try {
+            appendLock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        try {
+          if (encoded != null) {
+            append(this, encoded);
+          }
+        } catch (IOException e) {
+          Log.e(TAG, "Writing capture failed", e);
+        } finally {
+          nextToAppend++;
+          appendLock.notifyAll();
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} whose contents can be written without copying, holding the
+   * images of one capture back to back.
+   */
+  private static class EncodeBuffer extends ByteArrayOutputStream {
+    /** End of each image in the buffer. */
+    int[] ends = new int[0];
+    final CaptureIndex.Record record = new CaptureIndex.Record();
+
+    EncodeBuffer() {
+      super(64 * 1024);
+    }
+
+    void reset(int images) {
+      reset();
+      if (ends.length < images) {
+        ends = new int[images];
+      }
+    }
+
+    ByteBuffer asByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+}
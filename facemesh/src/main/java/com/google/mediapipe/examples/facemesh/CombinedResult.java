@@ -0,0 +1,60 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.solutions.hands.Hands;
+import com.google.mediapipe.solutions.hands.HandsResult;
+import java.util.List;
+
+/** Face mesh and hands results of one camera frame, joined by a {@link TimestampJoiner}. */
+public class CombinedResult {
+  /** Where the hands of a combined result come from. */
+  public enum HandsStatus {
+    /** Hands ran on this frame. */
+    JOINED,
+    /** Hands of an earlier frame, since this one has none. */
+    REUSED,
+    /** No hands result; {@link #numHands} is 0. */
+    MISSING,
+  }
+
+  /** Floats per hand. */
+  public static final int HAND_STRIDE = 3 * Hands.NUM_LANDMARKS;
+
+  public long timestampUs;
+  /** First face of the face mesh result; {@code face.numLandmarks} is 0 without a face. */
+  public final FaceMeshSlot face = new FaceMeshSlot();
+  public HandsStatus handsStatus = HandsStatus.MISSING;
+  /** Timestamp of the frame the hands come from. */
+  public long handsTimestampUs;
+  public int numHands;
+  /** Packed (x, y, z) hand landmarks, hand {@code i} starting at {@code i * HAND_STRIDE}. */
+  public final float[] handLandmarks;
+  public final boolean[] isLeftHand;
+
+  public CombinedResult(int maxHands) {
+    handLandmarks = new float[maxHands * HAND_STRIDE];
+    isLeftHand = new boolean[maxHands];
+  }
+
+  public boolean hasFace() {
+    return face.numLandmarks > 0;
+  }
+
+  /** Packs the hands of {@code result}, which ran on the frame at {@code timestampUs}. */
+  void setHands(HandsResult result, long timestampUs) {
+    handsTimestampUs = timestampUs;
+    numHands = Math.min(result.multiHandLandmarks().size(), isLeftHand.length);
+    for (int i = 0; i < numHands; ++i) {
+      List<NormalizedLandmark> hand = result.multiHandLandmarks().get(i).getLandmarkList();
+      LandmarkPacker.pack(hand, handLandmarks, i * HAND_STRIDE, Hands.NUM_LANDMARKS);
+      isLeftHand[i] = result.multiHandedness().get(i).getLabel().equals("Left");
+    }
+  }
+
+  void copyHandsFrom(CombinedResult other) {
+    handsTimestampUs = other.handsTimestampUs;
+    numHands = other.numHands;
+    System.arraycopy(other.handLandmarks, 0, handLandmarks, 0, numHands * HAND_STRIDE);
+    System.arraycopy(other.isLeftHand, 0, isLeftHand, 0, numHands);
+  }
+}
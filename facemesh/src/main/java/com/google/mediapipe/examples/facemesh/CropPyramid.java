@@ -0,0 +1,150 @@
+package com.google.mediapipe.examples.facemesh;
+
+import java.util.Arrays;
+
+/**
+ * Scales a square ARGB face crop down to a fixed list of smaller sizes in one go.
+ *
+ * <p>Each level is area filtered from the one above it: every output pixel is the average of the
+ * source pixels it covers, weighted by how much of each one it covers. The filter is separable; a
+ * horizontal pass writes into a scratch buffer and a vertical pass accumulates whole rows. Weights
+ * are 8-bit fixed point and sum to 256 per output pixel, so two channels are accumulated per int as
+ * in {@link FaceCropper}. Tap tables and buffers are built once, and nothing is allocated per
+ * build.
+ *
+ * <p>Not thread-safe.
+ */
+public class CropPyramid {
+  private final int[] sizes;
+  private final int[][] levels;
+  // Per level: first source index, number of taps and weights of every output index.
+  private final int[][] tapStart;
+  private final int[][] tapCount;
+  private final int[][] tapWeights;
+  private final int[] maxTaps;
+  private final int[] scratch;
+  private final int[] rowRb;
+  private final int[] rowAg;
+
+  /**
+   * @param sizes edge length of each level, largest first; {@code sizes[0]} is the input size.
+   */
+  public CropPyramid(int... sizes) {
+    int count = sizes.length;
+    this.sizes = sizes.clone();
+    levels = new int[count][];
+    tapStart = new int[count][];
+    tapCount = new int[count][];
+    tapWeights = new int[count][];
+    maxTaps = new int[count];
+    int scratchSize = 0;
+    for (int l = 1; l < count; ++l) {
+      if (sizes[l] <= 0 || sizes[l] >= sizes[l - 1]) {
+        throw new IllegalArgumentException("Sizes must be positive and decreasing");
+      }
+      levels[l] = new int[sizes[l] * sizes[l]];
+      buildTaps(l, sizes[l - 1], sizes[l]);
+      scratchSize = Math.max(scratchSize, sizes[l - 1] * sizes[l]);
+    }
+    scratch = new int[scratchSize];
+    rowRb = new int[count > 1 ? sizes[1] : 0];
+    rowAg = new int[rowRb.length];
+  }
+
+  public int levelCount() {
+    return sizes.length;
+  }
+
+  public int size(int level) {
+    return sizes[level];
+  }
+
+  /** Pixels of {@code level}, row-major ARGB; overwritten by every {@link #build}. */
+  public int[] level(int level) {
+    return levels[level];
+  }
+
+  /**
+   * Builds every level from {@code base}, which becomes level 0 as is.
+   *
+   * @param base {@code size(0)} by {@code size(0)} row-major ARGB pixels.
+   */
+  public void build(int[] base) {
+    levels[0] = base;
+    for (int l = 1; l < sizes.length; ++l) {
+      resample(levels[l - 1], sizes[l - 1], l);
+    }
+  }
+
+  private void resample(int[] src, int srcSize, int level) {
+    int dstSize = sizes[level];
+    int[] dst = levels[level];
+    int[] start = tapStart[level], taps = tapCount[level], weights = tapWeights[level];
+    int stride = maxTaps[level];
+
+    // Horizontal pass: srcSize rows of dstSize pixels.
+    for (int y = 0; y < srcSize; ++y) {
+      int row = y * srcSize;
+      int out = y * dstSize;
+      for (int x = 0; x < dstSize; ++x) {
+        int rb = 0, ag = 0;
+        int s = row + start[x];
+        int w = x * stride;
+        for (int k = 0; k < taps[x]; ++k) {
+          int p = src[s + k];
+          int weight = weights[w + k];
+          rb += (p & 0x00FF00FF) * weight;
+          ag += ((p >>> 8) & 0x00FF00FF) * weight;
+        }
+        scratch[out + x] = (ag & 0xFF00FF00) | ((rb >>> 8) & 0x00FF00FF);
+      }
+    }
+
+    // Vertical pass, a whole row at a time.
+    for (int y = 0; y < dstSize; ++y) {
+      Arrays.fill(rowRb, 0, dstSize, 0);
+      Arrays.fill(rowAg, 0, dstSize, 0);
+      int w = y * stride;
+      for (int k = 0; k < taps[y]; ++k) {
+        int weight = weights[w + k];
+        int in = (start[y] + k) * dstSize;
+        for (int x = 0; x < dstSize; ++x) {
+          int p = scratch[in + x];
+          rowRb[x] += (p & 0x00FF00FF) * weight;
+          rowAg[x] += ((p >>> 8) & 0x00FF00FF) * weight;
+        }
+      }
+      int out = y * dstSize;
+      for (int x = 0; x < dstSize; ++x) {
+        dst[out + x] = (rowAg[x] & 0xFF00FF00) | ((rowRb[x] >>> 8) & 0x00FF00FF);
+      }
+    }
+  }
+
+  /** Area filter taps from {@code srcSize} to {@code dstSize} samples. */
+  private void buildTaps(int level, int srcSize, int dstSize) {
+    double ratio = (double) srcSize / dstSize;
+    int stride = (int) Math.ceil(ratio) + 1;
+    int[] start = new int[dstSize];
+    int[] count = new int[dstSize];
+    int[] weights = new int[dstSize * stride];
+    for (int i = 0; i < dstSize; ++i) {
+      double from = i * ratio, to = Math.min((i + 1) * ratio, srcSize);
+      int first = (int) Math.floor(from);
+      int last = Math.min((int) Math.ceil(to), srcSize);
+      start[i] = first;
+      count[i] = last - first;
+      // Weights are differences of rounded cumulative coverage, so they always sum to 256.
+      int previous = 0;
+      for (int j = first; j < last; ++j) {
+        int cumulative = (int) Math.round(256 * (Math.min(j + 1, to) - from) / (to - from));
+        weights[i * stride + j - first] = cumulative - previous;
+        previous = cumulative;
+      }
+    }
+    tapStart[level] = start;
+    tapCount[level] = count;
+    tapWeights[level] = weights;
+    maxTaps[level] = stride;
+  }
+}
@@ -1,24 +1,103 @@
 package com.google.mediapipe.examples.facemesh;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 
+import com.google.mediapipe.framework.AndroidPacketGetter;
 import com.google.mediapipe.framework.Packet;
 import com.google.mediapipe.framework.TextureFrame;
 import com.google.mediapipe.solutions.facemesh.FaceMesh;
 import com.google.mediapipe.solutions.facemesh.FaceMeshOptions;
 
 public class CustomFaceMesh extends FaceMesh {
-  public Packet cacheImagePacket;
+  // Recent camera frames by timestamp, so that a result can be matched with the frame it came from
+  // even after newer frames were sent. Each one holds a camera texture, so only a few are kept.
+  private static final int CACHED_FRAMES = 3;
+  private final Packet[] cachedPackets = new Packet[CACHED_FRAMES];
+  private final long[] cachedTimestamps = new long[CACHED_FRAMES];
+  private int nextCached;
+  private int[] flipPixels;
 
   public CustomFaceMesh(Context context, FaceMeshOptions options) {
     super(context, options);
   }
 
-  public void cacheImage(TextureFrame imageObj) {
-    cacheImagePacket = this.packetCreator.createImage((TextureFrame) imageObj);
+  /** Keeps {@code imageObj} for {@link #readCachedBitmap}, evicting the oldest cached frame. */
+  public synchronized void cacheImage(TextureFrame imageObj) {
+    if (cachedPackets[nextCached] != null) {
+      cachedPackets[nextCached].release();
+    }
+    cachedPackets[nextCached] = this.packetCreator.createImage(imageObj);
+    cachedTimestamps[nextCached] = imageObj.getTimestamp();
+    nextCached = (nextCached + 1) % CACHED_FRAMES;
   }
 
-  public void clearCache() {
-    cacheImagePacket = null;
+  /**
+   * Reads the cached frame with timestamp {@code timestampUs} back into a {@link Bitmap}, upside
+   * down like {@link #readBitmap}.
+   *
+   * @return the frame, or {@code null} if it isn't cached (anymore).
+   */
+  public synchronized Bitmap readCachedBitmap(long timestampUs) {
+    for (int i = 0; i < CACHED_FRAMES; ++i) {
+      if (cachedPackets[i] != null && cachedTimestamps[i] == timestampUs) {
+        return AndroidPacketGetter.getBitmapFromRgba(cachedPackets[i]);
+      }
+    }
+    return null;
+  }
+
+  /** Reads {@code imageObj} back into a {@link Bitmap} and releases it without running the mesh. */
+  public Bitmap readBitmap(TextureFrame imageObj) {
+    Packet packet = this.packetCreator.createImage(imageObj);
+    try {
+      return AndroidPacketGetter.getBitmapFromRgba(packet);
+    } finally {
+      packet.release();
+    }
+  }
+
+  /**
+   * Like {@link #readBitmap(TextureFrame)}, but into {@code out}, a mutable ARGB_8888 bitmap of
+   * the frame's size, so that a bitmap can be reused from frame to frame.
+   */
+  public void readBitmap(TextureFrame imageObj, Bitmap out) {
+    Packet packet = this.packetCreator.createImage(imageObj);
+    try {
+      AndroidPacketGetter.copyRgbaToBitmap(packet, out);
+    } finally {
+      packet.release();
+    }
+  }
+
+  /**
+   * Like {@link #readBitmap}, but turns the readback, which comes out upside down, upright, as
+   * other solutions expect their input.
+   */
+  public synchronized Bitmap readUprightBitmap(TextureFrame imageObj) {
+    Bitmap bitmap = readBitmap(imageObj);
+    int width = bitmap.getWidth(), height = bitmap.getHeight();
+    if (flipPixels == null || flipPixels.length != width * height) {
+      flipPixels = new int[width * height];
+    }
+    // A negative stride reads the rows bottom up.
+    bitmap.getPixels(flipPixels, (height - 1) * width, -width, 0, 0, width, height);
+    bitmap.setPixels(flipPixels, 0, width, 0, 0, width, height);
+    return bitmap;
+  }
+
+  public synchronized void clearCache() {
+    for (int i = 0; i < CACHED_FRAMES; ++i) {
+      if (cachedPackets[i] != null) {
+        cachedPackets[i].release();
+        cachedPackets[i] = null;
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    clearCache();
+    super.close();
   }
 }
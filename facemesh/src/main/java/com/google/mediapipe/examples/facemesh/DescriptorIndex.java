@@ -0,0 +1,190 @@
+package com.google.mediapipe.examples.facemesh;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Nearest-neighbour index over fixed-size float descriptors, used to spot near-duplicate captures.
+ *
+ * <p>Descriptors are kept in one flat row-major {@code float[]} so the distance loop runs over
+ * contiguous memory. To avoid touching most rows at all, the distance from every row to a few
+ * pivot rows (the first ones inserted) is stored alongside; by the triangle inequality a row can
+ * only be within {@code radius} of the query if its pivot distances are within {@code radius} of
+ * the query's. Rows that pass are compared in full, abandoning the sum as soon as it exceeds the
+ * radius.
+ *
+ * <p>The index is persisted in a memory-mapped file: a 16-byte header (magic, dimension, count,
+ * capacity) followed by the rows. New rows are written straight into the mapping, and the file is
+ * remapped at twice the size when it fills up. Pivot distances are rebuilt on load.
+ *
+ * <p>Not thread-safe.
+ */
+public class DescriptorIndex implements Closeable {
+  private static final int MAGIC = 0x44455343; // "DESC"
+  private static final int HEADER_BYTES = 16;
+  private static final int NUM_PIVOTS = 4;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int dimension;
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private MappedByteBuffer mapping;
+  private FloatBuffer mappedRows;
+
+  private float[] rows;
+  private float[] pivotDistances;
+  private int count;
+  private int capacity;
+  private final float[] queryPivotDistances = new float[NUM_PIVOTS];
+
+  /** Opens the index stored in {@code indexFile}, creating an empty one if it doesn't exist. */
+  public DescriptorIndex(File indexFile, int dimension) throws IOException {
+    this.dimension = dimension;
+    boolean exists = indexFile.length() >= HEADER_BYTES;
+    file = new RandomAccessFile(indexFile, "rw");
+    channel = file.getChannel();
+    if (exists) {
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt(0) != MAGIC || header.getInt(4) != dimension) {
+        close();
+        throw new IOException("Not a descriptor index of dimension " + dimension + ": " + indexFile);
+      }
+      count = header.getInt(8);
+      capacity = Math.max(header.getInt(12), count);
+    } else {
+      count = 0;
+      capacity = INITIAL_CAPACITY;
+    }
+    map(capacity);
+    rows = new float[capacity * dimension];
+    pivotDistances = new float[capacity * NUM_PIVOTS];
+    mappedRows.position(0);
+    mappedRows.get(rows, 0, count * dimension);
+    for (int i = 0; i < count; ++i) {
+      updatePivotDistances(i);
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int dimension() {
+    return dimension;
+  }
+
+  /**
+   * Returns the index of a stored descriptor within Euclidean distance {@code radius} of {@code
+   * query}, or -1 if there is none. Not necessarily the closest one.
+   */
+  public int findWithin(float[] query, float radius) {
+    int pivots = Math.min(count, NUM_PIVOTS);
+    for (int p = 0; p < pivots; ++p) {
+      queryPivotDistances[p] = (float) Math.sqrt(squaredDistance(query, p, Float.MAX_VALUE));
+      if (queryPivotDistances[p] <= radius) {
+        return p;
+      }
+    }
+    float radiusSquared = radius * radius;
+    rowLoop:
+    for (int i = pivots; i < count; ++i) {
+      int base = i * NUM_PIVOTS;
+      for (int p = 0; p < pivots; ++p) {
+        if (Math.abs(queryPivotDistances[p] - pivotDistances[base + p]) > radius) {
+          continue rowLoop;
+        }
+      }
+      if (squaredDistance(query, i, radiusSquared) <= radiusSquared) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Appends {@code descriptor} and persists it. */
+  public void add(float[] descriptor) throws IOException {
+    if (count == capacity) {
+      grow();
+    }
+    System.arraycopy(descriptor, 0, rows, count * dimension, dimension);
+    mappedRows.position(count * dimension);
+    mappedRows.put(descriptor, 0, dimension);
+    updatePivotDistances(count);
+    count++;
+    mapping.putInt(8, count);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (mapping != null) {
+      mapping.force();
+    }
+    channel.close();
+    file.close();
+  }
+
+  private void map(int rowCapacity) throws IOException {
+    mapping =
+        channel.map(
+            FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) rowCapacity * dimension * 4);
+    mapping.order(ByteOrder.LITTLE_ENDIAN);
+    mapping.putInt(0, MAGIC);
+    mapping.putInt(4, dimension);
+    mapping.putInt(8, count);
+    mapping.putInt(12, rowCapacity);
+    mapping.position(HEADER_BYTES);
+    mappedRows = mapping.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+  }
+
+  private void grow() throws IOException {
+    mapping.force();
+    capacity *= 2;
+    map(capacity);
+    float[] newRows = new float[capacity * dimension];
+    System.arraycopy(rows, 0, newRows, 0, count * dimension);
+    rows = newRows;
+    float[] newPivotDistances = new float[capacity * NUM_PIVOTS];
+    System.arraycopy(pivotDistances, 0, newPivotDistances, 0, count * NUM_PIVOTS);
+    pivotDistances = newPivotDistances;
+  }
+
+  /** Fills in the pivot distances of {@code row}; pivots themselves are the first rows. */
+  private void updatePivotDistances(int row) {
+    int pivots = Math.min(row, NUM_PIVOTS);
+    int offset = row * dimension;
+    for (int p = 0; p < pivots; ++p) {
+      float sum = 0;
+      int pivotOffset = p * dimension;
+      for (int d = 0; d < dimension; ++d) {
+        float diff = rows[offset + d] - rows[pivotOffset + d];
+        sum += diff * diff;
+      }
+      pivotDistances[row * NUM_PIVOTS + p] = (float) Math.sqrt(sum);
+    }
+  }
+
+  /** Squared distance from {@code query} to {@code row}, or early once it exceeds {@code limit}. */
+  private float squaredDistance(float[] query, int row, float limit) {
+    int offset = row * dimension;
+    float sum = 0;
+    // Checks the bound every 8 dimensions to keep the inner loop simple.
+    for (int start = 0; start < dimension; start += 8) {
+      int end = Math.min(start + 8, dimension);
+      for (int d = start; d < end; ++d) {
+        float diff = query[d] - rows[offset + d];
+        sum += diff * diff;
+      }
+      if (sum > limit) {
+        return sum;
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,189 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import java.nio.ByteBuffer;
+
+/**
+ * The results of one frame as streamed by {@link ResultExporter}: the face's center, pose and
+ * bounding box, and the hands' landmarks.
+ *
+ * <p>On the wire, little-endian:
+ *
+ * <pre>
+ *   i64 timestampUs
+ *   u8  flags            FLAG_FACE, FLAG_FORWARD, FLAG_HANDS_REUSED
+ *   u8  numHands
+ *   u16 reserved
+ *   if FLAG_FACE:
+ *     f32[3] center      landmark centroid (x, y, z)
+ *     f32[3] angles      {@link FaceAnalysis#angleZ}, degrees
+ *     f32[4] box         min x, min y, max x, max y
+ *   per hand:
+ *     u8  isLeft
+ *     u8[3] reserved
+ *     f32[4] box         min x, min y, max x, max y
+ *     f32[3 * 21]        landmarks (x, y, z)
+ * </pre>
+ */
+public class ExportFrame implements SpscRing.Slot<ExportFrame> {
+  public static final int FLAG_FACE = 1;
+  public static final int FLAG_FORWARD = 2;
+  public static final int FLAG_HANDS_REUSED = 4;
+
+  static final int HEADER_SIZE = 12;
+  static final int FACE_SIZE = 4 * 10;
+  static final int HAND_SIZE = 4 + 4 * 4 + 4 * CombinedResult.HAND_STRIDE;
+
+  public long timestampUs;
+  public int flags;
+  public final float[] center = new float[3];
+  public final float[] angles = new float[3];
+  public final float[] box = new float[4];
+  public int numHands;
+  public final boolean[] isLeftHand;
+  /** Hand {@code i}'s box at {@code 4 * i}. */
+  public final float[] handBoxes;
+  /** Packed (x, y, z) hand landmarks, hand {@code i} at {@code i * CombinedResult.HAND_STRIDE}. */
+  public final float[] handLandmarks;
+
+  public ExportFrame(int maxHands) {
+    isLeftHand = new boolean[maxHands];
+    handBoxes = new float[4 * maxHands];
+    handLandmarks = new float[maxHands * CombinedResult.HAND_STRIDE];
+  }
+
+  /** Largest encoded size of a frame with up to {@code maxHands} hands. */
+  public static int maxSize(int maxHands) {
+    return HEADER_SIZE + FACE_SIZE + maxHands * HAND_SIZE;
+  }
+
+  public boolean hasFace() {
+    return (flags & FLAG_FACE) != 0;
+  }
+
+  /** Sets the face part from its analysis, and clears the hands. */
+  public void setFace(long timestampUs, FaceAnalysis analysis) {
+    this.timestampUs = timestampUs;
+    flags = FLAG_FACE | (analysis.isForward ? FLAG_FORWARD : 0);
+    for (int i = 0; i < 3; ++i) {
+      center[i] = (float) analysis.avg[i];
+      angles[i] = (float) analysis.angleZ[i];
+    }
+    box[0] = (float) analysis.min[0];
+    box[1] = (float) analysis.min[1];
+    box[2] = (float) analysis.max[0];
+    box[3] = (float) analysis.max[1];
+    numHands = 0;
+  }
+
+  /** Sets a frame without a face, and clears the hands. */
+  public void clear(long timestampUs) {
+    this.timestampUs = timestampUs;
+    flags = 0;
+    numHands = 0;
+  }
+
+  /** Sets the hands part from a joined result. */
+  public void setHands(CombinedResult result) {
+    numHands = Math.min(result.numHands, isLeftHand.length);
+    if (result.handsStatus == CombinedResult.HandsStatus.REUSED) {
+      flags |= FLAG_HANDS_REUSED;
+    }
+    System.arraycopy(
+        result.handLandmarks, 0, handLandmarks, 0, numHands * CombinedResult.HAND_STRIDE);
+    for (int i = 0; i < numHands; ++i) {
+      isLeftHand[i] = result.isLeftHand[i];
+      float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+      float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+      int end = (i + 1) * CombinedResult.HAND_STRIDE;
+      for (int k = i * CombinedResult.HAND_STRIDE; k < end; k += 3) {
+        minX = Math.min(minX, handLandmarks[k]);
+        maxX = Math.max(maxX, handLandmarks[k]);
+        minY = Math.min(minY, handLandmarks[k + 1]);
+        maxY = Math.max(maxY, handLandmarks[k + 1]);
+      }
+      handBoxes[4 * i] = minX;
+      handBoxes[4 * i + 1] = minY;
+      handBoxes[4 * i + 2] = maxX;
+      handBoxes[4 * i + 3] = maxY;
+    }
+  }
+
+  public int encodedSize() {
+    return HEADER_SIZE + (hasFace() ? FACE_SIZE : 0) + numHands * HAND_SIZE;
+  }
+
+  /** Writes the frame at the buffer's position, which must be little-endian with room for it. */
+  public void write(ByteBuffer out) {
+    out.putLong(timestampUs);
+    out.put((byte) flags);
+    out.put((byte) numHands);
+    out.putShort((short) 0);
+    if (hasFace()) {
+      putFloats(out, center, 0, 3);
+      putFloats(out, angles, 0, 3);
+      putFloats(out, box, 0, 4);
+    }
+    for (int i = 0; i < numHands; ++i) {
+      out.put((byte) (isLeftHand[i] ? 1 : 0));
+      out.put((byte) 0);
+      out.putShort((short) 0);
+      putFloats(out, handBoxes, 4 * i, 4);
+      putFloats(out, handLandmarks, i * CombinedResult.HAND_STRIDE, CombinedResult.HAND_STRIDE);
+    }
+  }
+
+  /**
+   * Reads a frame written by {@link #write} from a little-endian buffer.
+   *
+   * @throws IllegalArgumentException if the frame has more hands than this one holds.
+   */
+  public void read(ByteBuffer in) {
+    timestampUs = in.getLong();
+    flags = in.get() & 0xff;
+    int hands = in.get() & 0xff;
+    in.getShort();
+    if (hands > isLeftHand.length) {
+      throw new IllegalArgumentException("Frame has " + hands + " hands");
+    }
+    numHands = hands;
+    if (hasFace()) {
+      getFloats(in, center, 0, 3);
+      getFloats(in, angles, 0, 3);
+      getFloats(in, box, 0, 4);
+    }
+    for (int i = 0; i < numHands; ++i) {
+      isLeftHand[i] = in.get() != 0;
+      in.get();
+      in.getShort();
+      getFloats(in, handBoxes, 4 * i, 4);
+      getFloats(in, handLandmarks, i * CombinedResult.HAND_STRIDE, CombinedResult.HAND_STRIDE);
+    }
+  }
+
+  @Override
+  public void copyFrom(ExportFrame other) {
+    timestampUs = other.timestampUs;
+    flags = other.flags;
+    System.arraycopy(other.center, 0, center, 0, 3);
+    System.arraycopy(other.angles, 0, angles, 0, 3);
+    System.arraycopy(other.box, 0, box, 0, 4);
+    numHands = Math.min(other.numHands, isLeftHand.length);
+    System.arraycopy(other.isLeftHand, 0, isLeftHand, 0, numHands);
+    System.arraycopy(other.handBoxes, 0, handBoxes, 0, 4 * numHands);
+    System.arraycopy(
+        other.handLandmarks, 0, handLandmarks, 0, numHands * CombinedResult.HAND_STRIDE);
+  }
+
+  private static void putFloats(ByteBuffer out, float[] values, int offset, int count) {
+    for (int i = offset; i < offset + count; ++i) {
+      out.putFloat(values[i]);
+    }
+  }
+
+  private static void getFloats(ByteBuffer in, float[] values, int offset, int count) {
+    for (int i = offset; i < offset + count; ++i) {
+      values[i] = in.getFloat();
+    }
+  }
+}
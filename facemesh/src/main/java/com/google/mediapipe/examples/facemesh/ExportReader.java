@@ -0,0 +1,113 @@
+package com.google.mediapipe.examples.facemesh;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads the stream written by {@link ResultExporter}, one message at a time. A reference for
+ * collectors, and for checking the exporter end to end.
+ */
+public class ExportReader {
+  private final InputStream in;
+  private final int maxBatchFrames;
+  private final ByteBuffer buffer;
+  private int maxHands = -1;
+
+  /**
+   * @param in stream from the exporter's connection.
+   * @param maxBatchFrames most frames per message the exporter was configured with.
+   * @param maxHands most hands per frame the exporter was configured with.
+   */
+  public ExportReader(InputStream in, int maxBatchFrames, int maxHands) {
+    this.in = in;
+    this.maxBatchFrames = maxBatchFrames;
+    buffer =
+        ByteBuffer.allocate(
+                ResultExporter.BATCH_HEADER_SIZE + maxBatchFrames * ExportFrame.maxSize(maxHands))
+            .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Hands per frame announced by the stream header, or -1 before the first message is read. */
+  public int maxHands() {
+    return maxHands;
+  }
+
+  /**
+   * Reads the next message into {@code frames}, whose entries must hold the stream's hands.
+   *
+   * @return the number of frames read, or -1 at the end of the stream.
+   * @throws IOException if the stream is cut off or malformed.
+   */
+  public int readBatch(ExportFrame[] frames) throws IOException {
+    if (maxHands < 0 && !readHeader()) {
+      return -1;
+    }
+    buffer.clear();
+    if (!readFully(4)) {
+      return -1;
+    }
+    int length = buffer.getInt(0);
+    if (length < 4 || length > buffer.capacity() - 4) {
+      throw new IOException("Bad message length: " + length);
+    }
+    buffer.clear();
+    if (!readFully(length)) {
+      throw new EOFException("Message cut off");
+    }
+    buffer.flip();
+    int count = buffer.getShort() & 0xffff;
+    buffer.getShort();
+    if (count > maxBatchFrames || count > frames.length) {
+      throw new IOException("Too many frames in a message: " + count);
+    }
+    try {
+      for (int i = 0; i < count; ++i) {
+        frames[i].read(buffer);
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed frame", e);
+    }
+    if (buffer.hasRemaining()) {
+      throw new IOException("Message longer than its frames: " + buffer.remaining());
+    }
+    return count;
+  }
+
+  private boolean readHeader() throws IOException {
+    buffer.clear();
+    if (!readFully(ResultExporter.STREAM_HEADER_SIZE)) {
+      return false;
+    }
+    buffer.flip();
+    if (buffer.getInt() != ResultExporter.MAGIC) {
+      throw new IOException("Not an export stream");
+    }
+    int version = buffer.getShort() & 0xffff;
+    if (version != ResultExporter.VERSION) {
+      throw new IOException("Unsupported version: " + version);
+    }
+    maxHands = buffer.getShort() & 0xffff;
+    return true;
+  }
+
+  /** Reads {@code count} bytes at the buffer's position; {@code false} on a clean end of stream. */
+  private boolean readFully(int count) throws IOException {
+    int start = buffer.position();
+    int read = 0;
+    while (read < count) {
+      int n = in.read(buffer.array(), buffer.arrayOffset() + start + read, count - read);
+      if (n < 0) {
+        if (read == 0) {
+          return false;
+        }
+        throw new EOFException("Stream cut off");
+      }
+      read += n;
+    }
+    buffer.position(start + count);
+    return true;
+  }
+}
@@ -0,0 +1,217 @@
+package com.google.mediapipe.examples.facemesh;
+
+/**
+ * Cuts an upright, fixed-size face image out of a frame.
+ *
+ * <p>{@link #computeCrop} places the crop from packed face mesh landmarks: it is rotated by the
+ * roll of the eye line, so the eyes end up level, and framed like the original capture: a quarter
+ * of the face width on either side, five eighths of the face height above the forehead landmark
+ * and one eighth below the chin. The crop is then widened or heightened to the aspect ratio of the
+ * output, so every capture has the same geometry.
+ *
+ * <p>{@link #warp} resamples the crop into a preallocated ARGB buffer with bilinear filtering. The
+ * source position advances by a constant 16.16 fixed-point step along each output row, and the
+ * four channels are interpolated two at a time in one int, so the inner loop is integer-only.
+ * Frames read back from the camera texture are upside down; the warp can undo that as it goes.
+ *
+ * <p>Parts of the crop outside the frame are handled by the {@link Border} mode. Not thread-safe.
+ */
+public class FaceCropper {
+  private static final int RIGHT_EYE_OUTER = 33;
+  private static final int LEFT_EYE_OUTER = 263;
+  private static final int ONE = 1 << 16;
+
+  /** What to do where the crop extends past the frame. */
+  public enum Border {
+    /** Slide the crop back inside the frame where it fits, and repeat edge pixels elsewhere. */
+    CLAMP,
+    /** Keep the face centered and fill the outside with the pad color. */
+    PAD,
+  }
+
+  /** Position of a crop in the upright frame, in pixels. */
+  public static class Crop {
+    public float centerX;
+    public float centerY;
+    public float width;
+    public float height;
+    /** Rotation of the face about the image z axis, in radians. */
+    public float roll;
+  }
+
+  private final int outputWidth;
+  private final int outputHeight;
+  private final Border border;
+  private final int padColor;
+  private final int[] output;
+
+  public FaceCropper(int outputWidth, int outputHeight, Border border, int padColor) {
+    this.outputWidth = outputWidth;
+    this.outputHeight = outputHeight;
+    this.border = border;
+    this.padColor = padColor;
+    output = new int[outputWidth * outputHeight];
+  }
+
+  public int outputWidth() {
+    return outputWidth;
+  }
+
+  public int outputHeight() {
+    return outputHeight;
+  }
+
+  /** The output buffer, row-major ARGB; overwritten by every {@link #warp}. */
+  public int[] output() {
+    return output;
+  }
+
+  /**
+   * Places the crop of one face.
+   *
+   * @param landmarks packed (x, y, z) normalized landmarks.
+   * @param numLandmarks number of landmarks in {@code landmarks}.
+   * @param imageWidth frame width in pixels.
+   * @param imageHeight frame height in pixels.
+   * @param out receives the crop.
+   */
+  public void computeCrop(
+      float[] landmarks, int numLandmarks, int imageWidth, int imageHeight, Crop out) {
+    float eyeX =
+        (landmarks[3 * LEFT_EYE_OUTER] - landmarks[3 * RIGHT_EYE_OUTER]) * imageWidth;
+    float eyeY =
+        (landmarks[3 * LEFT_EYE_OUTER + 1] - landmarks[3 * RIGHT_EYE_OUTER + 1]) * imageHeight;
+    float roll = (float) Math.atan2(eyeY, eyeX);
+    float cos = (float) Math.cos(roll), sin = (float) Math.sin(roll);
+
+    // Bounding box in the face frame: u along the eye line, v from forehead to chin.
+    float minU = Float.MAX_VALUE, maxU = -Float.MAX_VALUE;
+    float minV = Float.MAX_VALUE, maxV = -Float.MAX_VALUE;
+    for (int i = 0; i < 3 * numLandmarks; i += 3) {
+      float x = landmarks[i] * imageWidth, y = landmarks[i + 1] * imageHeight;
+      float u = x * cos + y * sin;
+      float v = -x * sin + y * cos;
+      minU = Math.min(minU, u);
+      maxU = Math.max(maxU, u);
+      minV = Math.min(minV, v);
+      maxV = Math.max(maxV, v);
+    }
+    float faceWidth = maxU - minU, faceHeight = maxV - minV;
+    float centerU = (minU + maxU) / 2;
+    float centerV = (minV + maxV) / 2 - faceHeight / 4;
+
+    float aspect = (float) outputWidth / outputHeight;
+    float width = Math.max(1.5f * faceWidth, 1.75f * faceHeight * aspect);
+    out.width = width;
+    out.height = width / aspect;
+    out.roll = roll;
+    out.centerX = centerU * cos - centerV * sin;
+    out.centerY = centerU * sin + centerV * cos;
+
+    if (border == Border.CLAMP) {
+      // Half extents of the rotated crop along the image axes.
+      float halfX = (Math.abs(cos) * out.width + Math.abs(sin) * out.height) / 2;
+      float halfY = (Math.abs(sin) * out.width + Math.abs(cos) * out.height) / 2;
+      out.centerX = slide(out.centerX, halfX, imageWidth);
+      out.centerY = slide(out.centerY, halfY, imageHeight);
+    }
+  }
+
+  /**
+   * Resamples {@code crop} of a frame into {@link #output()}.
+   *
+   * @param pixels row-major ARGB frame.
+   * @param width frame width in pixels.
+   * @param height frame height in pixels.
+   * @param flippedVertically whether {@code pixels} holds the frame upside down.
+   * @param crop the crop, in upright frame coordinates.
+   * @return {@link #output()}.
+   */
+  public int[] warp(int[] pixels, int width, int height, boolean flippedVertically, Crop crop) {
+    float scale = crop.width / outputWidth;
+    float cos = (float) Math.cos(crop.roll), sin = (float) Math.sin(crop.roll);
+    // Source step per output column (along the eye line) and per output row.
+    float colX = scale * cos, colY = scale * sin;
+    float rowX = -scale * sin, rowY = scale * cos;
+    // Center of output pixel (0, 0), in continuous upright source coordinates.
+    float startX =
+        crop.centerX + (0.5f - outputWidth / 2f) * colX + (0.5f - outputHeight / 2f) * rowX;
+    float startY =
+        crop.centerY + (0.5f - outputWidth / 2f) * colY + (0.5f - outputHeight / 2f) * rowY;
+    if (flippedVertically) {
+      startY = height - startY;
+      colY = -colY;
+      rowY = -rowY;
+    }
+    // Pixel centers sit at half-integer coordinates.
+    int fx = fixed(startX - 0.5f), fy = fixed(startY - 0.5f);
+    int stepColX = fixed(colX), stepColY = fixed(colY);
+    int stepRowX = fixed(rowX), stepRowY = fixed(rowY);
+    int maxX = width - 1, maxY = height - 1;
+
+    int o = 0;
+    for (int row = 0; row < outputHeight; ++row) {
+      int sx = fx, sy = fy;
+      for (int col = 0; col < outputWidth; ++col) {
+        int x = sx >> 16, y = sy >> 16;
+        int wx = (sx >> 8) & 0xFF, wy = (sy >> 8) & 0xFF;
+        if (x >= 0 && y >= 0 && x < maxX && y < maxY) {
+          int i = y * width + x;
+          output[o++] = blend(pixels[i], pixels[i + 1], pixels[i + width], pixels[i + width + 1], wx, wy);
+        } else {
+          output[o++] =
+              blend(
+                  fetch(pixels, width, height, x, y),
+                  fetch(pixels, width, height, x + 1, y),
+                  fetch(pixels, width, height, x, y + 1),
+                  fetch(pixels, width, height, x + 1, y + 1),
+                  wx,
+                  wy);
+        }
+        sx += stepColX;
+        sy += stepColY;
+      }
+      fx += stepRowX;
+      fy += stepRowY;
+    }
+    return output;
+  }
+
+  private int fetch(int[] pixels, int width, int height, int x, int y) {
+    if (x >= 0 && y >= 0 && x < width && y < height) {
+      return pixels[y * width + x];
+    }
+    if (border == Border.PAD) {
+      return padColor;
+    }
+    x = Math.max(0, Math.min(x, width - 1));
+    y = Math.max(0, Math.min(y, height - 1));
+    return pixels[y * width + x];
+  }
+
+  /** Bilinear blend of four ARGB pixels with 8-bit weights, two channels per multiply. */
+  private static int blend(int p00, int p01, int p10, int p11, int wx, int wy) {
+    int top = lerp(p00, p01, wx);
+    int bottom = lerp(p10, p11, wx);
+    return lerp(top, bottom, wy);
+  }
+
+  private static int lerp(int a, int b, int w) {
+    int iw = 256 - w;
+    int rb = (((a & 0x00FF00FF) * iw + (b & 0x00FF00FF) * w) >>> 8) & 0x00FF00FF;
+    int ag = (((a >>> 8) & 0x00FF00FF) * iw + ((b >>> 8) & 0x00FF00FF) * w) & 0xFF00FF00;
+    return ag | rb;
+  }
+
+  private static int fixed(float value) {
+    return Math.round(value * ONE);
+  }
+
+  /** Moves {@code center} so [center - half, center + half] lies within [0, size] if it fits. */
+  private static float slide(float center, float half, int size) {
+    if (2 * half >= size) {
+      return size / 2f;
+    }
+    return Math.max(half, Math.min(center, size - half));
+  }
+}
@@ -0,0 +1,85 @@
+package com.google.mediapipe.examples.facemesh;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import com.google.mediapipe.examples.facecenter.FaceAnalyzer;
+import com.google.mediapipe.solutions.facemesh.FaceMesh;
+import com.google.mediapipe.solutions.facemesh.FaceMeshOptions;
+import com.google.mediapipe.solutions.facemesh.FaceMeshResult;
+
+/**
+ * A {@link FrameAnalyzer} backed by a MediaPipe Face Mesh solution in static image mode.
+ *
+ * <p>Frames are sent one at a time and the next one is only sent once the previous result is
+ * back, so the analysis runs exactly as fast as inference does. Results are handed over through an
+ * {@link InFlightFrame} tagged with the frame's timestamp, so a result that comes after its frame
+ * timed out is never taken for the next frame's.
+ */
+public class FaceMeshFrameAnalyzer implements FrameAnalyzer<Bitmap> {
+  private static final String TAG = "FaceMeshFrameAnalyzer";
+  private static final long RESULT_TIMEOUT_MS = 5000;
+
+  private final FaceMesh facemesh;
+  private final InFlightFrame inFlight =
+      new InFlightFrame(FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES);
+  // Packed by the listener thread only.
+  private final float[] resultLandmarks =
+      new float[3 * FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES];
+  private final float[] landmarks = new float[3 * FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES];
+
+  public FaceMeshFrameAnalyzer(Context context, boolean runOnGpu) {
+    facemesh =
+        new FaceMesh(
+            context,
+            FaceMeshOptions.builder()
+                .setStaticImageMode(true)
+                .setRefineLandmarks(true)
+                .setRunOnGpu(runOnGpu)
+                .build());
+    facemesh.setResultListener(
+        faceMeshResult -> inFlight.complete(resultLandmarks, packFirstFace(faceMeshResult)));
+    facemesh.setErrorListener(
+        (message, e) -> {
+          Log.e(TAG, "MediaPipe Face Mesh error:" + message);
+          inFlight.fail();
+        });
+  }
+
+  @Override
+  public boolean analyze(Bitmap frame, long timestampUs, FaceAnalysis out)
+      throws InterruptedException {
+    if (frame == null) {
+      return false;
+    }
+    inFlight.begin(timestampUs, RESULT_TIMEOUT_MS);
+    facemesh.send(frame);
+    int numLandmarks = inFlight.await(timestampUs, RESULT_TIMEOUT_MS, landmarks);
+    if (numLandmarks < 0) {
+      Log.w(TAG, "No result for frame at " + timestampUs + "us");
+      return false;
+    }
+    if (numLandmarks == 0) {
+      return false;
+    }
+    FaceAnalyzer.analyze(landmarks, numLandmarks, out);
+    return true;
+  }
+
+  public void close() {
+    if (inFlight.lostFrames() > 0 || inFlight.strayResults() > 0) {
+      Log.w(TAG, "Frames without a result: " + inFlight.lostFrames()
+          + ", results without a frame: " + inFlight.strayResults());
+    }
+    facemesh.close();
+  }
+
+  private int packFirstFace(FaceMeshResult result) {
+    if (result == null || result.multiFaceLandmarks().isEmpty()) {
+      return 0;
+    }
+    return LandmarkPacker.pack(
+        result.multiFaceLandmarks().get(0).getLandmarkList(), resultLandmarks);
+  }
+}
@@ -0,0 +1,161 @@
+package com.google.mediapipe.examples.facemesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Decides whether camera frames go to the cheap face detector or to the full face mesh.
+ *
+ * <p>The gate starts in {@link Mode#DETECTING}. Once the detector has seen a face in {@code
+ * framesToStart} consecutive results it switches to {@link Mode#MESHING}, and it falls back to
+ * detection after the mesh has come back empty {@code framesToStop} times in a row. Results that
+ * arrive for the stage that is no longer active (frames still in flight when the mode changed) are
+ * ignored.
+ *
+ * <p>Detector results carry no texture for the preview, so a preview fed from mesh results stays
+ * black until the first switch to {@link Mode#MESHING} and holds the last mesh frame while in
+ * {@link Mode#DETECTING}.
+ *
+ * <p>Results may be reported from different solution threads, so all state changes are
+ * synchronized; {@link #shouldRunMesh()} is a plain volatile read for the camera thread.
+ */
+public class FaceMeshGate {
+  /** Which stage camera frames are routed to. */
+  public enum Mode {
+    DETECTING,
+    MESHING,
+  }
+
+  /** Notified on every mode change, on the thread that reported the triggering result. */
+  public interface ModeListener {
+    void onModeChanged(Mode mode);
+  }
+
+  /**
+   * Whether the gate is used and how long it waits, read from a properties file:
+   *
+   * <pre>
+   * cascade.enabled                 false runs the mesh on every frame
+   * cascade.frames_to_start_mesh    see {@link FaceMeshGate#FaceMeshGate}
+   * cascade.frames_to_stop_mesh
+   * </pre>
+   *
+   * Keys left out keep their defaults.
+   */
+  public static class Config {
+    public boolean enabled = true;
+    public int framesToStart = 3;
+    public int framesToStop = 30;
+
+    /**
+     * Reads a config.
+     *
+     * @throws IllegalArgumentException if a value is malformed.
+     */
+    public static Config load(InputStream in) throws IOException {
+      Properties properties = new Properties();
+      properties.load(in);
+      Config config = new Config();
+      String enabled = properties.getProperty("cascade.enabled");
+      if (enabled != null) {
+        config.enabled = Boolean.parseBoolean(enabled.trim());
+      }
+      config.framesToStart =
+          count(properties, "cascade.frames_to_start_mesh", config.framesToStart);
+      config.framesToStop = count(properties, "cascade.frames_to_stop_mesh", config.framesToStop);
+      return config;
+    }
+
+    private static int count(Properties properties, String key, int defaultValue) {
+      String value = properties.getProperty(key);
+      if (value == null) {
+        return defaultValue;
+      }
+      try {
+        int count = Integer.parseInt(value.trim());
+        if (count >= 1) {
+          return count;
+        }
+      } catch (NumberFormatException e) {
+        // Reported below.
+      }
+      throw new IllegalArgumentException(
+          String.format(Locale.US, "Bad face mesh gate value %s=%s", key, value));
+    }
+  }
+
+  private final int framesToStart;
+  private final int framesToStop;
+  private volatile Mode mode = Mode.DETECTING;
+  private int presentCount;
+  private int absentCount;
+  private ModeListener modeListener;
+
+  /**
+   * @param framesToStart consecutive detector results with a face needed to start the mesh.
+   * @param framesToStop consecutive empty mesh results needed to go back to detection.
+   */
+  public FaceMeshGate(int framesToStart, int framesToStop) {
+    if (framesToStart < 1 || framesToStop < 1) {
+      throw new IllegalArgumentException("Frame counts must be positive.");
+    }
+    this.framesToStart = framesToStart;
+    this.framesToStop = framesToStop;
+  }
+
+  public FaceMeshGate(Config config) {
+    this(config.framesToStart, config.framesToStop);
+  }
+
+  public synchronized void setModeListener(ModeListener modeListener) {
+    this.modeListener = modeListener;
+  }
+
+  public Mode mode() {
+    return mode;
+  }
+
+  public boolean shouldRunMesh() {
+    return mode == Mode.MESHING;
+  }
+
+  /** Reports whether the face detector found a face in its latest result. */
+  public synchronized void onDetectorResult(boolean facePresent) {
+    if (mode != Mode.DETECTING) {
+      return;
+    }
+    presentCount = facePresent ? presentCount + 1 : 0;
+    if (presentCount >= framesToStart) {
+      setMode(Mode.MESHING);
+    }
+  }
+
+  /** Reports whether the face mesh found a face in its latest result. */
+  public synchronized void onMeshResult(boolean facePresent) {
+    if (mode != Mode.MESHING) {
+      return;
+    }
+    absentCount = facePresent ? 0 : absentCount + 1;
+    if (absentCount >= framesToStop) {
+      setMode(Mode.DETECTING);
+    }
+  }
+
+  /** Goes back to detection, e.g. when the pipeline is restarted. */
+  public synchronized void reset() {
+    presentCount = 0;
+    absentCount = 0;
+    mode = Mode.DETECTING;
+  }
+
+  private void setMode(Mode newMode) {
+    presentCount = 0;
+    absentCount = 0;
+    mode = newMode;
+    if (modeListener != null) {
+      modeListener.onModeChanged(newMode);
+    }
+  }
+}
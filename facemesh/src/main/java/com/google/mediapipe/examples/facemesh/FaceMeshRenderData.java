@@ -0,0 +1,47 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
+import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmarkList;
+import com.google.mediapipe.solutions.facemesh.FaceMesh;
+import com.google.mediapipe.solutions.facemesh.FaceMeshResult;
+import java.util.List;
+
+/**
+ * Face mesh landmarks of one result, packed for {@link FaceMeshResultGlRenderer} and handed over
+ * through a {@link TripleBuffer}.
+ */
+public class FaceMeshRenderData {
+  /** Floats reserved per face. */
+  public static final int FACE_STRIDE = 3 * FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES;
+
+  /** Packed (x, y, z) landmarks, face {@code i} starting at {@code i * FACE_STRIDE}. */
+  public final float[] landmarks;
+  public final int[] numLandmarks;
+  public int numFaces;
+
+  public FaceMeshRenderData(int maxFaces) {
+    landmarks = new float[maxFaces * FACE_STRIDE];
+    numLandmarks = new int[maxFaces];
+  }
+
+  public void set(FaceMeshResult result) {
+    List<NormalizedLandmarkList> faces = result.multiFaceLandmarks();
+    numFaces = Math.min(faces.size(), numLandmarks.length);
+    for (int i = 0; i < numFaces; ++i) {
+      numLandmarks[i] =
+          LandmarkPacker.pack(
+              faces.get(i).getLandmarkList(),
+              landmarks,
+              i * FACE_STRIDE,
+              FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES);
+    }
+  }
+
+  /** Creates the exchange between the result listener and the renderer. */
+  public static TripleBuffer<FaceMeshRenderData> newTripleBuffer(int maxFaces) {
+    return new TripleBuffer<>(
+        new FaceMeshRenderData(maxFaces),
+        new FaceMeshRenderData(maxFaces),
+        new FaceMeshRenderData(maxFaces));
+  }
+}
@@ -15,8 +15,11 @@
 package com.google.mediapipe.examples.facemesh;
 
 import android.opengl.GLES20;
+import android.util.Log;
 import com.google.common.collect.ImmutableSet;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.examples.facecenter.LandmarkChangeDetector;
+import com.google.mediapipe.examples.facecenter.OverlayDetailController;
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
 import com.google.mediapipe.solutioncore.ResultGlRenderer;
 import com.google.mediapipe.solutions.facemesh.FaceMesh;
 import com.google.mediapipe.solutions.facemesh.FaceMeshConnections;
@@ -24,7 +27,7 @@ import com.google.mediapipe.solutions.facemesh.FaceMeshResult;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** A custom implementation of {@link ResultGlRenderer} to render {@link FaceMeshResult}. */
 public class FaceMeshResultGlRenderer implements ResultGlRenderer<FaceMeshResult> {
@@ -44,11 +47,24 @@ public class FaceMeshResultGlRenderer implements ResultGlRenderer<FaceMeshResult
   private static final int FACE_OVAL_THICKNESS = 4;
   private static final float[] LIPS_COLOR = new float[] {0.9f, 0.9f, 0.9f, 1f};
   private static final int LIPS_THICKNESS = 4;
+  private static final float[] KEYPOINT_COLOR = new float[] {1f, 0.2f, 0.2f, 1f};
+  private static final float KEYPOINT_SIZE = 12f;
+  // Nose tip, eye corners, mouth corners, forehead, chin and cheeks.
+  private static final int[] KEYPOINTS = {1, 33, 133, 362, 263, 61, 291, 10, 152, 234, 454};
+  // Time the overlay may take per frame before detail is reduced.
+  private static final long OVERLAY_BUDGET_NANOS = 4_000_000;
+  private static final int STEP_UP_FRAMES = 90;
+  // Landmark movement, in pixels, below which the uploaded vertices are reused.
+  private static final float CHANGE_THRESHOLD_PIXELS = 1f;
+  // Tesselation, six contours and two irises.
+  private static final int MAX_BATCHES_PER_FACE = 9;
   private static final String VERTEX_SHADER =
       "uniform mat4 uProjectionMatrix;\n"
+          + "uniform float uPointSize;\n"
           + "attribute vec4 vPosition;\n"
           + "void main() {\n"
           + "  gl_Position = uProjectionMatrix * vPosition;\n"
+          + "  gl_PointSize = uPointSize;\n"
           + "}";
   private static final String FRAGMENT_SHADER =
       "precision mediump float;\n"
@@ -58,8 +74,69 @@ public class FaceMeshResultGlRenderer implements ResultGlRenderer<FaceMeshResult
           + "}";
   private int program;
   private int positionHandle;
+  private int pointSizeHandle;
   private int projectionMatrixHandle;
   private int colorHandle;
+  private int vertexBufferObject;
+
+  private final TripleBuffer<FaceMeshRenderData> renderData;
+  // Set while a result handed to the surface view waits to be drawn, see tryQueueFrame().
+  private final AtomicBoolean frameQueued = new AtomicBoolean();
+  private final OverlayDetailController detail =
+      new OverlayDetailController(OVERLAY_BUDGET_NANOS, STEP_UP_FRAMES);
+  // Landmark index pairs of each connection set, flattened once.
+  private final int[] tesselation = toIndices(FaceMeshConnections.FACEMESH_TESSELATION);
+  private final int[] rightEye = toIndices(FaceMeshConnections.FACEMESH_RIGHT_EYE);
+  private final int[] rightEyebrow = toIndices(FaceMeshConnections.FACEMESH_RIGHT_EYEBROW);
+  private final int[] leftEye = toIndices(FaceMeshConnections.FACEMESH_LEFT_EYE);
+  private final int[] leftEyebrow = toIndices(FaceMeshConnections.FACEMESH_LEFT_EYEBROW);
+  private final int[] faceOval = toIndices(FaceMeshConnections.FACEMESH_FACE_OVAL);
+  private final int[] lips = toIndices(FaceMeshConnections.FACEMESH_LIPS);
+  private final int[] rightIris = toIndices(FaceMeshConnections.FACEMESH_RIGHT_IRIS);
+  private final int[] leftIris = toIndices(FaceMeshConnections.FACEMESH_LEFT_IRIS);
+  // Vertices of all batches, built on the CPU and uploaded to the vertex buffer object.
+  private final FloatBuffer vertexBuffer;
+  private final int[] viewport = new int[4];
+  private final LandmarkChangeDetector changeDetector;
+  // Batches stored in the vertex buffer object, drawn again every frame.
+  private final int[] batchModes;
+  private final int[] batchFirst;
+  private final int[] batchCounts;
+  private final float[][] batchColors;
+  private final float[] batchSizes;
+  private int numBatches;
+  private OverlayDetailController.Level uploadedLevel;
+
+  /**
+   * @param renderData landmarks to draw, published by the result listener.
+   * @param maxFaces largest number of faces in {@code renderData}.
+   */
+  public FaceMeshResultGlRenderer(TripleBuffer<FaceMeshRenderData> renderData, int maxFaces) {
+    this.renderData = renderData;
+    int indicesPerFace =
+        tesselation.length
+            + rightEye.length
+            + rightEyebrow.length
+            + leftEye.length
+            + leftEyebrow.length
+            + faceOval.length
+            + lips.length
+            + rightIris.length
+            + leftIris.length;
+    vertexBuffer =
+        ByteBuffer.allocateDirect(maxFaces * indicesPerFace * 2 * 4)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+    changeDetector =
+        new LandmarkChangeDetector(
+            maxFaces * FaceMeshRenderData.FACE_STRIDE, 3, CHANGE_THRESHOLD_PIXELS);
+    int maxBatches = maxFaces * MAX_BATCHES_PER_FACE;
+    batchModes = new int[maxBatches];
+    batchFirst = new int[maxBatches];
+    batchCounts = new int[maxBatches];
+    batchColors = new float[maxBatches][];
+    batchSizes = new float[maxBatches];
+  }
 
   private int loadShader(int type, String shaderCode) {
     int shader = GLES20.glCreateShader(type);
@@ -77,8 +154,25 @@ public class FaceMeshResultGlRenderer implements ResultGlRenderer<FaceMeshResult
     GLES20.glAttachShader(program, fragmentShader);
     GLES20.glLinkProgram(program);
     positionHandle = GLES20.glGetAttribLocation(program, "vPosition");
+    pointSizeHandle = GLES20.glGetUniformLocation(program, "uPointSize");
     projectionMatrixHandle = GLES20.glGetUniformLocation(program, "uProjectionMatrix");
     colorHandle = GLES20.glGetUniformLocation(program, "uColor");
+    int[] buffers = new int[1];
+    GLES20.glGenBuffers(1, buffers, 0);
+    vertexBufferObject = buffers[0];
+    changeDetector.invalidate();
+    frameQueued.set(false);
+  }
+
+  /**
+   * Reserves the next frame for a new result; {@code false} while the previous one hasn't been
+   * drawn yet. Only after a successful call may the result listener publish the overlay and hand
+   * the result, whose camera texture is drawn under it, to the surface view, so that the overlay
+   * drawn is always the one of the texture drawn with it. Results arriving in between are not
+   * drawn at all.
+   */
+  public boolean tryQueueFrame() {
+    return frameQueued.compareAndSet(false, true);
   }
 
   @Override
@@ -86,91 +180,124 @@ public class FaceMeshResultGlRenderer implements ResultGlRenderer<FaceMeshResult
     if (result == null) {
       return;
     }
+    boolean sampleGpu = detail.shouldSampleGpu();
+    long startNanos = System.nanoTime();
+    FaceMeshRenderData data = renderData.acquire();
+    // Once the overlay of this frame is taken, the next one may be published.
+    frameQueued.set(false);
     GLES20.glUseProgram(program);
     GLES20.glUniformMatrix4fv(projectionMatrixHandle, 1, false, projectionMatrix, 0);
+    GLES20.glEnableVertexAttribArray(positionHandle);
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferObject);
 
-    int numFaces = result.multiFaceLandmarks().size();
-    for (int i = 0; i < numFaces; ++i) {
-      drawLandmarks(
-          result.multiFaceLandmarks().get(i).getLandmarkList(),
-          FaceMeshConnections.FACEMESH_TESSELATION,
-          TESSELATION_COLOR,
-          TESSELATION_THICKNESS);
-      drawLandmarks(
-          result.multiFaceLandmarks().get(i).getLandmarkList(),
-          FaceMeshConnections.FACEMESH_RIGHT_EYE,
-          RIGHT_EYE_COLOR,
-          RIGHT_EYE_THICKNESS);
-      drawLandmarks(
-          result.multiFaceLandmarks().get(i).getLandmarkList(),
-          FaceMeshConnections.FACEMESH_RIGHT_EYEBROW,
-          RIGHT_EYEBROW_COLOR,
-          RIGHT_EYEBROW_THICKNESS);
-      drawLandmarks(
-          result.multiFaceLandmarks().get(i).getLandmarkList(),
-          FaceMeshConnections.FACEMESH_LEFT_EYE,
-          LEFT_EYE_COLOR,
-          LEFT_EYE_THICKNESS);
-      drawLandmarks(
-          result.multiFaceLandmarks().get(i).getLandmarkList(),
-          FaceMeshConnections.FACEMESH_LEFT_EYEBROW,
-          LEFT_EYEBROW_COLOR,
-          LEFT_EYEBROW_THICKNESS);
-      drawLandmarks(
-          result.multiFaceLandmarks().get(i).getLandmarkList(),
-          FaceMeshConnections.FACEMESH_FACE_OVAL,
-          FACE_OVAL_COLOR,
-          FACE_OVAL_THICKNESS);
-      drawLandmarks(
-          result.multiFaceLandmarks().get(i).getLandmarkList(),
-          FaceMeshConnections.FACEMESH_LIPS,
-          LIPS_COLOR,
-          LIPS_THICKNESS);
-      if (result.multiFaceLandmarks().get(i).getLandmarkCount()
-          == FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES) {
-        drawLandmarks(
-            result.multiFaceLandmarks().get(i).getLandmarkList(),
-            FaceMeshConnections.FACEMESH_RIGHT_IRIS,
-            RIGHT_EYE_COLOR,
-            RIGHT_EYE_THICKNESS);
-        drawLandmarks(
-            result.multiFaceLandmarks().get(i).getLandmarkList(),
-            FaceMeshConnections.FACEMESH_LEFT_IRIS,
-            LEFT_EYE_COLOR,
-            LEFT_EYE_THICKNESS);
+    OverlayDetailController.Level level = detail.level();
+    if (level != uploadedLevel) {
+      changeDetector.invalidate();
+      uploadedLevel = level;
+    }
+    GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, viewport, 0);
+    int length = data.numFaces * FaceMeshRenderData.FACE_STRIDE;
+    if (changeDetector.update(data.landmarks, length, viewport[2], viewport[3])) {
+      buildBatches(data, level);
+      GLES20.glBufferData(
+          GLES20.GL_ARRAY_BUFFER, vertexBuffer.limit() * 4, vertexBuffer, GLES20.GL_DYNAMIC_DRAW);
+    }
+    GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, 0);
+    for (int i = 0; i < numBatches; ++i) {
+      GLES20.glUniform4fv(colorHandle, 1, batchColors[i], 0);
+      if (batchModes[i] == GLES20.GL_POINTS) {
+        GLES20.glUniform1f(pointSizeHandle, batchSizes[i]);
+      } else {
+        GLES20.glLineWidth(batchSizes[i]);
       }
+      GLES20.glDrawArrays(batchModes[i], batchFirst[i], batchCounts[i]);
+    }
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+    if (sampleGpu) {
+      GLES20.glFinish();
+    }
+    if (detail.onFrameDrawn(System.nanoTime() - startNanos, sampleGpu)) {
+      Log.i(TAG, "Overlay detail: " + detail.level());
     }
   }
 
   /**
-   * Deletes the shader program.
+   * Deletes the shader program and the vertex buffer object.
    *
    * <p>This is only necessary if one wants to release the program while keeping the context around.
    */
   public void release() {
     GLES20.glDeleteProgram(program);
+    GLES20.glDeleteBuffers(1, new int[] {vertexBufferObject}, 0);
+  }
+
+  /** Fraction of frames that drew the previously uploaded vertices again. */
+  public float uploadSkipRate() {
+    return changeDetector.skipRate();
+  }
+
+  /** Caps the overlay detail, e.g. while the device is throttled. Safe from any thread. */
+  public void setDetailCap(OverlayDetailController.Level cap) {
+    detail.setCap(cap);
+  }
+
+  /** Fills {@link #vertexBuffer} with the batches of every face at {@code level}. */
+  private void buildBatches(FaceMeshRenderData data, OverlayDetailController.Level level) {
+    vertexBuffer.clear();
+    numBatches = 0;
+    for (int i = 0; i < data.numFaces; ++i) {
+      int offset = i * FaceMeshRenderData.FACE_STRIDE;
+      if (level == OverlayDetailController.Level.KEYPOINTS) {
+        addBatch(
+            data.landmarks, offset, KEYPOINTS, GLES20.GL_POINTS, KEYPOINT_COLOR, KEYPOINT_SIZE);
+        continue;
+      }
+      if (level == OverlayDetailController.Level.FULL) {
+        addLines(data.landmarks, offset, tesselation, TESSELATION_COLOR, TESSELATION_THICKNESS);
+      }
+      addLines(data.landmarks, offset, rightEye, RIGHT_EYE_COLOR, RIGHT_EYE_THICKNESS);
+      addLines(data.landmarks, offset, rightEyebrow, RIGHT_EYEBROW_COLOR, RIGHT_EYEBROW_THICKNESS);
+      addLines(data.landmarks, offset, leftEye, LEFT_EYE_COLOR, LEFT_EYE_THICKNESS);
+      addLines(data.landmarks, offset, leftEyebrow, LEFT_EYEBROW_COLOR, LEFT_EYEBROW_THICKNESS);
+      addLines(data.landmarks, offset, faceOval, FACE_OVAL_COLOR, FACE_OVAL_THICKNESS);
+      addLines(data.landmarks, offset, lips, LIPS_COLOR, LIPS_THICKNESS);
+      if (data.numLandmarks[i] == FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES) {
+        addLines(data.landmarks, offset, rightIris, RIGHT_EYE_COLOR, RIGHT_EYE_THICKNESS);
+        addLines(data.landmarks, offset, leftIris, LEFT_EYE_COLOR, LEFT_EYE_THICKNESS);
+      }
+    }
+    vertexBuffer.flip();
+  }
+
+  private void addLines(
+      float[] landmarks, int offset, int[] connections, float[] colorArray, int thickness) {
+    addBatch(landmarks, offset, connections, GLES20.GL_LINES, colorArray, thickness);
+  }
+
+  /** Appends the landmarks at {@code indices} of one face as one batch drawn with {@code mode}. */
+  private void addBatch(
+      float[] landmarks, int offset, int[] indices, int mode, float[] colorArray, float size) {
+    batchModes[numBatches] = mode;
+    batchFirst[numBatches] = vertexBuffer.position() / 2;
+    batchCounts[numBatches] = indices.length;
+    batchColors[numBatches] = colorArray;
+    batchSizes[numBatches] = size;
+    numBatches++;
+    for (int index : indices) {
+      vertexBuffer.put(landmarks[offset + 3 * index]);
+      vertexBuffer.put(landmarks[offset + 3 * index + 1]);
+    }
   }
 
-  private void drawLandmarks(
-      List<NormalizedLandmark> faceLandmarkList,
-      ImmutableSet<FaceMeshConnections.Connection> connections,
-      float[] colorArray,
-      int thickness) {
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    GLES20.glLineWidth(thickness);
+  /** Flattens {@code connections} into (start, end) landmark index pairs. */
+  private static int[] toIndices(ImmutableSet<FaceMeshConnections.Connection> connections) {
+    int[] indices = new int[2 * connections.size()];
+    int i = 0;
     for (FaceMeshConnections.Connection c : connections) {
-      NormalizedLandmark start = faceLandmarkList.get(c.start());
-      NormalizedLandmark end = faceLandmarkList.get(c.end());
-      float[] vertex = {start.getX(), start.getY(), end.getX(), end.getY()};
-      FloatBuffer vertexBuffer =
-          ByteBuffer.allocateDirect(vertex.length * 4)
-              .order(ByteOrder.nativeOrder())
-              .asFloatBuffer()
-              .put(vertex);
-      vertexBuffer.position(0);
-      GLES20.glEnableVertexAttribArray(positionHandle);
-      GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-      GLES20.glDrawArrays(GLES20.GL_LINES, 0, 2);
+      indices[i++] = c.start();
+      indices[i++] = c.end();
     }
+    return indices;
   }
 }
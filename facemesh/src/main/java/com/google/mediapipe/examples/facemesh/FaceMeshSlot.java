@@ -0,0 +1,33 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmarkList;
+import com.google.mediapipe.solutions.facemesh.FaceMesh;
+import com.google.mediapipe.solutions.facemesh.FaceMeshResult;
+import java.util.List;
+
+/** Landmarks of the first face of one face mesh result, passed through a {@link SpscRing}. */
+public class FaceMeshSlot implements SpscRing.Slot<FaceMeshSlot> {
+  public final float[] landmarks = new float[3 * FaceMesh.FACEMESH_NUM_LANDMARKS_WITH_IRISES];
+  public int numLandmarks;
+  public long timestampUs;
+
+  /** Packs {@code result}; returns {@code false}, leaving the slot unusable, if it has no face. */
+  public boolean set(FaceMeshResult result) {
+    List<NormalizedLandmarkList> faces = result.multiFaceLandmarks();
+    if (faces.isEmpty()) {
+      numLandmarks = 0;
+      return false;
+    }
+    numLandmarks = LandmarkPacker.pack(faces.get(0).getLandmarkList(), landmarks);
+    timestampUs = result.timestamp();
+    return true;
+  }
+
+  @Override
+  public void copyFrom(FaceMeshSlot other) {
+    int count = Math.min(other.numLandmarks, landmarks.length / 3);
+    System.arraycopy(other.landmarks, 0, landmarks, 0, 3 * count);
+    numLandmarks = count;
+    timestampUs = other.timestampUs;
+  }
+}
@@ -0,0 +1,51 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/** Writes a per-frame face track (center, pose and bounding box) as CSV. */
+public class FaceTrackWriter implements Closeable {
+  private static final String HEADER =
+      "frame,timestamp_us,face,center_x,center_y,center_z,angle_x,angle_y,angle_z,"
+          + "bbox_min_x,bbox_min_y,bbox_max_x,bbox_max_y,forward";
+
+  private final BufferedWriter writer;
+
+  public FaceTrackWriter(Writer writer) throws IOException {
+    this.writer = new BufferedWriter(writer);
+    this.writer.write(HEADER);
+    this.writer.newLine();
+  }
+
+  /**
+   * Appends one row.
+   *
+   * @param analysis the face found in the frame, or {@code null} if there was none.
+   */
+  public void write(int frameIndex, long timestampUs, FaceAnalysis analysis) throws IOException {
+    if (analysis == null) {
+      writer.write(String.format(Locale.US, "%d,%d,0,,,,,,,,,,,0", frameIndex, timestampUs));
+    } else {
+      writer.write(
+          String.format(
+              Locale.US,
+              "%d,%d,1,%.5f,%.5f,%.5f,%.2f,%.2f,%.2f,%.5f,%.5f,%.5f,%.5f,%d",
+              frameIndex,
+              timestampUs,
+              analysis.avg[0], analysis.avg[1], analysis.avg[2],
+              analysis.angleZ[0], analysis.angleZ[1], analysis.angleZ[2],
+              analysis.min[0], analysis.min[1], analysis.max[0], analysis.max[1],
+              analysis.isForward ? 1 : 0));
+    }
+    writer.newLine();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
@@ -0,0 +1,17 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+
+/**
+ * Runs a single frame through a face solution and analyzes the first face found.
+ *
+ * @param <F> the frame type accepted by the underlying solution.
+ */
+public interface FrameAnalyzer<F> {
+  /**
+   * Analyzes {@code frame}, blocking until the result is available.
+   *
+   * @return {@code true} if a face was found and {@code out} has been filled in.
+   */
+  boolean analyze(F frame, long timestampUs, FaceAnalysis out) throws InterruptedException;
+}
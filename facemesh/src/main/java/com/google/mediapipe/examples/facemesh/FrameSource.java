@@ -0,0 +1,17 @@
+package com.google.mediapipe.examples.facemesh;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A sequence of frames to be analyzed offline, such as the decoded frames of a video file.
+ *
+ * @param <F> the frame type, e.g. {@link android.graphics.Bitmap}.
+ */
+public interface FrameSource<F> extends Closeable {
+  /** Returns the next frame, or {@code null} once the source is exhausted. */
+  F nextFrame() throws IOException;
+
+  /** Returns the timestamp in microseconds of the frame last returned by {@link #nextFrame()}. */
+  long frameTimestampUs();
+}
@@ -0,0 +1,107 @@
+package com.google.mediapipe.examples.facemesh;
+
+/**
+ * Hands the landmarks of the one frame in flight from a solution's listener thread to the thread
+ * that sent the frame.
+ *
+ * <p>The sender tags the frame with its input timestamp in {@link #begin}, the listener answers it
+ * with {@link #complete} or {@link #fail}, and the sender picks the answer up with {@link #await}.
+ * Results always belong to the frame they are handed to: an answer arriving while no frame is in
+ * flight, e.g. a result that came after {@link #await} gave up on it, is dropped. A frame given up
+ * on is still waited for by the next {@link #begin}, since the solution answers in order, and only
+ * written off once that wait times out as well.
+ */
+public class InFlightFrame {
+  private static final long NONE = Long.MIN_VALUE;
+
+  private final float[] landmarks;
+  private int numLandmarks;
+  // Frame sent and not answered yet, and the frame the held landmarks belong to.
+  private long inFlightUs = NONE;
+  private long answeredUs = NONE;
+  private long strayResults;
+  private long lostFrames;
+
+  /** @param maxLandmarks most landmarks per result. */
+  public InFlightFrame(int maxLandmarks) {
+    landmarks = new float[3 * maxLandmarks];
+  }
+
+  /**
+   * Marks the frame at {@code timestampUs} as in flight, right before it is sent. If an earlier
+   * frame is still unanswered, waits up to {@code timeoutMs} for its answer first.
+   */
+  public synchronized void begin(long timestampUs, long timeoutMs) throws InterruptedException {
+    if (inFlightUs != NONE && !waitForAnswer(timeoutMs)) {
+      lostFrames++;
+    }
+    inFlightUs = timestampUs;
+    answeredUs = NONE;
+    numLandmarks = 0;
+  }
+
+  /** Answers the frame in flight with {@code count} packed landmarks. Listener thread. */
+  public synchronized void complete(float[] packed, int count) {
+    if (inFlightUs == NONE) {
+      strayResults++;
+      return;
+    }
+    numLandmarks = Math.min(count, landmarks.length / 3);
+    System.arraycopy(packed, 0, landmarks, 0, 3 * numLandmarks);
+    answer();
+  }
+
+  /** Answers the frame in flight with no landmarks, e.g. on a solution error. Listener thread. */
+  public synchronized void fail() {
+    if (inFlightUs == NONE) {
+      strayResults++;
+      return;
+    }
+    numLandmarks = 0;
+    answer();
+  }
+
+  /**
+   * Waits up to {@code timeoutMs} for the answer to the frame at {@code timestampUs} and copies
+   * its landmarks into {@code out}.
+   *
+   * @return the number of landmarks, 0 if the frame had no face, or -1 if it wasn't answered in
+   *     time.
+   */
+  public synchronized int await(long timestampUs, long timeoutMs, float[] out)
+      throws InterruptedException {
+    if (answeredUs != timestampUs && !(inFlightUs == timestampUs && waitForAnswer(timeoutMs))) {
+      return -1;
+    }
+    System.arraycopy(landmarks, 0, out, 0, 3 * numLandmarks);
+    return numLandmarks;
+  }
+
+  /** Answers that came with no frame in flight and were dropped. */
+  public synchronized long strayResults() {
+    return strayResults;
+  }
+
+  /** Frames written off without an answer. */
+  public synchronized long lostFrames() {
+    return lostFrames;
+  }
+
+  private void answer() {
+    answeredUs = inFlightUs;
+    inFlightUs = NONE;
+    notifyAll();
+  }
+
+  private boolean waitForAnswer(long timeoutMs) throws InterruptedException {
+    long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+    while (inFlightUs != NONE) {
+      long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+      if (remainingMs <= 0) {
+        return false;
+      }
+      wait(remainingMs);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,107 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalyzer;
+
+/**
+ * Builds a compact face geometry descriptor from packed face mesh landmarks.
+ *
+ * <p>A fixed subset of rigid landmarks (nose, eye corners, brows, jaw line) is expressed in a
+ * frame attached to the face: the origin is their centroid, the first axis runs along the eye
+ * line, the second from chin to forehead and the third out of the face. Coordinates are divided by
+ * the distance between the outer eye corners and the vector is scaled to unit length, so the
+ * descriptor does not change with head pose, distance to the camera or image size.
+ *
+ * <p>Not thread-safe; use one instance per thread.
+ */
+public class LandmarkDescriptor {
+  private static final int[] INDICES = {
+    1, 4, 5, 6, 168, 197, // Nose.
+    33, 133, 362, 263, // Eye corners.
+    70, 105, 107, 336, 334, 300, // Brows.
+    10, 152, 234, 454, 172, 397, 136, 365, 58, 288, // Face oval and jaw.
+    61, 291, 0, 17, // Mouth.
+    50, 280, // Cheeks.
+  };
+  private static final int RIGHT_EYE_OUTER = 33;
+  private static final int LEFT_EYE_OUTER = 263;
+
+  /** Number of floats in a descriptor. */
+  public static final int SIZE = 3 * INDICES.length;
+
+  private final float[] points = new float[SIZE];
+
+  /**
+   * Computes the descriptor of one face.
+   *
+   * @param landmarks packed (x, y, z) landmarks.
+   * @param aspectRatio image width divided by image height, so x, y and z share one unit.
+   * @param out receives {@link #SIZE} floats.
+   * @return {@code false} if the landmarks are degenerate and {@code out} was left untouched.
+   */
+  public boolean compute(float[] landmarks, float aspectRatio, float[] out) {
+    float yScale = 1 / aspectRatio;
+    float cx = 0, cy = 0, cz = 0;
+    for (int i = 0; i < INDICES.length; ++i) {
+      int l = 3 * INDICES[i];
+      points[3 * i] = landmarks[l];
+      points[3 * i + 1] = landmarks[l + 1] * yScale;
+      points[3 * i + 2] = landmarks[l + 2];
+      cx += points[3 * i];
+      cy += points[3 * i + 1];
+      cz += points[3 * i + 2];
+    }
+    cx /= INDICES.length;
+    cy /= INDICES.length;
+    cz /= INDICES.length;
+
+    // First axis: right to left outer eye corner.
+    float ax = landmarks[3 * LEFT_EYE_OUTER] - landmarks[3 * RIGHT_EYE_OUTER];
+    float ay = (landmarks[3 * LEFT_EYE_OUTER + 1] - landmarks[3 * RIGHT_EYE_OUTER + 1]) * yScale;
+    float az = landmarks[3 * LEFT_EYE_OUTER + 2] - landmarks[3 * RIGHT_EYE_OUTER + 2];
+    float eyeDistance = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+    if (eyeDistance == 0) {
+      return false;
+    }
+    ax /= eyeDistance;
+    ay /= eyeDistance;
+    az /= eyeDistance;
+
+    // Second axis: chin to forehead, made orthogonal to the first.
+    int top = 3 * FaceAnalyzer.TOP_INDEX, bottom = 3 * FaceAnalyzer.BOTTOM_INDEX;
+    float bx = landmarks[top] - landmarks[bottom];
+    float by = (landmarks[top + 1] - landmarks[bottom + 1]) * yScale;
+    float bz = landmarks[top + 2] - landmarks[bottom + 2];
+    float dot = ax * bx + ay * by + az * bz;
+    bx -= dot * ax;
+    by -= dot * ay;
+    bz -= dot * az;
+    float length = (float) Math.sqrt(bx * bx + by * by + bz * bz);
+    if (length == 0) {
+      return false;
+    }
+    bx /= length;
+    by /= length;
+    bz /= length;
+
+    // Third axis completes the frame.
+    float nx = ay * bz - az * by;
+    float ny = az * bx - ax * bz;
+    float nz = ax * by - ay * bx;
+
+    float sumSquares = 0;
+    for (int i = 0; i < SIZE; i += 3) {
+      float px = (points[i] - cx) / eyeDistance;
+      float py = (points[i + 1] - cy) / eyeDistance;
+      float pz = (points[i + 2] - cz) / eyeDistance;
+      out[i] = px * ax + py * ay + pz * az;
+      out[i + 1] = px * bx + py * by + pz * bz;
+      out[i + 2] = px * nx + py * ny + pz * nz;
+      sumSquares += out[i] * out[i] + out[i + 1] * out[i + 1] + out[i + 2] * out[i + 2];
+    }
+    float norm = (float) Math.sqrt(sumSquares);
+    for (int i = 0; i < SIZE; ++i) {
+      out[i] /= norm;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,36 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import java.util.List;
+
+/** Copies landmark protos into flat (x, y, z) float arrays. */
+public final class LandmarkPacker {
+  private LandmarkPacker() {}
+
+  /**
+   * Packs {@code landmarks} into {@code out}.
+   *
+   * @return the number of landmarks packed, at most {@code out.length / 3}.
+   */
+  public static int pack(List<NormalizedLandmark> landmarks, float[] out) {
+    return pack(landmarks, out, 0, out.length / 3);
+  }
+
+  /**
+   * Packs at most {@code maxCount} of {@code landmarks} into {@code out}, starting at index {@code
+   * offset}.
+   *
+   * @return the number of landmarks packed.
+   */
+  public static int pack(
+      List<NormalizedLandmark> landmarks, float[] out, int offset, int maxCount) {
+    int count = Math.min(landmarks.size(), maxCount);
+    for (int i = 0; i < count; ++i) {
+      NormalizedLandmark landmark = landmarks.get(i);
+      out[offset + 3 * i] = landmark.getX();
+      out[offset + 3 * i + 1] = landmark.getY();
+      out[offset + 3 * i + 2] = landmark.getZ();
+    }
+    return count;
+  }
+}
@@ -15,8 +15,15 @@
 package com.google.mediapipe.examples.facemesh;
 
 import android.annotation.SuppressLint;
+import android.content.Intent;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.net.Uri;
 import android.os.Bundle;
+import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -24,19 +31,41 @@ import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.exifinterface.media.ExifInterface;
 
-import com.google.mediapipe.formats.proto.LandmarkProto;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
-import com.google.mediapipe.framework.AndroidPacketGetter;
+import com.google.mediapipe.examples.facecenter.CapturePolicy;
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import com.google.mediapipe.examples.facecenter.FaceAnalyzer;
+import com.google.mediapipe.examples.facecenter.InferenceGovernor;
+import com.google.mediapipe.examples.facecenter.MotionWakeGate;
+import com.google.mediapipe.examples.facecenter.OverlayDetailController;
+import com.google.mediapipe.examples.facecenter.ResolutionController;
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
+import com.google.mediapipe.framework.TextureFrame;
 import com.google.mediapipe.solutioncore.CameraInput;
 import com.google.mediapipe.solutioncore.SolutionGlSurfaceView;
+import com.google.mediapipe.solutions.facedetection.FaceDetection;
+import com.google.mediapipe.solutions.facedetection.FaceDetectionOptions;
+import com.google.mediapipe.solutions.facemesh.FaceMesh;
 import com.google.mediapipe.solutions.facemesh.FaceMeshOptions;
 import com.google.mediapipe.solutions.facemesh.FaceMeshResult;
-
+import com.google.mediapipe.solutions.hands.Hands;
+import com.google.mediapipe.solutions.hands.HandsOptions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** Main activity of MediaPipe Face Mesh app. */
 public class MainActivity extends AppCompatActivity {
@@ -45,6 +74,78 @@ public class MainActivity extends AppCompatActivity {
   private CustomFaceMesh facemesh;
   // Run the pipeline and the model inference on GPU or CPU.
   private static final boolean RUN_ON_GPU = true;
+  // Gate the face mesh behind the much cheaper face detector while nobody is in frame, as set up by
+  // a config file, read like the capture policy. The preview is drawn from face mesh results only,
+  // so it stays black until the mesh first runs and holds the last mesh frame while only the
+  // detector runs.
+  private static final String GATE_CONFIG_FILE = "face_mesh_gate.properties";
+  private FaceMeshGate.Config gateConfig;
+  private FaceMeshGate meshGate;
+
+  private FaceDetection faceDetection;
+  private final AtomicBoolean detectionInFlight = new AtomicBoolean();
+
+  // The camera resolution follows the inference rate, stepping through a ladder of sizes. Only the
+  // camera is reopened on a change; the solution and the surface stay up.
+  private static final int[] RESOLUTION_LADDER = {1280, 960, 720, 480};
+  private static final float TARGET_FPS = 24f;
+  private static final long RESOLUTION_WINDOW_US = 2_000_000;
+  private static final long RESOLUTION_MIN_HOLD_US = 10_000_000;
+  private static final long RESOLUTION_MAX_HOLD_US = 80_000_000;
+  private final ResolutionController resolution =
+      new ResolutionController(
+          RESOLUTION_LADDER,
+          TARGET_FPS,
+          RESOLUTION_WINDOW_US,
+          RESOLUTION_MIN_HOLD_US,
+          RESOLUTION_MAX_HOLD_US);
+  // Inference is throttled while the device runs hot or low on battery, and overlays and captures
+  // get cheaper.
+  private static final float[] GOVERNOR_LEVEL_FPS = {30f, 15f, 8f};
+  private static final long GOVERNOR_POLL_INTERVAL_US = 1_000_000;
+  private static final long GOVERNOR_RECOVER_US = 30_000_000;
+  private InferenceGovernor governor;
+  private InferenceGovernor.Level governedLevel = InferenceGovernor.Level.NORMAL;
+
+  // With nobody in front of the camera for a while, inference stops and a few pixels of a frame
+  // every IDLE_SAMPLE_INTERVAL_US are compared instead, until something moves. The preview holds
+  // the last frame meanwhile.
+  private static final int RESULTS_TO_IDLE = 90;
+  private static final int MOTION_GRID_WIDTH = 32;
+  private static final int MOTION_GRID_HEIGHT = 24;
+  private static final float MOTION_WAKE_FRACTION = 0.02f;
+  private static final long IDLE_SAMPLE_INTERVAL_US = 66_000;
+  private final MotionWakeGate motionWake =
+      new MotionWakeGate(
+          RESULTS_TO_IDLE,
+          MOTION_GRID_WIDTH,
+          MOTION_GRID_HEIGHT,
+          MOTION_WAKE_FRACTION,
+          IDLE_SAMPLE_INTERVAL_US);
+  // Idle frames are read back into a reused bitmap and scaled down, filtered, to a few pixels per
+  // grid cell, so each sample only copies out a small buffer.
+  private static final int IDLE_SAMPLE_WIDTH = 4 * MOTION_GRID_WIDTH;
+  private static final int IDLE_SAMPLE_HEIGHT = 4 * MOTION_GRID_HEIGHT;
+  private final Paint idlePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final Rect idleSampleRect = new Rect(0, 0, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT);
+  private final int[] idlePixels = new int[IDLE_SAMPLE_WIDTH * IDLE_SAMPLE_HEIGHT];
+  private Bitmap idleFrame;
+  private Bitmap idleSample;
+  private Canvas idleCanvas;
+
+  // Hands run alongside the face mesh on the same camera frames, while the mesh runs. They get an
+  // upright readback of each frame, since solutions can't share a GL context, streamed with its
+  // camera timestamp, and their results are joined with the face mesh results by that timestamp.
+  private static final boolean TRACK_HANDS = true;
+  private static final int MAX_HANDS = 2;
+  private static final int MAX_HANDS_IN_FLIGHT = 2;
+  private static final long JOIN_MAX_WAIT_US = 100_000;
+  private Hands hands;
+  private final TimestampJoiner joiner =
+      new TimestampJoiner(
+          MAX_HANDS, MAX_HANDS_IN_FLIGHT, JOIN_MAX_WAIT_US,
+          TimestampJoiner.PartialPolicy.REUSE_LATEST);
+  private int lastJoinedHands = -1;
 
   // Live camera demo UI and camera components.
   private CameraInput cameraInput;
@@ -59,16 +160,202 @@ public class MainActivity extends AppCompatActivity {
 
   private Button startCameraButton, stopCameraButton;
 
+  // Offline video analysis components.
+  private ActivityResultLauncher<Intent> videoGetter;
+  private Thread offlineAnalysisThread;
+  private static final int BEST_FRAME_QUALITY = 95;
+
+  // Captured crops are encoded and stored in the background, every pyramid level as one job.
+  private static final int CAPTURE_QUEUE_CAPACITY = 8;
+  private static final int CAPTURE_ENCODER_THREADS = 2;
+  private CaptureStore captureStore;
+  // Captures whose landmark geometry is this close to an earlier one are not stored again.
+  private static final float DUPLICATE_DISTANCE = 0.04f;
+  private DescriptorIndex descriptorIndex;
+  private final LandmarkDescriptor landmarkDescriptor = new LandmarkDescriptor();
+  // Which frames are captured is decided by a policy file, read from the app's external files
+  // directory if present and from the assets otherwise.
+  private static final String CAPTURE_POLICY_FILE = "capture_policy.properties";
+  // A stricter policy, capturing less often, while the governor throttles inference.
+  private static final String LOW_POWER_CAPTURE_POLICY_FILE = "capture_policy_low_power.properties";
+  private CapturePolicy fullCapturePolicy;
+  private CapturePolicy lowPowerCapturePolicy;
+  private volatile CapturePolicy capturePolicy;
+  // The policy the analysis thread evaluated last; a different one starts from a reset.
+  private CapturePolicy evaluatedPolicy;
+  private final CapturePolicy.Input policyInput = new CapturePolicy.Input();
+
+  // Captured faces are cropped upright, resampled to a fixed size and scaled down for recognition
+  // and thumbnails.
+  private static final int[] CROP_SIZES = {512, 256, 112, 64};
+  private final FaceCropper faceCropper =
+      new FaceCropper(CROP_SIZES[0], CROP_SIZES[0], FaceCropper.Border.CLAMP, Color.BLACK);
+  private final CropPyramid cropPyramid = new CropPyramid(CROP_SIZES);
+  private final FaceCropper.Crop crop = new FaceCropper.Crop();
+  private int[] framePixels;
+
+  // Face mesh results are handed to a dedicated analysis thread, so that slow analysis never holds
+  // up the MediaPipe graph. When analysis falls behind, the oldest results are overwritten.
+  private static final int RESULT_RING_CAPACITY = 4;
+  private final SpscRing<FaceMeshSlot> resultRing =
+      new SpscRing<>(newFaceMeshSlots(RESULT_RING_CAPACITY), SpscRing.Overflow.OVERWRITE_OLDEST);
+  private final FaceMeshSlot analysisSlot = new FaceMeshSlot();
+  private Thread analysisThread;
+  // Set when the pipeline stops; the analysis thread then discards queued results.
+  private volatile boolean analysisResetPending;
+
+  private final FaceAnalysis analysis = new FaceAnalysis();
+
+  // Landmarks go to the renderer through a triple buffer, so neither thread waits for the other.
+  // The face mesh runs with the default of one face.
+  private static final int MAX_RENDERED_FACES = 1;
+  private final TripleBuffer<FaceMeshRenderData> renderData =
+      FaceMeshRenderData.newTripleBuffer(MAX_RENDERED_FACES);
+  private FaceMeshResultGlRenderer resultRenderer;
+
+  // Each frame joined with its hands is streamed to a local collector for the dashboards, from the
+  // joiner's listener. Nothing is sent while no collector listens.
+  private static final boolean EXPORT_RESULTS = true;
+  private static final String EXPORT_HOST = "127.0.0.1";
+  private static final int EXPORT_PORT = 7700;
+  private static final int EXPORT_RING_CAPACITY = 16;
+  private static final int EXPORT_BATCH_FRAMES = 8;
+  private static final long EXPORT_LINGER_US = 50_000;
+  private static final int EXPORT_SEND_BUFFER_BYTES = 64 * 1024;
+  private ResultExporter exporter;
+  // Face analysis of the exported frame, only used under the joiner's lock.
+  private final FaceAnalysis exportAnalysis = new FaceAnalysis();
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
+    gateConfig = loadConfig(GATE_CONFIG_FILE, FaceMeshGate.Config::load);
+    if (gateConfig == null) {
+      gateConfig = new FaceMeshGate.Config();
+    }
+    meshGate = new FaceMeshGate(gateConfig);
+    governor =
+        new InferenceGovernor(
+            new AndroidConditionSource(this),
+            GOVERNOR_LEVEL_FPS,
+            GOVERNOR_POLL_INTERVAL_US,
+            GOVERNOR_RECOVER_US);
+    governor.setListener(this::onGovernorChanged);
     setupLiveDemoUiComponents();
+    setupOfflineVideoUiComponents();
     resultImageView = findViewById(R.id.resultImageView);
     resultTextView = findViewById(R.id.resultTextView);
     frameLayout = findViewById(R.id.preview_display_layout);
     center = findViewById(R.id.center);
     setCameraIsStarted(false);
+    fullCapturePolicy = loadCapturePolicy(CAPTURE_POLICY_FILE);
+    lowPowerCapturePolicy = loadCapturePolicy(LOW_POWER_CAPTURE_POLICY_FILE);
+    capturePolicy = fullCapturePolicy;
+    if (EXPORT_RESULTS) {
+      try {
+        exporter =
+            new ResultExporter(
+                new InetSocketAddress(EXPORT_HOST, EXPORT_PORT),
+                MAX_HANDS,
+                EXPORT_RING_CAPACITY,
+                EXPORT_BATCH_FRAMES,
+                EXPORT_LINGER_US,
+                EXPORT_SEND_BUFFER_BYTES);
+      } catch (IOException e) {
+        Log.e(TAG, "Result exporter error:" + e);
+      }
+    }
+    analysisThread = new Thread(this::runAnalysis, "FaceMeshAnalysis");
+    analysisThread.start();
+    File captureDir = new File(getExternalFilesDir(null), "captures");
+    try {
+      captureStore =
+          new CaptureStore(
+              captureDir,
+              CAPTURE_QUEUE_CAPACITY,
+              CAPTURE_ENCODER_THREADS,
+              Bitmap.CompressFormat.JPEG);
+      descriptorIndex =
+          new DescriptorIndex(new File(captureDir, "descriptors.idx"), LandmarkDescriptor.SIZE);
+    } catch (IOException e) {
+      Log.e(TAG, "Capture store error:" + e);
+    }
+  }
+
+  /** Parses a config file. */
+  private interface ConfigReader<T> {
+    T read(InputStream in) throws IOException;
+  }
+
+  /**
+   * Reads a config file from the app's external files directory if present, and from the assets
+   * otherwise or if that copy can't be read.
+   *
+   * @return the config, or {@code null} if neither copy can be read.
+   */
+  private <T> T loadConfig(String fileName, ConfigReader<T> reader) {
+    File override = new File(getExternalFilesDir(null), fileName);
+    if (override.isFile()) {
+      try (InputStream in = new FileInputStream(override)) {
+        return reader.read(in);
+      } catch (IOException | IllegalArgumentException e) {
+        Log.e(TAG, "Ignoring " + override + ": " + e);
+      }
+    }
+    try (InputStream in = getAssets().open(fileName)) {
+      return reader.read(in);
+    } catch (IOException | IllegalArgumentException e) {
+      Log.e(TAG, "Unable to load " + fileName + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * Loads a capture policy like any other config file. An empty policy would capture every frame,
+   * so without a readable bundled copy there is nothing sensible to fall back to.
+   */
+  private CapturePolicy loadCapturePolicy(String fileName) {
+    CapturePolicy policy = loadConfig(fileName, CapturePolicy::load);
+    if (policy == null) {
+      throw new IllegalStateException("Unable to load the bundled capture policy " + fileName);
+    }
+    Log.i(TAG, "Loaded " + policy);
+    return policy;
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    analysisThread.interrupt();
+    try {
+      analysisThread.join(1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Log.i(TAG, "Capture policy rejections: " + fullCapturePolicy.stats());
+    Log.i(TAG, "Low power capture policy rejections: " + lowPowerCapturePolicy.stats());
+    Log.i(TAG, String.format(Locale.US,
+        "Result ring: published=%d consumed=%d dropped=%d max occupancy=%d/%d",
+        resultRing.publishedCount(), resultRing.consumedCount(), resultRing.droppedCount(),
+        resultRing.maxOccupancy(), resultRing.capacity()));
+    try {
+      if (exporter != null) {
+        Log.i(TAG, String.format(Locale.US,
+            "Exported frames: %d, dropped: %d, bytes: %d, connections: %d",
+            exporter.sentFrames(), exporter.droppedFrames(), exporter.sentBytes(),
+            exporter.connections()));
+        exporter.close();
+      }
+      if (captureStore != null) {
+        captureStore.close();
+      }
+      if (descriptorIndex != null) {
+        descriptorIndex.close();
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Capture store error:" + e);
+    }
   }
 
   @Override
@@ -77,7 +364,7 @@ public class MainActivity extends AppCompatActivity {
     if (isCameraStarted()) {
       // Restarts the camera and the opengl surface rendering.
       cameraInput = new CameraInput(this);
-      cameraInput.setNewFrameListener(textureFrame -> facemesh.send(textureFrame));
+      cameraInput.setNewFrameListener(this::onCameraFrame);
       glSurfaceView.post(this::startCamera);
       glSurfaceView.setVisibility(View.VISIBLE);
     }
@@ -112,6 +399,108 @@ public class MainActivity extends AppCompatActivity {
         });
   }
 
+  /** Sets up the UI components for offline video analysis. */
+  private void setupOfflineVideoUiComponents() {
+    // The Intent to access gallery and read a video file.
+    videoGetter =
+        registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(),
+            result -> {
+              Intent resultIntent = result.getData();
+              if (resultIntent != null) {
+                if (result.getResultCode() == RESULT_OK) {
+                  analyzeVideo(resultIntent.getData());
+                }
+              }
+            });
+    Button analyzeVideoButton = findViewById(R.id.button_analyze_video);
+    analyzeVideoButton.setOnClickListener(
+        v -> {
+          if (offlineAnalysisThread != null && offlineAnalysisThread.isAlive()) {
+            return;
+          }
+          stopCurrentPipeline();
+          // Reads video from gallery.
+          Intent pickVideoIntent = new Intent(Intent.ACTION_PICK);
+          pickVideoIntent.setDataAndType(MediaStore.Video.Media.INTERNAL_CONTENT_URI, "video/*");
+          videoGetter.launch(pickVideoIntent);
+        });
+  }
+
+  /**
+   * Decodes and analyzes every frame of a video on a background thread, writing the face track to
+   * a CSV file and the most frontal frame to a JPEG file next to it, and showing that frame once
+   * done.
+   */
+  private void analyzeVideo(Uri videoUri) {
+    resultTextView.setText("Analyzing video...");
+    resultTextView.setVisibility(View.VISIBLE);
+    String baseName = "face_track_" + System.currentTimeMillis();
+    File trackFile = new File(getExternalFilesDir(null), baseName + ".csv");
+    File bestFrameFile = new File(getExternalFilesDir(null), baseName + "_best.jpg");
+    offlineAnalysisThread = new Thread(() -> {
+      FaceMeshFrameAnalyzer frameAnalyzer = new FaceMeshFrameAnalyzer(this, RUN_ON_GPU);
+      try (FaceTrackWriter track = new FaceTrackWriter(new FileWriter(trackFile))) {
+        OfflineVideoAnalyzer.Summary<Bitmap> summary =
+            new OfflineVideoAnalyzer<>(frameAnalyzer).run(new VideoFrameSource(this, videoUri), track);
+        File savedBestFrame =
+            summary.bestFrame != null && saveBestFrame(summary.bestFrame, bestFrameFile)
+                ? bestFrameFile
+                : null;
+        Log.i(TAG, String.format(
+                Locale.US,
+                "analyzeVideo: %d frames (%d with a face) at %.1f fps, best frame %d %s, track %s",
+                summary.frameCount, summary.faceFrameCount, summary.framesPerSecond(),
+                summary.bestFrameIndex, savedBestFrame, trackFile));
+        runOnUiThread(() -> showOfflineSummary(summary, trackFile, savedBestFrame));
+      } catch (IOException | RuntimeException e) {
+        Log.e(TAG, "Offline video analysis error:" + e);
+        runOnUiThread(() -> resultTextView.setText("Video analysis failed: " + e.getMessage()));
+      } finally {
+        frameAnalyzer.close();
+      }
+    }, "OfflineVideoAnalysis");
+    offlineAnalysisThread.start();
+  }
+
+  /**
+   * Writes the best frame of a video as a JPEG file.
+   *
+   * @return whether the file was written; a partly written file is deleted.
+   */
+  private static boolean saveBestFrame(Bitmap frame, File file) {
+    boolean written = false;
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      written = frame.compress(Bitmap.CompressFormat.JPEG, BEST_FRAME_QUALITY, out);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to write " + file + ": " + e);
+    }
+    if (!written) {
+      file.delete();
+    }
+    return written;
+  }
+
+  /**
+   * @param bestFrameFile where the best frame was written, or {@code null} if the video had no face
+   *     or the frame couldn't be written.
+   */
+  private void showOfflineSummary(
+      OfflineVideoAnalyzer.Summary<Bitmap> summary, File trackFile, File bestFrameFile) {
+    resultTextView.setText(String.format(
+            Locale.US,
+            "%d frames, %d with a face, %.1f fps\nTrack: %s\nBest frame: %s",
+            summary.frameCount, summary.faceFrameCount, summary.framesPerSecond(), trackFile,
+            bestFrameFile != null ? bestFrameFile : "none"));
+    if (summary.bestFrame == null) {
+      return;
+    }
+    Bitmap bm = summary.bestFrame;
+    resultImageView.setImageBitmap(bm);
+    resultImageView.setVisibility(View.VISIBLE);
+    showCenter(summary.bestAnalysis.avg, bm.getWidth(), bm.getHeight());
+  }
+
   /** Sets up core workflow for streaming mode. */
   private void setupStreamingModePipeline() {
     setCameraIsStarted(true);
@@ -125,23 +514,59 @@ public class MainActivity extends AppCompatActivity {
                 .setRunOnGpu(RUN_ON_GPU)
                 .build());
     facemesh.setErrorListener((message, e) -> Log.e(TAG, "MediaPipe Face Mesh error:" + message));
+    resolution.reset();
+    governor.reset();
+    governedLevel = InferenceGovernor.Level.NORMAL;
+    resolution.setTargetFps(TARGET_FPS);
+    capturePolicy = fullCapturePolicy;
+    resolution.setTierListener(
+        tier -> {
+          Log.i(TAG, String.format(Locale.US,
+              "Resolution tier %d at %.1f fps", tier, resolution.lastFps()));
+          runOnUiThread(this::restartCamera);
+        });
+    motionWake.reset();
+    motionWake.setIdleListener(idle -> Log.i(TAG, idle ? "Idle until motion" : "Motion, waking"));
+    joiner.reset();
+    lastJoinedHands = -1;
+    joiner.setListener(this::onCombinedResult);
+    if (gateConfig.enabled) {
+      setupFaceDetectionGate();
+    }
+    if (TRACK_HANDS) {
+      setupHands();
+    }
 
     cameraInput = new CameraInput(this);
-    cameraInput.setNewFrameListener(textureFrame -> {
-      facemesh.cacheImage(textureFrame);
-      facemesh.send(textureFrame);
-    });
+    cameraInput.setNewFrameListener(this::onCameraFrame);
 
     // Initializes a new Gl surface view with a user-defined FaceMeshResultGlRenderer.
     glSurfaceView =
         new SolutionGlSurfaceView<>(this, facemesh.getGlContext(), facemesh.getGlMajorVersion());
-    glSurfaceView.setSolutionResultRenderer(new FaceMeshResultGlRenderer());
+    resultRenderer = new FaceMeshResultGlRenderer(renderData, MAX_RENDERED_FACES);
+    glSurfaceView.setSolutionResultRenderer(resultRenderer);
     glSurfaceView.setRenderInputImage(true);
     facemesh.setResultListener(
         faceMeshResult -> {
-          processFaceMesh(faceMeshResult);
-          glSurfaceView.setRenderData(faceMeshResult);
-          glSurfaceView.requestRender();
+          boolean hasFace = !faceMeshResult.multiFaceLandmarks().isEmpty();
+          meshGate.onMeshResult(hasFace);
+          motionWake.onResult(hasFace);
+          resolution.onResult(faceMeshResult.timestamp());
+          if (hands != null || exporter != null) {
+            joiner.onFaceMesh(faceMeshResult);
+          }
+          if (hasFace) {
+            FaceMeshSlot slot = resultRing.claim();
+            if (slot != null && slot.set(faceMeshResult)) {
+              resultRing.publish();
+            }
+          }
+          if (resultRenderer.tryQueueFrame()) {
+            renderData.back().set(faceMeshResult);
+            renderData.publish();
+            glSurfaceView.setRenderData(faceMeshResult);
+            glSurfaceView.requestRender();
+          }
         });
 
     // The runnable to start camera after the gl surface view is attached.
@@ -157,13 +582,172 @@ public class MainActivity extends AppCompatActivity {
     frameLayout.requestLayout();
   }
 
+  /**
+   * Sets up the short-range face detector that watches the camera while the face mesh is idle.
+   *
+   * <p>The detector runs on frames read back from the camera texture and turned upright, since it
+   * doesn't share a GL context with the face mesh. Only one frame is in flight at a time; frames
+   * arriving while the detector is busy are dropped.
+   */
+  private void setupFaceDetectionGate() {
+    meshGate.reset();
+    meshGate.setModeListener(mode -> Log.i(TAG, "Face mesh gate: " + mode));
+    faceDetection =
+        new FaceDetection(
+            this,
+            FaceDetectionOptions.builder()
+                .setStaticImageMode(true)
+                .setModelSelection(0)
+                .setMinDetectionConfidence(0.5f)
+                .build());
+    faceDetection.setErrorListener(
+        (message, e) -> {
+          Log.e(TAG, "MediaPipe Face Detection error:" + message);
+          detectionInFlight.set(false);
+        });
+    faceDetection.setResultListener(
+        faceDetectionResult -> {
+          boolean hasFace = !faceDetectionResult.multiFaceDetections().isEmpty();
+          meshGate.onDetectorResult(hasFace);
+          motionWake.onResult(hasFace);
+          detectionInFlight.set(false);
+        });
+  }
+
+  /**
+   * Sets up hands in streaming mode on frames read back from the camera texture, sent with their
+   * camera timestamps, so that tracking carries over from frame to frame. Results are matched to
+   * their frames by the joiner.
+   */
+  private void setupHands() {
+    hands =
+        new Hands(
+            this,
+            HandsOptions.builder()
+                .setStaticImageMode(false)
+                .setMaxNumHands(MAX_HANDS)
+                .setRunOnGpu(RUN_ON_GPU)
+                .build());
+    hands.setErrorListener(
+        (message, e) -> {
+          Log.e(TAG, "MediaPipe Hands error:" + message);
+          joiner.onHandsError();
+        });
+    hands.setResultListener(joiner::onHands);
+  }
+
+  /** Called by the joiner, on a solution thread, with each face mesh frame and its hands. */
+  private void onCombinedResult(CombinedResult result) {
+    if (exporter != null) {
+      exportFrame(result);
+    }
+    if (TRACK_HANDS && result.numHands != lastJoinedHands) {
+      lastJoinedHands = result.numHands;
+      Log.i(TAG, String.format(Locale.US,
+          "Hands in frame: %d (%s, face=%b)", result.numHands, result.handsStatus,
+          result.hasFace()));
+    }
+  }
+
+  private void onCameraFrame(TextureFrame textureFrame) {
+    if (motionWake.isIdle()) {
+      long timestampUs = textureFrame.getTimestamp();
+      if (motionWake.shouldSample(timestampUs)) {
+        sampleIdleFrame(textureFrame, timestampUs);
+      } else {
+        textureFrame.release();
+      }
+      return;
+    }
+    if (!governor.admit(textureFrame.getTimestamp())) {
+      textureFrame.release();
+      return;
+    }
+    if (!gateConfig.enabled || meshGate.shouldRunMesh()) {
+      facemesh.cacheImage(textureFrame);
+      // Registered before either solution sees the frame, so no result can beat it to the joiner.
+      long timestampUs = textureFrame.getTimestamp();
+      if (hands != null && joiner.expectHands(timestampUs)) {
+        hands.send(facemesh.readUprightBitmap(textureFrame), timestampUs);
+      }
+      facemesh.send(textureFrame);
+    } else if (detectionInFlight.compareAndSet(false, true)) {
+      faceDetection.send(facemesh.readUprightBitmap(textureFrame));
+    } else {
+      textureFrame.release();
+    }
+  }
+
+  /** Reads an idle frame back, scales it down and lets the motion gate sample it. */
+  private void sampleIdleFrame(TextureFrame textureFrame, long timestampUs) {
+    int width = textureFrame.getWidth(), height = textureFrame.getHeight();
+    if (idleFrame == null || idleFrame.getWidth() != width || idleFrame.getHeight() != height) {
+      if (idleFrame != null) {
+        idleFrame.recycle();
+      }
+      idleFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    if (idleSample == null) {
+      idleSample =
+          Bitmap.createBitmap(IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT, Bitmap.Config.ARGB_8888);
+      idleCanvas = new Canvas(idleSample);
+    }
+    facemesh.readBitmap(textureFrame, idleFrame);
+    idleCanvas.drawBitmap(idleFrame, null, idleSampleRect, idlePaint);
+    idleSample.getPixels(
+        idlePixels, 0, IDLE_SAMPLE_WIDTH, 0, 0, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT);
+    motionWake.onIdleFrame(idlePixels, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT, timestampUs);
+  }
+
+  /** Follows the governor: keeps the resolution target reachable and cheapens the overlay. */
+  private void onGovernorChanged(InferenceGovernor.Level level, float rateFps) {
+    resolution.setTargetFps(Math.min(TARGET_FPS, rateFps));
+    if (level == governedLevel) {
+      return;
+    }
+    governedLevel = level;
+    Log.i(TAG, String.format(Locale.US, "Inference governor: %s, %.1f fps", level, rateFps));
+    FaceMeshResultGlRenderer renderer = resultRenderer;
+    if (renderer != null) {
+      renderer.setDetailCap(detailCapFor(level));
+    }
+    capturePolicy =
+        level == InferenceGovernor.Level.NORMAL ? fullCapturePolicy : lowPowerCapturePolicy;
+  }
+
+  private static OverlayDetailController.Level detailCapFor(InferenceGovernor.Level level) {
+    switch (level) {
+      case REDUCED:
+        return OverlayDetailController.Level.CONTOURS;
+      case MINIMAL:
+        return OverlayDetailController.Level.KEYPOINTS;
+      default:
+        return OverlayDetailController.Level.FULL;
+    }
+  }
+
+  /** Reopens the camera at the current resolution tier, keeping the solution and the surface. */
+  private void restartCamera() {
+    // The surface is hidden while paused or stopped; the camera is reopened on resume instead.
+    if (!isCameraStarted()
+        || glSurfaceView == null
+        || glSurfaceView.getVisibility() != View.VISIBLE) {
+      return;
+    }
+    cameraInput.setNewFrameListener(null);
+    cameraInput.close();
+    cameraInput = new CameraInput(this);
+    cameraInput.setNewFrameListener(this::onCameraFrame);
+    startCamera();
+  }
+
   private void startCamera() {
     cameraInput.start(
         this,
         facemesh.getGlContext(),
         CameraInput.CameraFacing.FRONT,
-        glSurfaceView.getWidth(),
-        glSurfaceView.getHeight());
+        resolution.width(glSurfaceView.getWidth(), glSurfaceView.getHeight()),
+        resolution.height(glSurfaceView.getWidth(), glSurfaceView.getHeight()));
   }
 
   private void stopCurrentPipeline() {
@@ -175,40 +759,101 @@ public class MainActivity extends AppCompatActivity {
     if (glSurfaceView != null) {
       glSurfaceView.setVisibility(View.GONE);
     }
+    if (resultRenderer != null) {
+      Log.i(TAG, String.format(Locale.US,
+          "Overlay uploads skipped: %.1f%%", 100 * resultRenderer.uploadSkipRate()));
+      resultRenderer = null;
+    }
     if (facemesh != null) {
       facemesh.close();
     }
+    if (faceDetection != null) {
+      faceDetection.close();
+      faceDetection = null;
+    }
+    detectionInFlight.set(false);
+    Log.i(TAG, String.format(Locale.US,
+        "Idle frames sampled: %d, skipped: %d, wakes: %d",
+        motionWake.sampledFrames(), motionWake.skippedFrames(), motionWake.wakeCount()));
+    motionWake.reset();
+    Log.i(TAG, "Final resolution tier: " + resolution.tier());
+    Log.i(TAG, String.format(Locale.US,
+        "Governor admitted %d frames, throttled %d",
+        governor.admittedFrames(), governor.throttledFrames()));
+    if (hands != null) {
+      hands.close();
+      hands = null;
+      Log.i(TAG, String.format(Locale.US,
+          "Joined frames: %d, partial: %d, dropped: %d",
+          joiner.joinedCount(), joiner.partialCount(), joiner.droppedCount()));
+    }
+    joiner.reset();
+    analysisResetPending = true;
   }
 
-  @SuppressLint("DefaultLocale")
-  public void processFaceMesh(FaceMeshResult result) {
-    if (result == null) return;
-    List<LandmarkProto.NormalizedLandmarkList> faces = result.multiFaceLandmarks();
-    if (faces.isEmpty()) return;
-
-    List<NormalizedLandmark> landmarks = faces.get(0).getLandmarkList();
-
-    int topIndex = 10, bottomIndex = 152, leftChinIndex = 425, rightChinIndex = 205;
-
-    NormalizedLandmark top = landmarks.get(topIndex),
-            bottom = landmarks.get(bottomIndex),
-            leftChin = landmarks.get(leftChinIndex),
-            rightChin = landmarks.get(rightChinIndex);
-
-    double[] topPoints = new double[]{top.getX(), top.getY(), top.getZ()},
-            bottomPoints = new double[]{bottom.getX(), bottom.getY(), bottom.getZ()},
-            leftChinPoints = new double[]{leftChin.getX(), leftChin.getY(), leftChin.getZ()},
-            rightChinPoints = new double[]{rightChin.getX(), rightChin.getY(), rightChin.getZ()};
-
-    double[] vLR = new double[]{leftChinPoints[0] - rightChinPoints[0], leftChinPoints[1] - rightChinPoints[1], leftChinPoints[2] - rightChinPoints[2]},
-            vTB = new double[]{topPoints[0] - bottomPoints[0], topPoints[1] - bottomPoints[1], topPoints[2] - bottomPoints[2]};
+  private static FaceMeshSlot[] newFaceMeshSlots(int count) {
+    FaceMeshSlot[] slots = new FaceMeshSlot[count];
+    for (int i = 0; i < count; ++i) {
+      slots[i] = new FaceMeshSlot();
+    }
+    return slots;
+  }
 
-    // vBF = vLR cross vTB (x = y * z)
-    double[] vBF = new double[]{vLR[1] * vTB[2] - vLR[2] * vTB[1], vLR[2] * vTB[0] - vLR[0] * vTB[2], vLR[0] * vTB[1] - vLR[1] * vTB[0]};
+  /** Body of the analysis thread: processes face mesh results until interrupted. */
+  private void runAnalysis() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        boolean hasResult = resultRing.take(analysisSlot, 1, TimeUnit.SECONDS);
+        if (analysisResetPending) {
+          analysisResetPending = false;
+          while (resultRing.poll(analysisSlot)) {}
+          fullCapturePolicy.reset();
+          lowPowerCapturePolicy.reset();
+        } else if (hasResult) {
+          processFaceMesh(analysisSlot);
+        }
+      }
+    } catch (InterruptedException e) {
+      // The activity is being destroyed.
+    }
+  }
 
-    double[] normX = normalize(vBF), normY = normalize(vLR), normZ = normalize(vTB), angleZ = angle(normZ);
+  /**
+   * Hands a joined frame to the exporter; never blocks. The joiner calls its listener with its lock
+   * held, so frames are published by one thread at a time.
+   */
+  private void exportFrame(CombinedResult result) {
+    ExportFrame frame = exporter.claim();
+    if (result.hasFace()) {
+      FaceAnalyzer.analyze(result.face.landmarks, result.face.numLandmarks, exportAnalysis);
+      frame.setFace(result.timestampUs, exportAnalysis);
+    } else {
+      frame.clear(result.timestampUs);
+    }
+    frame.setHands(result);
+    exporter.publish();
+  }
 
-    boolean angleIsForward = angleIsForward(angleZ);
+  @SuppressLint("DefaultLocale")
+  public void processFaceMesh(FaceMeshSlot result) {
+    float[] landmarks = result.landmarks;
+    int numLandmarks = result.numLandmarks;
+    FaceAnalyzer.analyze(landmarks, numLandmarks, analysis);
+
+    double[] normX = analysis.normX, normY = analysis.normY, normZ = analysis.normZ, angleZ = analysis.angleZ;
+
+    policyInput.landmarks = landmarks;
+    policyInput.numLandmarks = numLandmarks;
+    policyInput.aspectRatio = aspectRatio();
+    policyInput.analysis = analysis;
+    policyInput.timestampUs = result.timestampUs;
+    CapturePolicy policy = capturePolicy;
+    if (policy != evaluatedPolicy) {
+      policy.reset();
+      evaluatedPolicy = policy;
+    }
+    int rejectedBy = policy.evaluate(policyInput);
+    boolean shouldCapture = rejectedBy == CapturePolicy.ACCEPTED;
 
     String logText = String.format("x = (%.0f, %.0f, %.0f)\n" +
                     "y = (%.0f, %.0f, %.0f)\n" +
@@ -218,79 +863,127 @@ public class MainActivity extends AppCompatActivity {
             normY[0], normY[1], normY[2],
             normZ[0], normZ[1], normZ[2],
             angleZ[0], angleZ[1], angleZ[2],
-            angleIsForward ? "FORWARD!!" : "");
+            shouldCapture ? "FORWARD!!" : "rejected: " + policy.ruleName(rejectedBy));
     Log.i(TAG, "processFaceMesh: " + logText.replace("\n", "  "));
 
-    double[] min = new double[]{1, 1},
-            max = new double[]{-1, -1},
-            avg = new double[]{0, 0, 0};
-    if (angleIsForward) {
-      for (NormalizedLandmark landmark : landmarks) {
-        double x = landmark.getX(), y = landmark.getY(), z = landmark.getZ();
-
-        min[0] = Math.min(min[0], x); min[1] = Math.min(min[1], y);
-        max[0] = Math.max(max[0], x); max[1] = Math.max(max[1], y);
-        avg[0] += x; avg[1] += y; avg[2] += z;
-      }
-      avg[0] /= landmarks.size(); avg[1] /= landmarks.size(); avg[2] /= landmarks.size();
+    double[] avg = analysis.avg.clone();
+    long timestampUs = result.timestampUs;
+    FaceAnalysis captured = null;
+    float[] capturedLandmarks = null;
+    if (shouldCapture) {
+      captured = new FaceAnalysis();
+      captured.copyFrom(analysis);
+      capturedLandmarks = Arrays.copyOf(landmarks, 3 * numLandmarks);
+    }
+    FaceAnalysis capturedAnalysis = captured;
+    float[] cropLandmarks = capturedLandmarks;
+    float[] captureDescriptor = shouldCapture ? describeCapture(landmarks, numLandmarks) : null;
+    // The frame the landmarks came from, not the latest one; read now, before it is evicted.
+    Bitmap capturedFrame = shouldCapture ? facemesh.readCachedBitmap(timestampUs) : null;
+    if (shouldCapture && capturedFrame == null) {
+      Log.w(TAG, "processFaceMesh: frame no longer cached, capture skipped");
     }
     runOnUiThread(() -> {
       resultTextView.setText(logText);
 
-      if (angleIsForward) {
-        Bitmap bm = AndroidPacketGetter.getBitmapFromRgba(facemesh.cacheImagePacket);
-
-        Log.i(TAG, "processFaceMesh: cropped min=" + Arrays.toString(min) + " max=" + Arrays.toString(max) + " avg=" + Arrays.toString(avg));
-        double faceX = min[0] * bm.getWidth(),
-                faceY = (1 - max[1]) * bm.getHeight(),
-                faceW = (max[0] - min[0]) * bm.getWidth(),
-                faceH = (max[1] - min[1]) * bm.getHeight();
-        Bitmap croppedBm = Bitmap.createBitmap(
-                bm,
-                (int) (faceX - faceW / 4),
-                (int) (faceY - faceH / 8),
-                (int) (faceW + faceW * .5),
-                (int) (faceH + faceH * .75)
-        );
+      if (capturedFrame != null) {
+        Bitmap bm = capturedFrame;
+
+        Bitmap[] croppedBms = cropFace(bm, cropLandmarks, numLandmarks);
+        Bitmap croppedBm = croppedBms[0];
+        Log.i(TAG, String.format(Locale.US,
+                "processFaceMesh: cropped center=(%.0f, %.0f) size=%.0f roll=%.1f avg=%s",
+                crop.centerX, crop.centerY, crop.width, Math.toDegrees(crop.roll),
+                Arrays.toString(avg)));
         Log.i(TAG, "processFaceMesh: bitmap = " + croppedBm);
+        if (isDuplicateCapture(captureDescriptor)) {
+          Log.i(TAG, "processFaceMesh: near-duplicate capture, not stored");
+        } else if (captureStore != null) {
+          // Only a face that was actually stored makes later ones duplicates.
+          if (captureStore.submit(croppedBms, timestampUs, capturedAnalysis)) {
+            rememberCapture(captureDescriptor);
+          } else {
+            Log.w(TAG, "processFaceMesh: capture queue full, dropped "
+                    + captureStore.droppedCount());
+          }
+        }
 
         stopCurrentPipeline();
         resultImageView.setImageBitmap(croppedBm);
         resultImageView.setVisibility(View.VISIBLE);
-        center.setText(String.format(
-                "Center: (x=%d, y=%d, z=%d)",
-                ((int) (avg[0] * bm.getWidth())),
-                ((int) (avg[1] * bm.getHeight())),
-                ((int) (avg[2] * bm.getWidth()))
-        ));
-        center.setVisibility(View.VISIBLE);
+        showCenter(avg, bm.getWidth(), bm.getHeight());
       }
     });
   }
 
-  public static double[] normalize(double[] vect) {
-    double size = Math.sqrt(Math.pow(vect[0], 2) + Math.pow(vect[1], 2) + Math.pow(vect[2], 2));
-    return new double[]{vect[0] * 100 / size, vect[1] * 100 / size, vect[2] * 100 / size};
+  /**
+   * Cuts the face out of a camera frame as upright squares of every size in {@link #CROP_SIZES}.
+   * The frame is read once, by the warp to the largest size; the others are scaled down from it.
+   */
+  private Bitmap[] cropFace(Bitmap frame, float[] faceLandmarks, int numLandmarks) {
+    int width = frame.getWidth(), height = frame.getHeight();
+    if (framePixels == null || framePixels.length != width * height) {
+      framePixels = new int[width * height];
+    }
+    frame.getPixels(framePixels, 0, width, 0, 0, width, height);
+    faceCropper.computeCrop(faceLandmarks, numLandmarks, width, height, crop);
+    // Frames read back from the camera texture are upside down.
+    int[] pixels = faceCropper.warp(framePixels, width, height, /*flippedVertically=*/ true, crop);
+    cropPyramid.build(pixels);
+    Bitmap[] levels = new Bitmap[cropPyramid.levelCount()];
+    for (int i = 0; i < levels.length; ++i) {
+      int size = cropPyramid.size(i);
+      levels[i] = Bitmap.createBitmap(cropPyramid.level(i), size, size, Bitmap.Config.ARGB_8888);
+    }
+    return levels;
   }
 
-  public static double[] angle(double[] vect) {
-    double size = Math.sqrt(Math.pow(vect[0], 2) + Math.pow(vect[1], 2) + Math.pow(vect[2], 2));
-    return new double[]{
-            Math.acos(vect[0] / size) / Math.PI * 180,
-            Math.acos(vect[1] / size) / Math.PI * 180,
-            Math.acos(vect[2] / size) / Math.PI * 180,
-    };
+  /**
+   * Computes the descriptor of the current face from its packed landmarks, to check it against
+   * earlier captures; {@code null} if it can't be described.
+   */
+  private float[] describeCapture(float[] landmarks, int numLandmarks) {
+    if (descriptorIndex == null || numLandmarks < FaceMesh.FACEMESH_NUM_LANDMARKS) {
+      return null;
+    }
+    float[] descriptor = new float[LandmarkDescriptor.SIZE];
+    return landmarkDescriptor.compute(landmarks, aspectRatio(), descriptor) ? descriptor : null;
+  }
+
+  /** Checks a face descriptor against those of earlier captures. UI thread, like the index. */
+  private boolean isDuplicateCapture(float[] descriptor) {
+    return descriptor != null
+        && descriptorIndex != null
+        && descriptorIndex.findWithin(descriptor, DUPLICATE_DISTANCE) >= 0;
+  }
+
+  /** Remembers the descriptor of a stored capture. UI thread. */
+  private void rememberCapture(float[] descriptor) {
+    if (descriptor == null || descriptorIndex == null) {
+      return;
+    }
+    try {
+      descriptorIndex.add(descriptor);
+    } catch (IOException e) {
+      Log.e(TAG, "Descriptor index error:" + e);
+    }
   }
 
-  public static boolean angleIsForward(double[] vect) {
-    double error = 3;
-    return isAboutEqual(vect[0], 90, error) &&
-            isAboutEqual(vect[1], 175, error) &&
-            isAboutEqual(vect[2], 90, error);
+  /** Aspect ratio of the camera frames, which are requested at the size of the preview. */
+  private float aspectRatio() {
+    int height = glSurfaceView.getHeight();
+    return height == 0 ? 1 : (float) glSurfaceView.getWidth() / height;
   }
 
-  public static boolean isAboutEqual(double number, double approx, double error) {
-    return approx - error <= number && number <= approx + error;
+  private void showCenter(double[] avg, int width, int height) {
+    center.setText(String.format(
+            Locale.US,
+            "Center: (x=%d, y=%d, z=%d)",
+            ((int) (avg[0] * width)),
+            ((int) (avg[1] * height)),
+            ((int) (avg[2] * width))
+    ));
+    center.setVisibility(View.VISIBLE);
   }
 
   public boolean isCameraStarted() {
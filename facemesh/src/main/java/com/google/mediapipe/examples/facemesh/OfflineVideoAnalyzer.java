@@ -0,0 +1,81 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import java.io.IOException;
+
+/**
+ * Pulls every frame out of a {@link FrameSource} and runs it through a {@link FrameAnalyzer} as
+ * fast as inference allows, instead of at playback speed.
+ *
+ * <p>Each frame produces one row in the face track, and the most frontal frame is kept so it can
+ * be shown or cropped once the run is over.
+ *
+ * @param <F> the frame type.
+ */
+public class OfflineVideoAnalyzer<F> {
+  /** Outcome of a single run. */
+  public static class Summary<F> {
+    public int frameCount;
+    public int faceFrameCount;
+    public long elapsedNanos;
+    /** The most frontal frame, or {@code null} if no frame contained a face. */
+    public F bestFrame;
+    public int bestFrameIndex = -1;
+    public long bestTimestampUs;
+    public final FaceAnalysis bestAnalysis = new FaceAnalysis();
+
+    /** Frames analyzed per second of wall-clock time. */
+    public double framesPerSecond() {
+      return elapsedNanos == 0 ? 0 : frameCount * 1e9 / elapsedNanos;
+    }
+  }
+
+  private final FrameAnalyzer<F> analyzer;
+  private final FaceAnalysis analysis = new FaceAnalysis();
+
+  public OfflineVideoAnalyzer(FrameAnalyzer<F> analyzer) {
+    this.analyzer = analyzer;
+  }
+
+  /**
+   * Analyzes every frame of {@code source}, writing the face track to {@code track}.
+   *
+   * <p>Stops early, returning what was analyzed so far, if the calling thread is interrupted.
+   */
+  public Summary<F> run(FrameSource<F> source, FaceTrackWriter track) throws IOException {
+    Summary<F> summary = new Summary<>();
+    double bestError = Double.MAX_VALUE;
+    long start = System.nanoTime();
+    try {
+      F frame;
+      while (!Thread.currentThread().isInterrupted() && (frame = source.nextFrame()) != null) {
+        long timestampUs = source.frameTimestampUs();
+        int frameIndex = summary.frameCount++;
+        boolean hasFace;
+        try {
+          hasFace = analyzer.analyze(frame, timestampUs, analysis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        track.write(frameIndex, timestampUs, hasFace ? analysis : null);
+        if (!hasFace) {
+          continue;
+        }
+        summary.faceFrameCount++;
+        double error = analysis.forwardError();
+        if (error < bestError) {
+          bestError = error;
+          summary.bestFrame = frame;
+          summary.bestFrameIndex = frameIndex;
+          summary.bestTimestampUs = timestampUs;
+          summary.bestAnalysis.copyFrom(analysis);
+        }
+      }
+    } finally {
+      summary.elapsedNanos = System.nanoTime() - start;
+      source.close();
+    }
+    return summary;
+  }
+}
@@ -0,0 +1,260 @@
+package com.google.mediapipe.examples.facemesh;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams {@link ExportFrame}s to a collector over TCP, on its own thread, without ever blocking
+ * the thread producing them.
+ *
+ * <p>The producer fills frames in place through {@link #claim} and {@link #publish}, backed by an
+ * {@link SpscRing} that overwrites the oldest frame when full. The exporter thread coalesces the
+ * frames published within {@code lingerUs} of each other, up to {@code maxBatchFrames}, into one
+ * message, and writes messages through a bounded send buffer with a non-blocking socket. When the
+ * collector falls behind, the send buffer fills up, frames stay in the ring, and the ring drops
+ * the oldest. While disconnected, frames are dropped as they come and the exporter reconnects with
+ * exponential backoff.
+ *
+ * <p>The stream is little-endian. It starts with u32 {@link #MAGIC}, u16 {@link #VERSION} and u16
+ * maxHands, followed by messages: u32 length of the rest of the message, u16 frame count, u16
+ * reserved, then the frames as written by {@link ExportFrame#write}. {@link ExportReader} reads
+ * it back.
+ */
+public class ResultExporter implements Closeable {
+  /** "FCEX" in little-endian order. */
+  public static final int MAGIC = 0x58454346;
+  public static final int VERSION = 1;
+  static final int STREAM_HEADER_SIZE = 8;
+  static final int BATCH_HEADER_SIZE = 8;
+
+  private static final long POLL_MS = 100;
+  private static final long MIN_RECONNECT_MS = 500;
+  private static final long MAX_RECONNECT_MS = 10_000;
+
+  private final InetSocketAddress address;
+  private final int maxHands;
+  private final int maxBatchFrames;
+  private final long lingerUs;
+  private final int maxBatchBytes;
+  private final SpscRing<ExportFrame> ring;
+  private final ExportFrame frame;
+  private final ByteBuffer sendBuffer;
+  private final Selector selector;
+  private final Thread thread;
+  private volatile boolean closed;
+
+  private SocketChannel channel;
+  private SelectionKey key;
+  private volatile boolean connected;
+  private long reconnectMs = MIN_RECONNECT_MS;
+  private long nextConnectNanos;
+
+  private volatile long sentFrames;
+  private volatile long discardedFrames;
+  private volatile long sentBytes;
+  private volatile long connections;
+
+  /**
+   * @param address collector to connect to.
+   * @param maxHands most hands per frame.
+   * @param ringCapacity frames held for the exporter thread, a power of two.
+   * @param maxBatchFrames most frames per message.
+   * @param lingerUs how long a message waits for more frames after its first one.
+   * @param sendBufferBytes bytes buffered for the socket, at least one full message.
+   */
+  public ResultExporter(
+      InetSocketAddress address,
+      int maxHands,
+      int ringCapacity,
+      int maxBatchFrames,
+      long lingerUs,
+      int sendBufferBytes)
+      throws IOException {
+    this.address = address;
+    this.maxHands = maxHands;
+    this.maxBatchFrames = maxBatchFrames;
+    this.lingerUs = lingerUs;
+    maxBatchBytes = BATCH_HEADER_SIZE + maxBatchFrames * ExportFrame.maxSize(maxHands);
+    if (sendBufferBytes < STREAM_HEADER_SIZE + maxBatchBytes) {
+      throw new IllegalArgumentException("Send buffer can't hold a message: " + sendBufferBytes);
+    }
+    ExportFrame[] slots = new ExportFrame[ringCapacity];
+    for (int i = 0; i < ringCapacity; ++i) {
+      slots[i] = new ExportFrame(maxHands);
+    }
+    ring = new SpscRing<>(slots, SpscRing.Overflow.OVERWRITE_OLDEST);
+    frame = new ExportFrame(maxHands);
+    sendBuffer = ByteBuffer.allocateDirect(sendBufferBytes).order(ByteOrder.LITTLE_ENDIAN);
+    selector = Selector.open();
+    thread = new Thread(this::run, "ResultExporter");
+    thread.start();
+  }
+
+  /** Returns the frame to fill for the next {@link #publish}. Producer thread only. */
+  public ExportFrame claim() {
+    return ring.claim();
+  }
+
+  /** Hands the frame returned by the last {@link #claim} to the exporter. Producer thread only. */
+  public void publish() {
+    ring.publish();
+  }
+
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /** Frames written to the send buffer while connected. */
+  public long sentFrames() {
+    return sentFrames;
+  }
+
+  /** Frames overwritten in the ring, or dropped while disconnected. */
+  public long droppedFrames() {
+    return ring.droppedCount() + discardedFrames;
+  }
+
+  public long sentBytes() {
+    return sentBytes;
+  }
+
+  public long connections() {
+    return connections;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    selector.wakeup();
+    try {
+      thread.join(2 * POLL_MS + 1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    selector.close();
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        try {
+          if (!connected) {
+            connect();
+            // Nobody to send to; keep the ring from holding stale frames.
+            if (!connected && ring.take(frame, POLL_MS, TimeUnit.MILLISECONDS)) {
+              discardedFrames++;
+            }
+            continue;
+          }
+          flush();
+          if (sendBuffer.position() > 0 && sendBuffer.remaining() < maxBatchBytes) {
+            // The collector is behind; wait until it reads, while the ring drops the oldest.
+            key.interestOps(SelectionKey.OP_WRITE);
+            selector.select(POLL_MS);
+            selector.selectedKeys().clear();
+            continue;
+          }
+          // With bytes still pending, come back soon to write them.
+          batch(sendBuffer.position() > 0 ? POLL_MS / 10 : POLL_MS);
+        } catch (IOException e) {
+          disconnect();
+        }
+      }
+    } catch (InterruptedException e) {
+      // Closing.
+    } finally {
+      disconnect();
+    }
+  }
+
+  /** Moves frames from the ring into one message in the send buffer. */
+  private void batch(long waitMs) throws InterruptedException {
+    if (!ring.take(frame, waitMs, TimeUnit.MILLISECONDS)) {
+      return;
+    }
+    int start = sendBuffer.position();
+    sendBuffer.position(start + BATCH_HEADER_SIZE);
+    int count = 0;
+    long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(lingerUs);
+    do {
+      frame.write(sendBuffer);
+      count++;
+      if (count == maxBatchFrames) {
+        break;
+      }
+      long remaining = deadline - System.nanoTime();
+      boolean more =
+          remaining > 0 ? ring.take(frame, remaining, TimeUnit.NANOSECONDS) : ring.poll(frame);
+      if (!more) {
+        break;
+      }
+    } while (!closed);
+    int end = sendBuffer.position();
+    sendBuffer.putInt(start, end - start - 4);
+    sendBuffer.putShort(start + 4, (short) count);
+    sendBuffer.putShort(start + 6, (short) 0);
+    sentFrames += count;
+  }
+
+  private void flush() throws IOException {
+    if (sendBuffer.position() == 0) {
+      return;
+    }
+    sendBuffer.flip();
+    sentBytes += channel.write(sendBuffer);
+    sendBuffer.compact();
+  }
+
+  private void connect() throws IOException {
+    if (channel == null) {
+      if (System.nanoTime() < nextConnectNanos) {
+        return;
+      }
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      key = channel.register(selector, SelectionKey.OP_CONNECT);
+      if (!channel.connect(address)) {
+        return;
+      }
+    } else {
+      selector.select(POLL_MS);
+      selector.selectedKeys().clear();
+      if (!channel.finishConnect()) {
+        return;
+      }
+    }
+    connected = true;
+    connections++;
+    reconnectMs = MIN_RECONNECT_MS;
+    key.interestOps(0);
+    sendBuffer.clear();
+    sendBuffer.putInt(MAGIC);
+    sendBuffer.putShort((short) VERSION);
+    sendBuffer.putShort((short) maxHands);
+  }
+
+  private void disconnect() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // Already broken.
+      }
+    }
+    channel = null;
+    key = null;
+    connected = false;
+    // A message cut off on one connection can't be finished on the next.
+    sendBuffer.clear();
+    nextConnectNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reconnectMs);
+    reconnectMs = Math.min(2 * reconnectMs, MAX_RECONNECT_MS);
+  }
+}
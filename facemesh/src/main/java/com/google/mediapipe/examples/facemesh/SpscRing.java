@@ -0,0 +1,162 @@
+package com.google.mediapipe.examples.facemesh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free ring of preallocated slots between one producer thread and one consumer thread.
+ *
+ * <p>The producer fills the slot returned by {@link #claim} in place and calls {@link #publish};
+ * the consumer copies the oldest published slot out with {@link #poll} or {@link #take}. Nothing
+ * is allocated after construction.
+ *
+ * <p>When the ring is full, {@link Overflow#DROP_NEWEST} refuses the claim and {@link
+ * Overflow#OVERWRITE_OLDEST} takes the oldest slot back. In the latter case both threads may move
+ * the tail, so the consumer copies a slot first and then commits the read with a compare-and-set;
+ * if the producer took the slot back meanwhile, the possibly torn copy is discarded and the
+ * consumer retries with the next slot. The producer moves the tail before it writes the slot, so
+ * a successful commit means the copy was not overwritten.
+ */
+public class SpscRing<S extends SpscRing.Slot<S>> {
+  /** A ring entry; must copy every field that matters to the consumer. */
+  public interface Slot<S> {
+    void copyFrom(S other);
+  }
+
+  /** What {@link #claim} does when the ring is full. */
+  public enum Overflow {
+    OVERWRITE_OLDEST,
+    DROP_NEWEST,
+  }
+
+  private final S[] slots;
+  private final int mask;
+  private final Overflow overflow;
+  // Index of the next slot to publish, written by the producer only.
+  private final AtomicLong head = new AtomicLong();
+  // Index of the oldest unread slot.
+  private final AtomicLong tail = new AtomicLong();
+  private volatile Thread waitingConsumer;
+
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong consumed = new AtomicLong();
+  private volatile int maxOccupancy;
+
+  /**
+   * @param slots preallocated slots; the ring holds {@code slots.length}, a power of two.
+   * @param overflow what to do when the ring is full.
+   */
+  public SpscRing(S[] slots, Overflow overflow) {
+    if (slots.length == 0 || Integer.bitCount(slots.length) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + slots.length);
+    }
+    this.slots = slots;
+    this.mask = slots.length - 1;
+    this.overflow = overflow;
+  }
+
+  /**
+   * Returns the slot to fill for the next {@link #publish}, or {@code null} if the ring is full
+   * and the policy is {@link Overflow#DROP_NEWEST}. Producer only.
+   */
+  public S claim() {
+    long h = head.get();
+    long t = tail.get();
+    if (h - t >= slots.length) {
+      if (overflow == Overflow.DROP_NEWEST) {
+        dropped.incrementAndGet();
+        return null;
+      }
+      // If the consumer got there first, the slot is free anyway.
+      if (tail.compareAndSet(t, t + 1)) {
+        dropped.incrementAndGet();
+      }
+    }
+    return slots[(int) h & mask];
+  }
+
+  /** Makes the slot returned by the last {@link #claim} visible to the consumer. Producer only. */
+  public void publish() {
+    long h = head.get() + 1;
+    // A full store: it must not be reordered with the read of waitingConsumer below, or a consumer
+    // parking after its last check of head would not be woken.
+    head.set(h);
+    published.incrementAndGet();
+    int occupancy = (int) (h - tail.get());
+    if (occupancy > maxOccupancy) {
+      maxOccupancy = occupancy;
+    }
+    Thread consumer = waitingConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /** Copies the oldest slot into {@code out}; returns {@code false} if empty. Consumer only. */
+  public boolean poll(S out) {
+    while (true) {
+      long t = tail.get();
+      if (t >= head.get()) {
+        return false;
+      }
+      out.copyFrom(slots[(int) t & mask]);
+      if (tail.compareAndSet(t, t + 1)) {
+        consumed.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Like {@link #poll}, but parks for up to {@code timeout} for a slot to be published. Consumer
+   * only.
+   */
+  public boolean take(S out, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!poll(out)) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      waitingConsumer = Thread.currentThread();
+      // Checked again after announcing the wait, so a publish in between is not missed.
+      if (tail.get() >= head.get()) {
+        LockSupport.parkNanos(this, remaining);
+      }
+      waitingConsumer = null;
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return true;
+  }
+
+  public int capacity() {
+    return slots.length;
+  }
+
+  /** Slots published but not yet consumed. */
+  public int size() {
+    return (int) Math.max(0, head.get() - tail.get());
+  }
+
+  public long publishedCount() {
+    return published.get();
+  }
+
+  /** Slots dropped or overwritten before the consumer got to them. */
+  public long droppedCount() {
+    return dropped.get();
+  }
+
+  public long consumedCount() {
+    return consumed.get();
+  }
+
+  /** Highest occupancy seen right after a publish. */
+  public int maxOccupancy() {
+    return maxOccupancy;
+  }
+}
@@ -0,0 +1,290 @@
+package com.google.mediapipe.examples.facemesh;
+
+import com.google.mediapipe.solutions.facemesh.FaceMeshResult;
+import com.google.mediapipe.solutions.hands.HandsResult;
+
+/**
+ * Joins face mesh and hands results of the same camera frame into {@link CombinedResult}s.
+ *
+ * <p>The face mesh sees every frame; hands only the frames for which {@link #expectHands} was
+ * called, at most {@code maxHandsInFlight} at a time. Hands are sent each frame with its camera
+ * timestamp, so each result is matched to its frame by {@link HandsResult#timestamp}. Hands may
+ * skip frames under load; frames sent before the one a result answers are no longer waited for.
+ *
+ * <p>A frame is complete once its face mesh result and, if expected, its hands result have arrived.
+ * Frames are emitted in timestamp order. A frame still waiting for its hands is given up once a
+ * result more than {@code maxWaitUs} newer arrives, so the wait is bounded in camera time. What
+ * happens to frames without hands, given up or never sent, is the {@link PartialPolicy}.
+ *
+ * <p>Results arrive on the solutions' threads; all methods are synchronized and short. The listener
+ * is called with the lock held and must copy what it keeps, since combined results are reused.
+ */
+public class TimestampJoiner {
+  /** What to do with frames that have a face mesh result but no hands result. */
+  public enum PartialPolicy {
+    /** Only emit frames with both results. */
+    DROP,
+    /** Emit them with {@link CombinedResult.HandsStatus#MISSING}. */
+    EMIT,
+    /** Emit them with the latest earlier hands, {@link CombinedResult.HandsStatus#REUSED}. */
+    REUSE_LATEST,
+  }
+
+  /** Receives combined results, in timestamp order. */
+  public interface Listener {
+    void onCombinedResult(CombinedResult result);
+  }
+
+  private static final class Pending {
+    boolean used;
+    long timestampUs;
+    boolean handsExpected;
+    boolean hasFace;
+    boolean hasHands;
+    final CombinedResult result;
+
+    Pending(int maxHands) {
+      result = new CombinedResult(maxHands);
+    }
+  }
+
+  private final long maxWaitUs;
+  private final PartialPolicy policy;
+  private final Pending[] pending;
+  // Camera timestamps of the frames sent to hands, oldest first.
+  private final long[] handsTimestampsUs;
+  private int handsInFlight;
+  private final CombinedResult latestHands;
+  private Listener listener;
+
+  private long joined;
+  private long partial;
+  private long dropped;
+
+  /**
+   * @param maxHands most hands per result.
+   * @param maxHandsInFlight most frames sent to hands without a result yet.
+   * @param maxWaitUs how much newer, in camera time, a result may be than a frame still waiting.
+   * @param policy what to do with frames without hands.
+   */
+  public TimestampJoiner(
+      int maxHands, int maxHandsInFlight, long maxWaitUs, PartialPolicy policy) {
+    this.maxWaitUs = maxWaitUs;
+    this.policy = policy;
+    handsTimestampsUs = new long[maxHandsInFlight];
+    // Every frame in flight, plus the newest face mesh result.
+    pending = new Pending[maxHandsInFlight + 2];
+    for (int i = 0; i < pending.length; ++i) {
+      pending[i] = new Pending(maxHands);
+    }
+    latestHands = new CombinedResult(maxHands);
+  }
+
+  public synchronized void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Registers a frame about to be sent to hands. Call from the camera thread, before sending the
+   * frame to either solution.
+   *
+   * @return {@code false} if too many frames are in flight; the frame must then not be sent.
+   */
+  public synchronized boolean expectHands(long timestampUs) {
+    if (handsInFlight == handsTimestampsUs.length) {
+      return false;
+    }
+    handsTimestampsUs[handsInFlight++] = timestampUs;
+    obtain(timestampUs).handsExpected = true;
+    return true;
+  }
+
+  public synchronized void onFaceMesh(FaceMeshResult result) {
+    long timestampUs = result.timestamp();
+    // Face mesh results arrive in order; older frames without one never get it.
+    for (Pending p : pending) {
+      if (p.used && !p.hasFace && p.timestampUs < timestampUs) {
+        discard(p);
+      }
+    }
+    Pending p = obtain(timestampUs);
+    p.hasFace = true;
+    p.result.face.set(result);
+    p.result.face.timestampUs = timestampUs;
+    drain(timestampUs);
+  }
+
+  public synchronized void onHands(HandsResult result) {
+    long timestampUs = result.timestamp();
+    int index = indexInFlight(timestampUs);
+    if (index < 0) {
+      // Not a frame in flight, e.g. one sent before a reset.
+      return;
+    }
+    // Hands answer in order, so the frames sent before this one were skipped.
+    for (int i = 0; i < index; ++i) {
+      stopExpecting(handsTimestampsUs[i]);
+    }
+    removeInFlight(index + 1);
+    Pending p = find(timestampUs);
+    if (p != null) {
+      p.hasHands = true;
+      p.result.setHands(result, timestampUs);
+      latestHands.copyHandsFrom(p.result);
+    }
+    drain(timestampUs);
+  }
+
+  /** Reports that hands failed on the oldest frame in flight. */
+  public synchronized void onHandsError() {
+    if (handsInFlight == 0) {
+      return;
+    }
+    stopExpecting(handsTimestampsUs[0]);
+    removeInFlight(1);
+  }
+
+  /** Forgets all frames, e.g. when the pipeline restarts. */
+  public synchronized void reset() {
+    for (Pending p : pending) {
+      p.used = false;
+    }
+    handsInFlight = 0;
+    latestHands.numHands = 0;
+    latestHands.handsTimestampUs = 0;
+  }
+
+  public synchronized long joinedCount() {
+    return joined;
+  }
+
+  /** Frames emitted without their own hands. */
+  public synchronized long partialCount() {
+    return partial;
+  }
+
+  /** Frames without a face mesh result, or without hands under {@link PartialPolicy#DROP}. */
+  public synchronized long droppedCount() {
+    return dropped;
+  }
+
+  private int indexInFlight(long timestampUs) {
+    for (int i = 0; i < handsInFlight; ++i) {
+      if (handsTimestampsUs[i] == timestampUs) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Removes the {@code count} oldest frames in flight. */
+  private void removeInFlight(int count) {
+    handsInFlight -= count;
+    System.arraycopy(handsTimestampsUs, count, handsTimestampsUs, 0, handsInFlight);
+  }
+
+  private void stopExpecting(long timestampUs) {
+    Pending p = find(timestampUs);
+    if (p != null) {
+      p.handsExpected = false;
+    }
+  }
+
+  private Pending find(long timestampUs) {
+    for (Pending p : pending) {
+      if (p.used && p.timestampUs == timestampUs) {
+        return p;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the frame at {@code timestampUs}, taking a new slot, or the oldest one, if needed. */
+  private Pending obtain(long timestampUs) {
+    Pending found = find(timestampUs);
+    if (found != null) {
+      return found;
+    }
+    Pending free = null;
+    for (Pending p : pending) {
+      if (!p.used) {
+        free = p;
+        break;
+      }
+    }
+    if (free == null) {
+      free = oldest();
+      complete(free);
+    }
+    free.used = true;
+    free.timestampUs = timestampUs;
+    free.handsExpected = false;
+    free.hasFace = false;
+    free.hasHands = false;
+    free.result.face.numLandmarks = 0;
+    free.result.numHands = 0;
+    return free;
+  }
+
+  private Pending oldest() {
+    Pending oldest = null;
+    for (Pending p : pending) {
+      if (p.used && (oldest == null || p.timestampUs < oldest.timestampUs)) {
+        oldest = p;
+      }
+    }
+    return oldest;
+  }
+
+  /** Emits complete frames, and gives up waiting ones, oldest first. */
+  private void drain(long nowUs) {
+    while (true) {
+      Pending p = oldest();
+      if (p == null) {
+        return;
+      }
+      boolean ready = p.hasFace && (p.hasHands || !p.handsExpected);
+      if (!ready && nowUs - p.timestampUs <= maxWaitUs) {
+        return;
+      }
+      complete(p);
+    }
+  }
+
+  /** Emits or drops {@code p}, as far as it got, and frees it. */
+  private void complete(Pending p) {
+    p.used = false;
+    if (!p.hasFace) {
+      dropped++;
+      return;
+    }
+    CombinedResult result = p.result;
+    result.timestampUs = p.timestampUs;
+    if (p.hasHands) {
+      result.handsStatus = CombinedResult.HandsStatus.JOINED;
+      joined++;
+    } else if (policy == PartialPolicy.DROP) {
+      dropped++;
+      return;
+    } else {
+      partial++;
+      if (policy == PartialPolicy.REUSE_LATEST
+          && latestHands.handsTimestampUs != 0
+          && latestHands.handsTimestampUs <= p.timestampUs) {
+        result.handsStatus = CombinedResult.HandsStatus.REUSED;
+        result.copyHandsFrom(latestHands);
+      } else {
+        result.handsStatus = CombinedResult.HandsStatus.MISSING;
+        result.numHands = 0;
+      }
+    }
+    if (listener != null) {
+      listener.onCombinedResult(result);
+    }
+  }
+
+  private void discard(Pending p) {
+    p.used = false;
+    dropped++;
+  }
+}
@@ -0,0 +1,67 @@
+package com.google.mediapipe.examples.facemesh;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+
+/** A {@link FrameSource} that decodes the frames of a video file one by one. */
+public class VideoFrameSource implements FrameSource<Bitmap> {
+  // Frame step used when the frame count can't be read from the container (before API 28).
+  private static final long FALLBACK_FRAME_INTERVAL_US = 1_000_000 / 30;
+
+  private final MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+  private final long durationUs;
+  private final int frameCount;
+  private int nextIndex;
+  private long timestampUs;
+
+  public VideoFrameSource(Context context, Uri videoUri) {
+    retriever.setDataSource(context, videoUri);
+    durationUs = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)) * 1000;
+    frameCount =
+        Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+            ? (int) parseLong(
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_FRAME_COUNT))
+            : 0;
+  }
+
+  @Override
+  public Bitmap nextFrame() {
+    Bitmap frame;
+    if (frameCount > 0) {
+      if (nextIndex >= frameCount) {
+        return null;
+      }
+      timestampUs = nextIndex * durationUs / frameCount;
+      frame = retriever.getFrameAtIndex(nextIndex);
+    } else {
+      timestampUs = nextIndex * FALLBACK_FRAME_INTERVAL_US;
+      if (timestampUs > durationUs) {
+        return null;
+      }
+      frame = retriever.getFrameAtTime(timestampUs, MediaMetadataRetriever.OPTION_CLOSEST);
+    }
+    nextIndex++;
+    return frame;
+  }
+
+  @Override
+  public long frameTimestampUs() {
+    return timestampUs;
+  }
+
+  @Override
+  public void close() {
+    retriever.release();
+  }
+
+  private static long parseLong(String value) {
+    try {
+      return value == null ? 0 : Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.google.mediapipe.examples.facemesh;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CaptureIndexTest {
+  private File indexFile;
+
+  @Before
+  public void setUp() throws IOException {
+    indexFile = File.createTempFile("captures", ".idx");
+  }
+
+  @After
+  public void tearDown() {
+    indexFile.delete();
+  }
+
+  @Test
+  public void sessionsAreNumberedPastTheLastOne() throws IOException {
+    assertEquals(0, nextSessionId());
+    append(0, 100, 200);
+    assertEquals(1, nextSessionId());
+    append(1, 50);
+    assertEquals(2, nextSessionId());
+  }
+
+  @Test
+  public void findsWithinTheSessionWhenTheClockRestarts() throws IOException {
+    // The second session starts after a reboot, with timestamps below the first one's.
+    append(0, 1000, 2000, 3000);
+    append(1, 10, 20, 30);
+    CaptureIndex.Reader reader = new CaptureIndex.Reader(indexFile);
+    assertEquals(6, reader.count());
+    assertEquals(1, reader.find(0, 1500));
+    assertEquals(4, reader.find(1, 20));
+    assertEquals(3, reader.find(1, 0));
+    // Past the end of the first session, the first record of the second.
+    assertEquals(3, reader.find(0, 5000));
+    assertEquals(6, reader.find(1, 5000));
+
+    CaptureIndex.Record record = new CaptureIndex.Record();
+    reader.read(4, record);
+    assertEquals(1, record.sessionId);
+    assertEquals(20, record.timestampUs);
+  }
+
+  @Test
+  public void ignoresATrailingPartialRecord() throws IOException {
+    append(0, 100);
+    try (FileOutputStream out = new FileOutputStream(indexFile, true)) {
+      out.write(new byte[CaptureIndex.RECORD_SIZE / 2]);
+    }
+    assertEquals(1, nextSessionId());
+    assertEquals(1, new CaptureIndex.Reader(indexFile).count());
+  }
+
+  @Test
+  public void appendsAfterATrailingPartialRecordOnceItIsDropped() throws IOException {
+    append(0, 100, 200);
+    try (FileOutputStream out = new FileOutputStream(indexFile, true)) {
+      out.write(new byte[CaptureIndex.RECORD_SIZE / 2]);
+    }
+    try (FileChannel channel = new RandomAccessFile(indexFile, "rw").getChannel()) {
+      assertEquals(1, CaptureIndex.openForAppend(channel));
+    }
+    assertEquals(2 * CaptureIndex.RECORD_SIZE, indexFile.length());
+    append(1, 10, 20, 30);
+    CaptureIndex.Reader reader = new CaptureIndex.Reader(indexFile);
+    assertEquals(5, reader.count());
+    assertEquals(3, reader.find(1, 20));
+    CaptureIndex.Record record = new CaptureIndex.Record();
+    reader.read(4, record);
+    assertEquals(1, record.sessionId);
+    assertEquals(30, record.timestampUs);
+  }
+
+  private int nextSessionId() throws IOException {
+    try (FileChannel channel = new RandomAccessFile(indexFile, "r").getChannel()) {
+      return CaptureIndex.nextSessionId(channel);
+    }
+  }
+
+  private void append(int sessionId, long... timestampsUs) throws IOException {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(timestampsUs.length * CaptureIndex.RECORD_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    CaptureIndex.Record record = new CaptureIndex.Record();
+    record.sessionId = sessionId;
+    for (long timestampUs : timestampsUs) {
+      record.timestampUs = timestampUs;
+      CaptureIndex.write(record, buffer);
+    }
+    buffer.flip();
+    try (FileChannel channel = new FileOutputStream(indexFile, true).getChannel()) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.google.mediapipe.examples.facemesh;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.mediapipe.examples.facecenter.CapturePolicy;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+
+/** Checks that the bundled capture policies compile into the rules they document. */
+public class CapturePolicyAssetsTest {
+  // Unit tests run from the module directory.
+  private static final String ASSETS = "src/main/assets/";
+
+  @Test
+  public void fullPolicyChecksPoseAndEyes() throws IOException {
+    CapturePolicy policy = load("capture_policy.properties");
+    assertEquals(2, policy.ruleCount());
+    assertEquals("pose", policy.ruleName(0));
+    assertEquals("eyes_open", policy.ruleName(1));
+  }
+
+  @Test
+  public void lowPowerPolicyIsStricter() throws IOException {
+    CapturePolicy policy = load("capture_policy_low_power.properties");
+    assertEquals(4, policy.ruleCount());
+    assertEquals("face_size", policy.ruleName(0));
+    assertEquals("pose", policy.ruleName(1));
+    assertEquals("eyes_open", policy.ruleName(2));
+    assertEquals("stable", policy.ruleName(3));
+  }
+
+  private static CapturePolicy load(String fileName) throws IOException {
+    try (InputStream in = new FileInputStream(ASSETS + fileName)) {
+      return CapturePolicy.load(in);
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.google.mediapipe.examples.facemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class ExportReaderTest {
+  private static final int MAX_HANDS = 2;
+  private static final int MAX_BATCH_FRAMES = 4;
+
+  private final ExportFrame[] frames = newFrames(MAX_BATCH_FRAMES);
+
+  @Test
+  public void readsFramesWrittenByTheExporter() throws Exception {
+    try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        ResultExporter exporter =
+            new ResultExporter(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                MAX_HANDS,
+                8,
+                MAX_BATCH_FRAMES,
+                1_000,
+                4096)) {
+      server.setSoTimeout(5_000);
+      try (Socket socket = server.accept()) {
+        socket.setSoTimeout(5_000);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!exporter.isConnected()) {
+          assertTrue("not connected", System.currentTimeMillis() < deadline);
+          Thread.sleep(10);
+        }
+        ExportFrame frame = exporter.claim();
+        frame.setFace(100, face(0.5));
+        frame.setHands(hands(CombinedResult.HandsStatus.REUSED, 1));
+        exporter.publish();
+
+        ExportReader reader =
+            new ExportReader(socket.getInputStream(), MAX_BATCH_FRAMES, MAX_HANDS);
+        assertEquals(1, reader.readBatch(frames));
+        assertEquals(MAX_HANDS, reader.maxHands());
+        ExportFrame read = frames[0];
+        assertEquals(100, read.timestampUs);
+        assertTrue(read.hasFace());
+        assertEquals(ExportFrame.FLAG_HANDS_REUSED, read.flags & ExportFrame.FLAG_HANDS_REUSED);
+        assertEquals(0.5f, read.center[0], 0);
+        assertEquals(1, read.numHands);
+        assertTrue(read.isLeftHand[0]);
+      }
+    }
+  }
+
+  @Test
+  public void roundTripsFramesWithAndWithoutFaceAndHands() throws Exception {
+    ExportFrame withBoth = new ExportFrame(MAX_HANDS);
+    withBoth.setFace(100, face(0.25));
+    withBoth.setHands(hands(CombinedResult.HandsStatus.JOINED, 2));
+    ExportFrame faceOnly = new ExportFrame(MAX_HANDS);
+    faceOnly.setFace(133, face(0.75));
+    faceOnly.setHands(hands(CombinedResult.HandsStatus.MISSING, 0));
+    ExportFrame handsOnly = new ExportFrame(MAX_HANDS);
+    handsOnly.clear(166);
+    handsOnly.setHands(hands(CombinedResult.HandsStatus.REUSED, 1));
+
+    ExportReader reader = reader(stream(MAX_HANDS, withBoth, faceOnly, handsOnly));
+    assertEquals(3, reader.readBatch(frames));
+
+    assertEquals(100, frames[0].timestampUs);
+    assertTrue(frames[0].hasFace());
+    assertEquals(0, frames[0].flags & ExportFrame.FLAG_HANDS_REUSED);
+    assertEquals(0.25f, frames[0].center[0], 0);
+    assertEquals(2, frames[0].numHands);
+    assertTrue(frames[0].isLeftHand[0]);
+    assertFalse(frames[0].isLeftHand[1]);
+    assertEquals(
+        withBoth.handLandmarks[CombinedResult.HAND_STRIDE + 5],
+        frames[0].handLandmarks[CombinedResult.HAND_STRIDE + 5],
+        0);
+    assertEquals(withBoth.handBoxes[6], frames[0].handBoxes[6], 0);
+
+    assertTrue(frames[1].hasFace());
+    assertEquals(0, frames[1].numHands);
+
+    assertFalse(frames[2].hasFace());
+    assertEquals(ExportFrame.FLAG_HANDS_REUSED, frames[2].flags);
+    assertEquals(1, frames[2].numHands);
+
+    assertEquals(-1, reader.readBatch(frames));
+  }
+
+  @Test
+  public void emptyStreamEndsCleanly() throws Exception {
+    assertEquals(-1, reader(new byte[0]).readBatch(frames));
+  }
+
+  @Test
+  public void rejectsAnotherStream() throws Exception {
+    byte[] bytes = stream(MAX_HANDS, new ExportFrame(MAX_HANDS));
+    bytes[0] ^= 1;
+    try {
+      reader(bytes).readBatch(frames);
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void cutOffMessageFails() throws Exception {
+    ExportFrame frame = new ExportFrame(MAX_HANDS);
+    frame.setFace(100, face(0));
+    byte[] bytes = stream(MAX_HANDS, frame);
+    try {
+      reader(Arrays.copyOf(bytes, bytes.length - 1)).readBatch(frames);
+      fail();
+    } catch (EOFException expected) {
+    }
+  }
+
+  @Test
+  public void rejectsMoreHandsThanAnnounced() throws Exception {
+    ExportFrame frame = new ExportFrame(MAX_HANDS);
+    frame.clear(100);
+    frame.setHands(hands(CombinedResult.HandsStatus.JOINED, 2));
+    ExportFrame[] small = {new ExportFrame(1)};
+    try {
+      new ExportReader(new ByteArrayInputStream(stream(MAX_HANDS, frame)), 1, MAX_HANDS)
+          .readBatch(small);
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  private static ExportReader reader(byte[] bytes) {
+    return new ExportReader(new ByteArrayInputStream(bytes), MAX_BATCH_FRAMES, MAX_HANDS);
+  }
+
+  /** A stream header and one message holding {@code batch}, as the exporter writes them. */
+  private static byte[] stream(int maxHands, ExportFrame... batch) {
+    ByteBuffer out =
+        ByteBuffer.allocate(
+                ResultExporter.STREAM_HEADER_SIZE
+                    + ResultExporter.BATCH_HEADER_SIZE
+                    + batch.length * ExportFrame.maxSize(maxHands))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(ResultExporter.MAGIC).putShort((short) ResultExporter.VERSION);
+    out.putShort((short) maxHands);
+    int start = out.position();
+    out.putInt(0).putShort((short) batch.length).putShort((short) 0);
+    for (ExportFrame frame : batch) {
+      frame.write(out);
+    }
+    out.putInt(start, out.position() - start - 4);
+    return Arrays.copyOf(out.array(), out.position());
+  }
+
+  private static FaceAnalysis face(double x) {
+    FaceAnalysis analysis = new FaceAnalysis();
+    analysis.avg[0] = x;
+    analysis.min[0] = x - 0.1;
+    analysis.max[0] = x + 0.1;
+    analysis.isForward = true;
+    return analysis;
+  }
+
+  /** {@code numHands} hands, the first one left, with distinct landmarks. */
+  private static CombinedResult hands(CombinedResult.HandsStatus status, int numHands) {
+    CombinedResult result = new CombinedResult(MAX_HANDS);
+    result.handsStatus = status;
+    result.numHands = numHands;
+    for (int i = 0; i < numHands * CombinedResult.HAND_STRIDE; ++i) {
+      result.handLandmarks[i] = i / 1000f;
+    }
+    result.isLeftHand[0] = true;
+    return result;
+  }
+
+  private static ExportFrame[] newFrames(int count) {
+    ExportFrame[] frames = new ExportFrame[count];
+    for (int i = 0; i < count; ++i) {
+      frames[i] = new ExportFrame(MAX_HANDS);
+    }
+    return frames;
+  }
+}
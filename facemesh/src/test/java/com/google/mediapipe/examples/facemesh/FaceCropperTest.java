@@ -0,0 +1,168 @@
+package com.google.mediapipe.examples.facemesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FaceCropperTest {
+  private static final int NUM_LANDMARKS = 468;
+  private static final int FOREHEAD = 10;
+  private static final int CHIN = 152;
+  private static final int RIGHT_EYE_OUTER = 33;
+  private static final int LEFT_EYE_OUTER = 263;
+  private static final int SIZE = 8;
+  private static final int PAD = 0xFF00FF00;
+
+  private final FaceCropper.Crop crop = new FaceCropper.Crop();
+
+  @Test
+  public void unrotatedCropAtScaleOneCopiesPixels() {
+    FaceCropper cropper = new FaceCropper(4, 4, FaceCropper.Border.CLAMP, PAD);
+    setCrop(4, 4, 4, 0);
+    int[] output = cropper.warp(frame(), SIZE, SIZE, /*flippedVertically=*/ false, crop);
+    for (int row = 0; row < 4; ++row) {
+      for (int col = 0; col < 4; ++col) {
+        assertEquals(pixel(2 + col, 2 + row), output[row * 4 + col]);
+      }
+    }
+  }
+
+  @Test
+  public void flippedFrameGivesTheSameCrop() {
+    FaceCropper cropper = new FaceCropper(4, 4, FaceCropper.Border.CLAMP, PAD);
+    setCrop(3, 5, 4, 0.3f);
+    int[] upright = cropper.warp(frame(), SIZE, SIZE, false, crop).clone();
+    int[] flipped = new int[SIZE * SIZE];
+    for (int y = 0; y < SIZE; ++y) {
+      System.arraycopy(frame(), y * SIZE, flipped, (SIZE - 1 - y) * SIZE, SIZE);
+    }
+    assertArrayEquals(upright, cropper.warp(flipped, SIZE, SIZE, true, crop));
+  }
+
+  @Test
+  public void rollTurnsTheSampling() {
+    FaceCropper cropper = new FaceCropper(4, 4, FaceCropper.Border.CLAMP, PAD);
+    setCrop(4, 4, 4, (float) (Math.PI / 2));
+    int[] output = cropper.warp(frame(), SIZE, SIZE, false, crop);
+    // Output columns run down the frame, output rows run right to left.
+    for (int row = 0; row < 4; ++row) {
+      for (int col = 0; col < 4; ++col) {
+        assertEquals(pixel(5 - row, 2 + col), output[row * 4 + col]);
+      }
+    }
+  }
+
+  @Test
+  public void bilinearHalfwaySamplesAverage() {
+    FaceCropper cropper = new FaceCropper(1, 1, FaceCropper.Border.CLAMP, PAD);
+    int[] frame = {0xFF000000, 0xFF0000FE, 0xFF000000, 0xFF0000FE};
+    setCrop(1, 1, 1, 0);
+    assertEquals(0xFF00007F, cropper.warp(frame, 2, 2, false, crop)[0]);
+  }
+
+  @Test
+  public void borderPadsOrRepeatsEdgePixels() {
+    setCrop(0, 0, 4, 0);
+    int[] padded =
+        new FaceCropper(4, 4, FaceCropper.Border.PAD, PAD).warp(frame(), SIZE, SIZE, false, crop);
+    assertEquals(PAD, padded[0]);
+    assertEquals(pixel(0, 0), padded[2 * 4 + 2]);
+    int[] clamped =
+        new FaceCropper(4, 4, FaceCropper.Border.CLAMP, PAD).warp(frame(), SIZE, SIZE, false, crop);
+    assertEquals(pixel(0, 0), clamped[0]);
+    assertEquals(pixel(1, 0), clamped[3]);
+    assertEquals(pixel(0, 1), clamped[3 * 4]);
+  }
+
+  @Test
+  public void cropFramesTheFace() {
+    FaceCropper cropper = new FaceCropper(64, 64, FaceCropper.Border.CLAMP, PAD);
+    // Face 20 px wide and 40 px tall in a 100 px frame.
+    cropper.computeCrop(face(0.5f, 0.5f, 0), NUM_LANDMARKS, 100, 100, crop);
+    assertEquals(50, crop.centerX, 1e-3);
+    // Moved up by a quarter of the face height.
+    assertEquals(40, crop.centerY, 1e-3);
+    assertEquals(70, crop.width, 1e-3);
+    assertEquals(70, crop.height, 1e-3);
+    assertEquals(0, crop.roll, 1e-6);
+  }
+
+  @Test
+  public void cropFollowsTheEyeLine() {
+    FaceCropper cropper = new FaceCropper(64, 64, FaceCropper.Border.PAD, PAD);
+    cropper.computeCrop(face(0.5f, 0.5f, 0.4f), NUM_LANDMARKS, 100, 100, crop);
+    assertEquals(0.4f, crop.roll, 1e-5);
+    // Rotating the face about its center keeps the size of the crop.
+    assertEquals(70, crop.width, 1e-3);
+  }
+
+  @Test
+  public void clampSlidesTheCropIntoTheFrame() {
+    float[] face = face(0.2f, 0.5f, 0);
+    FaceCropper.Crop padded = new FaceCropper.Crop();
+    new FaceCropper(64, 64, FaceCropper.Border.PAD, PAD)
+        .computeCrop(face, NUM_LANDMARKS, 100, 100, padded);
+    assertEquals(20, padded.centerX, 1e-3);
+    new FaceCropper(64, 64, FaceCropper.Border.CLAMP, PAD)
+        .computeCrop(face, NUM_LANDMARKS, 100, 100, crop);
+    assertEquals(35, crop.centerX, 1e-3);
+    assertEquals(padded.centerY, crop.centerY, 1e-3);
+  }
+
+  @Test
+  public void clampCentersACropLargerThanTheFrame() {
+    // A wide output widens the crop past the frame, while its height still fits.
+    new FaceCropper(64, 16, FaceCropper.Border.CLAMP, PAD)
+        .computeCrop(face(0.2f, 0.5f, 0), NUM_LANDMARKS, 100, 100, crop);
+    assertEquals(280, crop.width, 1e-3);
+    assertEquals(70, crop.height, 1e-3);
+    assertEquals(50, crop.centerX, 1e-3);
+    assertEquals(40, crop.centerY, 1e-3);
+  }
+
+  private void setCrop(float centerX, float centerY, float width, float roll) {
+    crop.centerX = centerX;
+    crop.centerY = centerY;
+    crop.width = width;
+    crop.height = width;
+    crop.roll = roll;
+  }
+
+  private static int pixel(int x, int y) {
+    return 0xFF000000 | (x << 16) | (y << 8) | (x * SIZE + y);
+  }
+
+  private static int[] frame() {
+    int[] frame = new int[SIZE * SIZE];
+    for (int y = 0; y < SIZE; ++y) {
+      for (int x = 0; x < SIZE; ++x) {
+        frame[y * SIZE + x] = pixel(x, y);
+      }
+    }
+    return frame;
+  }
+
+  /**
+   * Landmarks of a face 0.2 wide and 0.4 tall, centered at ({@code x}, {@code y}) and rolled by
+   * {@code roll} radians, in a square frame.
+   */
+  private static float[] face(float x, float y, float roll) {
+    float[] landmarks = new float[3 * NUM_LANDMARKS];
+    float[][] points = new float[NUM_LANDMARKS][];
+    for (int i = 0; i < NUM_LANDMARKS; ++i) {
+      points[i] = new float[] {0, 0};
+    }
+    points[RIGHT_EYE_OUTER] = new float[] {-0.1f, -0.1f};
+    points[LEFT_EYE_OUTER] = new float[] {0.1f, -0.1f};
+    points[FOREHEAD] = new float[] {0, -0.2f};
+    points[CHIN] = new float[] {0, 0.2f};
+    float cos = (float) Math.cos(roll), sin = (float) Math.sin(roll);
+    for (int i = 0; i < NUM_LANDMARKS; ++i) {
+      float u = points[i][0], v = points[i][1];
+      landmarks[3 * i] = x + u * cos - v * sin;
+      landmarks[3 * i + 1] = y + u * sin + v * cos;
+    }
+    return landmarks;
+  }
+}
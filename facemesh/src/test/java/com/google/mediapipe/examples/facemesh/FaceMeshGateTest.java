@@ -0,0 +1,148 @@
+package com.google.mediapipe.examples.facemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class FaceMeshGateTest {
+  /**
+   * Stands in for the face detector and the face mesh: reports whether a face is in each frame to
+   * whichever stage the gate routes the frame to, as the camera callback does.
+   */
+  private static class StubPipeline {
+    final FaceMeshGate gate;
+    int detectorFrames;
+    int meshFrames;
+
+    StubPipeline(FaceMeshGate gate) {
+      this.gate = gate;
+    }
+
+    void frames(boolean facePresent, int count) {
+      for (int i = 0; i < count; ++i) {
+        if (gate.shouldRunMesh()) {
+          meshFrames++;
+          gate.onMeshResult(facePresent);
+        } else {
+          detectorFrames++;
+          gate.onDetectorResult(facePresent);
+        }
+      }
+    }
+  }
+
+  private final List<FaceMeshGate.Mode> modes = new ArrayList<>();
+
+  private StubPipeline pipeline(int framesToStart, int framesToStop) {
+    FaceMeshGate gate = new FaceMeshGate(framesToStart, framesToStop);
+    gate.setModeListener(modes::add);
+    return new StubPipeline(gate);
+  }
+
+  @Test
+  public void startsTheMeshAfterConsecutiveDetections() {
+    StubPipeline pipeline = pipeline(3, 5);
+    pipeline.frames(false, 10);
+    pipeline.frames(true, 2);
+    assertFalse(pipeline.gate.shouldRunMesh());
+    pipeline.frames(true, 1);
+    assertTrue(pipeline.gate.shouldRunMesh());
+    assertEquals(13, pipeline.detectorFrames);
+    assertEquals(0, pipeline.meshFrames);
+    assertEquals(1, modes.size());
+    assertEquals(FaceMeshGate.Mode.MESHING, modes.get(0));
+  }
+
+  @Test
+  public void aMissRestartsTheCount() {
+    StubPipeline pipeline = pipeline(3, 5);
+    pipeline.frames(true, 2);
+    pipeline.frames(false, 1);
+    pipeline.frames(true, 2);
+    assertFalse(pipeline.gate.shouldRunMesh());
+    pipeline.frames(true, 1);
+    assertTrue(pipeline.gate.shouldRunMesh());
+  }
+
+  @Test
+  public void stopsTheMeshAfterConsecutiveMisses() {
+    StubPipeline pipeline = pipeline(1, 5);
+    pipeline.frames(true, 1);
+    pipeline.frames(false, 4);
+    pipeline.frames(true, 1);
+    pipeline.frames(false, 4);
+    assertTrue(pipeline.gate.shouldRunMesh());
+    pipeline.frames(false, 1);
+    assertFalse(pipeline.gate.shouldRunMesh());
+    assertEquals(10, pipeline.meshFrames);
+    assertEquals(2, modes.size());
+    assertEquals(FaceMeshGate.Mode.DETECTING, modes.get(1));
+  }
+
+  @Test
+  public void ignoresResultsOfTheInactiveStage() {
+    StubPipeline pipeline = pipeline(1, 1);
+    // Detector frames still in flight when the mesh took over.
+    pipeline.frames(true, 1);
+    pipeline.gate.onDetectorResult(false);
+    assertTrue(pipeline.gate.shouldRunMesh());
+    // Mesh frames still in flight after going back to detection.
+    pipeline.frames(false, 1);
+    pipeline.gate.onMeshResult(true);
+    pipeline.gate.onMeshResult(false);
+    assertFalse(pipeline.gate.shouldRunMesh());
+    assertEquals(2, modes.size());
+  }
+
+  @Test
+  public void resetGoesBackToDetection() {
+    StubPipeline pipeline = pipeline(2, 5);
+    pipeline.frames(true, 2);
+    pipeline.gate.reset();
+    assertEquals(FaceMeshGate.Mode.DETECTING, pipeline.gate.mode());
+    pipeline.frames(true, 1);
+    assertFalse(pipeline.gate.shouldRunMesh());
+  }
+
+  @Test
+  public void configKeepsDefaultsForMissingKeys() throws IOException {
+    FaceMeshGate.Config config = load("cascade.frames_to_stop_mesh = 12\n");
+    assertTrue(config.enabled);
+    assertEquals(3, config.framesToStart);
+    assertEquals(12, config.framesToStop);
+  }
+
+  @Test
+  public void configReadsEveryKey() throws IOException {
+    FaceMeshGate.Config config =
+        load(
+            "cascade.enabled = false\n"
+                + "cascade.frames_to_start_mesh = 1\n"
+                + "cascade.frames_to_stop_mesh = 2\n");
+    assertFalse(config.enabled);
+    assertEquals(1, config.framesToStart);
+    assertEquals(2, config.framesToStop);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void configRejectsNonNumericCounts() throws IOException {
+    load("cascade.frames_to_start_mesh = three\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void configRejectsZeroCounts() throws IOException {
+    load("cascade.frames_to_stop_mesh = 0\n");
+  }
+
+  private static FaceMeshGate.Config load(String properties) throws IOException {
+    return FaceMeshGate.Config.load(
+        new ByteArrayInputStream(properties.getBytes(StandardCharsets.ISO_8859_1)));
+  }
+}
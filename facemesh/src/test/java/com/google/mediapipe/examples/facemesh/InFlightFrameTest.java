@@ -0,0 +1,102 @@
+package com.google.mediapipe.examples.facemesh;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class InFlightFrameTest {
+  private static final int MAX_LANDMARKS = 4;
+
+  private final InFlightFrame inFlight = new InFlightFrame(MAX_LANDMARKS);
+  private final float[] out = new float[3 * MAX_LANDMARKS];
+
+  @Test
+  public void handsOverTheAnswerFromAnotherThread() throws Exception {
+    inFlight.begin(100, 1000);
+    Thread listener = new Thread(() -> inFlight.complete(landmarks(7), 2));
+    listener.start();
+    assertEquals(2, inFlight.await(100, 1000, out));
+    assertEquals(7, out[0], 0);
+    listener.join();
+  }
+
+  @Test
+  public void failAnswersWithoutLandmarks() throws Exception {
+    inFlight.begin(100, 1000);
+    inFlight.fail();
+    assertEquals(0, inFlight.await(100, 1000, out));
+  }
+
+  @Test
+  public void lateResultIsNotTakenForTheNextFrame() throws Exception {
+    inFlight.begin(100, 1000);
+    assertEquals(-1, inFlight.await(100, 10, out));
+    // The result of the first frame comes after its wait gave up.
+    inFlight.complete(landmarks(1), 1);
+    inFlight.begin(200, 1000);
+    inFlight.complete(landmarks(2), 1);
+    assertEquals(1, inFlight.await(200, 1000, out));
+    assertEquals(2, out[0], 0);
+    assertEquals(0, inFlight.strayResults());
+    assertEquals(0, inFlight.lostFrames());
+  }
+
+  @Test
+  public void nextFrameWaitsForTheLateResult() throws Exception {
+    inFlight.begin(100, 1000);
+    assertEquals(-1, inFlight.await(100, 10, out));
+    Thread listener =
+        new Thread(
+            () -> {
+              sleep(50);
+              inFlight.complete(landmarks(1), 1);
+            });
+    listener.start();
+    inFlight.begin(200, 1000);
+    listener.join();
+    inFlight.complete(landmarks(2), 1);
+    assertEquals(1, inFlight.await(200, 1000, out));
+    assertEquals(2, out[0], 0);
+  }
+
+  @Test
+  public void unansweredFrameIsWrittenOff() throws Exception {
+    inFlight.begin(100, 1000);
+    assertEquals(-1, inFlight.await(100, 10, out));
+    inFlight.begin(200, 10);
+    assertEquals(1, inFlight.lostFrames());
+    inFlight.complete(landmarks(2), 1);
+    assertEquals(1, inFlight.await(200, 1000, out));
+    assertEquals(2, out[0], 0);
+  }
+
+  @Test
+  public void answerWithNothingInFlightIsDropped() throws Exception {
+    inFlight.complete(landmarks(1), 1);
+    assertEquals(1, inFlight.strayResults());
+    assertEquals(-1, inFlight.await(100, 10, out));
+  }
+
+  @Test
+  public void answerIsOnlyHandedToItsOwnFrame() throws Exception {
+    inFlight.begin(100, 1000);
+    inFlight.complete(landmarks(1), 1);
+    assertEquals(-1, inFlight.await(200, 10, out));
+    assertEquals(1, inFlight.await(100, 10, out));
+  }
+
+  private static float[] landmarks(float value) {
+    float[] landmarks = new float[3 * MAX_LANDMARKS];
+    Arrays.fill(landmarks, value);
+    return landmarks;
+  }
+
+  private static void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
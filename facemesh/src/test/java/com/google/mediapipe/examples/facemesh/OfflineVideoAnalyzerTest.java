@@ -0,0 +1,146 @@
+package com.google.mediapipe.examples.facemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.mediapipe.examples.facecenter.FaceAnalysis;
+import com.google.mediapipe.examples.facecenter.FaceAnalyzer;
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Test;
+
+public class OfflineVideoAnalyzerTest {
+  private static final int NUM_LANDMARKS = 478;
+  private static final long FRAME_INTERVAL_US = 33_333;
+
+  /**
+   * Stands in for video decoding: frames are packed landmarks of a face rolling from one side to
+   * the other, upright at frame {@code uprightIndex}, and every {@code emptyEvery}th frame has no
+   * face.
+   */
+  static class SyntheticFrameSource implements FrameSource<float[]> {
+    private final int frameCount;
+    private final int uprightIndex;
+    private final int emptyEvery;
+    private int nextIndex;
+    private boolean closed;
+
+    SyntheticFrameSource(int frameCount, int uprightIndex, int emptyEvery) {
+      this.frameCount = frameCount;
+      this.uprightIndex = uprightIndex;
+      this.emptyEvery = emptyEvery;
+    }
+
+    @Override
+    public float[] nextFrame() {
+      if (nextIndex >= frameCount) {
+        return null;
+      }
+      int index = nextIndex++;
+      float[] landmarks = new float[3 * NUM_LANDMARKS];
+      if (index % emptyEvery == emptyEvery - 1) {
+        // No face: left all zero.
+        return landmarks;
+      }
+      float roll = 0.02f * (index - uprightIndex);
+      for (int i = 0; i < NUM_LANDMARKS; ++i) {
+        set(landmarks, i, 0.5f, 0.5f);
+      }
+      set(landmarks, FaceAnalyzer.TOP_INDEX, 0.5f + roll, 0.3f);
+      set(landmarks, FaceAnalyzer.BOTTOM_INDEX, 0.5f - roll, 0.7f);
+      set(landmarks, FaceAnalyzer.LEFT_CHIN_INDEX, 0.6f, 0.65f);
+      set(landmarks, FaceAnalyzer.RIGHT_CHIN_INDEX, 0.4f, 0.65f);
+      return landmarks;
+    }
+
+    @Override
+    public long frameTimestampUs() {
+      return (nextIndex - 1) * FRAME_INTERVAL_US;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    private static void set(float[] landmarks, int index, float x, float y) {
+      landmarks[3 * index] = x;
+      landmarks[3 * index + 1] = y;
+    }
+  }
+
+  /** Analyzes synthetic frames directly, with no solution in between. */
+  static class LandmarkFrameAnalyzer implements FrameAnalyzer<float[]> {
+    @Override
+    public boolean analyze(float[] frame, long timestampUs, FaceAnalysis out) {
+      if (frame[3 * FaceAnalyzer.TOP_INDEX] == 0) {
+        return false;
+      }
+      FaceAnalyzer.analyze(frame, NUM_LANDMARKS, out);
+      return true;
+    }
+  }
+
+  @Test
+  public void analyzesEveryFrameAndKeepsTheMostFrontal() throws IOException {
+    SyntheticFrameSource source = new SyntheticFrameSource(30, 12, 5);
+    StringWriter csv = new StringWriter();
+    OfflineVideoAnalyzer.Summary<float[]> summary;
+    try (FaceTrackWriter track = new FaceTrackWriter(csv)) {
+      summary = new OfflineVideoAnalyzer<>(new LandmarkFrameAnalyzer()).run(source, track);
+    }
+
+    assertEquals(30, summary.frameCount);
+    assertEquals(24, summary.faceFrameCount);
+    assertEquals(12, summary.bestFrameIndex);
+    assertEquals(12 * FRAME_INTERVAL_US, summary.bestTimestampUs);
+    assertEquals(90, summary.bestAnalysis.angleZ[0], 1e-3);
+    assertTrue(source.closed);
+
+    String[] rows = csv.toString().split("\\R");
+    assertEquals(31, rows.length);
+    assertTrue(rows[0].startsWith("frame,timestamp_us,face,"));
+    assertTrue(rows[5].startsWith("4," + 4 * FRAME_INTERVAL_US + ",0,"));
+    assertTrue(rows[13].startsWith("12," + 12 * FRAME_INTERVAL_US + ",1,0.50000,0.50"));
+  }
+
+  @Test
+  public void stopsWhenInterrupted() throws IOException {
+    SyntheticFrameSource source = new SyntheticFrameSource(30, 12, 5);
+    FrameAnalyzer<float[]> interrupting =
+        (frame, timestampUs, out) -> {
+          throw new InterruptedException();
+        };
+    OfflineVideoAnalyzer.Summary<float[]> summary;
+    try (FaceTrackWriter track = new FaceTrackWriter(new StringWriter())) {
+      summary = new OfflineVideoAnalyzer<>(interrupting).run(source, track);
+    }
+    assertTrue(Thread.interrupted());
+    assertEquals(1, summary.frameCount);
+    assertNull(summary.bestFrame);
+    assertTrue(source.closed);
+  }
+
+  @Test
+  public void bestFrameIsTheFrameObject() throws IOException {
+    final float[][] frames = new float[3][];
+    SyntheticFrameSource source =
+        new SyntheticFrameSource(3, 1, 100) {
+          @Override
+          public float[] nextFrame() {
+            float[] frame = super.nextFrame();
+            if (frame != null) {
+              frames[(int) (frameTimestampUs() / FRAME_INTERVAL_US)] = frame;
+            }
+            return frame;
+          }
+        };
+    OfflineVideoAnalyzer.Summary<float[]> summary;
+    try (FaceTrackWriter track = new FaceTrackWriter(new StringWriter())) {
+      summary = new OfflineVideoAnalyzer<>(new LandmarkFrameAnalyzer()).run(source, track);
+    }
+    assertSame(frames[1], summary.bestFrame);
+  }
+}
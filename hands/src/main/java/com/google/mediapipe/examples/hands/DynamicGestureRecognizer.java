@@ -0,0 +1,187 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Recognizes motions such as swipes, waves and circles from the recent path of one hand.
+ *
+ * <p>Every frame the path is resampled (see {@link HandTrajectory#resample}) and compared with a
+ * few templates using dynamic time warping, restricted to a band around the diagonal. The
+ * comparison is abandoned as soon as a whole row of the warping matrix exceeds the best distance
+ * found so far, which is how most templates are dismissed after a few rows. At most {@code
+ * templatesPerFrame} templates are compared per frame, going round-robin through the set, so the
+ * cost per frame stays the same however many templates there are; with more templates a sweep
+ * through all of them just takes more frames.
+ *
+ * <p>A partly drawn motion often resembles a complete simpler one, e.g. the first quarter of a
+ * circle a swipe. So a motion is only reported once the hand has come to rest, from a sweep that
+ * ran entirely while it was resting: the closest template, if it is close enough. The path then
+ * starts over.
+ *
+ * <p>Allocation-free after construction. Not thread-safe; use one instance per hand.
+ */
+public class DynamicGestureRecognizer {
+  /** Returned by {@link #update} when no gesture was recognized. */
+  public static final int NONE = -1;
+
+  // The hand rests when it stayed within a fraction of minExtent for a few samples.
+  private static final int REST_SAMPLES = 4;
+  private static final float REST_FRACTION = 0.1f;
+
+  private final GestureTemplates templates;
+  private final HandTrajectory trajectory;
+  private final int band;
+  private final float maxDistance;
+  private final float minExtent;
+  private final int templatesPerFrame;
+  private final int minSamples;
+  // Normalized (x, y) points of the current path.
+  private final float[] query;
+  // Two rows of the warping matrix.
+  private float[] previousRow;
+  private float[] row;
+  // Round-robin position, and the closest template of the current sweep.
+  private int next;
+  private int best = NONE;
+  private float bestDistance;
+  // Whether the hand has been resting since the current sweep started.
+  private boolean sweepResting;
+  private long comparisons;
+  private long abandoned;
+
+  /**
+   * @param templates templates to match against.
+   * @param trajectory path of the hand; fed through {@link #update}.
+   * @param band largest offset, in points, between matched points of the path and a template.
+   * @param maxDistance largest mean squared distance, in normalized units, of a recognized path.
+   * @param minExtent smallest size, in normalized image units, of a path worth matching.
+   * @param templatesPerFrame most templates compared per {@link #update}.
+   */
+  public DynamicGestureRecognizer(
+      GestureTemplates templates,
+      HandTrajectory trajectory,
+      int band,
+      float maxDistance,
+      float minExtent,
+      int templatesPerFrame) {
+    this.templates = templates;
+    this.trajectory = trajectory;
+    this.band = band;
+    this.maxDistance = maxDistance;
+    this.minExtent = minExtent;
+    this.templatesPerFrame = templatesPerFrame;
+    int points = templates.pointCount();
+    this.minSamples = Math.max(2, points / 4);
+    query = new float[2 * points];
+    previousRow = new float[points];
+    row = new float[points];
+    bestDistance = maxDistance;
+  }
+
+  /**
+   * Adds a position of the hand, and compares the path with the next few templates.
+   *
+   * @return index of the recognized template in {@link GestureTemplates}, or {@link #NONE}.
+   */
+  public int update(float x, float y, long timestampUs) {
+    trajectory.add(x, y, timestampUs);
+    if (templates.size() == 0
+        || trajectory.size() < minSamples
+        || trajectory.resample(templates.pointCount(), query) < minExtent) {
+      return NONE;
+    }
+    boolean resting = trajectory.isResting(REST_SAMPLES, REST_FRACTION * minExtent);
+    if (next == 0) {
+      sweepResting = resting;
+    }
+    sweepResting &= resting;
+    int count = Math.min(templatesPerFrame, templates.size());
+    for (int i = 0; i < count; ++i) {
+      float distance = distance(templates.points(next), bestDistance);
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        best = next;
+      }
+      next++;
+      if (next == templates.size()) {
+        int recognized = sweepResting ? best : NONE;
+        startSweep();
+        if (recognized != NONE) {
+          trajectory.clear();
+          return recognized;
+        }
+        sweepResting = resting;
+      }
+    }
+    return NONE;
+  }
+
+  /** Forgets the path, e.g. when the hand was lost. */
+  public void reset() {
+    trajectory.clear();
+    next = 0;
+    startSweep();
+  }
+
+  public long comparisonCount() {
+    return comparisons;
+  }
+
+  /** Comparisons given up before the end of the warping matrix. */
+  public long abandonedCount() {
+    return abandoned;
+  }
+
+  private void startSweep() {
+    next = 0;
+    best = NONE;
+    bestDistance = maxDistance;
+  }
+
+  /**
+   * Banded dynamic time warping distance between the query and {@code template}, as the mean
+   * squared point distance along the warping path.
+   *
+   * @return the distance, or {@link Float#MAX_VALUE} once it is certain to reach {@code bound}.
+   */
+  private float distance(float[] template, float bound) {
+    comparisons++;
+    int n = templates.pointCount();
+    float totalBound = bound * n;
+    for (int i = 0; i < n; ++i) {
+      int from = Math.max(0, i - band);
+      int to = Math.min(n - 1, i + band);
+      float qx = query[2 * i], qy = query[2 * i + 1];
+      float rowMin = Float.MAX_VALUE;
+      for (int j = from; j <= to; ++j) {
+        float dx = qx - template[2 * j], dy = qy - template[2 * j + 1];
+        float cost = dx * dx + dy * dy;
+        float previous;
+        if (i == 0 && j == 0) {
+          previous = 0;
+        } else {
+          previous = Float.MAX_VALUE;
+          // The last cell of the band has no cell above it in the previous row.
+          if (i > 0 && j <= i - 1 + band) {
+            previous = previousRow[j];
+          }
+          if (i > 0 && j > 0) {
+            previous = Math.min(previous, previousRow[j - 1]);
+          }
+          if (j > from) {
+            previous = Math.min(previous, row[j - 1]);
+          }
+        }
+        float value = previous == Float.MAX_VALUE ? Float.MAX_VALUE : previous + cost;
+        row[j] = value;
+        rowMin = Math.min(rowMin, value);
+      }
+      if (rowMin >= totalBound) {
+        abandoned++;
+        return Float.MAX_VALUE;
+      }
+      float[] swap = previousRow;
+      previousRow = row;
+      row = swap;
+    }
+    return previousRow[n - 1] / n;
+  }
+}
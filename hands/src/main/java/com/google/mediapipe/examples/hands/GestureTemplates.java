@@ -0,0 +1,108 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * A set of hand motion templates for {@link DynamicGestureRecognizer}.
+ *
+ * <p>Templates are read from a properties file, one per key. The value is a polyline of
+ * space-separated {@code x,y} points in image coordinates, x to the right and y down:
+ *
+ * <pre>
+ * swipe_right = 0,0 1,0
+ * circle_cw = 0,-1 0.7,-0.7 1,0 0.7,0.7 0,1 -0.7,0.7 -1,0 -0.7,-0.7 0,-1
+ * </pre>
+ *
+ * <p>Only the shape and direction matter: each polyline is resampled to a fixed number of points
+ * and normalized the same way as live trajectories, see {@link HandTrajectory#resample}.
+ */
+public class GestureTemplates {
+  private final String[] names;
+  // Normalized (x, y) points of each template.
+  private final float[][] points;
+  private final int pointCount;
+
+  private GestureTemplates(String[] names, float[][] points, int pointCount) {
+    this.names = names;
+    this.points = points;
+    this.pointCount = pointCount;
+  }
+
+  /** Reads a template set, resampling every template to {@code pointCount} points. */
+  public static GestureTemplates load(InputStream in, int pointCount) throws IOException {
+    Properties properties = new Properties();
+    properties.load(in);
+    return compile(properties, pointCount);
+  }
+
+  /**
+   * Resamples and normalizes every template, ordered by name.
+   *
+   * @throws IllegalArgumentException if a polyline is malformed or has fewer than two points.
+   */
+  public static GestureTemplates compile(Properties properties, int pointCount) {
+    List<String> names = new ArrayList<>(properties.stringPropertyNames());
+    Collections.sort(names);
+    float[][] points = new float[names.size()][];
+    for (int i = 0; i < names.size(); ++i) {
+      String name = names.get(i);
+      points[i] = resample(name, properties.getProperty(name), pointCount);
+    }
+    return new GestureTemplates(names.toArray(new String[0]), points, pointCount);
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  public String name(int index) {
+    return names[index];
+  }
+
+  /** Normalized (x, y) points of template {@code index}; not to be modified. */
+  float[] points(int index) {
+    return points[index];
+  }
+
+  /** Number of points of every template. */
+  public int pointCount() {
+    return pointCount;
+  }
+
+  @Override
+  public String toString() {
+    return "GestureTemplates" + Arrays.toString(names);
+  }
+
+  private static float[] resample(String name, String value, int pointCount) {
+    String[] vertices = value.trim().split("\\s+");
+    if (vertices.length < 2) {
+      throw new IllegalArgumentException("Gesture template needs two points or more: " + name);
+    }
+    HandTrajectory polyline = new HandTrajectory(vertices.length, Long.MAX_VALUE);
+    for (int i = 0; i < vertices.length; ++i) {
+      String[] xy = vertices[i].split(",");
+      try {
+        if (xy.length != 2) {
+          throw new NumberFormatException(vertices[i]);
+        }
+        polyline.add(Float.parseFloat(xy[0]), Float.parseFloat(xy[1]), i);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            String.format(Locale.US, "Bad gesture template point %s: %s", name, vertices[i]), e);
+      }
+    }
+    float[] points = new float[2 * pointCount];
+    if (polyline.resample(pointCount, points) == 0) {
+      throw new IllegalArgumentException("Gesture template has no extent: " + name);
+    }
+    return points;
+  }
+}
@@ -0,0 +1,185 @@
+package com.google.mediapipe.examples.hands;
+
+import com.google.mediapipe.formats.proto.LandmarkProto.Landmark;
+import com.google.mediapipe.solutions.hands.HandLandmark;
+import java.util.List;
+
+/**
+ * Classifies the static pose of one hand from its 21 world landmarks.
+ *
+ * <p>Each finger gets a curl, the sum of the bend angles at its joints, which does not depend on
+ * how the hand is turned or how far it is from the camera. The thumb-to-index tip distance is
+ * divided by the palm length for the same reason. Poses are rules over these features. All work
+ * happens in preallocated arrays, so {@link #classify} can run in the result listener for every
+ * hand of every frame. Not thread-safe; use one instance per hand.
+ */
+public class HandGestureClassifier {
+  /** Recognized hand poses. */
+  public enum Gesture {
+    NONE,
+    OPEN_PALM,
+    FIST,
+    POINTING,
+    THUMBS_UP,
+    PINCH,
+  }
+
+  public static final int THUMB = 0;
+  public static final int INDEX = 1;
+  public static final int MIDDLE = 2;
+  public static final int RING = 3;
+  public static final int PINKY = 4;
+  public static final int NUM_FINGERS = 5;
+
+  // Curl, in radians, below which a finger counts as straight and above which as curled.
+  private static final float EXTENDED_CURL = 0.7f;
+  private static final float CURLED_CURL = 1.8f;
+  // The thumb has one joint less, but its base joint bends a little even when straight.
+  private static final float THUMB_EXTENDED_CURL = 0.9f;
+  // Thumb-to-index tip distance, in palm lengths, below which the hand pinches.
+  private static final float PINCH_DISTANCE = 0.25f;
+  // Cosine of the largest angle between the thumb and straight up for a thumbs-up.
+  private static final float THUMB_UP_COS = 0.7f;
+
+  // Landmark chain of each finger, from the wrist to the tip. The thumb starts at its base, whose
+  // angle to the wrist varies too much with the hand's spread to tell anything.
+  private static final int[][] CHAINS = {
+    {HandLandmark.THUMB_CMC, HandLandmark.THUMB_MCP, HandLandmark.THUMB_IP, HandLandmark.THUMB_TIP},
+    {HandLandmark.WRIST, HandLandmark.INDEX_FINGER_MCP, HandLandmark.INDEX_FINGER_PIP,
+        HandLandmark.INDEX_FINGER_DIP, HandLandmark.INDEX_FINGER_TIP},
+    {HandLandmark.WRIST, HandLandmark.MIDDLE_FINGER_MCP, HandLandmark.MIDDLE_FINGER_PIP,
+        HandLandmark.MIDDLE_FINGER_DIP, HandLandmark.MIDDLE_FINGER_TIP},
+    {HandLandmark.WRIST, HandLandmark.RING_FINGER_MCP, HandLandmark.RING_FINGER_PIP,
+        HandLandmark.RING_FINGER_DIP, HandLandmark.RING_FINGER_TIP},
+    {HandLandmark.WRIST, HandLandmark.PINKY_MCP, HandLandmark.PINKY_PIP,
+        HandLandmark.PINKY_DIP, HandLandmark.PINKY_TIP},
+  };
+
+  // Packed (x, y, z) world landmarks of the hand being classified.
+  private final float[] landmarks = new float[3 * HandLandmark.NUM_LANDMARKS];
+  private final float[] curls = new float[NUM_FINGERS];
+  private float pinchDistance;
+  private Gesture gesture = Gesture.NONE;
+
+  /** Classifies a hand given as world landmarks, as found in {@code multiHandWorldLandmarks()}. */
+  public Gesture classify(List<Landmark> worldLandmarks) {
+    if (worldLandmarks.size() < HandLandmark.NUM_LANDMARKS) {
+      gesture = Gesture.NONE;
+      return gesture;
+    }
+    for (int i = 0; i < HandLandmark.NUM_LANDMARKS; ++i) {
+      Landmark landmark = worldLandmarks.get(i);
+      landmarks[3 * i] = landmark.getX();
+      landmarks[3 * i + 1] = landmark.getY();
+      landmarks[3 * i + 2] = landmark.getZ();
+    }
+    return classify(landmarks, 0);
+  }
+
+  /**
+   * Classifies a hand given as packed (x, y, z) landmarks. World landmarks work best; normalized
+   * ones only if x and y have the same scale.
+   *
+   * @param values packed landmarks.
+   * @param offset index of the wrist x in {@code values}.
+   */
+  public Gesture classify(float[] values, int offset) {
+    for (int finger = 0; finger < NUM_FINGERS; ++finger) {
+      int[] chain = CHAINS[finger];
+      float curl = 0;
+      for (int j = 1; j + 1 < chain.length; ++j) {
+        curl += bend(values, offset, chain[j - 1], chain[j], chain[j + 1]);
+      }
+      curls[finger] = curl;
+    }
+    float palm = distance(values, offset, HandLandmark.WRIST, HandLandmark.MIDDLE_FINGER_MCP);
+    pinchDistance =
+        palm > 0
+            ? distance(values, offset, HandLandmark.THUMB_TIP, HandLandmark.INDEX_FINGER_TIP) / palm
+            : Float.MAX_VALUE;
+    gesture = decide(values, offset);
+    return gesture;
+  }
+
+  /** Result of the last {@link #classify}. */
+  public Gesture gesture() {
+    return gesture;
+  }
+
+  /** Curl of {@code finger} in the last classified hand, in radians; 0 is fully straight. */
+  public float curl(int finger) {
+    return curls[finger];
+  }
+
+  /** Thumb-to-index tip distance of the last classified hand, in palm lengths. */
+  public float pinchDistance() {
+    return pinchDistance;
+  }
+
+  private Gesture decide(float[] values, int offset) {
+    boolean thumbExtended = curls[THUMB] < THUMB_EXTENDED_CURL;
+    int extended = 0;
+    int curled = 0;
+    for (int finger = INDEX; finger <= PINKY; ++finger) {
+      if (curls[finger] < EXTENDED_CURL) {
+        extended++;
+      } else if (curls[finger] > CURLED_CURL) {
+        curled++;
+      }
+    }
+    // Closed fists bring the tips close too.
+    if (pinchDistance < PINCH_DISTANCE && curled < 4) {
+      return Gesture.PINCH;
+    }
+    if (extended == 4 && thumbExtended) {
+      return Gesture.OPEN_PALM;
+    }
+    if (curls[INDEX] < EXTENDED_CURL
+        && curls[MIDDLE] > CURLED_CURL
+        && curls[RING] > CURLED_CURL
+        && curls[PINKY] > CURLED_CURL) {
+      return Gesture.POINTING;
+    }
+    if (curled == 4) {
+      return thumbExtended && thumbPointsUp(values, offset) ? Gesture.THUMBS_UP : Gesture.FIST;
+    }
+    return Gesture.NONE;
+  }
+
+  /** Whether the thumb points up; y grows downwards in both landmark spaces. */
+  private static boolean thumbPointsUp(float[] values, int offset) {
+    int mcp = offset + 3 * HandLandmark.THUMB_MCP;
+    int tip = offset + 3 * HandLandmark.THUMB_TIP;
+    float dx = values[tip] - values[mcp];
+    float dy = values[tip + 1] - values[mcp + 1];
+    float dz = values[tip + 2] - values[mcp + 2];
+    float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    return length > 0 && -dy / length > THUMB_UP_COS;
+  }
+
+  /** Angle, in radians, between the segments {@code a}-{@code b} and {@code b}-{@code c}. */
+  private static float bend(float[] values, int offset, int a, int b, int c) {
+    int ia = offset + 3 * a, ib = offset + 3 * b, ic = offset + 3 * c;
+    float ux = values[ib] - values[ia];
+    float uy = values[ib + 1] - values[ia + 1];
+    float uz = values[ib + 2] - values[ia + 2];
+    float vx = values[ic] - values[ib];
+    float vy = values[ic + 1] - values[ib + 1];
+    float vz = values[ic + 2] - values[ib + 2];
+    float lengths =
+        (float) Math.sqrt((ux * ux + uy * uy + uz * uz) * (vx * vx + vy * vy + vz * vz));
+    if (lengths == 0) {
+      return 0;
+    }
+    float cos = (ux * vx + uy * vy + uz * vz) / lengths;
+    return (float) Math.acos(Math.max(-1f, Math.min(1f, cos)));
+  }
+
+  private static float distance(float[] values, int offset, int a, int b) {
+    int ia = offset + 3 * a, ib = offset + 3 * b;
+    float dx = values[ib] - values[ia];
+    float dy = values[ib + 1] - values[ia + 1];
+    float dz = values[ib + 2] - values[ia + 2];
+    return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+}
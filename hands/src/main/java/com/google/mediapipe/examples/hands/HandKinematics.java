@@ -0,0 +1,193 @@
+package com.google.mediapipe.examples.hands;
+
+import com.google.mediapipe.formats.proto.LandmarkProto.Landmark;
+import com.google.mediapipe.solutions.hands.HandLandmark;
+import com.google.mediapipe.solutions.hands.HandsResult;
+import java.util.List;
+
+/**
+ * Derives joint flexion, fingertip velocities and palm orientation from the metric world landmarks
+ * of each hand, and publishes them to listeners as a {@link HandKinematicsFrame}.
+ *
+ * <p>World landmarks are in meters with the origin at the hand's approximate center, so fingertip
+ * velocities describe how the fingers move relative to the hand, not how the hand moves. Hands are
+ * followed across frames by a {@link HandTracker}; velocities restart with each new track, and
+ * when a track's frames are too far apart.
+ *
+ * <p>Nothing is allocated per frame. Listeners are called on the thread calling {@link #update}
+ * and must copy what they keep, since the frame is reused.
+ */
+public class HandKinematics {
+  /** Receives the kinematics of every frame. */
+  public interface Listener {
+    void onKinematics(HandKinematicsFrame frame);
+  }
+
+  // Frames further apart than this don't give a meaningful velocity.
+  private static final long MAX_VELOCITY_GAP_US = 200_000;
+  private static final int[] TIPS = {
+    HandLandmark.THUMB_TIP,
+    HandLandmark.INDEX_FINGER_TIP,
+    HandLandmark.MIDDLE_FINGER_TIP,
+    HandLandmark.RING_FINGER_TIP,
+    HandLandmark.PINKY_TIP,
+  };
+  // (previous, joint, next) landmarks of each flexion joint, in HandKinematicsFrame order.
+  private static final int[] JOINTS = {
+    HandLandmark.WRIST, HandLandmark.THUMB_CMC, HandLandmark.THUMB_MCP,
+    HandLandmark.THUMB_CMC, HandLandmark.THUMB_MCP, HandLandmark.THUMB_IP,
+    HandLandmark.THUMB_MCP, HandLandmark.THUMB_IP, HandLandmark.THUMB_TIP,
+    HandLandmark.WRIST, HandLandmark.INDEX_FINGER_MCP, HandLandmark.INDEX_FINGER_PIP,
+    HandLandmark.INDEX_FINGER_MCP, HandLandmark.INDEX_FINGER_PIP, HandLandmark.INDEX_FINGER_DIP,
+    HandLandmark.INDEX_FINGER_PIP, HandLandmark.INDEX_FINGER_DIP, HandLandmark.INDEX_FINGER_TIP,
+    HandLandmark.WRIST, HandLandmark.MIDDLE_FINGER_MCP, HandLandmark.MIDDLE_FINGER_PIP,
+    HandLandmark.MIDDLE_FINGER_MCP, HandLandmark.MIDDLE_FINGER_PIP, HandLandmark.MIDDLE_FINGER_DIP,
+    HandLandmark.MIDDLE_FINGER_PIP, HandLandmark.MIDDLE_FINGER_DIP, HandLandmark.MIDDLE_FINGER_TIP,
+    HandLandmark.WRIST, HandLandmark.RING_FINGER_MCP, HandLandmark.RING_FINGER_PIP,
+    HandLandmark.RING_FINGER_MCP, HandLandmark.RING_FINGER_PIP, HandLandmark.RING_FINGER_DIP,
+    HandLandmark.RING_FINGER_PIP, HandLandmark.RING_FINGER_DIP, HandLandmark.RING_FINGER_TIP,
+    HandLandmark.WRIST, HandLandmark.PINKY_MCP, HandLandmark.PINKY_PIP,
+    HandLandmark.PINKY_MCP, HandLandmark.PINKY_PIP, HandLandmark.PINKY_DIP,
+    HandLandmark.PINKY_PIP, HandLandmark.PINKY_DIP, HandLandmark.PINKY_TIP,
+  };
+
+  private final HandKinematicsFrame frame;
+  // Packed (x, y, z) world landmarks of the hand being processed.
+  private final float[] landmarks = new float[3 * HandLandmark.NUM_LANDMARKS];
+  // Fingertips and timestamp of the previous frame, per tracker slot, for the velocities.
+  private final float[] previousTips;
+  private final long[] previousTimestampsUs;
+  private volatile Listener[] listeners = new Listener[0];
+
+  public HandKinematics(int maxHands) {
+    frame = new HandKinematicsFrame(maxHands);
+    previousTips = new float[maxHands * 3 * HandKinematicsFrame.NUM_TIPS];
+    previousTimestampsUs = new long[maxHands];
+  }
+
+  public synchronized void addListener(Listener listener) {
+    Listener[] updated = new Listener[listeners.length + 1];
+    System.arraycopy(listeners, 0, updated, 0, listeners.length);
+    updated[listeners.length] = listener;
+    listeners = updated;
+  }
+
+  public synchronized void removeListener(Listener listener) {
+    for (int i = 0; i < listeners.length; ++i) {
+      if (listeners[i] == listener) {
+        Listener[] updated = new Listener[listeners.length - 1];
+        System.arraycopy(listeners, 0, updated, 0, i);
+        System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+        listeners = updated;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Computes the kinematics of {@code result} and hands them to every listener.
+   *
+   * @param tracker tracker already updated with {@code result}, with {@code maxHands} slots.
+   */
+  public void update(HandsResult result, HandTracker tracker) {
+    int numHands = Math.min(tracker.numHands(), frame.maxHands());
+    long timestampUs = result.timestamp();
+    frame.timestampUs = timestampUs;
+    frame.numHands = 0;
+    for (int i = 0; i < numHands; ++i) {
+      List<Landmark> hand = result.multiHandWorldLandmarks().get(i).getLandmarkList();
+      if (hand.size() < HandLandmark.NUM_LANDMARKS) {
+        break;
+      }
+      for (int j = 0; j < HandLandmark.NUM_LANDMARKS; ++j) {
+        Landmark landmark = hand.get(j);
+        landmarks[3 * j] = landmark.getX();
+        landmarks[3 * j + 1] = landmark.getY();
+        landmarks[3 * j + 2] = landmark.getZ();
+      }
+      int slot = tracker.slotOf(i);
+      long gapUs = timestampUs - previousTimestampsUs[slot];
+      boolean continuous =
+          !tracker.isNewTrack(slot) && gapUs > 0 && gapUs <= MAX_VELOCITY_GAP_US;
+      previousTimestampsUs[slot] = timestampUs;
+      frame.trackIds[i] = tracker.trackId(slot);
+      frame.isLeftHand[i] = tracker.isLeftHand(slot);
+      computeFlexion(i);
+      computePalm(i);
+      computeVelocities(i, slot, continuous ? gapUs : 0);
+      frame.numHands++;
+    }
+    for (Listener listener : listeners) {
+      listener.onKinematics(frame);
+    }
+  }
+
+  private void computeFlexion(int hand) {
+    int out = hand * HandKinematicsFrame.NUM_JOINTS;
+    for (int k = 0; k < HandKinematicsFrame.NUM_JOINTS; ++k) {
+      int a = 3 * JOINTS[3 * k], b = 3 * JOINTS[3 * k + 1], c = 3 * JOINTS[3 * k + 2];
+      float ux = landmarks[b] - landmarks[a];
+      float uy = landmarks[b + 1] - landmarks[a + 1];
+      float uz = landmarks[b + 2] - landmarks[a + 2];
+      float vx = landmarks[c] - landmarks[b];
+      float vy = landmarks[c + 1] - landmarks[b + 1];
+      float vz = landmarks[c + 2] - landmarks[b + 2];
+      float lengths =
+          (float) Math.sqrt((ux * ux + uy * uy + uz * uz) * (vx * vx + vy * vy + vz * vz));
+      float cos = lengths > 0 ? (ux * vx + uy * vy + uz * vz) / lengths : 1;
+      frame.flexion[out + k] = (float) Math.acos(Math.max(-1f, Math.min(1f, cos)));
+    }
+  }
+
+  /** The palm plane goes through the wrist and the index and pinky bases. */
+  private void computePalm(int hand) {
+    int wrist = 3 * HandLandmark.WRIST;
+    int index = 3 * HandLandmark.INDEX_FINGER_MCP;
+    int pinky = 3 * HandLandmark.PINKY_MCP;
+    int middle = 3 * HandLandmark.MIDDLE_FINGER_MCP;
+    float ax = landmarks[index] - landmarks[wrist];
+    float ay = landmarks[index + 1] - landmarks[wrist + 1];
+    float az = landmarks[index + 2] - landmarks[wrist + 2];
+    float bx = landmarks[pinky] - landmarks[wrist];
+    float by = landmarks[pinky + 1] - landmarks[wrist + 1];
+    float bz = landmarks[pinky + 2] - landmarks[wrist + 2];
+    // Left and right hands are mirror images; flip one so the normal leaves the palm for both.
+    float sign = frame.isLeftHand[hand] ? -1 : 1;
+    setUnit(
+        frame.palmNormals,
+        3 * hand,
+        sign * (ay * bz - az * by),
+        sign * (az * bx - ax * bz),
+        sign * (ax * by - ay * bx));
+    setUnit(
+        frame.palmDirections,
+        3 * hand,
+        landmarks[middle] - landmarks[wrist],
+        landmarks[middle + 1] - landmarks[wrist + 1],
+        landmarks[middle + 2] - landmarks[wrist + 2]);
+  }
+
+  private void computeVelocities(int hand, int slot, long gapUs) {
+    int out = hand * 3 * HandKinematicsFrame.NUM_TIPS;
+    int previous = slot * 3 * HandKinematicsFrame.NUM_TIPS;
+    float perSecond = gapUs > 0 ? 1_000_000f / gapUs : 0;
+    for (int t = 0; t < HandKinematicsFrame.NUM_TIPS; ++t) {
+      int tip = 3 * TIPS[t];
+      for (int axis = 0; axis < 3; ++axis) {
+        int k = 3 * t + axis;
+        float position = landmarks[tip + axis];
+        frame.tipVelocities[out + k] = (position - previousTips[previous + k]) * perSecond;
+        previousTips[previous + k] = position;
+      }
+    }
+    frame.hasVelocity[hand] = gapUs > 0;
+  }
+
+  private static void setUnit(float[] out, int offset, float x, float y, float z) {
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    float scale = length > 0 ? 1 / length : 0;
+    out[offset] = x * scale;
+    out[offset + 1] = y * scale;
+    out[offset + 2] = z * scale;
+  }
+}
@@ -0,0 +1,56 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Kinematics of all hands in one frame, as parallel arrays indexed by hand. Written by {@link
+ * HandKinematics} and reused from frame to frame.
+ */
+public class HandKinematicsFrame {
+  /** Flexion joints per hand: thumb CMC, MCP and IP, then MCP, PIP and DIP of each finger. */
+  public static final int NUM_JOINTS = 15;
+  public static final int NUM_TIPS = 5;
+
+  public long timestampUs;
+  public int numHands;
+  /** Persistent id of each hand, see {@link HandTracker#trackId}. */
+  public final int[] trackIds;
+  public final boolean[] isLeftHand;
+  /** Whether {@link #tipVelocities} of the hand are known; not on the first frame it is seen. */
+  public final boolean[] hasVelocity;
+  /** Flexion angle in radians, 0 when straight; hand {@code i} at {@code i * NUM_JOINTS}. */
+  public final float[] flexion;
+  /**
+   * (x, y, z) velocity of the thumb, index, middle, ring and pinky tips in m/s, relative to the
+   * hand's center; hand {@code i} at {@code i * 3 * NUM_TIPS}.
+   */
+  public final float[] tipVelocities;
+  /** Unit normal out of the palm; hand {@code i} at {@code 3 * i}. */
+  public final float[] palmNormals;
+  /** Unit vector from the wrist to the middle finger base; hand {@code i} at {@code 3 * i}. */
+  public final float[] palmDirections;
+
+  public HandKinematicsFrame(int maxHands) {
+    trackIds = new int[maxHands];
+    isLeftHand = new boolean[maxHands];
+    hasVelocity = new boolean[maxHands];
+    flexion = new float[maxHands * NUM_JOINTS];
+    tipVelocities = new float[maxHands * 3 * NUM_TIPS];
+    palmNormals = new float[3 * maxHands];
+    palmDirections = new float[3 * maxHands];
+  }
+
+  public int maxHands() {
+    return isLeftHand.length;
+  }
+
+  public void copyFrom(HandKinematicsFrame other) {
+    timestampUs = other.timestampUs;
+    numHands = Math.min(other.numHands, maxHands());
+    System.arraycopy(other.trackIds, 0, trackIds, 0, numHands);
+    System.arraycopy(other.isLeftHand, 0, isLeftHand, 0, numHands);
+    System.arraycopy(other.hasVelocity, 0, hasVelocity, 0, numHands);
+    System.arraycopy(other.flexion, 0, flexion, 0, numHands * NUM_JOINTS);
+    System.arraycopy(other.tipVelocities, 0, tipVelocities, 0, numHands * 3 * NUM_TIPS);
+    System.arraycopy(other.palmNormals, 0, palmNormals, 0, 3 * numHands);
+    System.arraycopy(other.palmDirections, 0, palmDirections, 0, 3 * numHands);
+  }
+}
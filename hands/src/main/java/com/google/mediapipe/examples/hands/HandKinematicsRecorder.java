@@ -0,0 +1,191 @@
+package com.google.mediapipe.examples.hands;
+
+import android.util.Log;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes {@link HandKinematicsFrame}s to a compact binary file, in batches, off the result thread.
+ *
+ * <p>All values are little-endian. The file starts with a header:
+ *
+ * <pre>
+ * int32 magic 'HKIN', int16 version, int16 joints per hand (15), int16 tips per hand (5)
+ * </pre>
+ *
+ * <p>followed by one record per frame:
+ *
+ * <pre>
+ * int64 timestamp in us, uint8 number of hands, then per hand:
+ *   int32 track id
+ *   uint8 flags: 1 = left hand, 2 = velocities known
+ *   int16[15] flexion in 1/10000 rad
+ *   int16[15] (x, y, z) tip velocities in mm/s, saturated
+ *   int16[3] palm normal and int16[3] palm direction, scaled by 32767
+ * </pre>
+ *
+ * <p>Frames are encoded into one of a few preallocated batch buffers; full batches are appended to
+ * the file on a background thread. When every buffer is waiting to be written, the frame is
+ * dropped and counted rather than blocking the caller. Once the file reaches its size cap, further
+ * frames are dropped and counted as well.
+ */
+public class HandKinematicsRecorder implements HandKinematics.Listener, Closeable {
+  private static final String TAG = "HandKinematicsRecorder";
+  public static final int MAGIC = 0x4e494b48; // "HKIN" in little-endian order.
+  public static final int VERSION = 2;
+
+  private static final int FRAME_HEADER_SIZE = 8 + 1;
+  private static final int HAND_SIZE =
+      4 + 1 + 2 * (HandKinematicsFrame.NUM_JOINTS + 3 * HandKinematicsFrame.NUM_TIPS + 3 + 3);
+  private static final int NUM_BUFFERS = 3;
+  private static final float FLEXION_SCALE = 10000f;
+  private static final float VELOCITY_SCALE = 1000f;
+  private static final float UNIT_SCALE = 32767f;
+
+  private final FileChannel channel;
+  private final ExecutorService writer = Executors.newSingleThreadExecutor();
+  private final ArrayBlockingQueue<ByteBuffer> freeBuffers =
+      new ArrayBlockingQueue<>(NUM_BUFFERS);
+  private final int maxFrameSize;
+  private final long maxBytes;
+  private long queuedBytes;
+  private ByteBuffer batch;
+  private final AtomicInteger writtenFrames = new AtomicInteger();
+  private final AtomicInteger droppedFrames = new AtomicInteger();
+  private int batchFrames;
+
+  /**
+   * @param file file to write; replaced if it exists.
+   * @param maxHands most hands per frame.
+   * @param batchFrames frames per write.
+   * @param maxBytes most bytes written to the file, header included.
+   */
+  public HandKinematicsRecorder(File file, int maxHands, int batchFrames, long maxBytes)
+      throws IOException {
+    maxFrameSize = FRAME_HEADER_SIZE + maxHands * HAND_SIZE;
+    this.maxBytes = maxBytes;
+    for (int i = 0; i < NUM_BUFFERS; ++i) {
+      freeBuffers.add(
+          ByteBuffer.allocateDirect(batchFrames * maxFrameSize).order(ByteOrder.LITTLE_ENDIAN));
+    }
+    channel = new FileOutputStream(file).getChannel();
+    ByteBuffer header = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN);
+    header
+        .putInt(MAGIC)
+        .putShort((short) VERSION)
+        .putShort((short) HandKinematicsFrame.NUM_JOINTS)
+        .putShort((short) HandKinematicsFrame.NUM_TIPS);
+    header.flip();
+    queuedBytes = header.remaining();
+    channel.write(header);
+  }
+
+  @Override
+  public void onKinematics(HandKinematicsFrame frame) {
+    int frameSize = FRAME_HEADER_SIZE + frame.numHands * HAND_SIZE;
+    if (queuedBytes + frameSize > maxBytes) {
+      droppedFrames.incrementAndGet();
+      return;
+    }
+    if (batch == null) {
+      batch = freeBuffers.poll();
+      if (batch == null) {
+        droppedFrames.incrementAndGet();
+        return;
+      }
+    }
+    encode(frame, batch);
+    queuedBytes += frameSize;
+    batchFrames++;
+    if (batch.remaining() < maxFrameSize) {
+      flushBatch();
+    }
+  }
+
+  public int writtenFrames() {
+    return writtenFrames.get();
+  }
+
+  public int droppedFrames() {
+    return droppedFrames.get();
+  }
+
+  /** Writes the pending frames and closes the file. Call from the thread feeding frames. */
+  @Override
+  public void close() throws IOException {
+    if (batch != null) {
+      flushBatch();
+    }
+    writer.shutdown();
+    try {
+      writer.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+  }
+
+  /** Appends one frame record to {@code out}. */
+  public static void encode(HandKinematicsFrame frame, ByteBuffer out) {
+    out.putLong(frame.timestampUs);
+    out.put((byte) frame.numHands);
+    for (int i = 0; i < frame.numHands; ++i) {
+      out.putInt(frame.trackIds[i]);
+      out.put((byte) ((frame.isLeftHand[i] ? 1 : 0) | (frame.hasVelocity[i] ? 2 : 0)));
+      putScaled(
+          out,
+          frame.flexion,
+          i * HandKinematicsFrame.NUM_JOINTS,
+          HandKinematicsFrame.NUM_JOINTS,
+          FLEXION_SCALE);
+      putScaled(
+          out,
+          frame.tipVelocities,
+          i * 3 * HandKinematicsFrame.NUM_TIPS,
+          3 * HandKinematicsFrame.NUM_TIPS,
+          VELOCITY_SCALE);
+      putScaled(out, frame.palmNormals, 3 * i, 3, UNIT_SCALE);
+      putScaled(out, frame.palmDirections, 3 * i, 3, UNIT_SCALE);
+    }
+  }
+
+  private static void putScaled(
+      ByteBuffer out, float[] values, int offset, int count, float scale) {
+    for (int i = 0; i < count; ++i) {
+      int value = Math.round(values[offset + i] * scale);
+      out.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value)));
+    }
+  }
+
+  private void flushBatch() {
+    final ByteBuffer full = batch;
+    final int frames = batchFrames;
+    batch = null;
+    batchFrames = 0;
+    full.flip();
+    writer.execute(
+        () -> {
+          try {
+            while (full.hasRemaining()) {
+              channel.write(full);
+            }
+            writtenFrames.addAndGet(frames);
+          } catch (IOException e) {
+            Log.e(TAG, "Unable to write kinematics: " + e);
+            droppedFrames.addAndGet(frames);
+          }
+          full.clear();
+          freeBuffers.add(full);
+        });
+  }
+}
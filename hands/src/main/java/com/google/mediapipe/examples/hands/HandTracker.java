@@ -0,0 +1,273 @@
+package com.google.mediapipe.examples.hands;
+
+import com.google.mediapipe.formats.proto.ClassificationProto.Classification;
+import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.solutions.hands.HandLandmark;
+import com.google.mediapipe.solutions.hands.HandsResult;
+import java.util.List;
+
+/**
+ * Keeps track of which hand is which across frames.
+ *
+ * <p>The order of the hands in a {@link HandsResult} and their handedness labels can change from
+ * one frame to the next. The tracker keeps up to {@code maxHands} tracks, each in a fixed slot with
+ * a persistent id. Every frame, each hand is matched to the track whose palm center, extrapolated
+ * from its last movement, is nearest, closest pairs first. Hands left over start new tracks, and
+ * tracks without a hand for too many frames end.
+ *
+ * <p>The handedness of a track is a vote over its last few labels, each weighted by the label's
+ * score, so a single confident frame cannot flip it. Consumers keep per-hand state by slot, and
+ * reset it when {@link #isNewTrack} says a slot was reused.
+ *
+ * <p>Allocation-free after construction. Not thread-safe.
+ */
+public class HandTracker {
+  /** Returned by {@link #slotOf} for hands beyond {@code maxHands}. */
+  public static final int NO_SLOT = -1;
+
+  // Landmarks averaged into the palm center.
+  private static final int[] PALM = {
+    HandLandmark.WRIST,
+    HandLandmark.INDEX_FINGER_MCP,
+    HandLandmark.MIDDLE_FINGER_MCP,
+    HandLandmark.RING_FINGER_MCP,
+    HandLandmark.PINKY_MCP,
+  };
+
+  private final float maxMatchDistance;
+  private final int maxMissedFrames;
+  private final int voteLength;
+
+  // Per track slot.
+  private final boolean[] active;
+  private final boolean[] isNew;
+  private final int[] ids;
+  private final float[] xs;
+  private final float[] ys;
+  private final float[] velocityXs;
+  private final float[] velocityYs;
+  private final int[] missedFrames;
+  // Signed handedness votes, positive for left; slot i at i * voteLength.
+  private final float[] votes;
+  private final int[] voteHeads;
+  private final float[] voteSums;
+
+  // Per hand of the current frame.
+  private final float[] handXs;
+  private final float[] handYs;
+  private final float[] handVotes;
+  private final int[] slotOfHand;
+  private int numHands;
+  private int nextId;
+
+  /**
+   * @param maxHands most hands tracked at once.
+   * @param maxMatchDistance largest distance, in normalized image units, between a track and the
+   *     hand it is matched with.
+   * @param maxMissedFrames frames a track survives without a hand.
+   * @param voteLength handedness labels each track votes over.
+   */
+  public HandTracker(int maxHands, float maxMatchDistance, int maxMissedFrames, int voteLength) {
+    this.maxMatchDistance = maxMatchDistance;
+    this.maxMissedFrames = maxMissedFrames;
+    this.voteLength = voteLength;
+    active = new boolean[maxHands];
+    isNew = new boolean[maxHands];
+    ids = new int[maxHands];
+    xs = new float[maxHands];
+    ys = new float[maxHands];
+    velocityXs = new float[maxHands];
+    velocityYs = new float[maxHands];
+    missedFrames = new int[maxHands];
+    votes = new float[maxHands * voteLength];
+    voteHeads = new int[maxHands];
+    voteSums = new float[maxHands];
+    handXs = new float[maxHands];
+    handYs = new float[maxHands];
+    handVotes = new float[maxHands];
+    slotOfHand = new int[maxHands];
+  }
+
+  /** Matches the hands of {@code result} to the tracks. */
+  public void update(HandsResult result) {
+    numHands = Math.min(result.multiHandLandmarks().size(), slotOfHand.length);
+    for (int i = 0; i < numHands; ++i) {
+      List<NormalizedLandmark> hand = result.multiHandLandmarks().get(i).getLandmarkList();
+      float x = 0, y = 0;
+      for (int index : PALM) {
+        x += hand.get(index).getX();
+        y += hand.get(index).getY();
+      }
+      handXs[i] = x / PALM.length;
+      handYs[i] = y / PALM.length;
+      Classification handedness = result.multiHandedness().get(i);
+      float score = handedness.getScore();
+      handVotes[i] = handedness.getLabel().equals("Left") ? score : -score;
+    }
+    match();
+  }
+
+  /**
+   * Matches hands given by their palm centers to the tracks, as {@link #update(HandsResult)} does
+   * with the hands it reads.
+   *
+   * @param palms packed (x, y) palm centers, in normalized image units.
+   * @param leftScores handedness label score of each hand, negated for "Right".
+   * @param count number of hands.
+   */
+  public void update(float[] palms, float[] leftScores, int count) {
+    numHands = Math.min(count, slotOfHand.length);
+    for (int i = 0; i < numHands; ++i) {
+      handXs[i] = palms[2 * i];
+      handYs[i] = palms[2 * i + 1];
+      handVotes[i] = leftScores[i];
+    }
+    match();
+  }
+
+  /** Ends all tracks, e.g. before an unrelated image. */
+  public void reset() {
+    for (int slot = 0; slot < active.length; ++slot) {
+      active[slot] = false;
+      isNew[slot] = false;
+    }
+    numHands = 0;
+  }
+
+  /** Number of hands in the last result, at most {@code maxHands}. */
+  public int numHands() {
+    return numHands;
+  }
+
+  /** Slot of the track of hand {@code hand} in the last result. */
+  public int slotOf(int hand) {
+    return hand < numHands ? slotOfHand[hand] : NO_SLOT;
+  }
+
+  /** Number of slots, i.e. {@code maxHands}. */
+  public int numSlots() {
+    return active.length;
+  }
+
+  /** Whether a track holds {@code slot}, and had a hand in the last result. */
+  public boolean isTracked(int slot) {
+    return active[slot] && missedFrames[slot] == 0;
+  }
+
+  /** Whether the track in {@code slot} started with the last result. */
+  public boolean isNewTrack(int slot) {
+    return isNew[slot];
+  }
+
+  /** Persistent id of the track in {@code slot}. */
+  public int trackId(int slot) {
+    return ids[slot];
+  }
+
+  /** Smoothed handedness of the track in {@code slot}. */
+  public boolean isLeftHand(int slot) {
+    return voteSums[slot] > 0;
+  }
+
+  private void match() {
+    for (int slot = 0; slot < active.length; ++slot) {
+      isNew[slot] = false;
+    }
+    for (int i = 0; i < numHands; ++i) {
+      slotOfHand[i] = NO_SLOT;
+    }
+    // Closest (hand, track) pairs first; there are only a few of each.
+    while (true) {
+      int bestHand = -1, bestSlot = -1;
+      float bestDistance = maxMatchDistance * maxMatchDistance;
+      for (int i = 0; i < numHands; ++i) {
+        if (slotOfHand[i] != NO_SLOT) {
+          continue;
+        }
+        for (int slot = 0; slot < active.length; ++slot) {
+          if (!active[slot] || isClaimed(slot)) {
+            continue;
+          }
+          int steps = missedFrames[slot] + 1;
+          float dx = handXs[i] - (xs[slot] + steps * velocityXs[slot]);
+          float dy = handYs[i] - (ys[slot] + steps * velocityYs[slot]);
+          float distance = dx * dx + dy * dy;
+          if (distance <= bestDistance) {
+            bestDistance = distance;
+            bestHand = i;
+            bestSlot = slot;
+          }
+        }
+      }
+      if (bestHand < 0) {
+        break;
+      }
+      slotOfHand[bestHand] = bestSlot;
+      int steps = missedFrames[bestSlot] + 1;
+      velocityXs[bestSlot] = (handXs[bestHand] - xs[bestSlot]) / steps;
+      velocityYs[bestSlot] = (handYs[bestHand] - ys[bestSlot]) / steps;
+      place(bestSlot, bestHand);
+    }
+    for (int i = 0; i < numHands; ++i) {
+      if (slotOfHand[i] == NO_SLOT) {
+        start(i);
+      }
+    }
+    for (int slot = 0; slot < active.length; ++slot) {
+      if (active[slot] && !isClaimed(slot) && ++missedFrames[slot] > maxMissedFrames) {
+        active[slot] = false;
+      }
+    }
+  }
+
+  /** Starts a track for {@code hand} in a free slot, or the stalest one if none is free. */
+  private void start(int hand) {
+    int slot = -1;
+    for (int s = 0; s < active.length; ++s) {
+      if (isClaimed(s)) {
+        continue;
+      }
+      if (!active[s]) {
+        slot = s;
+        break;
+      }
+      if (slot < 0 || missedFrames[s] > missedFrames[slot]) {
+        slot = s;
+      }
+    }
+    if (slot < 0) {
+      return;
+    }
+    slotOfHand[hand] = slot;
+    active[slot] = true;
+    isNew[slot] = true;
+    ids[slot] = nextId++;
+    velocityXs[slot] = 0;
+    velocityYs[slot] = 0;
+    voteHeads[slot] = 0;
+    voteSums[slot] = 0;
+    for (int k = 0; k < voteLength; ++k) {
+      votes[slot * voteLength + k] = 0;
+    }
+    place(slot, hand);
+  }
+
+  private void place(int slot, int hand) {
+    xs[slot] = handXs[hand];
+    ys[slot] = handYs[hand];
+    missedFrames[slot] = 0;
+    int index = slot * voteLength + voteHeads[slot];
+    voteSums[slot] += handVotes[hand] - votes[index];
+    votes[index] = handVotes[hand];
+    voteHeads[slot] = (voteHeads[slot] + 1) % voteLength;
+  }
+
+  private boolean isClaimed(int slot) {
+    for (int i = 0; i < numHands; ++i) {
+      if (slotOfHand[i] == slot) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,138 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * The recent path of one point of a hand, kept in a fixed-capacity ring buffer.
+ *
+ * <p>Samples older than the time window, or beyond the capacity, are dropped as new ones arrive.
+ * {@link #resample} turns the path into a fixed number of points spaced evenly along it, so paths
+ * drawn at different speeds or frame rates look alike. Not thread-safe.
+ */
+public class HandTrajectory {
+  private final float[] xs;
+  private final float[] ys;
+  private final long[] timestampsUs;
+  private final long windowUs;
+  // Index of the oldest sample.
+  private int head;
+  private int size;
+  // Cumulative path length at each sample, filled in by resample().
+  private final float[] arcLengths;
+
+  /**
+   * @param capacity most samples kept.
+   * @param windowUs longest time span kept.
+   */
+  public HandTrajectory(int capacity, long windowUs) {
+    xs = new float[capacity];
+    ys = new float[capacity];
+    timestampsUs = new long[capacity];
+    arcLengths = new float[capacity];
+    this.windowUs = windowUs;
+  }
+
+  public void add(float x, float y, long timestampUs) {
+    while (size > 0 && timestampUs - timestampsUs[head] > windowUs) {
+      head = (head + 1) % xs.length;
+      size--;
+    }
+    int index = (head + size) % xs.length;
+    if (size == xs.length) {
+      head = (head + 1) % xs.length;
+    } else {
+      size++;
+    }
+    xs[index] = x;
+    ys[index] = y;
+    timestampsUs[index] = timestampUs;
+  }
+
+  public void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Whether the last {@code samples} samples all lie within {@code maxDistance} of the newest. */
+  public boolean isResting(int samples, float maxDistance) {
+    if (size < samples) {
+      return false;
+    }
+    int newest = (head + size - 1) % xs.length;
+    for (int i = 1; i < samples; ++i) {
+      int index = (head + size - 1 - i) % xs.length;
+      float dx = xs[index] - xs[newest], dy = ys[index] - ys[newest];
+      if (dx * dx + dy * dy > maxDistance * maxDistance) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Resamples the path to {@code count} points evenly spaced along it, oldest first, centered on
+   * their mean and scaled so the larger side of their bounding box is 1.
+   *
+   * @param out receives {@code count} packed (x, y) points.
+   * @return the larger side of the bounding box before scaling, or 0 with fewer than 2 samples.
+   */
+  public float resample(int count, float[] out) {
+    if (size < 2) {
+      return 0;
+    }
+    float length = 0;
+    arcLengths[0] = 0;
+    for (int i = 1; i < size; ++i) {
+      int a = (head + i - 1) % xs.length, b = (head + i) % xs.length;
+      float dx = xs[b] - xs[a], dy = ys[b] - ys[a];
+      length += (float) Math.sqrt(dx * dx + dy * dy);
+      arcLengths[i] = length;
+    }
+    int segment = 1;
+    for (int k = 0; k < count; ++k) {
+      float target = count > 1 ? length * k / (count - 1) : 0;
+      while (segment < size - 1 && arcLengths[segment] < target) {
+        segment++;
+      }
+      int a = (head + segment - 1) % xs.length, b = (head + segment) % xs.length;
+      float span = arcLengths[segment] - arcLengths[segment - 1];
+      float t = span > 0 ? (target - arcLengths[segment - 1]) / span : 0;
+      t = Math.max(0f, Math.min(1f, t));
+      out[2 * k] = xs[a] + t * (xs[b] - xs[a]);
+      out[2 * k + 1] = ys[a] + t * (ys[b] - ys[a]);
+    }
+    return normalize(out, count);
+  }
+
+  /**
+   * Centers {@code count} packed (x, y) points on their mean and scales them so the larger side of
+   * their bounding box is 1.
+   *
+   * @return the larger side before scaling.
+   */
+  public static float normalize(float[] points, int count) {
+    float meanX = 0, meanY = 0;
+    float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+    for (int k = 0; k < count; ++k) {
+      float x = points[2 * k], y = points[2 * k + 1];
+      meanX += x;
+      meanY += y;
+      minX = Math.min(minX, x);
+      maxX = Math.max(maxX, x);
+      minY = Math.min(minY, y);
+      maxY = Math.max(maxY, y);
+    }
+    meanX /= count;
+    meanY /= count;
+    float extent = Math.max(maxX - minX, maxY - minY);
+    float scale = extent > 0 ? 1 / extent : 0;
+    for (int k = 0; k < count; ++k) {
+      points[2 * k] = (points[2 * k] - meanX) * scale;
+      points[2 * k + 1] = (points[2 * k + 1] - meanY) * scale;
+    }
+    return extent;
+  }
+}
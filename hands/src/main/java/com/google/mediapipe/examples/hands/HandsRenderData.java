@@ -0,0 +1,51 @@
+package com.google.mediapipe.examples.hands;
+
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
+import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.solutions.hands.Hands;
+import com.google.mediapipe.solutions.hands.HandsResult;
+import java.util.List;
+
+/**
+ * Hand landmarks of one result, packed for {@link HandsResultGlRenderer} and handed over through a
+ * {@link TripleBuffer}.
+ */
+public class HandsRenderData {
+  /** Floats per hand. */
+  public static final int HAND_STRIDE = 3 * Hands.NUM_LANDMARKS;
+
+  /** Packed (x, y, z) landmarks, hand {@code i} starting at {@code i * HAND_STRIDE}. */
+  public final float[] landmarks;
+  public final boolean[] isLeftHand;
+  public int numHands;
+
+  public HandsRenderData(int maxHands) {
+    landmarks = new float[maxHands * HAND_STRIDE];
+    isLeftHand = new boolean[maxHands];
+  }
+
+  /** Packs {@code result}, with the smoothed handedness of each hand from {@code tracker}. */
+  public void set(HandsResult result, HandTracker tracker) {
+    numHands = Math.min(tracker.numHands(), isLeftHand.length);
+    for (int i = 0; i < numHands; ++i) {
+      List<NormalizedLandmark> hand = result.multiHandLandmarks().get(i).getLandmarkList();
+      int count = Math.min(hand.size(), Hands.NUM_LANDMARKS);
+      int offset = i * HAND_STRIDE;
+      for (int j = 0; j < count; ++j) {
+        NormalizedLandmark landmark = hand.get(j);
+        landmarks[offset + 3 * j] = landmark.getX();
+        landmarks[offset + 3 * j + 1] = landmark.getY();
+        landmarks[offset + 3 * j + 2] = landmark.getZ();
+      }
+      isLeftHand[i] = tracker.isLeftHand(tracker.slotOf(i));
+    }
+  }
+
+  /** Creates the exchange between the result listener and the renderer. */
+  public static TripleBuffer<HandsRenderData> newTripleBuffer(int maxHands) {
+    return new TripleBuffer<>(
+        new HandsRenderData(maxHands),
+        new HandsRenderData(maxHands),
+        new HandsRenderData(maxHands));
+  }
+}
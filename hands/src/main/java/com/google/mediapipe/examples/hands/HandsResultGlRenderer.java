@@ -15,14 +15,17 @@
 package com.google.mediapipe.examples.hands;
 
 import android.opengl.GLES20;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import android.util.Log;
+import com.google.mediapipe.examples.facecenter.LandmarkChangeDetector;
+import com.google.mediapipe.examples.facecenter.OverlayDetailController;
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
 import com.google.mediapipe.solutioncore.ResultGlRenderer;
 import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsResult;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** A custom implementation of {@link ResultGlRenderer} to render {@link HandsResult}. */
 public class HandsResultGlRenderer implements ResultGlRenderer<HandsResult> {
@@ -38,11 +41,25 @@ public class HandsResultGlRenderer implements ResultGlRenderer<HandsResult> {
   private static final float[] RIGHT_HAND_LANDMARK_COLOR = new float[] {0.2f, 1f, 0.2f, 1f};
   private static final float LANDMARK_RADIUS = 0.008f;
   private static final int NUM_SEGMENTS = 120;
+  // Landmark index pairs of the hand connections, and the unit circle, computed once.
+  private static final int[] CONNECTIONS = connectionIndices();
+  private static final float[] COS = unitCircle(/*cosine=*/ true);
+  private static final float[] SIN = unitCircle(/*cosine=*/ false);
+  private static final float KEYPOINT_SIZE = 16f;
+  // Time the overlay may take per frame before detail is reduced.
+  private static final long OVERLAY_BUDGET_NANOS = 4_000_000;
+  private static final int STEP_UP_FRAMES = 90;
+  // Landmark movement, in pixels, below which the uploaded vertices are reused.
+  private static final float CHANGE_THRESHOLD_PIXELS = 1f;
+  // Connections, filled circles and hollow circles.
+  private static final int MAX_BATCHES_PER_HAND = 3;
   private static final String VERTEX_SHADER =
       "uniform mat4 uProjectionMatrix;\n"
+          + "uniform float uPointSize;\n"
           + "attribute vec4 vPosition;\n"
           + "void main() {\n"
           + "  gl_Position = uProjectionMatrix * vPosition;\n"
+          + "  gl_PointSize = uPointSize;\n"
           + "}";
   private static final String FRAGMENT_SHADER =
       "precision mediump float;\n"
@@ -52,8 +69,53 @@ public class HandsResultGlRenderer implements ResultGlRenderer<HandsResult> {
           + "}";
   private int program;
   private int positionHandle;
+  private int pointSizeHandle;
   private int projectionMatrixHandle;
   private int colorHandle;
+  private int vertexBufferObject;
+
+  private final TripleBuffer<HandsRenderData> renderData;
+  // Set while a result handed to the surface view waits to be drawn, see tryQueueFrame().
+  private final AtomicBoolean frameQueued = new AtomicBoolean();
+  private final OverlayDetailController detail =
+      new OverlayDetailController(OVERLAY_BUDGET_NANOS, STEP_UP_FRAMES);
+  // Vertices of all batches, built on the CPU and uploaded to the vertex buffer object.
+  private final FloatBuffer vertexBuffer;
+  private final int[] viewport = new int[4];
+  private final LandmarkChangeDetector changeDetector;
+  // Batches stored in the vertex buffer object, drawn again every frame.
+  private final int[] batchModes;
+  private final int[] batchFirst;
+  private final int[] batchCounts;
+  private final float[][] batchColors;
+  private int numBatches;
+  private OverlayDetailController.Level uploadedLevel;
+  // Handedness of the uploaded hands, which picks their colors.
+  private final boolean[] uploadedLeftHand;
+
+  /**
+   * @param renderData landmarks to draw, published by the result listener.
+   * @param maxHands largest number of hands in {@code renderData}.
+   */
+  public HandsResultGlRenderer(TripleBuffer<HandsRenderData> renderData, int maxHands) {
+    this.renderData = renderData;
+    uploadedLeftHand = new boolean[maxHands];
+    // Connection lines, then a triangle fan and a line loop of NUM_SEGMENTS around each landmark.
+    int verticesPerHand =
+        CONNECTIONS.length + Hands.NUM_LANDMARKS * NUM_SEGMENTS * (3 + 2);
+    vertexBuffer =
+        ByteBuffer.allocateDirect(maxHands * verticesPerHand * 2 * 4)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+    changeDetector =
+        new LandmarkChangeDetector(
+            maxHands * HandsRenderData.HAND_STRIDE, 3, CHANGE_THRESHOLD_PIXELS);
+    int maxBatches = maxHands * MAX_BATCHES_PER_HAND;
+    batchModes = new int[maxBatches];
+    batchFirst = new int[maxBatches];
+    batchCounts = new int[maxBatches];
+    batchColors = new float[maxBatches][];
+  }
 
   private int loadShader(int type, String shaderCode) {
     int shader = GLES20.glCreateShader(type);
@@ -71,8 +133,25 @@ public class HandsResultGlRenderer implements ResultGlRenderer<HandsResult> {
     GLES20.glAttachShader(program, fragmentShader);
     GLES20.glLinkProgram(program);
     positionHandle = GLES20.glGetAttribLocation(program, "vPosition");
+    pointSizeHandle = GLES20.glGetUniformLocation(program, "uPointSize");
     projectionMatrixHandle = GLES20.glGetUniformLocation(program, "uProjectionMatrix");
     colorHandle = GLES20.glGetUniformLocation(program, "uColor");
+    int[] buffers = new int[1];
+    GLES20.glGenBuffers(1, buffers, 0);
+    vertexBufferObject = buffers[0];
+    changeDetector.invalidate();
+    frameQueued.set(false);
+  }
+
+  /**
+   * Reserves the next frame for a new result; {@code false} while the previous one hasn't been
+   * drawn yet. Only after a successful call may the result listener publish the overlay and hand
+   * the result, whose camera texture is drawn under it, to the surface view, so that the overlay
+   * drawn is always the one of the texture drawn with it. Results arriving in between are not
+   * drawn at all.
+   */
+  public boolean tryQueueFrame() {
+    return frameQueued.compareAndSet(false, true);
   }
 
   @Override
@@ -80,102 +159,185 @@ public class HandsResultGlRenderer implements ResultGlRenderer<HandsResult> {
     if (result == null) {
       return;
     }
+    boolean sampleGpu = detail.shouldSampleGpu();
+    long startNanos = System.nanoTime();
+    HandsRenderData data = renderData.acquire();
+    // Once the overlay of this frame is taken, the next one may be published.
+    frameQueued.set(false);
     GLES20.glUseProgram(program);
     GLES20.glUniformMatrix4fv(projectionMatrixHandle, 1, false, projectionMatrix, 0);
     GLES20.glLineWidth(CONNECTION_THICKNESS);
+    GLES20.glUniform1f(pointSizeHandle, KEYPOINT_SIZE);
+    GLES20.glEnableVertexAttribArray(positionHandle);
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferObject);
 
-    int numHands = result.multiHandLandmarks().size();
-    for (int i = 0; i < numHands; ++i) {
-      boolean isLeftHand = result.multiHandedness().get(i).getLabel().equals("Left");
-      drawConnections(
-          result.multiHandLandmarks().get(i).getLandmarkList(),
-          isLeftHand ? LEFT_HAND_CONNECTION_COLOR : RIGHT_HAND_CONNECTION_COLOR);
-      for (NormalizedLandmark landmark : result.multiHandLandmarks().get(i).getLandmarkList()) {
-        // Draws the landmark.
-        drawCircle(
-            landmark.getX(),
-            landmark.getY(),
-            isLeftHand ? LEFT_HAND_LANDMARK_COLOR : RIGHT_HAND_LANDMARK_COLOR);
-        // Draws a hollow circle around the landmark.
-        drawHollowCircle(
-            landmark.getX(),
-            landmark.getY(),
-            isLeftHand ? LEFT_HAND_HOLLOW_CIRCLE_COLOR : RIGHT_HAND_HOLLOW_CIRCLE_COLOR);
-      }
+    OverlayDetailController.Level level = detail.level();
+    // The change detector only compares positions; a hand whose handedness flipped in place must
+    // be rebuilt in its new colors all the same.
+    if (level != uploadedLevel || !sameHandedness(data)) {
+      changeDetector.invalidate();
+      uploadedLevel = level;
+    }
+    GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, viewport, 0);
+    int length = data.numHands * HandsRenderData.HAND_STRIDE;
+    if (changeDetector.update(data.landmarks, length, viewport[2], viewport[3])) {
+      buildBatches(data, level);
+      System.arraycopy(data.isLeftHand, 0, uploadedLeftHand, 0, data.numHands);
+      GLES20.glBufferData(
+          GLES20.GL_ARRAY_BUFFER, vertexBuffer.limit() * 4, vertexBuffer, GLES20.GL_DYNAMIC_DRAW);
+    }
+    GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, 0);
+    for (int i = 0; i < numBatches; ++i) {
+      GLES20.glUniform4fv(colorHandle, 1, batchColors[i], 0);
+      GLES20.glDrawArrays(batchModes[i], batchFirst[i], batchCounts[i]);
+    }
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+    if (sampleGpu) {
+      GLES20.glFinish();
+    }
+    if (detail.onFrameDrawn(System.nanoTime() - startNanos, sampleGpu)) {
+      Log.i(TAG, "Overlay detail: " + detail.level());
     }
   }
 
   /**
-   * Deletes the shader program.
+   * Deletes the shader program and the vertex buffer object.
    *
    * <p>This is only necessary if one wants to release the program while keeping the context around.
    */
   public void release() {
     GLES20.glDeleteProgram(program);
+    GLES20.glDeleteBuffers(1, new int[] {vertexBufferObject}, 0);
   }
 
-  private void drawConnections(List<NormalizedLandmark> handLandmarkList, float[] colorArray) {
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    for (Hands.Connection c : Hands.HAND_CONNECTIONS) {
-      NormalizedLandmark start = handLandmarkList.get(c.start());
-      NormalizedLandmark end = handLandmarkList.get(c.end());
-      float[] vertex = {start.getX(), start.getY(), end.getX(), end.getY()};
-      FloatBuffer vertexBuffer =
-          ByteBuffer.allocateDirect(vertex.length * 4)
-              .order(ByteOrder.nativeOrder())
-              .asFloatBuffer()
-              .put(vertex);
-      vertexBuffer.position(0);
-      GLES20.glEnableVertexAttribArray(positionHandle);
-      GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-      GLES20.glDrawArrays(GLES20.GL_LINES, 0, 2);
+  /** Fraction of frames that drew the previously uploaded vertices again. */
+  public float uploadSkipRate() {
+    return changeDetector.skipRate();
+  }
+
+  /** Caps the overlay detail, e.g. while the device is throttled. Safe from any thread. */
+  public void setDetailCap(OverlayDetailController.Level cap) {
+    detail.setCap(cap);
+  }
+
+  /** Fills {@link #vertexBuffer} with the batches of every hand at {@code level}. */
+  private boolean sameHandedness(HandsRenderData data) {
+    for (int i = 0; i < data.numHands; ++i) {
+      if (data.isLeftHand[i] != uploadedLeftHand[i]) {
+        return false;
+      }
     }
+    return true;
   }
 
-  private void drawCircle(float x, float y, float[] colorArray) {
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    int vertexCount = NUM_SEGMENTS + 2;
-    float[] vertices = new float[vertexCount * 3];
-    vertices[0] = x;
-    vertices[1] = y;
-    vertices[2] = 0;
-    for (int i = 1; i < vertexCount; i++) {
-      float angle = 2.0f * i * (float) Math.PI / NUM_SEGMENTS;
-      int currentIndex = 3 * i;
-      vertices[currentIndex] = x + (float) (LANDMARK_RADIUS * Math.cos(angle));
-      vertices[currentIndex + 1] = y + (float) (LANDMARK_RADIUS * Math.sin(angle));
-      vertices[currentIndex + 2] = 0;
+  private void buildBatches(HandsRenderData data, OverlayDetailController.Level level) {
+    vertexBuffer.clear();
+    numBatches = 0;
+    for (int i = 0; i < data.numHands; ++i) {
+      boolean isLeftHand = data.isLeftHand[i];
+      int offset = i * HandsRenderData.HAND_STRIDE;
+      float[] landmarkColor = isLeftHand ? LEFT_HAND_LANDMARK_COLOR : RIGHT_HAND_LANDMARK_COLOR;
+      if (level == OverlayDetailController.Level.KEYPOINTS) {
+        addPoints(data.landmarks, offset, landmarkColor);
+        continue;
+      }
+      addConnections(
+          data.landmarks,
+          offset,
+          isLeftHand ? LEFT_HAND_CONNECTION_COLOR : RIGHT_HAND_CONNECTION_COLOR);
+      if (level != OverlayDetailController.Level.FULL) {
+        continue;
+      }
+      // The landmarks.
+      addCircles(data.landmarks, offset, landmarkColor);
+      // A hollow circle around each landmark.
+      addHollowCircles(
+          data.landmarks,
+          offset,
+          isLeftHand ? LEFT_HAND_HOLLOW_CIRCLE_COLOR : RIGHT_HAND_HOLLOW_CIRCLE_COLOR);
     }
-    FloatBuffer vertexBuffer =
-        ByteBuffer.allocateDirect(vertices.length * 4)
-            .order(ByteOrder.nativeOrder())
-            .asFloatBuffer()
-            .put(vertices);
-    vertexBuffer.position(0);
-    GLES20.glEnableVertexAttribArray(positionHandle);
-    GLES20.glVertexAttribPointer(positionHandle, 3, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-    GLES20.glDrawArrays(GLES20.GL_TRIANGLE_FAN, 0, vertexCount);
-  }
-
-  private void drawHollowCircle(float x, float y, float[] colorArray) {
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    int vertexCount = NUM_SEGMENTS + 1;
-    float[] vertices = new float[vertexCount * 3];
-    for (int i = 0; i < vertexCount; i++) {
-      float angle = 2.0f * i * (float) Math.PI / NUM_SEGMENTS;
-      int currentIndex = 3 * i;
-      vertices[currentIndex] = x + (float) (HOLLOW_CIRCLE_RADIUS * Math.cos(angle));
-      vertices[currentIndex + 1] = y + (float) (HOLLOW_CIRCLE_RADIUS * Math.sin(angle));
-      vertices[currentIndex + 2] = 0;
+    vertexBuffer.flip();
+  }
+
+  /** Adds all connections of one hand as a single batch of lines. */
+  private void addConnections(float[] landmarks, int offset, float[] colorArray) {
+    int first = startBatch();
+    for (int index : CONNECTIONS) {
+      vertexBuffer.put(landmarks[offset + 3 * index]);
+      vertexBuffer.put(landmarks[offset + 3 * index + 1]);
     }
-    FloatBuffer vertexBuffer =
-        ByteBuffer.allocateDirect(vertices.length * 4)
-            .order(ByteOrder.nativeOrder())
-            .asFloatBuffer()
-            .put(vertices);
-    vertexBuffer.position(0);
-    GLES20.glEnableVertexAttribArray(positionHandle);
-    GLES20.glVertexAttribPointer(positionHandle, 3, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-    GLES20.glDrawArrays(GLES20.GL_LINE_STRIP, 0, vertexCount);
+    endBatch(GLES20.GL_LINES, first, colorArray);
+  }
+
+  /** Adds the landmarks of one hand as points. */
+  private void addPoints(float[] landmarks, int offset, float[] colorArray) {
+    int first = startBatch();
+    for (int i = 0; i < Hands.NUM_LANDMARKS; ++i) {
+      vertexBuffer.put(landmarks[offset + 3 * i]).put(landmarks[offset + 3 * i + 1]);
+    }
+    endBatch(GLES20.GL_POINTS, first, colorArray);
+  }
+
+  /** Adds a filled circle at every landmark of one hand, as a single batch of triangles. */
+  private void addCircles(float[] landmarks, int offset, float[] colorArray) {
+    int first = startBatch();
+    for (int i = 0; i < Hands.NUM_LANDMARKS; ++i) {
+      float x = landmarks[offset + 3 * i], y = landmarks[offset + 3 * i + 1];
+      for (int j = 0; j < NUM_SEGMENTS; ++j) {
+        vertexBuffer.put(x).put(y);
+        vertexBuffer.put(x + LANDMARK_RADIUS * COS[j]).put(y + LANDMARK_RADIUS * SIN[j]);
+        vertexBuffer.put(x + LANDMARK_RADIUS * COS[j + 1]).put(y + LANDMARK_RADIUS * SIN[j + 1]);
+      }
+    }
+    endBatch(GLES20.GL_TRIANGLES, first, colorArray);
+  }
+
+  /** Adds a hollow circle around every landmark of one hand, as a single batch of lines. */
+  private void addHollowCircles(float[] landmarks, int offset, float[] colorArray) {
+    int first = startBatch();
+    for (int i = 0; i < Hands.NUM_LANDMARKS; ++i) {
+      float x = landmarks[offset + 3 * i], y = landmarks[offset + 3 * i + 1];
+      for (int j = 0; j < NUM_SEGMENTS; ++j) {
+        vertexBuffer.put(x + HOLLOW_CIRCLE_RADIUS * COS[j]).put(y + HOLLOW_CIRCLE_RADIUS * SIN[j]);
+        vertexBuffer
+            .put(x + HOLLOW_CIRCLE_RADIUS * COS[j + 1])
+            .put(y + HOLLOW_CIRCLE_RADIUS * SIN[j + 1]);
+      }
+    }
+    endBatch(GLES20.GL_LINES, first, colorArray);
+  }
+
+  /** Returns the index of the next vertex put into {@link #vertexBuffer}. */
+  private int startBatch() {
+    return vertexBuffer.position() / 2;
+  }
+
+  /** Records the vertices put since {@link #startBatch} as one batch drawn with {@code mode}. */
+  private void endBatch(int mode, int first, float[] colorArray) {
+    batchModes[numBatches] = mode;
+    batchFirst[numBatches] = first;
+    batchCounts[numBatches] = vertexBuffer.position() / 2 - first;
+    batchColors[numBatches] = colorArray;
+    numBatches++;
+  }
+
+  private static int[] connectionIndices() {
+    int[] indices = new int[2 * Hands.HAND_CONNECTIONS.size()];
+    int i = 0;
+    for (Hands.Connection c : Hands.HAND_CONNECTIONS) {
+      indices[i++] = c.start();
+      indices[i++] = c.end();
+    }
+    return indices;
+  }
+
+  private static float[] unitCircle(boolean cosine) {
+    float[] values = new float[NUM_SEGMENTS + 1];
+    for (int i = 0; i <= NUM_SEGMENTS; ++i) {
+      double angle = 2.0 * i * Math.PI / NUM_SEGMENTS;
+      values[i] = (float) (cosine ? Math.cos(angle) : Math.sin(angle));
+    }
+    return values;
   }
 }
@@ -52,8 +52,9 @@ public class HandsResultImageView extends AppCompatImageView {
    *
    * @param result a {@link HandsResult} object that contains the solution outputs and the input
    *     {@link Bitmap}.
+   * @param tracker tracker already updated with {@code result}, for the handedness of each hand.
    */
-  public void setHandsResult(HandsResult result) {
+  public void setHandsResult(HandsResult result, HandTracker tracker) {
     if (result == null) {
       return;
     }
@@ -64,11 +65,11 @@ public class HandsResultImageView extends AppCompatImageView {
     Canvas canvas = new Canvas(latest);
 
     canvas.drawBitmap(bmInput, new Matrix(), null);
-    int numHands = result.multiHandLandmarks().size();
+    int numHands = tracker.numHands();
     for (int i = 0; i < numHands; ++i) {
       drawLandmarksOnCanvas(
           result.multiHandLandmarks().get(i).getLandmarkList(),
-          result.multiHandedness().get(i).getLabel().equals("Left"),
+          tracker.isLeftHand(tracker.slotOf(i)),
           canvas,
           width,
           height);
@@ -16,7 +16,10 @@ package com.google.mediapipe.examples.hands;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import androidx.appcompat.app.AppCompatActivity;
@@ -28,25 +31,116 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.exifinterface.media.ExifInterface;
 // ContentResolver dependency
+import com.google.mediapipe.examples.facecenter.InferenceGovernor;
+import com.google.mediapipe.examples.facecenter.MotionWakeGate;
+import com.google.mediapipe.examples.facecenter.OverlayDetailController;
+import com.google.mediapipe.examples.facecenter.ResolutionController;
+import com.google.mediapipe.examples.facecenter.TripleBuffer;
 import com.google.mediapipe.formats.proto.LandmarkProto.Landmark;
 import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.framework.TextureFrame;
 import com.google.mediapipe.solutioncore.CameraInput;
 import com.google.mediapipe.solutioncore.SolutionGlSurfaceView;
 import com.google.mediapipe.solutioncore.VideoInput;
 import com.google.mediapipe.solutions.hands.HandLandmark;
-import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsOptions;
 import com.google.mediapipe.solutions.hands.HandsResult;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
 
 /** Main activity of MediaPipe Hands app. */
 public class MainActivity extends AppCompatActivity {
   private static final String TAG = "MainActivity";
 
-  private Hands hands;
+  private CustomHands hands;
   // Run the pipeline and the model inference on GPU or CPU.
   private static final boolean RUN_ON_GPU = true;
+  private static final int MAX_NUM_HANDS = 2;
+  // Landmarks go to the renderer through a triple buffer, so neither thread waits for the other.
+  private final TripleBuffer<HandsRenderData> renderData =
+      HandsRenderData.newTripleBuffer(MAX_NUM_HANDS);
+  private HandsResultGlRenderer resultRenderer;
+  // The camera resolution follows the inference rate, stepping through a ladder of sizes. Only the
+  // camera is reopened on a change; the solution and the surface stay up.
+  private static final int[] RESOLUTION_LADDER = {1280, 960, 720, 480};
+  private static final float TARGET_FPS = 24f;
+  private static final long RESOLUTION_WINDOW_US = 2_000_000;
+  private static final long RESOLUTION_MIN_HOLD_US = 10_000_000;
+  private static final long RESOLUTION_MAX_HOLD_US = 80_000_000;
+  private final ResolutionController resolution =
+      new ResolutionController(
+          RESOLUTION_LADDER,
+          TARGET_FPS,
+          RESOLUTION_WINDOW_US,
+          RESOLUTION_MIN_HOLD_US,
+          RESOLUTION_MAX_HOLD_US);
+  // Inference is throttled while the device runs hot or low on battery, with cheaper overlays.
+  private static final float[] GOVERNOR_LEVEL_FPS = {30f, 15f, 8f};
+  private static final long GOVERNOR_POLL_INTERVAL_US = 1_000_000;
+  private static final long GOVERNOR_RECOVER_US = 30_000_000;
+  private InferenceGovernor governor;
+  private InferenceGovernor.Level governedLevel = InferenceGovernor.Level.NORMAL;
+  // With no hands in front of the camera for a while, inference stops and a few pixels of a frame
+  // every IDLE_SAMPLE_INTERVAL_US are compared instead, until something moves. The preview holds
+  // the last frame meanwhile.
+  private static final int RESULTS_TO_IDLE = 90;
+  private static final int MOTION_GRID_WIDTH = 32;
+  private static final int MOTION_GRID_HEIGHT = 24;
+  private static final float MOTION_WAKE_FRACTION = 0.02f;
+  private static final long IDLE_SAMPLE_INTERVAL_US = 66_000;
+  private final MotionWakeGate motionWake =
+      new MotionWakeGate(
+          RESULTS_TO_IDLE,
+          MOTION_GRID_WIDTH,
+          MOTION_GRID_HEIGHT,
+          MOTION_WAKE_FRACTION,
+          IDLE_SAMPLE_INTERVAL_US);
+  // Idle frames are read back into a reused bitmap and scaled down, filtered, to a few pixels per
+  // grid cell, so each sample only copies out a small buffer.
+  private static final int IDLE_SAMPLE_WIDTH = 4 * MOTION_GRID_WIDTH;
+  private static final int IDLE_SAMPLE_HEIGHT = 4 * MOTION_GRID_HEIGHT;
+  private final Paint idlePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final Rect idleSampleRect = new Rect(0, 0, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT);
+  private final int[] idlePixels = new int[IDLE_SAMPLE_WIDTH * IDLE_SAMPLE_HEIGHT];
+  private Bitmap idleFrame;
+  private Bitmap idleSample;
+  private Canvas idleCanvas;
+  // Follows each hand across frames; all per-hand state below is kept by tracker slot.
+  private static final float HAND_MATCH_DISTANCE = 0.25f;
+  private static final int HAND_MAX_MISSED_FRAMES = 5;
+  private static final int HANDEDNESS_VOTES = 15;
+  private final HandTracker handTracker =
+      new HandTracker(
+          MAX_NUM_HANDS, HAND_MATCH_DISTANCE, HAND_MAX_MISSED_FRAMES, HANDEDNESS_VOTES);
+  // One classifier per tracker slot; called from the result listener.
+  private final HandGestureClassifier[] gestureClassifiers = newGestureClassifiers(MAX_NUM_HANDS);
+  private final HandGestureClassifier.Gesture[] gestures =
+      new HandGestureClassifier.Gesture[MAX_NUM_HANDS];
+  private final boolean[] gesturesSeen = new boolean[MAX_NUM_HANDS];
+  // Motion gestures, matched against templates from the assets or the external files directory.
+  private static final String GESTURE_TEMPLATES_FILE = "gesture_templates.properties";
+  private static final int GESTURE_POINTS = 32;
+  private static final int GESTURE_BAND = 6;
+  private static final float GESTURE_MAX_DISTANCE = 0.03f;
+  private static final float GESTURE_MIN_EXTENT = 0.15f;
+  private static final int GESTURE_TEMPLATES_PER_FRAME = 2;
+  private static final int TRAJECTORY_CAPACITY = 64;
+  private static final long TRAJECTORY_WINDOW_US = 1_500_000;
+  private GestureTemplates gestureTemplates;
+  // Hand kinematics of streamed frames, recorded to the external files directory when enabled.
+  // Only the newest recordings are kept, each capped in size.
+  private static final boolean RECORD_KINEMATICS = false;
+  private static final int KINEMATICS_BATCH_FRAMES = 64;
+  private static final int KINEMATICS_MAX_FILES = 5;
+  private static final long KINEMATICS_MAX_BYTES = 32L << 20;
+  private final HandKinematics kinematics = new HandKinematics(MAX_NUM_HANDS);
+  private HandKinematicsRecorder kinematicsRecorder;
+  private DynamicGestureRecognizer[] motionRecognizers;
 
   private enum InputSource {
     UNKNOWN,
@@ -71,6 +165,25 @@ public class MainActivity extends AppCompatActivity {
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
+    governor =
+        new InferenceGovernor(
+            new AndroidConditionSource(this),
+            GOVERNOR_LEVEL_FPS,
+            GOVERNOR_POLL_INTERVAL_US,
+            GOVERNOR_RECOVER_US);
+    governor.setListener(this::onGovernorChanged);
+    gestureTemplates = loadGestureTemplates();
+    motionRecognizers = new DynamicGestureRecognizer[MAX_NUM_HANDS];
+    for (int i = 0; i < MAX_NUM_HANDS; ++i) {
+      motionRecognizers[i] =
+          new DynamicGestureRecognizer(
+              gestureTemplates,
+              new HandTrajectory(TRAJECTORY_CAPACITY, TRAJECTORY_WINDOW_US),
+              GESTURE_BAND,
+              GESTURE_MAX_DISTANCE,
+              GESTURE_MIN_EXTENT,
+              GESTURE_TEMPLATES_PER_FRAME);
+    }
     setupStaticImageDemoUiComponents();
     setupVideoDemoUiComponents();
     setupLiveDemoUiComponents();
@@ -82,7 +195,7 @@ public class MainActivity extends AppCompatActivity {
     if (inputSource == InputSource.CAMERA) {
       // Restarts the camera and the opengl surface rendering.
       cameraInput = new CameraInput(this);
-      cameraInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
+      cameraInput.setNewFrameListener(this::onCameraFrame);
       glSurfaceView.post(this::startCamera);
       glSurfaceView.setVisibility(View.VISIBLE);
     } else if (inputSource == InputSource.VIDEO) {
@@ -190,11 +303,11 @@ public class MainActivity extends AppCompatActivity {
     this.inputSource = InputSource.IMAGE;
     // Initializes a new MediaPipe Hands solution instance in the static image mode.
     hands =
-        new Hands(
+        new CustomHands(
             this,
             HandsOptions.builder()
                 .setStaticImageMode(true)
-                .setMaxNumHands(2)
+                .setMaxNumHands(MAX_NUM_HANDS)
                 .setRunOnGpu(RUN_ON_GPU)
                 .build());
 
@@ -202,7 +315,11 @@ public class MainActivity extends AppCompatActivity {
     hands.setResultListener(
         handsResult -> {
           logWristLandmark(handsResult, /*showPixelValues=*/ true);
-          imageView.setHandsResult(handsResult);
+          // Images are unrelated to each other.
+          handTracker.reset();
+          handTracker.update(handsResult);
+          classifyGestures(handsResult);
+          imageView.setHandsResult(handsResult, handTracker);
           runOnUiThread(() -> imageView.update());
         });
     hands.setErrorListener((message, e) -> Log.e(TAG, "MediaPipe Hands error:" + message));
@@ -264,20 +381,34 @@ public class MainActivity extends AppCompatActivity {
   /** Sets up core workflow for streaming mode. */
   private void setupStreamingModePipeline(InputSource inputSource) {
     this.inputSource = inputSource;
+    handTracker.reset();
+    resolution.reset();
+    governor.reset();
+    governedLevel = InferenceGovernor.Level.NORMAL;
+    resolution.setTargetFps(TARGET_FPS);
+    resolution.setTierListener(
+        tier -> {
+          Log.i(TAG, String.format(Locale.US,
+              "Resolution tier %d at %.1f fps", tier, resolution.lastFps()));
+          runOnUiThread(this::restartCamera);
+        });
+    motionWake.reset();
+    motionWake.setIdleListener(idle -> Log.i(TAG, idle ? "Idle until motion" : "Motion, waking"));
+    startKinematicsRecording();
     // Initializes a new MediaPipe Hands solution instance in the streaming mode.
     hands =
-        new Hands(
+        new CustomHands(
             this,
             HandsOptions.builder()
                 .setStaticImageMode(false)
-                .setMaxNumHands(2)
+                .setMaxNumHands(MAX_NUM_HANDS)
                 .setRunOnGpu(RUN_ON_GPU)
                 .build());
     hands.setErrorListener((message, e) -> Log.e(TAG, "MediaPipe Hands error:" + message));
 
     if (inputSource == InputSource.CAMERA) {
       cameraInput = new CameraInput(this);
-      cameraInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
+      cameraInput.setNewFrameListener(this::onCameraFrame);
     } else if (inputSource == InputSource.VIDEO) {
       videoInput = new VideoInput(this);
       videoInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
@@ -286,13 +417,24 @@ public class MainActivity extends AppCompatActivity {
     // Initializes a new Gl surface view with a user-defined HandsResultGlRenderer.
     glSurfaceView =
         new SolutionGlSurfaceView<>(this, hands.getGlContext(), hands.getGlMajorVersion());
-    glSurfaceView.setSolutionResultRenderer(new HandsResultGlRenderer());
+    resultRenderer = new HandsResultGlRenderer(renderData, MAX_NUM_HANDS);
+    glSurfaceView.setSolutionResultRenderer(resultRenderer);
     glSurfaceView.setRenderInputImage(true);
     hands.setResultListener(
         handsResult -> {
           logWristLandmark(handsResult, /*showPixelValues=*/ false);
-          glSurfaceView.setRenderData(handsResult);
-          glSurfaceView.requestRender();
+          motionWake.onResult(!handsResult.multiHandLandmarks().isEmpty());
+          resolution.onResult(handsResult.timestamp());
+          handTracker.update(handsResult);
+          classifyGestures(handsResult);
+          recognizeMotions(handsResult);
+          kinematics.update(handsResult, handTracker);
+          if (resultRenderer.tryQueueFrame()) {
+            renderData.back().set(handsResult, handTracker);
+            renderData.publish();
+            glSurfaceView.setRenderData(handsResult);
+            glSurfaceView.requestRender();
+          }
         });
 
     // The runnable to start camera after the gl surface view is attached.
@@ -310,13 +452,116 @@ public class MainActivity extends AppCompatActivity {
     frameLayout.requestLayout();
   }
 
+  private void onCameraFrame(TextureFrame textureFrame) {
+    long timestampUs = textureFrame.getTimestamp();
+    if (motionWake.isIdle()) {
+      if (motionWake.shouldSample(timestampUs)) {
+        sampleIdleFrame(textureFrame, timestampUs);
+      } else {
+        textureFrame.release();
+      }
+    } else if (governor.admit(timestampUs)) {
+      hands.send(textureFrame);
+    } else {
+      textureFrame.release();
+    }
+  }
+
+  /** Reads an idle frame back, scales it down and lets the motion gate sample it. */
+  private void sampleIdleFrame(TextureFrame textureFrame, long timestampUs) {
+    int width = textureFrame.getWidth(), height = textureFrame.getHeight();
+    if (idleFrame == null || idleFrame.getWidth() != width || idleFrame.getHeight() != height) {
+      if (idleFrame != null) {
+        idleFrame.recycle();
+      }
+      idleFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    if (idleSample == null) {
+      idleSample =
+          Bitmap.createBitmap(IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT, Bitmap.Config.ARGB_8888);
+      idleCanvas = new Canvas(idleSample);
+    }
+    hands.readBitmap(textureFrame, idleFrame);
+    idleCanvas.drawBitmap(idleFrame, null, idleSampleRect, idlePaint);
+    idleSample.getPixels(
+        idlePixels, 0, IDLE_SAMPLE_WIDTH, 0, 0, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT);
+    motionWake.onIdleFrame(idlePixels, IDLE_SAMPLE_WIDTH, IDLE_SAMPLE_HEIGHT, timestampUs);
+  }
+
+  /** Follows the governor: keeps the resolution target reachable and cheapens the overlay. */
+  private void onGovernorChanged(InferenceGovernor.Level level, float rateFps) {
+    resolution.setTargetFps(Math.min(TARGET_FPS, rateFps));
+    if (level == governedLevel) {
+      return;
+    }
+    governedLevel = level;
+    Log.i(TAG, String.format(Locale.US, "Inference governor: %s, %.1f fps", level, rateFps));
+    HandsResultGlRenderer renderer = resultRenderer;
+    if (renderer != null) {
+      renderer.setDetailCap(detailCapFor(level));
+    }
+  }
+
+  private static OverlayDetailController.Level detailCapFor(InferenceGovernor.Level level) {
+    switch (level) {
+      case REDUCED:
+        return OverlayDetailController.Level.CONTOURS;
+      case MINIMAL:
+        return OverlayDetailController.Level.KEYPOINTS;
+      default:
+        return OverlayDetailController.Level.FULL;
+    }
+  }
+
+  /**
+   * Loads the gesture templates from the app's external files directory if present, and from the
+   * assets otherwise or if that copy can't be read. Without any readable copy, no motions are
+   * recognized.
+   */
+  private GestureTemplates loadGestureTemplates() {
+    GestureTemplates templates = null;
+    File override = new File(getExternalFilesDir(null), GESTURE_TEMPLATES_FILE);
+    if (override.isFile()) {
+      try (InputStream in = new FileInputStream(override)) {
+        templates = GestureTemplates.load(in, GESTURE_POINTS);
+      } catch (IOException | IllegalArgumentException e) {
+        Log.e(TAG, "Ignoring " + override + ": " + e);
+      }
+    }
+    if (templates == null) {
+      try (InputStream in = getAssets().open(GESTURE_TEMPLATES_FILE)) {
+        templates = GestureTemplates.load(in, GESTURE_POINTS);
+      } catch (IOException | IllegalArgumentException e) {
+        Log.e(TAG, "Unable to load " + GESTURE_TEMPLATES_FILE + ": " + e);
+        templates = GestureTemplates.compile(new Properties(), GESTURE_POINTS);
+      }
+    }
+    Log.i(TAG, "Loaded " + templates);
+    return templates;
+  }
+
+  /** Reopens the camera at the current resolution tier, keeping the solution and the surface. */
+  private void restartCamera() {
+    // The surface is hidden while paused or stopped; the camera is reopened on resume instead.
+    if (inputSource != InputSource.CAMERA
+        || glSurfaceView == null
+        || glSurfaceView.getVisibility() != View.VISIBLE) {
+      return;
+    }
+    cameraInput.setNewFrameListener(null);
+    cameraInput.close();
+    cameraInput = new CameraInput(this);
+    cameraInput.setNewFrameListener(this::onCameraFrame);
+    startCamera();
+  }
+
   private void startCamera() {
     cameraInput.start(
         this,
         hands.getGlContext(),
         CameraInput.CameraFacing.FRONT,
-        glSurfaceView.getWidth(),
-        glSurfaceView.getHeight());
+        resolution.width(glSurfaceView.getWidth(), glSurfaceView.getHeight()),
+        resolution.height(glSurfaceView.getWidth(), glSurfaceView.getHeight()));
   }
 
   private void stopCurrentPipeline() {
@@ -331,9 +576,125 @@ public class MainActivity extends AppCompatActivity {
     if (glSurfaceView != null) {
       glSurfaceView.setVisibility(View.GONE);
     }
+    if (resultRenderer != null) {
+      Log.i(TAG, "Overlay upload skip rate: " + resultRenderer.uploadSkipRate());
+      resultRenderer = null;
+    }
     if (hands != null) {
       hands.close();
     }
+    Log.i(TAG, String.format(Locale.US,
+        "Idle frames sampled: %d, skipped: %d, wakes: %d",
+        motionWake.sampledFrames(), motionWake.skippedFrames(), motionWake.wakeCount()));
+    motionWake.reset();
+    Log.i(TAG, "Final resolution tier: " + resolution.tier());
+    Log.i(TAG, String.format(Locale.US,
+        "Governor admitted %d frames, throttled %d",
+        governor.admittedFrames(), governor.throttledFrames()));
+    stopKinematicsRecording();
+  }
+
+  private void startKinematicsRecording() {
+    if (!RECORD_KINEMATICS) {
+      return;
+    }
+    File dir = getExternalFilesDir("kinematics");
+    deleteOldRecordings(dir, KINEMATICS_MAX_FILES - 1);
+    File file = new File(dir, System.currentTimeMillis() + ".hkin");
+    try {
+      kinematicsRecorder =
+          new HandKinematicsRecorder(
+              file, MAX_NUM_HANDS, KINEMATICS_BATCH_FRAMES, KINEMATICS_MAX_BYTES);
+      kinematics.addListener(kinematicsRecorder);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to record hand kinematics:" + e);
+    }
+  }
+
+  /** Deletes all but the newest {@code keep} recordings in {@code dir}. */
+  private static void deleteOldRecordings(File dir, int keep) {
+    File[] files = dir != null ? dir.listFiles((d, name) -> name.endsWith(".hkin")) : null;
+    if (files == null || files.length <= keep) {
+      return;
+    }
+    Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+    for (int i = 0; i < files.length - keep; ++i) {
+      if (!files[i].delete()) {
+        Log.w(TAG, "Unable to delete old hand kinematics recording " + files[i]);
+      }
+    }
+  }
+
+  /** Closes the recording; the hands pipeline must be closed already. */
+  private void stopKinematicsRecording() {
+    if (kinematicsRecorder == null) {
+      return;
+    }
+    kinematics.removeListener(kinematicsRecorder);
+    try {
+      kinematicsRecorder.close();
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to close the hand kinematics recording:" + e);
+    }
+    Log.i(
+        TAG,
+        "Hand kinematics frames written: "
+            + kinematicsRecorder.writtenFrames()
+            + ", dropped: "
+            + kinematicsRecorder.droppedFrames());
+    kinematicsRecorder = null;
+  }
+
+  /** Classifies the pose of each tracked hand, and logs it when it changes. */
+  private void classifyGestures(HandsResult result) {
+    for (int slot = 0; slot < MAX_NUM_HANDS; ++slot) {
+      gesturesSeen[slot] = false;
+    }
+    for (int i = 0; i < handTracker.numHands(); ++i) {
+      int slot = handTracker.slotOf(i);
+      gesturesSeen[slot] = true;
+      HandGestureClassifier.Gesture gesture =
+          gestureClassifiers[slot].classify(
+              result.multiHandWorldLandmarks().get(i).getLandmarkList());
+      if (gesture != gestures[slot] || handTracker.isNewTrack(slot)) {
+        gestures[slot] = gesture;
+        Log.i(TAG, "Hand " + handTracker.trackId(slot) + " gesture: " + gesture);
+      }
+    }
+    for (int slot = 0; slot < MAX_NUM_HANDS; ++slot) {
+      if (!gesturesSeen[slot]) {
+        gestures[slot] = HandGestureClassifier.Gesture.NONE;
+      }
+    }
+  }
+
+  /** Follows the middle finger base of each tracked hand and logs recognized motions. */
+  private void recognizeMotions(HandsResult result) {
+    for (int slot = 0; slot < MAX_NUM_HANDS; ++slot) {
+      if (!handTracker.isTracked(slot) || handTracker.isNewTrack(slot)) {
+        motionRecognizers[slot].reset();
+      }
+    }
+    for (int i = 0; i < handTracker.numHands(); ++i) {
+      int slot = handTracker.slotOf(i);
+      NormalizedLandmark landmark =
+          result.multiHandLandmarks().get(i).getLandmarkList().get(HandLandmark.MIDDLE_FINGER_MCP);
+      int gesture =
+          motionRecognizers[slot].update(landmark.getX(), landmark.getY(), result.timestamp());
+      if (gesture != DynamicGestureRecognizer.NONE) {
+        Log.i(
+            TAG,
+            "Hand " + handTracker.trackId(slot) + " motion: " + gestureTemplates.name(gesture));
+      }
+    }
+  }
+
+  private static HandGestureClassifier[] newGestureClassifiers(int count) {
+    HandGestureClassifier[] classifiers = new HandGestureClassifier[count];
+    for (int i = 0; i < count; ++i) {
+      classifiers[i] = new HandGestureClassifier();
+    }
+    return classifiers;
   }
 
   private void logWristLandmark(HandsResult result, boolean showPixelValues) {
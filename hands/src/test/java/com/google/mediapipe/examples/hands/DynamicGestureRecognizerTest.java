@@ -0,0 +1,137 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DynamicGestureRecognizerTest {
+  // The app's settings, and its templates; unit tests run from the module directory.
+  private static final String TEMPLATES_FILE = "src/main/assets/gesture_templates.properties";
+  private static final int POINTS = 32;
+  private static final int BAND = 6;
+  private static final float MAX_DISTANCE = 0.03f;
+  private static final float MIN_EXTENT = 0.15f;
+  private static final int TEMPLATES_PER_FRAME = 2;
+  private static final int CAPACITY = 64;
+  private static final long WINDOW_US = 1_500_000;
+  private static final long FRAME_US = 33_333;
+  // Frames the motions take, then frames the hand rests for.
+  private static final int MOTION_FRAMES = 24;
+  private static final int REST_FRAMES = 12;
+
+  private GestureTemplates templates;
+  private DynamicGestureRecognizer recognizer;
+  private long frame;
+
+  @Before
+  public void setUp() throws IOException {
+    try (InputStream in = new FileInputStream(TEMPLATES_FILE)) {
+      templates = GestureTemplates.load(in, POINTS);
+    }
+    recognizer = recognizer(TEMPLATES_PER_FRAME);
+  }
+
+  @Test
+  public void recognizesSwipes() {
+    assertEquals("swipe_right", perform(t -> 0.3f + 0.4f * t, t -> 0.5f));
+    assertEquals("swipe_left", perform(t -> 0.7f - 0.4f * t, t -> 0.5f));
+    assertEquals("swipe_up", perform(t -> 0.5f, t -> 0.7f - 0.4f * t));
+    assertEquals("swipe_down", perform(t -> 0.5f, t -> 0.3f + 0.4f * t));
+  }
+
+  @Test
+  public void recognizesCircles() {
+    assertEquals(
+        "circle_cw",
+        perform(
+            t -> 0.5f + 0.15f * (float) Math.sin(2 * Math.PI * t),
+            t -> 0.5f - 0.15f * (float) Math.cos(2 * Math.PI * t)));
+    assertEquals(
+        "circle_ccw",
+        perform(
+            t -> 0.5f - 0.15f * (float) Math.sin(2 * Math.PI * t),
+            t -> 0.5f - 0.15f * (float) Math.cos(2 * Math.PI * t)));
+  }
+
+  @Test
+  public void recognizesWaves() {
+    // Back and forth twice, as a triangle wave.
+    assertEquals(
+        "wave", perform(t -> 0.3f + 0.3f * (1 - Math.abs(1 - (4 * t) % 2)), t -> 0.5f));
+  }
+
+  @Test
+  public void ignoresSmallMotions() {
+    assertEquals(null, perform(t -> 0.5f + 0.1f * t, t -> 0.5f));
+  }
+
+  @Test
+  public void comparesAtMostTemplatesPerFrame() {
+    long comparisons = 0;
+    for (int i = 0; i < 3 * (MOTION_FRAMES + REST_FRAMES); ++i) {
+      float t = (i % (MOTION_FRAMES + REST_FRAMES)) / (float) MOTION_FRAMES;
+      recognizer.update(0.2f + 0.5f * Math.min(1, t), 0.5f, frame++ * FRAME_US);
+      long count = recognizer.comparisonCount();
+      assertTrue("frame " + i, count - comparisons <= TEMPLATES_PER_FRAME);
+      comparisons = count;
+    }
+    assertTrue(comparisons > 0);
+    assertTrue(recognizer.abandonedCount() > 0);
+  }
+
+  @Test
+  public void oneTemplatePerFrameStillRecognizes() {
+    recognizer = recognizer(1);
+    assertEquals("swipe_right", perform(t -> 0.3f + 0.4f * t, t -> 0.5f));
+  }
+
+  @Test
+  public void noTemplatesRecognizeNothing() {
+    templates = GestureTemplates.compile(new Properties(), POINTS);
+    recognizer = recognizer(TEMPLATES_PER_FRAME);
+    assertEquals(null, perform(t -> 0.3f + 0.4f * t, t -> 0.5f));
+    assertEquals(0, recognizer.comparisonCount());
+  }
+
+  /** A coordinate of the hand, at {@code t} from 0 to 1 through the motion. */
+  private interface Path {
+    float at(float t);
+  }
+
+  /**
+   * Moves the hand along ({@code x}, {@code y}) then holds it still.
+   *
+   * @return the name of the recognized motion, or {@code null}; motions recognized before the hand
+   *     came to rest fail the test.
+   */
+  private String perform(Path x, Path y) {
+    recognizer.reset();
+    String recognized = null;
+    for (int i = 0; i <= MOTION_FRAMES + REST_FRAMES; ++i) {
+      float t = Math.min(1, i / (float) MOTION_FRAMES);
+      int gesture = recognizer.update(x.at(t), y.at(t), frame++ * FRAME_US);
+      if (gesture != DynamicGestureRecognizer.NONE) {
+        assertTrue("recognized while moving", i > MOTION_FRAMES);
+        assertEquals("recognized twice", null, recognized);
+        recognized = templates.name(gesture);
+      }
+    }
+    return recognized;
+  }
+
+  private DynamicGestureRecognizer recognizer(int templatesPerFrame) {
+    return new DynamicGestureRecognizer(
+        templates,
+        new HandTrajectory(CAPACITY, WINDOW_US),
+        BAND,
+        MAX_DISTANCE,
+        MIN_EXTENT,
+        templatesPerFrame);
+  }
+}
@@ -0,0 +1,61 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class GestureTemplatesTest {
+  private static final int POINTS = 16;
+
+  @Test
+  public void templatesAreOrderedByNameAndNormalized() throws IOException {
+    GestureTemplates templates = load("swipe_right = 0,0 10,0\nswipe_down = 5,5 5,7\n");
+    assertEquals(2, templates.size());
+    assertEquals("swipe_down", templates.name(0));
+    assertEquals("swipe_right", templates.name(1));
+    assertEquals(POINTS, templates.pointCount());
+    float[] right = templates.points(1);
+    assertEquals(2 * POINTS, right.length);
+    assertEquals(-0.5f, right[0], 1e-6f);
+    assertEquals(0.5f, right[2 * POINTS - 2], 1e-6f);
+    for (int k = 0; k < POINTS; ++k) {
+      assertEquals(0, right[2 * k + 1], 0);
+    }
+  }
+
+  @Test
+  public void rejectsASinglePoint() throws IOException {
+    assertRejected("tap = 0,0\n", "needs two points");
+  }
+
+  @Test
+  public void rejectsMalformedPoints() throws IOException {
+    assertRejected("swipe = 0,0 1;0\n", "Bad gesture template point");
+    assertRejected("swipe = 0,0 1,0,0\n", "Bad gesture template point");
+    assertRejected("swipe = 0,0 right,0\n", "Bad gesture template point");
+  }
+
+  @Test
+  public void rejectsTemplatesWithoutExtent() throws IOException {
+    assertRejected("still = 1,1 1,1 1,1\n", "no extent");
+  }
+
+  private static void assertRejected(String properties, String message) throws IOException {
+    try {
+      load(properties);
+      fail(properties);
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains(message));
+    }
+  }
+
+  private static GestureTemplates load(String properties) throws IOException {
+    return GestureTemplates.load(
+        new ByteArrayInputStream(properties.getBytes(StandardCharsets.ISO_8859_1)), POINTS);
+  }
+}
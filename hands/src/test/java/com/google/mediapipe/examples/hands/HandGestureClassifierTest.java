@@ -0,0 +1,195 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.mediapipe.examples.hands.HandGestureClassifier.Gesture;
+import com.google.mediapipe.formats.proto.LandmarkProto.Landmark;
+import com.google.mediapipe.solutions.hands.HandLandmark;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class HandGestureClassifierTest {
+  // Synthetic hands in world units: y grows downwards and the palm faces the camera along z.
+  private static final float SEGMENT = 0.025f;
+  private static final float[][] MCPS = {
+    {-0.03f, -0.08f}, {-0.01f, -0.085f}, {0.01f, -0.08f}, {0.03f, -0.07f},
+  };
+  private static final int[][] FINGERS = {
+    {HandLandmark.INDEX_FINGER_MCP, HandLandmark.INDEX_FINGER_PIP,
+        HandLandmark.INDEX_FINGER_DIP, HandLandmark.INDEX_FINGER_TIP},
+    {HandLandmark.MIDDLE_FINGER_MCP, HandLandmark.MIDDLE_FINGER_PIP,
+        HandLandmark.MIDDLE_FINGER_DIP, HandLandmark.MIDDLE_FINGER_TIP},
+    {HandLandmark.RING_FINGER_MCP, HandLandmark.RING_FINGER_PIP,
+        HandLandmark.RING_FINGER_DIP, HandLandmark.RING_FINGER_TIP},
+    {HandLandmark.PINKY_MCP, HandLandmark.PINKY_PIP,
+        HandLandmark.PINKY_DIP, HandLandmark.PINKY_TIP},
+  };
+  private static final int SIZE = 3 * HandLandmark.NUM_LANDMARKS;
+
+  private final HandGestureClassifier classifier = new HandGestureClassifier();
+
+  @Test
+  public void openPalm() {
+    float[] hand = hand(true, true, true, true);
+    thumbOut(hand);
+    assertEquals(Gesture.OPEN_PALM, classifier.classify(hand, 0));
+    for (int finger = 0; finger < HandGestureClassifier.NUM_FINGERS; ++finger) {
+      assertTrue("finger " + finger, classifier.curl(finger) < 0.1f);
+    }
+  }
+
+  @Test
+  public void fist() {
+    float[] hand = hand(false, false, false, false);
+    thumbFolded(hand);
+    assertEquals(Gesture.FIST, classifier.classify(hand, 0));
+  }
+
+  @Test
+  public void pointing() {
+    float[] hand = hand(true, false, false, false);
+    thumbFolded(hand);
+    assertEquals(Gesture.POINTING, classifier.classify(hand, 0));
+  }
+
+  @Test
+  public void thumbsUp() {
+    float[] hand = hand(false, false, false, false);
+    thumbUp(hand);
+    assertEquals(Gesture.THUMBS_UP, classifier.classify(hand, 0));
+  }
+
+  @Test
+  public void thumbOutWithAFistIsNoThumbsUp() {
+    float[] hand = hand(false, false, false, false);
+    // Extended, but pointing to the side.
+    set(hand, HandLandmark.THUMB_CMC, -0.02f, -0.02f, 0);
+    set(hand, HandLandmark.THUMB_MCP, -0.045f, -0.02f, 0);
+    set(hand, HandLandmark.THUMB_IP, -0.07f, -0.02f, 0);
+    set(hand, HandLandmark.THUMB_TIP, -0.095f, -0.02f, 0);
+    assertEquals(Gesture.FIST, classifier.classify(hand, 0));
+  }
+
+  @Test
+  public void pinch() {
+    float[] hand = hand(true, true, true, true);
+    thumbOut(hand);
+    int indexTip = 3 * HandLandmark.INDEX_FINGER_TIP;
+    set(hand, HandLandmark.THUMB_TIP, hand[indexTip] + 0.005f, hand[indexTip + 1], 0);
+    assertEquals(Gesture.PINCH, classifier.classify(hand, 0));
+    assertTrue(classifier.pinchDistance() < 0.1f);
+  }
+
+  @Test
+  public void sizeAndYawDoNotMatter() {
+    float[] hand = hand(true, false, false, false);
+    thumbFolded(hand);
+    float cos = (float) Math.cos(0.6), sin = (float) Math.sin(0.6);
+    for (int i = 0; i < SIZE; i += 3) {
+      float x = hand[i], z = hand[i + 2];
+      hand[i] = 10 * (cos * x + sin * z);
+      hand[i + 1] *= 10;
+      hand[i + 2] = 10 * (cos * z - sin * x);
+    }
+    assertEquals(Gesture.POINTING, classifier.classify(hand, 0));
+  }
+
+  @Test
+  public void classifiesAtAnOffset() {
+    float[] fist = hand(false, false, false, false);
+    thumbFolded(fist);
+    float[] palm = hand(true, true, true, true);
+    thumbOut(palm);
+    float[] both = new float[2 * SIZE];
+    System.arraycopy(fist, 0, both, 0, SIZE);
+    System.arraycopy(palm, 0, both, SIZE, SIZE);
+    assertEquals(Gesture.OPEN_PALM, classifier.classify(both, SIZE));
+    assertEquals(Gesture.FIST, classifier.classify(both, 0));
+  }
+
+  @Test
+  public void classifiesWorldLandmarks() {
+    float[] hand = hand(false, false, false, false);
+    thumbUp(hand);
+    List<Landmark> landmarks = new ArrayList<>();
+    for (int i = 0; i < SIZE; i += 3) {
+      landmarks.add(
+          Landmark.newBuilder().setX(hand[i]).setY(hand[i + 1]).setZ(hand[i + 2]).build());
+    }
+    assertEquals(Gesture.THUMBS_UP, classifier.classify(landmarks));
+    assertEquals(Gesture.THUMBS_UP, classifier.gesture());
+  }
+
+  @Test
+  public void tooFewLandmarksClassifyAsNone() {
+    float[] hand = hand(true, true, true, true);
+    thumbOut(hand);
+    classifier.classify(hand, 0);
+    List<Landmark> landmarks =
+        Collections.nCopies(HandLandmark.NUM_LANDMARKS - 1, Landmark.getDefaultInstance());
+    assertEquals(Gesture.NONE, classifier.classify(landmarks));
+    assertEquals(Gesture.NONE, classifier.gesture());
+  }
+
+  /**
+   * A hand with the wrist at the origin and each of the index, middle, ring and pinky fingers
+   * either straight along its metacarpal or curled into the palm; the thumb is left for the caller.
+   */
+  private static float[] hand(boolean... extended) {
+    float[] hand = new float[SIZE];
+    for (int f = 0; f < FINGERS.length; ++f) {
+      float[] mcp = MCPS[f];
+      float length = (float) Math.sqrt(mcp[0] * mcp[0] + mcp[1] * mcp[1]);
+      float dx = mcp[0] / length * SEGMENT, dy = mcp[1] / length * SEGMENT;
+      int[] chain = FINGERS[f];
+      set(hand, chain[0], mcp[0], mcp[1], 0);
+      if (extended[f]) {
+        for (int j = 1; j < chain.length; ++j) {
+          set(hand, chain[j], mcp[0] + j * dx, mcp[1] + j * dy, 0);
+        }
+      } else {
+        // Up, into the palm, then back down: two right angles.
+        set(hand, chain[1], mcp[0], mcp[1] - SEGMENT, 0);
+        set(hand, chain[2], mcp[0], mcp[1] - SEGMENT, SEGMENT);
+        set(hand, chain[3], mcp[0], mcp[1], SEGMENT);
+      }
+    }
+    return hand;
+  }
+
+  /** Sticks the thumb out to the side and up, straight. */
+  private static void thumbOut(float[] hand) {
+    thumb(hand, -0.78f, -0.62f);
+  }
+
+  /** Points the thumb straight up. */
+  private static void thumbUp(float[] hand) {
+    thumb(hand, 0, -1);
+  }
+
+  private static void thumb(float[] hand, float dx, float dy) {
+    int[] chain = {
+      HandLandmark.THUMB_CMC, HandLandmark.THUMB_MCP, HandLandmark.THUMB_IP, HandLandmark.THUMB_TIP
+    };
+    for (int j = 0; j < chain.length; ++j) {
+      set(hand, chain[j], -0.02f + j * SEGMENT * dx, -0.02f + j * SEGMENT * dy, 0);
+    }
+  }
+
+  /** Folds the thumb across the palm. */
+  private static void thumbFolded(float[] hand) {
+    set(hand, HandLandmark.THUMB_CMC, -0.02f, -0.02f, 0);
+    set(hand, HandLandmark.THUMB_MCP, -0.03f, -0.045f, 0);
+    set(hand, HandLandmark.THUMB_IP, -0.03f, -0.045f, 0.02f);
+    set(hand, HandLandmark.THUMB_TIP, -0.01f, -0.045f, 0.02f);
+  }
+
+  private static void set(float[] hand, int landmark, float x, float y, float z) {
+    hand[3 * landmark] = x;
+    hand[3 * landmark + 1] = y;
+    hand[3 * landmark + 2] = z;
+  }
+}
@@ -0,0 +1,173 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HandKinematicsRecorderTest {
+  private static final int MAX_HANDS = 2;
+  private static final int JOINTS = HandKinematicsFrame.NUM_JOINTS;
+  private static final int VELOCITIES = 3 * HandKinematicsFrame.NUM_TIPS;
+  private static final int HEADER_SIZE = 10;
+  private static final int FRAME_HEADER_SIZE = 8 + 1;
+  private static final int HAND_SIZE = 4 + 1 + 2 * (JOINTS + VELOCITIES + 3 + 3);
+  private static final long FRAME_US = 33_333;
+
+  private File path;
+
+  @Before
+  public void setUp() throws IOException {
+    path = File.createTempFile("kinematics", ".hkin");
+  }
+
+  @After
+  public void tearDown() {
+    path.delete();
+  }
+
+  @Test
+  public void roundTripsHeaderAndRecords() throws IOException {
+    int[] hands = {2, 0, 1, 2, 1};
+    // Two frames per write, so close() writes the last, partial batch.
+    try (HandKinematicsRecorder recorder = recorder(Long.MAX_VALUE)) {
+      for (int i = 0; i < hands.length; ++i) {
+        recorder.onKinematics(frame(i, hands[i]));
+      }
+    }
+    ByteBuffer in = read();
+    readHeader(in);
+    for (int i = 0; i < hands.length; ++i) {
+      HandKinematicsFrame expected = frame(i, hands[i]);
+      assertEquals(expected.timestampUs, in.getLong());
+      assertEquals(expected.numHands, in.get());
+      for (int h = 0; h < expected.numHands; ++h) {
+        assertEquals(expected.trackIds[h], in.getInt());
+        int flags = in.get();
+        assertEquals(expected.isLeftHand[h], (flags & 1) != 0);
+        assertEquals(expected.hasVelocity[h], (flags & 2) != 0);
+        assertScaled(in, expected.flexion, h * JOINTS, JOINTS, 1e-4f);
+        assertScaled(in, expected.tipVelocities, h * VELOCITIES, VELOCITIES, 1e-3f);
+        assertScaled(in, expected.palmNormals, 3 * h, 3, 1 / 32767f);
+        assertScaled(in, expected.palmDirections, 3 * h, 3, 1 / 32767f);
+      }
+    }
+    assertFalse(in.hasRemaining());
+  }
+
+  @Test
+  public void saturatesOutOfRangeValues() throws IOException {
+    HandKinematicsFrame frame = frame(0, 1);
+    frame.flexion[0] = 4;
+    frame.flexion[1] = -4;
+    // 100 m/s is 100000 mm/s, beyond an int16.
+    frame.tipVelocities[0] = 100;
+    frame.tipVelocities[1] = -100;
+    frame.palmNormals[0] = 1;
+    frame.palmNormals[1] = -1;
+    try (HandKinematicsRecorder recorder = recorder(Long.MAX_VALUE)) {
+      recorder.onKinematics(frame);
+    }
+    ByteBuffer in = read();
+    readHeader(in);
+    in.position(in.position() + FRAME_HEADER_SIZE + 4 + 1);
+    assertEquals(Short.MAX_VALUE, in.getShort());
+    assertEquals(Short.MIN_VALUE, in.getShort());
+    in.position(in.position() + 2 * (JOINTS - 2));
+    assertEquals(Short.MAX_VALUE, in.getShort());
+    assertEquals(Short.MIN_VALUE, in.getShort());
+    in.position(in.position() + 2 * (VELOCITIES - 2));
+    assertEquals(32767, in.getShort());
+    assertEquals(-32767, in.getShort());
+  }
+
+  @Test
+  public void dropsFramesPastTheSizeCap() throws IOException {
+    long maxBytes = HEADER_SIZE + 2 * (FRAME_HEADER_SIZE + HAND_SIZE);
+    HandKinematicsRecorder recorder = recorder(maxBytes);
+    try {
+      for (int i = 0; i < 3; ++i) {
+        recorder.onKinematics(frame(i, 1));
+      }
+      // Not even an empty frame fits any more.
+      recorder.onKinematics(frame(3, 0));
+    } finally {
+      recorder.close();
+    }
+    assertEquals(2, recorder.writtenFrames());
+    assertEquals(2, recorder.droppedFrames());
+    assertEquals(maxBytes, path.length());
+    ByteBuffer in = read();
+    readHeader(in);
+    assertEquals(0, in.getLong());
+    in.position(in.position() + 1 + HAND_SIZE);
+    assertEquals(FRAME_US, in.getLong());
+  }
+
+  @Test
+  public void countsWrittenFrames() throws IOException {
+    HandKinematicsRecorder recorder = recorder(Long.MAX_VALUE);
+    for (int i = 0; i < 7; ++i) {
+      recorder.onKinematics(frame(i, i % 3));
+    }
+    recorder.close();
+    assertEquals(7, recorder.writtenFrames());
+    assertEquals(0, recorder.droppedFrames());
+    assertTrue(path.length() > HEADER_SIZE + 7 * FRAME_HEADER_SIZE);
+  }
+
+  private HandKinematicsRecorder recorder(long maxBytes) throws IOException {
+    return new HandKinematicsRecorder(path, MAX_HANDS, 2, maxBytes);
+  }
+
+  private ByteBuffer read() throws IOException {
+    return ByteBuffer.wrap(Files.readAllBytes(path.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void readHeader(ByteBuffer in) {
+    assertEquals(HandKinematicsRecorder.MAGIC, in.getInt());
+    assertEquals(HandKinematicsRecorder.VERSION, in.getShort());
+    assertEquals(JOINTS, in.getShort());
+    assertEquals(HandKinematicsFrame.NUM_TIPS, in.getShort());
+  }
+
+  private static void assertScaled(
+      ByteBuffer in, float[] expected, int offset, int count, float unit) {
+    for (int i = 0; i < count; ++i) {
+      assertEquals(expected[offset + i], in.getShort() * unit, unit);
+    }
+  }
+
+  /** Frame {@code index} with {@code numHands} hands and values that differ by frame and hand. */
+  private static HandKinematicsFrame frame(int index, int numHands) {
+    HandKinematicsFrame frame = new HandKinematicsFrame(MAX_HANDS);
+    frame.timestampUs = index * FRAME_US;
+    frame.numHands = numHands;
+    for (int h = 0; h < numHands; ++h) {
+      frame.trackIds[h] = 10 * index + h;
+      frame.isLeftHand[h] = h == 0;
+      frame.hasVelocity[h] = index > 0;
+      for (int j = 0; j < JOINTS; ++j) {
+        frame.flexion[h * JOINTS + j] = 0.1f * j + 0.01f * index;
+      }
+      for (int v = 0; v < VELOCITIES; ++v) {
+        frame.tipVelocities[h * VELOCITIES + v] = 0.05f * (v - 7) + 0.001f * h;
+      }
+      // A unit normal along z and direction along -y, tilted by frame.
+      float tilt = 0.1f * index;
+      frame.palmNormals[3 * h + 1] = (float) Math.sin(tilt);
+      frame.palmNormals[3 * h + 2] = (float) Math.cos(tilt);
+      frame.palmDirections[3 * h] = (float) Math.sin(tilt);
+      frame.palmDirections[3 * h + 1] = -(float) Math.cos(tilt);
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,142 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HandTrackerTest {
+  private static final int MAX_HANDS = 2;
+  private static final float MAX_MATCH_DISTANCE = 0.1f;
+  private static final int MAX_MISSED_FRAMES = 3;
+  private static final int VOTE_LENGTH = 5;
+  private static final float LEFT = 0.9f;
+  private static final float RIGHT = -0.9f;
+
+  private final HandTracker tracker =
+      new HandTracker(MAX_HANDS, MAX_MATCH_DISTANCE, MAX_MISSED_FRAMES, VOTE_LENGTH);
+
+  @Test
+  public void handsKeepTheirTracksWhenTheResultOrderSwaps() {
+    update(0.2f, LEFT, 0.8f, RIGHT);
+    int leftSlot = tracker.slotOf(0);
+    int rightSlot = tracker.slotOf(1);
+    assertNotEquals(leftSlot, rightSlot);
+    assertTrue(tracker.isNewTrack(leftSlot));
+    assertTrue(tracker.isNewTrack(rightSlot));
+    int leftId = tracker.trackId(leftSlot);
+    int rightId = tracker.trackId(rightSlot);
+
+    update(0.81f, RIGHT, 0.21f, LEFT);
+    assertEquals(rightSlot, tracker.slotOf(0));
+    assertEquals(leftSlot, tracker.slotOf(1));
+    assertFalse(tracker.isNewTrack(leftSlot));
+    assertFalse(tracker.isNewTrack(rightSlot));
+    assertEquals(leftId, tracker.trackId(leftSlot));
+    assertEquals(rightId, tracker.trackId(rightSlot));
+    assertTrue(tracker.isLeftHand(leftSlot));
+    assertFalse(tracker.isLeftHand(rightSlot));
+  }
+
+  @Test
+  public void briefLabelFlipsDoNotChangeHandedness() {
+    for (int i = 0; i < VOTE_LENGTH; ++i) {
+      update(0.2f, LEFT, 0.8f, RIGHT);
+    }
+    int leftSlot = tracker.slotOf(0);
+    int rightSlot = tracker.slotOf(1);
+    // Two confident frames with the labels swapped.
+    update(0.2f, -0.95f, 0.8f, 0.95f);
+    update(0.2f, -0.95f, 0.8f, 0.95f);
+    assertEquals(leftSlot, tracker.slotOf(0));
+    assertTrue(tracker.isLeftHand(leftSlot));
+    assertFalse(tracker.isLeftHand(rightSlot));
+    // A lasting change wins the vote.
+    update(0.2f, -0.95f, 0.8f, 0.95f);
+    assertFalse(tracker.isLeftHand(leftSlot));
+    assertTrue(tracker.isLeftHand(rightSlot));
+  }
+
+  @Test
+  public void handThatReturnsSoonKeepsItsTrack() {
+    update(0.2f, LEFT, 0.8f, RIGHT);
+    int rightSlot = tracker.slotOf(1);
+    int rightId = tracker.trackId(rightSlot);
+    for (int i = 0; i < MAX_MISSED_FRAMES; ++i) {
+      update(0.2f, LEFT);
+      assertEquals(1, tracker.numHands());
+      assertFalse(tracker.isTracked(rightSlot));
+      assertEquals(HandTracker.NO_SLOT, tracker.slotOf(1));
+    }
+    update(0.2f, LEFT, 0.82f, RIGHT);
+    assertEquals(rightSlot, tracker.slotOf(1));
+    assertTrue(tracker.isTracked(rightSlot));
+    assertFalse(tracker.isNewTrack(rightSlot));
+    assertEquals(rightId, tracker.trackId(rightSlot));
+    assertFalse(tracker.isLeftHand(rightSlot));
+  }
+
+  @Test
+  public void handThatStaysAwayStartsANewTrack() {
+    update(0.2f, LEFT, 0.8f, RIGHT);
+    int leftId = tracker.trackId(tracker.slotOf(0));
+    int rightId = tracker.trackId(tracker.slotOf(1));
+    for (int i = 0; i <= MAX_MISSED_FRAMES; ++i) {
+      update(0.2f, LEFT);
+    }
+    update(0.2f, LEFT, 0.8f, RIGHT);
+    int slot = tracker.slotOf(1);
+    assertTrue(tracker.isNewTrack(slot));
+    assertNotEquals(rightId, tracker.trackId(slot));
+    assertNotEquals(leftId, tracker.trackId(slot));
+    assertEquals(leftId, tracker.trackId(tracker.slotOf(0)));
+  }
+
+  @Test
+  public void missingHandIsLookedForWhereItWasHeading() {
+    update(0.1f, LEFT);
+    update(0.15f, LEFT);
+    int slot = tracker.slotOf(0);
+    int id = tracker.trackId(slot);
+    update();
+    update();
+    // Further from where it was last seen than the match distance, but where it was heading.
+    update(0.3f, LEFT);
+    assertEquals(slot, tracker.slotOf(0));
+    assertFalse(tracker.isNewTrack(slot));
+    assertEquals(id, tracker.trackId(slot));
+  }
+
+  @Test
+  public void handsBeyondMaxHandsGetNoSlot() {
+    update(0.2f, LEFT, 0.5f, RIGHT, 0.8f, RIGHT);
+    assertEquals(MAX_HANDS, tracker.numHands());
+    assertEquals(HandTracker.NO_SLOT, tracker.slotOf(2));
+  }
+
+  @Test
+  public void resetEndsAllTracks() {
+    update(0.2f, LEFT);
+    int id = tracker.trackId(tracker.slotOf(0));
+    tracker.reset();
+    assertEquals(0, tracker.numHands());
+    update(0.2f, LEFT);
+    assertTrue(tracker.isNewTrack(tracker.slotOf(0)));
+    assertNotEquals(id, tracker.trackId(tracker.slotOf(0)));
+  }
+
+  /** One frame of hands at y = 0.5, given as (x, left score) pairs in result order. */
+  private void update(float... hands) {
+    int count = hands.length / 2;
+    float[] palms = new float[2 * count];
+    float[] leftScores = new float[count];
+    for (int i = 0; i < count; ++i) {
+      palms[2 * i] = hands[2 * i];
+      palms[2 * i + 1] = 0.5f;
+      leftScores[i] = hands[2 * i + 1];
+    }
+    tracker.update(palms, leftScores, count);
+  }
+}
@@ -0,0 +1,73 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HandTrajectoryTest {
+  private static final long FRAME_US = 10_000;
+
+  @Test
+  public void dropsSamplesOutsideTheWindow() {
+    HandTrajectory trajectory = new HandTrajectory(100, 5 * FRAME_US);
+    for (int i = 0; i < 10; ++i) {
+      trajectory.add(i, 0, i * FRAME_US);
+    }
+    assertEquals(6, trajectory.size());
+    // Only samples 4 to 9 are left, so the path is 5 long.
+    assertEquals(5, trajectory.resample(2, new float[4]), 0);
+  }
+
+  @Test
+  public void dropsTheOldestSampleWhenFull() {
+    HandTrajectory trajectory = new HandTrajectory(4, Long.MAX_VALUE);
+    for (int i = 0; i < 7; ++i) {
+      trajectory.add(0, i, i * FRAME_US);
+    }
+    assertEquals(4, trajectory.size());
+    assertEquals(3, trajectory.resample(2, new float[4]), 0);
+  }
+
+  @Test
+  public void resamplesEvenlyAlongThePath() {
+    HandTrajectory trajectory = new HandTrajectory(8, Long.MAX_VALUE);
+    // An L: 3 to the right, then 1 down; unevenly sampled.
+    trajectory.add(0, 0, 0);
+    trajectory.add(0.5f, 0, FRAME_US);
+    trajectory.add(3, 0, 2 * FRAME_US);
+    trajectory.add(3, 1, 3 * FRAME_US);
+    float[] points = new float[10];
+    assertEquals(3, trajectory.resample(5, points), 0);
+    // Every point 1 further along, centered on the mean and scaled by 1/3.
+    float[] expectedX = {0, 1, 2, 3, 3};
+    float[] expectedY = {0, 0, 0, 0, 1};
+    for (int k = 0; k < 5; ++k) {
+      assertEquals((expectedX[k] - 1.8f) / 3, points[2 * k], 1e-6f);
+      assertEquals((expectedY[k] - 0.2f) / 3, points[2 * k + 1], 1e-6f);
+    }
+  }
+
+  @Test
+  public void needsTwoSamplesToResample() {
+    HandTrajectory trajectory = new HandTrajectory(8, Long.MAX_VALUE);
+    trajectory.add(1, 1, 0);
+    assertEquals(0, trajectory.resample(4, new float[8]), 0);
+  }
+
+  @Test
+  public void restsWhenTheLastSamplesStayClose() {
+    HandTrajectory trajectory = new HandTrajectory(8, Long.MAX_VALUE);
+    trajectory.add(0, 0, 0);
+    trajectory.add(1, 0, FRAME_US);
+    trajectory.add(1.05f, 0, 2 * FRAME_US);
+    assertFalse(trajectory.isResting(3, 0.1f));
+    trajectory.add(1.02f, 0.05f, 3 * FRAME_US);
+    assertTrue(trajectory.isResting(3, 0.1f));
+    assertFalse(trajectory.isResting(5, 0.1f));
+    trajectory.clear();
+    assertEquals(0, trajectory.size());
+    assertFalse(trajectory.isResting(1, 0.1f));
+  }
+}